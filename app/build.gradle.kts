@@ -1,5 +1,6 @@
 plugins {
     alias(libs.plugins.android.application)
+    alias(libs.plugins.androidx.baselineprofile)
     id("com.google.gms.google-services")
 }
 
@@ -15,14 +16,26 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
-
-        // Add MultiDex support
-        multiDexEnabled = true
+        // The microbenchmarks in androidTest run against the debuggable app, they
+        // compare two code paths rather than report absolute timings
+        testInstrumentationRunnerArguments["androidx.benchmark.suppressErrors"] = "DEBUGGABLE,EMULATOR"
+
+        // Export Room schemas so every version can be migrated and tested
+        javaCompileOptions {
+            annotationProcessorOptions {
+                arguments += mapOf(
+                    "room.schemaLocation" to "$projectDir/schemas",
+                    "room.incremental" to "true"
+                )
+            }
+        }
     }
 
     buildTypes {
         release {
-            isMinifyEnabled = false
+            // R8 full mode, keep rules for the reflective models are in proguard-rules.pro
+            isMinifyEnabled = true
+            isShrinkResources = true
             proguardFiles(
                 getDefaultProguardFile("proguard-android-optimize.txt"),
                 "proguard-rules.pro"
@@ -30,6 +43,11 @@ android {
         }
     }
 
+    // Exported schemas are needed by Room's MigrationTestHelper
+    sourceSets {
+        getByName("androidTest").assets.srcDir("$projectDir/schemas")
+    }
+
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
@@ -63,9 +81,6 @@ android {
 }
 
 dependencies {
-    // Add multidex support
-    implementation("androidx.multidex:multidex:2.0.1")
-
     // Location Services
     implementation("com.google.android.gms:play-services-location:21.0.1")
     implementation("com.google.android.gms:play-services-maps:18.2.0")
@@ -94,6 +109,7 @@ dependencies {
     // Room database
     implementation("androidx.room:room-runtime:2.6.1")
     annotationProcessor("androidx.room:room-compiler:2.6.1")
+    implementation("androidx.sqlite:sqlite-framework:2.4.0")
 
     // UI components
     implementation("androidx.appcompat:appcompat:1.6.1")
@@ -115,9 +131,65 @@ dependencies {
     // Glide for image loading
     implementation("com.github.bumptech.glide:glide:4.16.0")
     annotationProcessor("com.github.bumptech.glide:compiler:4.16.0")
+    implementation("com.github.bumptech.glide:recyclerview-integration:4.16.0") {
+        isTransitive = false
+    }
+
+    // Installs the baseline profile on devices without Play Store profile delivery
+    implementation(libs.profileinstaller)
+    baselineProfile(project(":baselineprofile"))
 
     // Testing
     testImplementation("junit:junit:4.13.2")
     androidTestImplementation("androidx.test.ext:junit:1.1.5")
     androidTestImplementation("androidx.test.espresso:espresso-core:3.5.1")
-}
\ No newline at end of file
+    androidTestImplementation("androidx.room:room-testing:2.6.1")
+    androidTestImplementation(libs.benchmark.junit4)
+}
+
+// Generated with ./gradlew :app:generateReleaseBaselineProfile on a connected device
+baselineProfile {
+    // Also lays out the startup classes first in the primary dex
+    dexLayoutOptimization = true
+}
+
+// Prints dex size, class and method reference counts of every built APK, to
+// compare builds. Run after assembling, e.g.
+// ./gradlew :app:assembleDebug :app:assembleRelease :app:dexStats
+tasks.register("dexStats") {
+    group = "reporting"
+    description = "Prints dex size, class and method counts of the built APKs"
+    val apkDir = layout.buildDirectory.dir("outputs/apk")
+    doLast {
+        val apks = apkDir.get().asFile.walkTopDown()
+            .filter { it.extension == "apk" }
+            .sortedBy { it.path }
+            .toList()
+        if (apks.isEmpty()) {
+            println("No APKs in ${apkDir.get().asFile}, assemble first")
+            return@doLast
+        }
+
+        println(String.format("%-45s %6s %12s %8s %12s", "APK", "dexes", "dex bytes", "classes", "method refs"))
+        apks.forEach { apk ->
+            java.util.zip.ZipFile(apk).use { zip ->
+                var dexes = 0
+                var bytes = 0L
+                var classes = 0L
+                var methods = 0L
+                zip.entries().asSequence()
+                    .filter { it.name.matches(Regex("classes\\d*\\.dex")) }
+                    .forEach { entry ->
+                        // method_ids_size and class_defs_size from the dex header
+                        val header = zip.getInputStream(entry).use { it.readNBytes(0x70) }
+                        val buffer = java.nio.ByteBuffer.wrap(header).order(java.nio.ByteOrder.LITTLE_ENDIAN)
+                        dexes++
+                        bytes += entry.size
+                        methods += buffer.getInt(0x58)
+                        classes += buffer.getInt(0x60)
+                    }
+                println(String.format("%-45s %6d %12d %8d %12d", apk.name, dexes, bytes, classes, methods))
+            }
+        }
+    }
+}
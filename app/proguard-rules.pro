@@ -5,17 +5,38 @@
 # For more details, see
 #   http://developer.android.com/guide/developing/tools/proguard.html
 
-# If your project uses WebView with JS, uncomment the following
-# and specify the fully qualified class name to the JavaScript interface
-# class:
-#-keepclassmembers class fqcn.of.javascript.interface.for.webview {
-#   public *;
-#}
+# Keep line numbers for readable crash stack traces, without the file names
+-keepattributes SourceFile,LineNumberTable
+-renamesourcefileattribute SourceFile
 
-# Uncomment this to preserve the line number information for
-# debugging stack traces.
-#-keepattributes SourceFile,LineNumberTable
+# Generic signatures and annotations are read by the Firebase mappers
+-keepattributes Signature,*Annotation*,InnerClasses,EnclosingMethod
 
-# If you keep the line number information, uncomment this to
-# hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+# Firestore (toObject/set) and the Realtime Database (getValue/setValue) map
+# the models by reflection: they need the no-arg constructors and the
+# getter/setter and field names as they are
+-keep class com.example.parkingfinder.models.ParkingArea { *; }
+-keep class com.example.parkingfinder.models.ParkingSpot { *; }
+-keep class com.example.parkingfinder.models.Booking { *; }
+-keep class com.example.parkingfinder.models.User { *; }
+-keepclassmembers class * {
+    @com.google.firebase.firestore.PropertyName <methods>;
+    @com.google.firebase.firestore.PropertyName <fields>;
+    @com.google.firebase.database.PropertyName <methods>;
+    @com.google.firebase.database.PropertyName <fields>;
+}
+
+# Room instantiates the generated AppDatabase_Impl by name
+-keep class * extends androidx.room.RoomDatabase { <init>(); }
+
+# WorkManager creates workers by class name from its database
+-keep class * extends androidx.work.ListenableWorker {
+    public <init>(android.content.Context, androidx.work.WorkerParameters);
+}
+
+# Glide finds the app module through the generated class
+-keep public class * extends com.bumptech.glide.module.AppGlideModule
+-keep class com.bumptech.glide.GeneratedAppGlideModuleImpl
+
+# OSMDroid references optional classes that aren't on Android
+-dontwarn org.osmdroid.**
@@ -0,0 +1,148 @@
+package com.example.parkingfinder.database;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.parkingfinder.database.dao.BookingDao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN that the booking queries are served by the
+ * bookings indices instead of scanning the table. The statements are the
+ * ones the DAO methods send to SQLite, captured with Room's query callback,
+ * so the plans follow any change to the DAO.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BookingQueryPlanTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private AppDatabase db;
+    private BookingDao bookingDao;
+
+    // Booking statements run since the last capture, with their arguments
+    private final BlockingQueue<Statement> statements = new LinkedBlockingQueue<>();
+
+    private static class Statement {
+        final String sql;
+        final Object[] args;
+
+        Statement(String sql, List<Object> args) {
+            this.sql = sql;
+            this.args = args.toArray();
+        }
+    }
+
+    @Before
+    public void createDb() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .setQueryCallback((sql, args) -> {
+                    // Room's own invalidation queries don't read the bookings table
+                    if (sql.contains("FROM bookings")) {
+                        statements.add(new Statement(sql, new ArrayList<>(args)));
+                    }
+                }, Runnable::run)
+                .build();
+        bookingDao = db.bookingDao();
+    }
+
+    @After
+    public void closeDb() {
+        db.close();
+    }
+
+    @Test
+    public void bookingHistoryUsesUserCreatedAtIndex() throws Exception {
+        for (LiveData<?> query : new LiveData<?>[] {
+                bookingDao.getBookingsByUserId("user"),
+                bookingDao.getRecentBookings("user", 20)}) {
+            String plan = plan(capture(query));
+            assertTrue(plan, plan.contains("USING INDEX index_bookings_userId_createdAt"));
+            assertFalse(plan, plan.contains("TEMP B-TREE"));
+        }
+    }
+
+    @Test
+    public void bookingTabsUseUserIndices() throws Exception {
+        assertUsesUserIndex(plan(capture(bookingDao.getUpcomingBookings("user", NOW))));
+        assertUsesUserIndex(plan(capture(bookingDao.getCurrentBookings("user", NOW))));
+        assertUsesUserIndex(plan(capture(bookingDao.getPastBookings("user", NOW, 50))));
+    }
+
+    @Test
+    public void expirySweepUsesStatusEndTimeIndex() throws Exception {
+        bookingDao.getExpiredBookings(NOW);
+        String plan = plan(next());
+        assertTrue(plan, plan.contains("USING INDEX index_bookings_status_endTime"));
+    }
+
+    @Test
+    public void spotConflictCheckUsesSpotIndex() throws Exception {
+        bookingDao.getActiveBookingsForParkingSpot("area", "spot", NOW);
+        String plan = plan(next());
+        assertTrue(plan, plan.contains(
+                "USING INDEX index_bookings_parkingAreaId_parkingSpotId_status_endTime"));
+    }
+
+    private static void assertUsesUserIndex(String plan) {
+        assertTrue(plan, plan.contains("USING INDEX index_bookings_userId_"));
+        assertFalse(plan, plan.matches("(?s).*SCAN (TABLE )?bookings(?! USING).*"));
+    }
+
+    /**
+     * The statement a LiveData query runs once observed
+     */
+    private Statement capture(LiveData<?> query) throws InterruptedException {
+        Observer<Object> observer = value -> {
+        };
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> query.observeForever(observer));
+        try {
+            return next();
+        } finally {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> query.removeObserver(observer));
+            statements.clear();
+        }
+    }
+
+    private Statement next() throws InterruptedException {
+        Statement statement = statements.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull("No bookings query was run", statement);
+        return statement;
+    }
+
+    /**
+     * The statement, then the detail column of every plan row, one per line
+     */
+    private String plan(Statement statement) {
+        StringBuilder plan = new StringBuilder(statement.sql).append('\n');
+        try (Cursor cursor = db.getOpenHelper().getReadableDatabase()
+                .query(new SimpleSQLiteQuery("EXPLAIN QUERY PLAN " + statement.sql, statement.args))) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
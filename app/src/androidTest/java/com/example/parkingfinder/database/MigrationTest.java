@@ -0,0 +1,86 @@
+package com.example.parkingfinder.database;
+
+import android.database.Cursor;
+
+import androidx.room.migration.Migration;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the migrations against the schemas exported to app/schemas and checks
+ * each result matches the next version's schema, and that cached data and
+ * unsynced bookings survive the upgrade.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String TEST_DB = "migration-test";
+    private static final int FIRST_VERSION = 1;
+    private static final int LATEST_VERSION = 7;
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), AppDatabase.class);
+
+    @Test
+    public void eachMigrationMatchesNextSchema() throws IOException {
+        for (Migration migration : Migrations.ALL) {
+            String name = TEST_DB + "-" + migration.startVersion;
+            helper.createDatabase(name, migration.startVersion).close();
+            helper.runMigrationsAndValidate(name, migration.endVersion, true, migration).close();
+        }
+    }
+
+    @Test
+    public void migrateFirstToLatestKeepsData() throws IOException {
+        try (SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, FIRST_VERSION)) {
+            db.execSQL("INSERT INTO users (uid, name) VALUES ('user', 'Test User')");
+            db.execSQL("INSERT INTO parking_areas (id, name, latitude, longitude, totalSpots, " +
+                    "availableSpots, hourlyRate, hasCoveredParking, hasDisabledAccess, " +
+                    "hasElectricCharging, rating, numberOfRatings, lastUpdated, isFavorite) " +
+                    "VALUES ('area', 'Test Area', 51.5, -0.12, 10, 4, 2.5, 1, 0, 1, 4.5, 12, 1000, 1)");
+            db.execSQL("INSERT INTO parking_spots (id, parkingAreaId, spotNumber, floor, available, " +
+                    "isReserved, isHandicapped, isElectricCharging, positionX, positionY, lastUpdated) " +
+                    "VALUES ('spot', 'area', 'A1', 0, 1, 0, 0, 0, 1, 2, 1000)");
+            db.execSQL("INSERT INTO bookings (id, userId, parkingAreaId, parkingSpotId, startTime, " +
+                    "endTime, totalCost, status, createdAt, isPaid, isSynced) " +
+                    "VALUES ('booking', 'user', 'area', 'spot', 2000, 3000, 5.0, 'CONFIRMED', 1500, 0, 0)");
+        }
+
+        SupportSQLiteDatabase db = helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true,
+                Migrations.ALL);
+
+        try (Cursor cursor = db.query("SELECT userId, status, isSynced FROM bookings WHERE id = 'booking'")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("user", cursor.getString(0));
+            assertEquals("CONFIRMED", cursor.getString(1));
+            assertEquals(0, cursor.getInt(2));
+        }
+        try (Cursor cursor = db.query("SELECT name, isFavorite FROM parking_areas WHERE id = 'area'")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("Test Area", cursor.getString(0));
+            assertEquals(1, cursor.getInt(1));
+        }
+        // Existing spots get no bitset ordinal until their layout is fetched again
+        try (Cursor cursor = db.query("SELECT ordinal FROM parking_spots WHERE id = 'spot'")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(-1, cursor.getInt(0));
+        }
+        try (Cursor cursor = db.query("SELECT COUNT(*) FROM sqlite_master " +
+                "WHERE type = 'index' AND name = 'index_bookings_isSynced'")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, cursor.getInt(0));
+        }
+        db.close();
+    }
+}
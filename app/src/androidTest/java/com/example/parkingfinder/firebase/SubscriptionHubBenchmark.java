@@ -0,0 +1,158 @@
+package com.example.parkingfinder.firebase;
+
+import android.app.Instrumentation;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Delivery of one spot update to several screens watching the same area,
+ * with a listener per screen against one hub listener fanned out to every
+ * screen. Runs on an offline, memory-only Firebase app of its own.
+ * Run with ./gradlew :app:connectedDebugAndroidTest
+ * -Pandroid.testInstrumentationRunnerArguments.class=com.example.parkingfinder.firebase.SubscriptionHubBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class SubscriptionHubBenchmark {
+
+    // Map, list, details and booking screens on the same area
+    private static final int SCREENS = 4;
+    private static final int SPOTS = 200;
+    private static final String PATH = "parking_spots/area0";
+
+    private static FirebaseDatabase database;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @BeforeClass
+    public static void createDatabase() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp app = FirebaseApp.initializeApp(context, new FirebaseOptions.Builder()
+                .setProjectId("hub-benchmark")
+                .setApplicationId("1:0:android:0")
+                .setApiKey("offline")
+                .setDatabaseUrl("https://hub-benchmark.firebaseio.com")
+                .build(), "hub-benchmark");
+        database = FirebaseDatabase.getInstance(app);
+        database.goOffline();
+
+        Map<String, Object> spots = new HashMap<>();
+        for (int i = 0; i < SPOTS; i++) {
+            Map<String, Object> spot = new HashMap<>();
+            spot.put("spotNumber", "A" + i);
+            spot.put("available", true);
+            spot.put("ordinal", i);
+            spots.put("spot" + i, spot);
+        }
+        database.getReference(PATH).setValue(spots);
+    }
+
+    @Test
+    public void listenerPerScreen() throws Exception {
+        DatabaseReference reference = database.getReference(PATH);
+        AtomicReference<CountDownLatch> delivered = new AtomicReference<>(new CountDownLatch(SCREENS));
+        List<ValueEventListener> listeners = new ArrayList<>();
+        for (int i = 0; i < SCREENS; i++) {
+            ValueEventListener listener = new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    delivered.get().countDown();
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                }
+            };
+            listeners.add(listener);
+            reference.addValueEventListener(listener);
+        }
+        assertTrue(delivered.get().await(30, TimeUnit.SECONDS));
+
+        measureUpdates(reference, delivered);
+
+        for (ValueEventListener listener : listeners) {
+            reference.removeEventListener(listener);
+        }
+    }
+
+    @Test
+    public void hubFanOut() throws Exception {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        RealtimeSubscriptionHub hub = new RealtimeSubscriptionHub(database);
+        AtomicReference<CountDownLatch> delivered = new AtomicReference<>(new CountDownLatch(SCREENS));
+        List<RealtimeSubscriptionHub.Subscription> subscriptions = new ArrayList<>();
+        instrumentation.runOnMainSync(() -> {
+            for (int i = 0; i < SCREENS; i++) {
+                subscriptions.add(hub.subscribe(PATH, new RealtimeSubscriptionHub.SnapshotListener() {
+                    @Override
+                    public void onSnapshot(DataSnapshot snapshot) {
+                        if (snapshot != null) {
+                            delivered.get().countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                    }
+                }));
+            }
+        });
+        assertTrue(delivered.get().await(30, TimeUnit.SECONDS));
+        int[] attached = new int[1];
+        instrumentation.runOnMainSync(() -> attached[0] = hub.getAttachedPathCount());
+        assertEquals(1, attached[0]);
+
+        measureUpdates(database.getReference(PATH), delivered);
+
+        instrumentation.runOnMainSync(() -> {
+            for (RealtimeSubscriptionHub.Subscription subscription : subscriptions) {
+                subscription.cancel();
+            }
+        });
+    }
+
+    /**
+     * Flip one spot and wait until every screen has the new snapshot
+     */
+    private void measureUpdates(DatabaseReference reference, AtomicReference<CountDownLatch> delivered)
+            throws InterruptedException {
+        DatabaseReference available = reference.child("spot0").child("available");
+        BenchmarkState state = benchmarkRule.getState();
+        boolean value = false;
+        while (state.keepRunning()) {
+            CountDownLatch latch = new CountDownLatch(SCREENS);
+            delivered.set(latch);
+            available.setValue(value);
+            value = !value;
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.parkingfinder.mappers;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.parkingfinder.models.ParkingArea;
+import com.example.parkingfinder.models.ParkingSpot;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.MemoryCacheSettings;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the mappers with the SDKs' reflection based toObject/getValue on
+ * the same snapshots. The data is written to an offline, memory-only Firebase
+ * app of its own, so nothing reaches the real project or the app's cache.
+ * Run with ./gradlew :app:connectedDebugAndroidTest
+ * -Pandroid.testInstrumentationRunnerArguments.class=com.example.parkingfinder.mappers.MapperBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class MapperBenchmark {
+
+    private static final int AREAS = 500;
+    private static final int SPOTS = 500;
+
+    private static List<DocumentSnapshot> areaDocuments;
+    private static DataSnapshot spotNodes;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @BeforeClass
+    public static void writeSnapshots() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp app = FirebaseApp.initializeApp(context, new FirebaseOptions.Builder()
+                .setProjectId("mapper-benchmark")
+                .setApplicationId("1:0:android:0")
+                .setApiKey("offline")
+                .setDatabaseUrl("https://mapper-benchmark.firebaseio.com")
+                .build(), "mapper-benchmark");
+
+        FirebaseFirestore firestore = FirebaseFirestore.getInstance(app);
+        firestore.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(MemoryCacheSettings.newBuilder().build())
+                .build());
+        Tasks.await(firestore.disableNetwork());
+        CollectionReference areas = firestore.collection("parking_areas");
+        WriteBatch batch = firestore.batch();
+        for (int i = 0; i < AREAS; i++) {
+            batch.set(areas.document("area" + i), areaFields(i));
+        }
+        // Never acknowledged offline, the cache has the documents right away
+        batch.commit();
+        areaDocuments = Tasks.await(areas.get(Source.CACHE), 30, TimeUnit.SECONDS).getDocuments();
+        assertEquals(AREAS, areaDocuments.size());
+
+        FirebaseDatabase database = FirebaseDatabase.getInstance(app);
+        database.goOffline();
+        DatabaseReference spots = database.getReference("parking_spots").child("area0");
+        Map<String, Object> spotValues = new HashMap<>();
+        for (int i = 0; i < SPOTS; i++) {
+            spotValues.put("spot" + i, spotFields(i));
+        }
+        spots.setValue(spotValues);
+        CountDownLatch latch = new CountDownLatch(1);
+        spots.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                spotNodes = snapshot;
+                latch.countDown();
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertEquals(SPOTS, spotNodes.getChildrenCount());
+    }
+
+    @Test
+    public void parkingAreaToObject() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            List<ParkingArea> result = new ArrayList<>(AREAS);
+            for (DocumentSnapshot document : areaDocuments) {
+                ParkingArea area = document.toObject(ParkingArea.class);
+                area.setId(document.getId());
+                result.add(area);
+            }
+        }
+    }
+
+    @Test
+    public void parkingAreaMapper() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            List<ParkingArea> result = new ArrayList<>(AREAS);
+            for (DocumentSnapshot document : areaDocuments) {
+                result.add(ParkingAreaMapper.fromDocument(document));
+            }
+        }
+    }
+
+    @Test
+    public void parkingSpotGetValue() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            List<ParkingSpot> result = new ArrayList<>(SPOTS);
+            for (DataSnapshot node : spotNodes.getChildren()) {
+                result.add(node.getValue(ParkingSpot.class));
+            }
+        }
+    }
+
+    @Test
+    public void parkingSpotMapper() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            List<ParkingSpot> result = new ArrayList<>(SPOTS);
+            for (DataSnapshot node : spotNodes.getChildren()) {
+                result.add(ParkingSpotMapper.fromSnapshot(node));
+            }
+        }
+    }
+
+    private static Map<String, Object> areaFields(int i) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("name", "Parking Area " + i);
+        fields.put("address", i + " High Street");
+        fields.put("latitude", 51.5 + i * 0.001);
+        fields.put("longitude", -0.12 - i * 0.001);
+        fields.put("totalSpots", 100);
+        fields.put("availableSpots", i % 100);
+        fields.put("imageUrl", "https://example.com/areas/" + i + ".jpg");
+        fields.put("hourlyRate", 2.5 + i % 4);
+        fields.put("operatingHours", "24/7");
+        fields.put("amenities", Arrays.asList("CCTV", "Lighting", "Restrooms"));
+        fields.put("hasCoveredParking", i % 2 == 0);
+        fields.put("hasDisabledAccess", true);
+        fields.put("hasElectricCharging", i % 3 == 0);
+        fields.put("rating", 3.5 + i % 3 * 0.5);
+        fields.put("numberOfRatings", i);
+        fields.put("favorite", false);
+        return fields;
+    }
+
+    private static Map<String, Object> spotFields(int i) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", "spot" + i);
+        fields.put("parkingAreaId", "area0");
+        fields.put("spotNumber", "A" + i);
+        fields.put("floor", i / 100);
+        fields.put("section", "A");
+        fields.put("available", i % 2 == 0);
+        fields.put("reserved", false);
+        fields.put("handicapped", i % 20 == 0);
+        fields.put("electricCharging", i % 10 == 0);
+        fields.put("positionX", i % 10);
+        fields.put("positionY", i / 10);
+        fields.put("type", "STANDARD");
+        fields.put("ordinal", i);
+        return fields;
+    }
+}
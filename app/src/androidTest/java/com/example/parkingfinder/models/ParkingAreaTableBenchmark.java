@@ -0,0 +1,108 @@
+package com.example.parkingfinder.models;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * One keystroke of the parking list search: filter then sort by distance,
+ * with the list code used before against the table. Building the table is
+ * measured on its own, it only happens when the areas change.
+ * Run with ./gradlew :app:connectedDebugAndroidTest
+ * -Pandroid.testInstrumentationRunnerArguments.class=com.example.parkingfinder.models.ParkingAreaTableBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class ParkingAreaTableBenchmark {
+
+    private static final int AREAS = 2000;
+    private static final double USER_LATITUDE = 51.5074;
+    private static final double USER_LONGITUDE = -0.1278;
+    private static final String QUERY = "road";
+    private static final double MAX_PRICE = 8.0;
+
+    private static final String[] NAMES = {"City Car Park", "Station Garage", "Market Lot", "Riverside Parking"};
+    private static final String[] STREETS = {"High Street", "Station Road", "Church Lane", "Mill Road"};
+
+    private static List<ParkingArea> areas;
+    private static ParkingAreaTable table;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @BeforeClass
+    public static void createAreas() {
+        Random random = new Random(42);
+        areas = new ArrayList<>(AREAS);
+        for (int i = 0; i < AREAS; i++) {
+            ParkingArea area = new ParkingArea();
+            area.setId("area" + i);
+            area.setName(NAMES[random.nextInt(NAMES.length)] + " " + (i % 50));
+            area.setAddress((1 + random.nextInt(200)) + " " + STREETS[random.nextInt(STREETS.length)]);
+            area.setLatitude(USER_LATITUDE + (random.nextDouble() - 0.5) * 0.18);
+            area.setLongitude(USER_LONGITUDE + (random.nextDouble() - 0.5) * 0.28);
+            int totalSpots = 1 + random.nextInt(400);
+            area.setTotalSpots(totalSpots);
+            area.setAvailableSpots(random.nextInt(totalSpots + 1));
+            area.setHourlyRate(random.nextInt(41) * 0.25);
+            area.setRating(random.nextInt(9) * 0.5f + 1);
+            area.setHasElectricCharging(random.nextBoolean());
+            area.setHasDisabledAccess(random.nextBoolean());
+            areas.add(area);
+        }
+        table = new ParkingAreaTable(areas);
+    }
+
+    @Test
+    public void listFilterAndSort() {
+        BenchmarkState state = benchmarkRule.getState();
+        List<ParkingArea> shown = new ArrayList<>();
+        while (state.keepRunning()) {
+            // The parking list's code before the table
+            List<ParkingArea> searchFiltered = new ArrayList<>();
+            for (ParkingArea area : areas) {
+                if (area.getName().toLowerCase(Locale.ROOT).contains(QUERY)
+                        || area.getAddress().toLowerCase(Locale.ROOT).contains(QUERY)) {
+                    searchFiltered.add(area);
+                }
+            }
+            shown.clear();
+            for (ParkingArea area : searchFiltered) {
+                if (area.getAvailableSpots() > 0 && area.getHourlyRate() <= MAX_PRICE) {
+                    shown.add(area);
+                }
+            }
+            Collections.sort(shown, (a, b) -> Double.compare(
+                    a.distanceFrom(USER_LATITUDE, USER_LONGITUDE), b.distanceFrom(USER_LATITUDE, USER_LONGITUDE)));
+        }
+    }
+
+    @Test
+    public void tableFilterAndSort() {
+        BenchmarkState state = benchmarkRule.getState();
+        List<ParkingArea> shown = new ArrayList<>();
+        while (state.keepRunning()) {
+            int[] rows = table.select(QUERY, true, MAX_PRICE, 0);
+            table.sort(rows, ParkingAreaTable.Order.DISTANCE, USER_LATITUDE, USER_LONGITUDE);
+            table.collect(rows, shown);
+        }
+    }
+
+    @Test
+    public void tableBuild() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            new ParkingAreaTable(areas);
+        }
+    }
+}
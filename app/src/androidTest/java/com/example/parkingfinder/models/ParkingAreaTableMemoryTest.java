@@ -0,0 +1,94 @@
+package com.example.parkingfinder.models;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Heap retained by the parking list's tables next to the areas they index,
+ * logged per area under ParkingAreaTableMemory. Many copies are held at once
+ * so the difference is well above what a collection leaves behind.
+ * Run with ./gradlew :app:connectedDebugAndroidTest
+ * -Pandroid.testInstrumentationRunnerArguments.class=com.example.parkingfinder.models.ParkingAreaTableMemoryTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class ParkingAreaTableMemoryTest {
+
+    private static final String TAG = "ParkingAreaTableMemory";
+
+    private static final int AREAS = 2000;
+    private static final int COPIES = 20;
+    private static final double USER_LATITUDE = 51.5074;
+    private static final double USER_LONGITUDE = -0.1278;
+
+    private static final String[] NAMES = {"City Car Park", "Station Garage", "Market Lot", "Riverside Parking"};
+    private static final String[] STREETS = {"High Street", "Station Road", "Church Lane", "Mill Road"};
+
+    @Test
+    public void tableRetainsLessThanHalfOfItsAreas() {
+        long start = usedHeap();
+        List<List<ParkingArea>> lists = new ArrayList<>();
+        for (int i = 0; i < COPIES; i++) {
+            // Fresh strings in every copy, like areas read from Firestore
+            lists.add(createAreas(new Random(42)));
+        }
+        long withAreas = usedHeap();
+
+        List<ParkingAreaTable> tables = new ArrayList<>();
+        for (List<ParkingArea> areas : lists) {
+            tables.add(new ParkingAreaTable(areas));
+        }
+        long withTables = usedHeap();
+
+        double areaBytes = (double) (withAreas - start) / (COPIES * AREAS);
+        double tableBytes = (double) (withTables - withAreas) / (COPIES * AREAS);
+        Log.i(TAG, String.format(Locale.US, "%.0f bytes per area, table %.0f bytes per area",
+                areaBytes, tableBytes));
+
+        // The columns are 52 bytes a row, the rest is the shared search text
+        assertTrue(tableBytes + " vs " + areaBytes, tableBytes < areaBytes / 2);
+        // Keeps both reachable until measured
+        assertEquals(lists.size(), tables.size());
+        assertEquals(AREAS, tables.get(COPIES - 1).size());
+    }
+
+    private static List<ParkingArea> createAreas(Random random) {
+        List<ParkingArea> areas = new ArrayList<>(AREAS);
+        for (int i = 0; i < AREAS; i++) {
+            ParkingArea area = new ParkingArea();
+            area.setId("area" + i);
+            area.setName(NAMES[random.nextInt(NAMES.length)] + " " + (i % 50));
+            area.setAddress((1 + random.nextInt(200)) + " " + STREETS[random.nextInt(STREETS.length)]);
+            area.setLatitude(USER_LATITUDE + (random.nextDouble() - 0.5) * 0.18);
+            area.setLongitude(USER_LONGITUDE + (random.nextDouble() - 0.5) * 0.28);
+            int totalSpots = 1 + random.nextInt(400);
+            area.setTotalSpots(totalSpots);
+            area.setAvailableSpots(random.nextInt(totalSpots + 1));
+            area.setHourlyRate(random.nextInt(41) * 0.25);
+            area.setRating(random.nextInt(9) * 0.5f + 1);
+            area.setHasElectricCharging(random.nextBoolean());
+            area.setHasDisabledAccess(random.nextBoolean());
+            areas.add(area);
+        }
+        return areas;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            runtime.gc();
+            System.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.parkingfinder.utils;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+/**
+ * Radius checks and distance ranking of a batch of areas, with the haversine
+ * on every point against an Origin.
+ * Run with ./gradlew :app:connectedDebugAndroidTest
+ * -Pandroid.testInstrumentationRunnerArguments.class=com.example.parkingfinder.utils.GeoMathBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class GeoMathBenchmark {
+
+    private static final int POINTS = 2000;
+    private static final double LATITUDE = 51.5074;
+    private static final double LONGITUDE = -0.1278;
+    private static final double RADIUS_KM = 5;
+
+    private static double[] latitudes;
+    private static double[] longitudes;
+    private static int[] rows;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @BeforeClass
+    public static void createPoints() {
+        Random random = new Random(42);
+        latitudes = new double[POINTS];
+        longitudes = new double[POINTS];
+        rows = new int[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            // About 10 km by 10 km, so half the points are outside the radius
+            latitudes[i] = LATITUDE + (random.nextDouble() - 0.5) * 0.18;
+            longitudes[i] = LONGITUDE + (random.nextDouble() - 0.5) * 0.28;
+            rows[i] = i;
+        }
+    }
+
+    @Test
+    public void haversineWithin() {
+        BenchmarkState state = benchmarkRule.getState();
+        int within = 0;
+        while (state.keepRunning()) {
+            for (int i = 0; i < POINTS; i++) {
+                if (GeoMath.distanceKm(LATITUDE, LONGITUDE, latitudes[i], longitudes[i]) <= RADIUS_KM) {
+                    within++;
+                }
+            }
+        }
+        consume(within);
+    }
+
+    @Test
+    public void originWithin() {
+        BenchmarkState state = benchmarkRule.getState();
+        int within = 0;
+        while (state.keepRunning()) {
+            GeoMath.Origin origin = new GeoMath.Origin(LATITUDE, LONGITUDE);
+            for (int i = 0; i < POINTS; i++) {
+                if (origin.isWithin(latitudes[i], longitudes[i], RADIUS_KM)) {
+                    within++;
+                }
+            }
+        }
+        consume(within);
+    }
+
+    @Test
+    public void haversineDistances() {
+        BenchmarkState state = benchmarkRule.getState();
+        double[] out = new double[POINTS];
+        while (state.keepRunning()) {
+            for (int i = 0; i < POINTS; i++) {
+                out[i] = GeoMath.distanceKm(LATITUDE, LONGITUDE, latitudes[i], longitudes[i]);
+            }
+        }
+        consume((int) out[0]);
+    }
+
+    @Test
+    public void approxDistancesSquared() {
+        BenchmarkState state = benchmarkRule.getState();
+        double[] out = new double[POINTS];
+        while (state.keepRunning()) {
+            new GeoMath.Origin(LATITUDE, LONGITUDE).approxDistancesSquared(latitudes, longitudes, rows, out);
+        }
+        consume((int) out[0]);
+    }
+
+    /**
+     * Keeps the results live so the loops aren't optimized away
+     */
+    private static void consume(int value) {
+        if (value == Integer.MIN_VALUE) {
+            throw new AssertionError();
+        }
+    }
+}
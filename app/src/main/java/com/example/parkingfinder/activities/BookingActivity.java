@@ -20,6 +20,7 @@ import com.example.parkingfinder.R;
 import com.example.parkingfinder.firebase.FirebaseAuthManager;
 import com.example.parkingfinder.firebase.FirestoreManager;
 import com.example.parkingfinder.models.Booking;
+import com.example.parkingfinder.repositories.BookingScheduleRepository;
 import com.example.parkingfinder.utils.DateTimeUtils;
 
 import java.text.NumberFormat;
@@ -32,6 +33,12 @@ public class BookingActivity extends AppCompatActivity {
 
     private FirebaseAuthManager authManager;
     private FirestoreManager firestoreManager;
+    private BookingScheduleRepository scheduleRepository;
+
+    // Booked ranges of the area's spots, null until loaded, kept current while started
+    private BookingScheduleRepository.AreaSchedule schedule;
+    private BookingScheduleRepository.Watch scheduleWatch;
+    private boolean submitting;
 
     // Intent extras
     private String parkingAreaId;
@@ -56,6 +63,7 @@ public class BookingActivity extends AppCompatActivity {
     private Button endTimePickerButton;
     private TextView durationTextView;
     private TextView totalCostTextView;
+    private TextView slotConflictTextView;
     private EditText vehicleRegistrationEditText;
     private Button confirmBookingButton;
     private ProgressBar progressBar;
@@ -68,6 +76,7 @@ public class BookingActivity extends AppCompatActivity {
         // Initialize Firebase managers
         authManager = FirebaseAuthManager.getInstance();
         firestoreManager = FirestoreManager.getInstance();
+        scheduleRepository = BookingScheduleRepository.getInstance(this);
 
         // Set up toolbar
         Toolbar toolbar = findViewById(R.id.toolbar);
@@ -100,6 +109,7 @@ public class BookingActivity extends AppCompatActivity {
         endTimePickerButton = findViewById(R.id.button_end_time);
         durationTextView = findViewById(R.id.text_view_duration);
         totalCostTextView = findViewById(R.id.text_view_total_cost);
+        slotConflictTextView = findViewById(R.id.text_view_slot_conflict);
         vehicleRegistrationEditText = findViewById(R.id.edit_text_vehicle_registration);
         confirmBookingButton = findViewById(R.id.button_confirm_booking);
         progressBar = findViewById(R.id.progress_bar);
@@ -110,10 +120,16 @@ public class BookingActivity extends AppCompatActivity {
         NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
         hourlyRateTextView.setText(currencyFormat.format(hourlyRate) + "/hour");
 
-        // Set default date/time (starting now, ending in 2 hours)
+        // Set default date/time (starting now, ending in 2 hours), or the
+        // time window the spots were filtered by on the details screen
         startCalendar = Calendar.getInstance();
         endCalendar = Calendar.getInstance();
-        endCalendar.add(Calendar.HOUR_OF_DAY, 2);
+        if (getIntent().hasExtra("start_time") && getIntent().hasExtra("end_time")) {
+            startCalendar.setTimeInMillis(getIntent().getLongExtra("start_time", 0));
+            endCalendar.setTimeInMillis(getIntent().getLongExtra("end_time", 0));
+        } else {
+            endCalendar.add(Calendar.HOUR_OF_DAY, 2);
+        }
 
         updateStartDateTimeText();
         updateEndDateTimeText();
@@ -129,6 +145,27 @@ public class BookingActivity extends AppCompatActivity {
         confirmBookingButton.setOnClickListener(v -> confirmBooking());
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Watch the spot's bookings so overlaps, including other users' new
+        // bookings, are caught while picking times
+        scheduleWatch = scheduleRepository.watchSchedule(parkingAreaId, loadedSchedule -> {
+            schedule = loadedSchedule;
+            // The booking being saved is checked again if it fails
+            if (!submitting) {
+                validateTimeSlot();
+            }
+        });
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        scheduleWatch.cancel();
+        scheduleWatch = null;
+    }
+
     private void showStartDatePicker() {
         DatePickerDialog datePickerDialog = new DatePickerDialog(
                 this,
@@ -242,6 +279,35 @@ public class BookingActivity extends AppCompatActivity {
         double totalCost = durationHours * hourlyRate;
         NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
         totalCostTextView.setText(currencyFormat.format(totalCost));
+
+        validateTimeSlot();
+    }
+
+    /**
+     * Check the chosen time against the spot's bookings and show the next
+     * free start time on a conflict. Returns true if the time is free.
+     * Confirm stays disabled until the schedule has loaded.
+     */
+    private boolean validateTimeSlot() {
+        if (schedule == null) {
+            confirmBookingButton.setEnabled(false);
+            return false;
+        }
+
+        long startTime = startCalendar.getTimeInMillis();
+        long endTime = endCalendar.getTimeInMillis();
+        boolean isFree = schedule.isFree(parkingSpotId, startTime, endTime);
+
+        if (isFree) {
+            slotConflictTextView.setVisibility(View.GONE);
+        } else {
+            long nextFree = schedule.nextFreeSlot(parkingSpotId, startTime, endTime - startTime);
+            slotConflictTextView.setText("This spot is already booked for part of this time. Next free from "
+                    + DateTimeUtils.formatDateTime(new Date(nextFree)));
+            slotConflictTextView.setVisibility(View.VISIBLE);
+        }
+        confirmBookingButton.setEnabled(isFree && !submitting);
+        return isFree;
     }
 
     private void confirmBooking() {
@@ -258,7 +324,13 @@ public class BookingActivity extends AppCompatActivity {
             return;
         }
 
+        // Reject times overlapping an existing booking of the spot
+        if (!validateTimeSlot()) {
+            return;
+        }
+
         // Show progress
+        submitting = true;
         progressBar.setVisibility(View.VISIBLE);
         confirmBookingButton.setEnabled(false);
 
@@ -281,6 +353,7 @@ public class BookingActivity extends AppCompatActivity {
             @Override
             public void onSuccess() {
                 progressBar.setVisibility(View.GONE);
+                scheduleRepository.recordBooking(booking);
                 Toast.makeText(BookingActivity.this, "Booking confirmed!", Toast.LENGTH_SHORT).show();
                 setResult(RESULT_OK);
                 finish();
@@ -288,8 +361,9 @@ public class BookingActivity extends AppCompatActivity {
 
             @Override
             public void onFailure(String errorMessage) {
+                submitting = false;
                 progressBar.setVisibility(View.GONE);
-                confirmBookingButton.setEnabled(true);
+                validateTimeSlot();
                 Toast.makeText(BookingActivity.this, "Error: " + errorMessage, Toast.LENGTH_LONG).show();
             }
         });
@@ -26,6 +26,8 @@ import com.example.parkingfinder.fragments.MapFragment;
 import com.example.parkingfinder.fragments.ParkingListFragment;
 import com.example.parkingfinder.fragments.ProfileFragment;
 import com.example.parkingfinder.fragments.SimpleMapFragment;
+import com.example.parkingfinder.initializers.AppStartup;
+import com.example.parkingfinder.initializers.OsmdroidInitializer;
 import com.example.parkingfinder.utils.PermissionUtils;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
@@ -75,6 +77,9 @@ public class MainActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         setTheme(R.style.Theme_ParkingFinder);
         super.onCreate(savedInstanceState);
+
+        // The first screen is a map, load OSMDroid while the layout inflates
+        AppStartup.getInstance(this).prewarm(OsmdroidInitializer.class);
         EdgeToEdge.enable(this);
         setContentView(R.layout.activity_main);
 
@@ -1,6 +1,9 @@
 package com.example.parkingfinder.activities;
 
+import android.app.DatePickerDialog;
+import android.app.TimePickerDialog;
 import android.content.Intent;
+import android.location.Address;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
@@ -18,22 +21,49 @@ import com.bumptech.glide.Glide;
 import com.example.parkingfinder.R;
 import com.example.parkingfinder.adapters.ParkingSpotAdapter;
 import com.example.parkingfinder.firebase.FirestoreManager;
+import com.example.parkingfinder.firebase.ReadPolicy;
 import com.example.parkingfinder.models.ParkingArea;
 import com.example.parkingfinder.models.ParkingSpot;
+import com.example.parkingfinder.repositories.BookingScheduleRepository;
+import com.example.parkingfinder.repositories.GeocodingRepository;
+import com.example.parkingfinder.repositories.OccupancyRepository;
+import com.example.parkingfinder.utils.Constants;
+import com.example.parkingfinder.utils.DateTimeUtils;
+import com.example.parkingfinder.utils.LocationUtils;
+import com.example.parkingfinder.views.FloorPlanView;
 import com.google.android.material.appbar.CollapsingToolbarLayout;
+import com.google.android.material.tabs.TabLayout;
+import com.google.firebase.firestore.ListenerRegistration;
 
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.List;
 import java.util.Locale;
 
 public class ParkingDetailsActivity extends AppCompatActivity implements ParkingSpotAdapter.OnSpotClickListener {
 
+    // Areas with more spots than this use the floor plan instead of the grid
+    private static final int FLOOR_PLAN_MIN_SPOTS = 60;
+
     private FirestoreManager firestoreManager;
+    private BookingScheduleRepository scheduleRepository;
+    private OccupancyRepository occupancyRepository;
     private ParkingArea parkingArea;
     private ParkingSpotAdapter spotAdapter;
+    private ParkingSpot selectedSpot;
+    private List<ParkingSpot> allParkingSpots = new ArrayList<>();
     private List<ParkingSpot> parkingSpots = new ArrayList<>();
 
+    // Spots booked for part of this time window are shown as unavailable
+    private Calendar windowStart = Calendar.getInstance();
+    private Calendar windowEnd = Calendar.getInstance();
+    private BookingScheduleRepository.AreaSchedule schedule;
+    private BookingScheduleRepository.Watch scheduleWatch;
+
+    // The spots read still waiting for the server, removed in onDestroy
+    private ListenerRegistration spotsRead;
+
     // UI components
     private ImageView headerImageView;
     private TextView addressTextView;
@@ -46,6 +76,9 @@ public class ParkingDetailsActivity extends AppCompatActivity implements Parking
     private RecyclerView spotsRecyclerView;
     private Button bookButton;
     private TextView noSpotsTextView;
+    private TextView timeWindowTextView;
+    private TabLayout floorTabLayout;
+    private FloorPlanView floorPlanView;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -54,6 +87,8 @@ public class ParkingDetailsActivity extends AppCompatActivity implements Parking
 
         // Initialize Firestore manager
         firestoreManager = FirestoreManager.getInstance();
+        scheduleRepository = BookingScheduleRepository.getInstance(this);
+        occupancyRepository = OccupancyRepository.getInstance(this);
 
         // Set up the toolbar and collapsing toolbar
         Toolbar toolbar = findViewById(R.id.toolbar);
@@ -74,6 +109,29 @@ public class ParkingDetailsActivity extends AppCompatActivity implements Parking
         spotsRecyclerView = findViewById(R.id.recycler_view_spots);
         bookButton = findViewById(R.id.button_book);
         noSpotsTextView = findViewById(R.id.text_view_no_spots);
+        timeWindowTextView = findViewById(R.id.text_view_time_window);
+        floorTabLayout = findViewById(R.id.tab_layout_floors);
+        floorPlanView = findViewById(R.id.floor_plan_view);
+        floorPlanView.setOnSpotClickListener(this::onSpotClick);
+        floorTabLayout.addOnTabSelectedListener(new TabLayout.OnTabSelectedListener() {
+            @Override
+            public void onTabSelected(TabLayout.Tab tab) {
+                floorPlanView.setFloor((Integer) tab.getTag());
+            }
+
+            @Override
+            public void onTabUnselected(TabLayout.Tab tab) {
+            }
+
+            @Override
+            public void onTabReselected(TabLayout.Tab tab) {
+            }
+        });
+
+        // Default window matches the booking screen: now for 2 hours
+        windowEnd.add(Calendar.HOUR_OF_DAY, 2);
+        updateTimeWindowText();
+        findViewById(R.id.button_time_window).setOnClickListener(v -> showTimeWindowPickers());
 
         // Get parking area from intent
         if (getIntent().hasExtra("parking_area_id")) {
@@ -93,9 +151,9 @@ public class ParkingDetailsActivity extends AppCompatActivity implements Parking
         bookButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                if (spotAdapter.getSelectedSpot() != null) {
+                if (selectedSpot != null) {
                     // Navigate to booking screen with the selected spot
-                    navigateToBooking(spotAdapter.getSelectedSpot());
+                    navigateToBooking(selectedSpot);
                 } else {
                     Toast.makeText(ParkingDetailsActivity.this,
                             "Please select a parking spot first", Toast.LENGTH_SHORT).show();
@@ -146,10 +204,39 @@ public class ParkingDetailsActivity extends AppCompatActivity implements Parking
         // Display the details
         displayParkingAreaDetails();
 
-        // Load parking spots
+        // Load parking spots, their bookings are watched while started
         loadParkingSpots();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (parkingArea != null) {
+            scheduleWatch = scheduleRepository.watchSchedule(parkingArea.getId(), loadedSchedule -> {
+                schedule = loadedSchedule;
+                showSpotsForTimeWindow();
+            });
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (scheduleWatch != null) {
+            scheduleWatch.cancel();
+            scheduleWatch = null;
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (spotsRead != null) {
+            spotsRead.remove();
+            spotsRead = null;
+        }
+    }
+
     private void displayParkingAreaDetails() {
         if (parkingArea == null) return;
 
@@ -159,15 +246,23 @@ public class ParkingDetailsActivity extends AppCompatActivity implements Parking
 
         // Load header image
         if (parkingArea.getImageUrl() != null && !parkingArea.getImageUrl().isEmpty()) {
+            // Show a small version while the full size image loads
             Glide.with(this)
                     .load(parkingArea.getImageUrl())
                     .placeholder(R.drawable.placeholder_parking)
                     .error(R.drawable.placeholder_parking)
+                    .thumbnail(Glide.with(this)
+                            .load(parkingArea.getImageUrl())
+                            .sizeMultiplier(0.25f))
                     .into(headerImageView);
         }
 
-        // Set text views
-        addressTextView.setText(parkingArea.getAddress());
+        // Set text views, areas stored with coordinates only get their address from the geocoder
+        if (parkingArea.getAddress() != null && !parkingArea.getAddress().isEmpty()) {
+            addressTextView.setText(parkingArea.getAddress());
+        } else {
+            showGeocodedAddress();
+        }
 
         // Rating
         String ratingText = String.format(Locale.getDefault(), "%.1f (%d reviews)",
@@ -176,9 +271,7 @@ public class ParkingDetailsActivity extends AppCompatActivity implements Parking
         ratingBar.setRating(parkingArea.getRating());
 
         // Availability
-        String availabilityText = String.format(Locale.getDefault(), "%d/%d spots available",
-                parkingArea.getAvailableSpots(), parkingArea.getTotalSpots());
-        availabilityTextView.setText(availabilityText);
+        showAvailability();
 
         // Price
         NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
@@ -199,30 +292,48 @@ public class ParkingDetailsActivity extends AppCompatActivity implements Parking
         }
     }
 
+    /**
+     * Address of the area's coordinates, right away when it was looked up before
+     */
+    private void showGeocodedAddress() {
+        addressTextView.setText("");
+        GeocodingRepository.getInstance(this).getAddress(parkingArea.getLatitude(), parkingArea.getLongitude(),
+                new GeocodingRepository.GeocodingCallback() {
+                    @Override
+                    public void onAddressReceived(Address address) {
+                        if (!isDestroyed()) {
+                            addressTextView.setText(LocationUtils.formatAddress(address));
+                        }
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        if (!isDestroyed()) {
+                            addressTextView.setText("Address not available");
+                        }
+                    }
+                });
+    }
+
     private void loadParkingSpots() {
         if (parkingArea == null) return;
 
-        // Load parking spots for this area from Firestore
-        firestoreManager.getParkingSpots(parkingArea.getId(),
+        // Load parking spots for this area, from Firestore's cache first while the server is asked
+        spotsRead = firestoreManager.getParkingSpots(parkingArea.getId(), ReadPolicy.CACHE_THEN_SERVER,
                 new FirestoreManager.GetParkingSpotsCallback() {
                     @Override
                     public void onSuccess(List<ParkingSpot> spots) {
-                        parkingSpots.clear();
-                        parkingSpots.addAll(spots);
-                        spotAdapter.notifyDataSetChanged();
-
-                        // Show/hide "no spots" message
-                        if (spots.isEmpty()) {
-                            noSpotsTextView.setVisibility(View.VISIBLE);
-                            spotsRecyclerView.setVisibility(View.GONE);
-                        } else {
-                            noSpotsTextView.setVisibility(View.GONE);
-                            spotsRecyclerView.setVisibility(View.VISIBLE);
-                        }
+                        allParkingSpots.clear();
+                        allParkingSpots.addAll(spots);
+                        showSpotsForTimeWindow();
                     }
 
                     @Override
                     public void onFailure(String errorMessage) {
+                        if (!allParkingSpots.isEmpty()) {
+                            // The server couldn't be reached, keep showing the cached spots
+                            return;
+                        }
                         Toast.makeText(ParkingDetailsActivity.this,
                                 "Error loading spots: " + errorMessage, Toast.LENGTH_SHORT).show();
                         noSpotsTextView.setVisibility(View.VISIBLE);
@@ -231,8 +342,158 @@ public class ParkingDetailsActivity extends AppCompatActivity implements Parking
                 });
     }
 
+    /**
+     * Show every spot, with the ones booked for part of the chosen time
+     * window marked unavailable so the layout doesn't change with the window
+     */
+    private void showSpotsForTimeWindow() {
+        // A cached schedule can arrive before the adapter is set up in onCreate
+        if (spotAdapter == null) {
+            return;
+        }
+
+        long startTime = windowStart.getTimeInMillis();
+        long endTime = windowEnd.getTimeInMillis();
+
+        parkingSpots.clear();
+        for (ParkingSpot spot : allParkingSpots) {
+            if (spot.isAvailable() && schedule != null && !schedule.isFree(spot.getId(), startTime, endTime)) {
+                // A copy, allParkingSpots keeps the live state for other windows
+                ParkingSpot booked = new ParkingSpot(spot);
+                booked.setAvailable(false);
+                parkingSpots.add(booked);
+            } else {
+                parkingSpots.add(spot);
+            }
+        }
+        spotAdapter.updateData(parkingSpots);
+
+        // The selection may have been booked since it was picked
+        if (selectedSpot != null) {
+            for (ParkingSpot spot : parkingSpots) {
+                if (spot.getId().equals(selectedSpot.getId())) {
+                    onSpotClick(spot);
+                    break;
+                }
+            }
+        }
+
+        // Large or positioned garages are drawn as a floor plan in a single view
+        boolean useFloorPlan = allParkingSpots.size() > FLOOR_PLAN_MIN_SPOTS || hasSpotPositions(allParkingSpots);
+        if (useFloorPlan) {
+            floorPlanView.setSpots(parkingSpots);
+            updateFloorTabs();
+        }
+
+        // Show/hide "no spots" message
+        if (parkingSpots.isEmpty()) {
+            noSpotsTextView.setVisibility(View.VISIBLE);
+            spotsRecyclerView.setVisibility(View.GONE);
+            floorPlanView.setVisibility(View.GONE);
+            floorTabLayout.setVisibility(View.GONE);
+        } else {
+            noSpotsTextView.setVisibility(View.GONE);
+            spotsRecyclerView.setVisibility(useFloorPlan ? View.GONE : View.VISIBLE);
+            floorPlanView.setVisibility(useFloorPlan ? View.VISIBLE : View.GONE);
+            floorTabLayout.setVisibility(useFloorPlan && floorPlanView.getFloors().size() > 1
+                    ? View.VISIBLE : View.GONE);
+        }
+    }
+
+    private static boolean hasSpotPositions(List<ParkingSpot> spots) {
+        for (ParkingSpot spot : spots) {
+            if (spot.getPositionX() != 0 || spot.getPositionY() != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One tab per floor of the floor plan, rebuilt only when the floors change
+     */
+    private void updateFloorTabs() {
+        List<Integer> floors = floorPlanView.getFloors();
+        boolean unchanged = floorTabLayout.getTabCount() == floors.size();
+        for (int i = 0; unchanged && i < floors.size(); i++) {
+            unchanged = floors.get(i).equals(floorTabLayout.getTabAt(i).getTag());
+        }
+        if (unchanged) {
+            return;
+        }
+
+        floorTabLayout.removeAllTabs();
+        for (Integer floor : floors) {
+            TabLayout.Tab tab = floorTabLayout.newTab().setText("Floor " + floor).setTag(floor);
+            floorTabLayout.addTab(tab, floor == floorPlanView.getCurrentFloor());
+        }
+    }
+
+    /**
+     * Show the current availability, plus the forecast for the window start
+     * when it is in the future
+     */
+    private void showAvailability() {
+        String availabilityText = String.format(Locale.getDefault(), "%d/%d spots available",
+                parkingArea.getAvailableSpots(), parkingArea.getTotalSpots());
+        availabilityTextView.setText(availabilityText);
+
+        long arrivalTime = windowStart.getTimeInMillis();
+        if (arrivalTime - System.currentTimeMillis() < 15 * Constants.Time.MINUTE) {
+            return;
+        }
+        occupancyRepository.predictedAvailability(parkingArea.getId(), arrivalTime,
+                (availableSpots, sampledWeeks) -> {
+                    // Ignore forecasts for a window that has since changed
+                    if (availableSpots < 0 || arrivalTime != windowStart.getTimeInMillis()) {
+                        return;
+                    }
+                    availabilityTextView.setText(String.format(Locale.getDefault(),
+                            "%s, about %d likely free at %s", availabilityText, availableSpots,
+                            DateTimeUtils.formatTime(windowStart.getTime())));
+                });
+    }
+
+    private void updateTimeWindowText() {
+        timeWindowTextView.setText("Free from " + DateTimeUtils.formatDateTime(windowStart.getTime())
+                + " until " + DateTimeUtils.formatDateTime(windowEnd.getTime()));
+    }
+
+    /**
+     * Pick the window start date and time, then its end time
+     */
+    private void showTimeWindowPickers() {
+        long duration = windowEnd.getTimeInMillis() - windowStart.getTimeInMillis();
+
+        DatePickerDialog datePickerDialog = new DatePickerDialog(this, (view, year, month, dayOfMonth) -> {
+            windowStart.set(year, month, dayOfMonth);
+            new TimePickerDialog(this, (startView, startHour, startMinute) -> {
+                windowStart.set(Calendar.HOUR_OF_DAY, startHour);
+                windowStart.set(Calendar.MINUTE, startMinute);
+                windowEnd.setTimeInMillis(windowStart.getTimeInMillis() + duration);
+
+                new TimePickerDialog(this, (endView, endHour, endMinute) -> {
+                    windowEnd.setTimeInMillis(windowStart.getTimeInMillis());
+                    windowEnd.set(Calendar.HOUR_OF_DAY, endHour);
+                    windowEnd.set(Calendar.MINUTE, endMinute);
+                    // An end time before the start means the next day
+                    if (!windowEnd.after(windowStart)) {
+                        windowEnd.add(Calendar.DAY_OF_MONTH, 1);
+                    }
+                    updateTimeWindowText();
+                    showSpotsForTimeWindow();
+                    showAvailability();
+                }, windowEnd.get(Calendar.HOUR_OF_DAY), windowEnd.get(Calendar.MINUTE), false).show();
+            }, windowStart.get(Calendar.HOUR_OF_DAY), windowStart.get(Calendar.MINUTE), false).show();
+        }, windowStart.get(Calendar.YEAR), windowStart.get(Calendar.MONTH), windowStart.get(Calendar.DAY_OF_MONTH));
+        datePickerDialog.getDatePicker().setMinDate(System.currentTimeMillis() - 1000);
+        datePickerDialog.show();
+    }
+
     @Override
     public void onSpotClick(ParkingSpot spot) {
+        selectedSpot = spot;
+
         // Update the book button state based on spot availability
         if (spot.isAvailable()) {
             bookButton.setEnabled(true);
@@ -250,6 +511,8 @@ public class ParkingDetailsActivity extends AppCompatActivity implements Parking
         intent.putExtra("parking_spot_id", spot.getId());
         intent.putExtra("parking_spot_number", spot.getSpotNumber());
         intent.putExtra("hourly_rate", parkingArea.getHourlyRate());
+        intent.putExtra("start_time", windowStart.getTimeInMillis());
+        intent.putExtra("end_time", windowEnd.getTimeInMillis());
         startActivity(intent);
     }
 
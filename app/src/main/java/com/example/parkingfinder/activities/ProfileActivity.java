@@ -2,6 +2,7 @@ package com.example.parkingfinder.activities;
 
 import android.annotation.SuppressLint;
 import android.app.AlertDialog;
+import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
@@ -26,10 +27,9 @@ import com.example.parkingfinder.R;
 import com.example.parkingfinder.firebase.FirebaseAuthManager;
 import com.example.parkingfinder.firebase.FirestoreManager;
 import com.example.parkingfinder.models.User;
+import com.example.parkingfinder.services.ProfileImageUploadWorker;
 import com.google.android.material.textfield.TextInputLayout;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
 
 public class ProfileActivity extends AppCompatActivity {
 
@@ -37,7 +37,6 @@ public class ProfileActivity extends AppCompatActivity {
 
     private FirebaseAuthManager authManager;
     private FirestoreManager firestoreManager;
-    private StorageReference storageReference;
     private User currentUser;
     private Uri selectedImageUri = null;
 
@@ -52,6 +51,7 @@ public class ProfileActivity extends AppCompatActivity {
     private Button changePasswordButton;
     private Button logoutButton;
     private ProgressBar progressBar;
+    private ProgressBar uploadProgressBar;
 
     @SuppressLint("MissingInflatedId")
     @Override
@@ -68,7 +68,6 @@ public class ProfileActivity extends AppCompatActivity {
         // Initialize Firebase managers
         authManager = FirebaseAuthManager.getInstance();
         firestoreManager = FirestoreManager.getInstance();
-        storageReference = FirebaseStorage.getInstance().getReference("profile_images");
 
         // Check if user is logged in
         if (!authManager.isUserLoggedIn()) {
@@ -89,9 +88,12 @@ public class ProfileActivity extends AppCompatActivity {
         changePasswordButton = findViewById(R.id.button_change_password);
         logoutButton = findViewById(R.id.button_logout);
         progressBar = findViewById(R.id.progress_bar);
+        uploadProgressBar = findViewById(R.id.progress_bar_upload);
 
         // Load user data
         loadUserProfile();
+        ProfileImageUploadWorker.getProgress(this, authManager.getCurrentUser().getUid())
+                .observe(this, this::showUploadProgress);
 
         // Set click listeners
         profileImageView.setOnClickListener(v -> selectImage());
@@ -172,28 +174,33 @@ public class ProfileActivity extends AppCompatActivity {
 
         progressBar.setVisibility(View.VISIBLE);
 
-        // If image is selected, upload it first
-        if (selectedImageUri != null) {
-            uploadImageAndSaveProfile(name, phone);
-        } else {
-            saveUserData(name, phone, currentUser.getProfileImageUrl());
+        // The profile is saved first, a selected image follows in the background
+        saveUserData(name, phone, currentUser.getProfileImageUrl());
+    }
+
+    private void showUploadProgress(int percent) {
+        if (percent < 0) {
+            uploadProgressBar.setVisibility(View.GONE);
+            return;
         }
+        uploadProgressBar.setVisibility(View.VISIBLE);
+        uploadProgressBar.setProgress(percent);
     }
 
-    private void uploadImageAndSaveProfile(String name, String phone) {
+    private void uploadProfileImage(Uri imageUri) {
         String userId = authManager.getCurrentUser().getUid();
-        StorageReference fileReference = storageReference.child(userId + ".jpg");
-
-        fileReference.putFile(selectedImageUri)
-                .addOnSuccessListener(taskSnapshot -> {
-                    fileReference.getDownloadUrl().addOnSuccessListener(uri -> {
-                        String imageUrl = uri.toString();
-                        saveUserData(name, phone, imageUrl);
-                    });
-                })
-                .addOnFailureListener(e -> {
-                    progressBar.setVisibility(View.GONE);
-                    Toast.makeText(ProfileActivity.this, "Failed to upload image: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        Context appContext = ProfileActivity.this.getApplicationContext();
+        ProfileImageUploadWorker.enqueue(appContext, userId, imageUri,
+                new ProfileImageUploadWorker.EnqueueCallback() {
+                    @Override
+                    public void onSuccess() {
+                        Toast.makeText(appContext, "Uploading profile photo", Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onFailure(String errorMessage) {
+                        Toast.makeText(appContext, "Failed to upload image: " + errorMessage, Toast.LENGTH_SHORT).show();
+                    }
                 });
     }
 
@@ -213,7 +220,10 @@ public class ProfileActivity extends AppCompatActivity {
             public void onSuccess() {
                 progressBar.setVisibility(View.GONE);
                 Toast.makeText(ProfileActivity.this, "Profile updated successfully", Toast.LENGTH_SHORT).show();
-                selectedImageUri = null;
+                if (selectedImageUri != null) {
+                    uploadProfileImage(selectedImageUri);
+                    selectedImageUri = null;
+                }
             }
 
             @Override
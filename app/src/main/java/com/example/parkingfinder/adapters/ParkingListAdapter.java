@@ -1,6 +1,9 @@
 package com.example.parkingfinder.adapters;
 
 import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.location.Address;
+import android.util.TypedValue;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -9,24 +12,74 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
 import com.example.parkingfinder.R;
 import com.example.parkingfinder.models.ParkingArea;
+import com.example.parkingfinder.repositories.GeocodingRepository;
+import com.example.parkingfinder.utils.LocationUtils;
 
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 
-public class ParkingListAdapter extends RecyclerView.Adapter<ParkingListAdapter.ParkingViewHolder> {
+public class ParkingListAdapter extends RecyclerView.Adapter<ParkingListAdapter.ParkingViewHolder>
+        implements ListPreloader.PreloadModelProvider<ParkingArea> {
+
+    // Height of image_view_parking in item_parking.xml
+    private static final int IMAGE_HEIGHT_DP = 120;
+
+    // The thumbnail is decoded at this fraction of the full image size
+    private static final int THUMBNAIL_DIVISOR = 4;
+
+    /**
+     * Parts of a row that changed, passed as the bind payload so only those views are touched
+     */
+    public enum Change {
+        AVAILABILITY,
+        DISTANCE,
+        FAVORITE
+    }
 
     private Context context;
-    private List<ParkingArea> parkingAreas;
     private OnParkingItemClickListener listener;
     private double userLatitude;
     private double userLongitude;
 
+    // What each row currently shows. The areas are updated in place by the
+    // ViewModels, so diffs are computed against these copies instead, off
+    // the main thread.
+    private final AsyncListDiffer<RowState> differ = new AsyncListDiffer<>(this, new RowDiffCallback());
+
+    // Stable ids per parking area id
+    private final Map<String, Long> stableIds = new HashMap<>();
+
+    // Formatters and colors, created once instead of on every bind
+    private final NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
+    private final NumberFormat decimalFormat = NumberFormat.getNumberInstance();
+    private final int availableColor;
+    private final int unavailableColor;
+
+    // Images are requested at a fixed size, shared by binding and preloading
+    // so preloaded images hit the memory cache
+    private final RequestManager requestManager;
+    private final GeocodingRepository geocodingRepository;
+    private final int imageWidth;
+    private final int imageHeight;
+
     public interface OnParkingItemClickListener {
         void onParkingItemClick(ParkingArea parkingArea);
         void onBookButtonClick(ParkingArea parkingArea);
@@ -35,137 +88,351 @@ public class ParkingListAdapter extends RecyclerView.Adapter<ParkingListAdapter.
 
     public ParkingListAdapter(Context context, List<ParkingArea> parkingAreas, OnParkingItemClickListener listener) {
         this.context = context;
-        this.parkingAreas = parkingAreas;
         this.listener = listener;
+
+        decimalFormat.setMinimumFractionDigits(1);
+        decimalFormat.setMaximumFractionDigits(1);
+        availableColor = ContextCompat.getColor(context, R.color.available);
+        unavailableColor = ContextCompat.getColor(context, R.color.unavailable);
+
+        requestManager = Glide.with(context);
+        geocodingRepository = GeocodingRepository.getInstance(context);
+        imageWidth = context.getResources().getDisplayMetrics().widthPixels;
+        imageHeight = Math.round(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                IMAGE_HEIGHT_DP, context.getResources().getDisplayMetrics()));
+        setHasStableIds(true);
+        differ.submitList(toRowStates(parkingAreas));
     }
 
     public void setUserLocation(double latitude, double longitude) {
         this.userLatitude = latitude;
         this.userLongitude = longitude;
-        notifyDataSetChanged(); // Refresh to update distances
+        // Only rows whose distance text changed are rebound
+        differ.submitList(toRowStates(currentAreas()));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        String id = differ.getCurrentList().get(position).id;
+        Long stableId = stableIds.get(id);
+        if (stableId == null) {
+            stableId = (long) stableIds.size();
+            stableIds.put(id, stableId);
+        }
+        return stableId;
     }
 
     @NonNull
     @Override
     public ParkingViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(context).inflate(R.layout.item_parking, parent, false);
-        return new ParkingViewHolder(view);
+        ParkingViewHolder holder = new ParkingViewHolder(view);
+
+        // Set click listeners once per view holder
+        holder.itemView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (listener != null && position != RecyclerView.NO_POSITION) {
+                listener.onParkingItemClick(differ.getCurrentList().get(position).area);
+            }
+        });
+
+        holder.bookButton.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (listener != null && position != RecyclerView.NO_POSITION) {
+                listener.onBookButtonClick(differ.getCurrentList().get(position).area);
+            }
+        });
+
+        holder.favoriteImageView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (listener != null && position != RecyclerView.NO_POSITION) {
+                ParkingArea parkingArea = differ.getCurrentList().get(position).area;
+                boolean newFavoriteState = !parkingArea.isFavorite();
+                // Update UI immediately for better responsiveness, the diff then finds the row unchanged
+                parkingArea.setFavorite(newFavoriteState);
+                bindFavorite(holder, parkingArea);
+                differ.submitList(toRowStates(currentAreas()));
+                listener.onFavoriteClick(parkingArea, newFavoriteState);
+            }
+        });
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull ParkingViewHolder holder, int position) {
-        ParkingArea parkingArea = parkingAreas.get(position);
+        RowState state = differ.getCurrentList().get(position);
+        ParkingArea parkingArea = state.area;
 
         // Set parking name and address
         holder.nameTextView.setText(parkingArea.getName());
-        holder.addressTextView.setText(parkingArea.getAddress());
-
-        // Set availability
-        String availabilityText = parkingArea.getAvailableSpots() + "/" + parkingArea.getTotalSpots() + " spots available";
-        holder.availabilityTextView.setText(availabilityText);
+        if (parkingArea.getAddress() != null && !parkingArea.getAddress().isEmpty()) {
+            holder.addressTextView.setTag(null);
+            holder.addressTextView.setText(parkingArea.getAddress());
+        } else {
+            bindGeocodedAddress(holder, parkingArea);
+        }
 
         // Set price
-        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
         holder.priceTextView.setText(currencyFormat.format(parkingArea.getHourlyRate()) + "/hour");
 
         // Set rating
-        String ratingText = String.format(Locale.getDefault(), "%.1f", parkingArea.getRating());
-        holder.ratingTextView.setText(ratingText);
+        holder.ratingTextView.setText(decimalFormat.format(parkingArea.getRating()));
         holder.ratingBar.setRating(parkingArea.getRating());
 
-        // Set distance (if user location is available)
-        if (userLatitude != 0 && userLongitude != 0) {
-            double distance = parkingArea.distanceFrom(userLatitude, userLongitude);
-            String distanceText = String.format(Locale.getDefault(), "%.1f km", distance);
-            holder.distanceTextView.setText(distanceText);
-            holder.distanceTextView.setVisibility(View.VISIBLE);
-        } else {
-            holder.distanceTextView.setVisibility(View.GONE);
-        }
-
         // Load parking image
-        if (parkingArea.getImageUrl() != null && !parkingArea.getImageUrl().isEmpty()) {
-            Glide.with(context)
-                    .load(parkingArea.getImageUrl())
-                    .placeholder(R.drawable.placeholder_parking)
-                    .error(R.drawable.placeholder_parking)
-                    .centerCrop()
-                    .into(holder.parkingImageView);
+        if (hasImage(parkingArea)) {
+            buildImageRequest(parkingArea.getImageUrl()).into(holder.parkingImageView);
         } else {
+            requestManager.clear(holder.parkingImageView);
             holder.parkingImageView.setImageResource(R.drawable.placeholder_parking);
         }
 
-        // Set available status color
-        if (parkingArea.getAvailableSpots() > 0) {
-            holder.availabilityTextView.setTextColor(context.getResources().getColor(R.color.available));
-            holder.bookButton.setEnabled(true);
-        } else {
-            holder.availabilityTextView.setTextColor(context.getResources().getColor(R.color.unavailable));
-            holder.bookButton.setEnabled(false);
+        // Special features indicators
+        holder.coveredParkingImageView.setVisibility(parkingArea.isHasCoveredParking() ? View.VISIBLE : View.GONE);
+        holder.disabledAccessImageView.setVisibility(parkingArea.isHasDisabledAccess() ? View.VISIBLE : View.GONE);
+        holder.evChargingImageView.setVisibility(parkingArea.isHasElectricCharging() ? View.VISIBLE : View.GONE);
+
+        bindAvailability(holder, parkingArea);
+        bindDistance(holder, state);
+        bindFavorite(holder, parkingArea);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ParkingViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
         }
 
-        // Set favorite icon
-        if (parkingArea.isFavorite()) {
-            holder.favoriteImageView.setImageResource(R.drawable.ic_favorite_filled);
-        } else {
-            holder.favoriteImageView.setImageResource(R.drawable.ic_favorite_border);
+        EnumSet<Change> changes = EnumSet.noneOf(Change.class);
+        for (Object payload : payloads) {
+            if (payload instanceof EnumSet) {
+                for (Object change : (EnumSet<?>) payload) {
+                    changes.add((Change) change);
+                }
+            }
         }
 
-        // Special features indicators
-        if (parkingArea.isHasCoveredParking()) {
-            holder.coveredParkingImageView.setVisibility(View.VISIBLE);
-        } else {
-            holder.coveredParkingImageView.setVisibility(View.GONE);
+        RowState state = differ.getCurrentList().get(position);
+        ParkingArea parkingArea = state.area;
+        if (changes.contains(Change.AVAILABILITY)) {
+            bindAvailability(holder, parkingArea);
+        }
+        if (changes.contains(Change.DISTANCE)) {
+            bindDistance(holder, state);
+        }
+        if (changes.contains(Change.FAVORITE)) {
+            bindFavorite(holder, parkingArea);
         }
+    }
+
+    // Areas stored with coordinates only, answered right away once looked up
+    private void bindGeocodedAddress(ParkingViewHolder holder, ParkingArea parkingArea) {
+        String id = parkingArea.getId();
+        holder.addressTextView.setTag(id);
+        holder.addressTextView.setText("");
+        geocodingRepository.getAddress(parkingArea.getLatitude(), parkingArea.getLongitude(),
+                new GeocodingRepository.GeocodingCallback() {
+                    @Override
+                    public void onAddressReceived(Address address) {
+                        // The holder may have been rebound to another area meanwhile
+                        if (id != null && id.equals(holder.addressTextView.getTag())) {
+                            holder.addressTextView.setText(LocationUtils.formatAddress(address));
+                        }
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                    }
+                });
+    }
+
+    private void bindAvailability(ParkingViewHolder holder, ParkingArea parkingArea) {
+        String availabilityText = parkingArea.getAvailableSpots() + "/" + parkingArea.getTotalSpots() + " spots available";
+        holder.availabilityTextView.setText(availabilityText);
 
-        if (parkingArea.isHasDisabledAccess()) {
-            holder.disabledAccessImageView.setVisibility(View.VISIBLE);
+        // Set available status color
+        boolean hasSpots = parkingArea.getAvailableSpots() > 0;
+        holder.availabilityTextView.setTextColor(hasSpots ? availableColor : unavailableColor);
+        holder.bookButton.setEnabled(hasSpots);
+    }
+
+    private void bindDistance(ParkingViewHolder holder, RowState state) {
+        if (state.distanceText != null) {
+            holder.distanceTextView.setText(state.distanceText);
+            holder.distanceTextView.setVisibility(View.VISIBLE);
         } else {
-            holder.disabledAccessImageView.setVisibility(View.GONE);
+            holder.distanceTextView.setVisibility(View.GONE);
         }
+    }
 
-        if (parkingArea.isHasElectricCharging()) {
-            holder.evChargingImageView.setVisibility(View.VISIBLE);
-        } else {
-            holder.evChargingImageView.setVisibility(View.GONE);
+    private void bindFavorite(ParkingViewHolder holder, ParkingArea parkingArea) {
+        holder.favoriteImageView.setImageResource(parkingArea.isFavorite()
+                ? R.drawable.ic_favorite_filled : R.drawable.ic_favorite_border);
+    }
+
+    // Distance as shown, null when the user location is unknown
+    private String distanceText(ParkingArea parkingArea) {
+        if (userLatitude == 0 || userLongitude == 0) {
+            return null;
         }
+        return decimalFormat.format(parkingArea.distanceFrom(userLatitude, userLongitude)) + " km";
+    }
 
-        // Set click listeners
-        holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onParkingItemClick(parkingArea);
-            }
-        });
+    private static boolean hasImage(ParkingArea parkingArea) {
+        return parkingArea.getImageUrl() != null && !parkingArea.getImageUrl().isEmpty();
+    }
 
-        holder.bookButton.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onBookButtonClick(parkingArea);
-            }
-        });
+    // Small thumbnail first, then the full size image
+    private RequestBuilder<Drawable> buildImageRequest(String imageUrl) {
+        return requestManager.load(imageUrl)
+                .override(imageWidth, imageHeight)
+                .centerCrop()
+                .placeholder(R.drawable.placeholder_parking)
+                .error(R.drawable.placeholder_parking)
+                .thumbnail(requestManager.load(imageUrl)
+                        .override(imageWidth / THUMBNAIL_DIVISOR, imageHeight / THUMBNAIL_DIVISOR)
+                        .centerCrop());
+    }
 
-        holder.favoriteImageView.setOnClickListener(v -> {
-            if (listener != null) {
-                boolean newFavoriteState = !parkingArea.isFavorite();
-                // Update UI immediately for better responsiveness
-                if (newFavoriteState) {
-                    holder.favoriteImageView.setImageResource(R.drawable.ic_favorite_filled);
-                } else {
-                    holder.favoriteImageView.setImageResource(R.drawable.ic_favorite_border);
-                }
-                parkingArea.setFavorite(newFavoriteState);
-                listener.onFavoriteClick(parkingArea, newFavoriteState);
-            }
-        });
+    /**
+     * Size provider for a RecyclerViewPreloader over this adapter
+     */
+    public ListPreloader.PreloadSizeProvider<ParkingArea> getPreloadSizeProvider() {
+        return new FixedPreloadSizeProvider<>(imageWidth, imageHeight);
+    }
+
+    @NonNull
+    @Override
+    public List<ParkingArea> getPreloadItems(int position) {
+        List<RowState> states = differ.getCurrentList();
+        if (position >= states.size() || !hasImage(states.get(position).area)) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(states.get(position).area);
+    }
+
+    @Override
+    public RequestBuilder<?> getPreloadRequestBuilder(@NonNull ParkingArea parkingArea) {
+        return buildImageRequest(parkingArea.getImageUrl());
     }
 
     @Override
     public int getItemCount() {
-        return parkingAreas.size();
+        return differ.getCurrentList().size();
     }
 
+    /**
+     * Show a new list of areas, or refresh after areas changed in place.
+     * The rows are snapshotted now, the diff runs in the background.
+     */
     public void updateData(List<ParkingArea> newParkingAreas) {
-        this.parkingAreas = newParkingAreas;
-        notifyDataSetChanged();
+        differ.submitList(toRowStates(newParkingAreas));
+    }
+
+    private List<ParkingArea> currentAreas() {
+        List<RowState> states = differ.getCurrentList();
+        List<ParkingArea> areas = new ArrayList<>(states.size());
+        for (RowState state : states) {
+            areas.add(state.area);
+        }
+        return areas;
+    }
+
+    private List<RowState> toRowStates(List<ParkingArea> areas) {
+        List<RowState> states = new ArrayList<>(areas.size());
+        for (ParkingArea area : areas) {
+            states.add(new RowState(area, distanceText(area)));
+        }
+        return states;
+    }
+
+    /**
+     * Immutable copy of the values a row displays, with the area it was taken
+     * from for binding and clicks
+     */
+    private static final class RowState {
+        final ParkingArea area;
+        final String id;
+        final String name;
+        final String address;
+        final String imageUrl;
+        final double hourlyRate;
+        final float rating;
+        final boolean covered;
+        final boolean disabledAccess;
+        final boolean electricCharging;
+        final int availableSpots;
+        final int totalSpots;
+        final boolean favorite;
+        final String distanceText;
+
+        RowState(ParkingArea area, String distanceText) {
+            this.area = area;
+            id = area.getId();
+            name = area.getName();
+            address = area.getAddress();
+            imageUrl = area.getImageUrl();
+            hourlyRate = area.getHourlyRate();
+            rating = area.getRating();
+            covered = area.isHasCoveredParking();
+            disabledAccess = area.isHasDisabledAccess();
+            electricCharging = area.isHasElectricCharging();
+            availableSpots = area.getAvailableSpots();
+            totalSpots = area.getTotalSpots();
+            favorite = area.isFavorite();
+            this.distanceText = distanceText;
+        }
+
+        boolean sameStaticContent(RowState other) {
+            return Objects.equals(name, other.name)
+                    && Objects.equals(address, other.address)
+                    && Objects.equals(imageUrl, other.imageUrl)
+                    && hourlyRate == other.hourlyRate
+                    && rating == other.rating
+                    && covered == other.covered
+                    && disabledAccess == other.disabledAccess
+                    && electricCharging == other.electricCharging;
+        }
+    }
+
+    // Runs on the differ's background thread, reads only the immutable state fields
+    private static final class RowDiffCallback extends DiffUtil.ItemCallback<RowState> {
+
+        @Override
+        public boolean areItemsTheSame(@NonNull RowState oldState, @NonNull RowState newState) {
+            return Objects.equals(oldState.id, newState.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull RowState oldState, @NonNull RowState newState) {
+            EnumSet<Change> changes = getChanges(oldState, newState);
+            return changes != null && changes.isEmpty();
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull RowState oldState, @NonNull RowState newState) {
+            // Null means a full rebind
+            return getChanges(oldState, newState);
+        }
+
+        // Changed parts, or null when anything else changed
+        private static EnumSet<Change> getChanges(RowState oldState, RowState newState) {
+            if (!oldState.sameStaticContent(newState)) {
+                return null;
+            }
+            EnumSet<Change> changes = EnumSet.noneOf(Change.class);
+            if (oldState.availableSpots != newState.availableSpots || oldState.totalSpots != newState.totalSpots) {
+                changes.add(Change.AVAILABILITY);
+            }
+            if (!Objects.equals(oldState.distanceText, newState.distanceText)) {
+                changes.add(Change.DISTANCE);
+            }
+            if (oldState.favorite != newState.favorite) {
+                changes.add(Change.FAVORITE);
+            }
+            return changes;
+        }
     }
 
     static class ParkingViewHolder extends RecyclerView.ViewHolder {
@@ -200,4 +467,4 @@ public class ParkingListAdapter extends RecyclerView.Adapter<ParkingListAdapter.
             evChargingImageView = itemView.findViewById(R.id.image_view_ev);
         }
     }
-}
\ No newline at end of file
+}
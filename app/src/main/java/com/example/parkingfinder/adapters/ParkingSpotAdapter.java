@@ -9,20 +9,42 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.parkingfinder.R;
 import com.example.parkingfinder.models.ParkingSpot;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class ParkingSpotAdapter extends RecyclerView.Adapter<ParkingSpotAdapter.SpotViewHolder> {
 
+    // Bind payload: only the card colors need updating
+    private static final Object PAYLOAD_STATE = new Object();
+
     private Context context;
-    private List<ParkingSpot> spots;
     private OnSpotClickListener listener;
     private ParkingSpot selectedSpot = null;
-    private int selectedPosition = -1;
+
+    // What each card currently shows. Spots are updated in place by the
+    // live availability stream, so diffs are computed against these copies,
+    // off the main thread.
+    private final AsyncListDiffer<SpotState> differ = new AsyncListDiffer<>(this, new SpotDiffCallback());
+
+    // Stable ids per parking spot id
+    private final Map<String, Long> stableIds = new HashMap<>();
+
+    // Colors resolved once instead of on every bind
+    private final int unavailableColor;
+    private final int selectedColor;
+    private final int availableColor;
+    private final int whiteColor;
+    private final int blackColor;
 
     public interface OnSpotClickListener {
         void onSpotClick(ParkingSpot spot);
@@ -30,88 +52,188 @@ public class ParkingSpotAdapter extends RecyclerView.Adapter<ParkingSpotAdapter.
 
     public ParkingSpotAdapter(Context context, List<ParkingSpot> spots, OnSpotClickListener listener) {
         this.context = context;
-        this.spots = spots;
         this.listener = listener;
+
+        unavailableColor = ContextCompat.getColor(context, R.color.unavailable_spot);
+        selectedColor = ContextCompat.getColor(context, R.color.selected_spot);
+        availableColor = ContextCompat.getColor(context, R.color.available_spot);
+        whiteColor = ContextCompat.getColor(context, R.color.white);
+        blackColor = ContextCompat.getColor(context, R.color.black);
+        setHasStableIds(true);
+        differ.submitList(toSpotStates(spots));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        String id = differ.getCurrentList().get(position).id;
+        Long stableId = stableIds.get(id);
+        if (stableId == null) {
+            stableId = (long) stableIds.size();
+            stableIds.put(id, stableId);
+        }
+        return stableId;
     }
 
     @NonNull
     @Override
     public SpotViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(context).inflate(R.layout.item_parking_spot, parent, false);
-        return new SpotViewHolder(view);
+        SpotViewHolder holder = new SpotViewHolder(view);
+
+        // Set click listener once per view holder
+        holder.itemView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            ParkingSpot spot = differ.getCurrentList().get(position).spot;
+            if (spot.isAvailable()) {
+                selectedSpot = spot;
+
+                // Update UI for previously selected and newly selected spot
+                differ.submitList(toSpotStates(currentSpots()));
+
+                // Notify listener
+                listener.onSpotClick(spot);
+            }
+        });
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull SpotViewHolder holder, int position) {
-        ParkingSpot spot = spots.get(position);
-        holder.spotNumberTextView.setText(spot.getSpotNumber());
-
-        // Set card background color based on availability and selection
-        if (!spot.isAvailable()) {
-            // Unavailable spot
-            holder.cardView.setCardBackgroundColor(
-                    ContextCompat.getColor(context, R.color.unavailable_spot));
-            holder.spotNumberTextView.setTextColor(
-                    ContextCompat.getColor(context, R.color.white));
-        } else if (position == selectedPosition) {
-            // Selected spot
-            holder.cardView.setCardBackgroundColor(
-                    ContextCompat.getColor(context, R.color.selected_spot));
-            holder.spotNumberTextView.setTextColor(
-                    ContextCompat.getColor(context, R.color.white));
-        } else {
-            // Available spot
-            holder.cardView.setCardBackgroundColor(
-                    ContextCompat.getColor(context, R.color.available_spot));
-            holder.spotNumberTextView.setTextColor(
-                    ContextCompat.getColor(context, R.color.black));
-        }
+        SpotState state = differ.getCurrentList().get(position);
+        holder.spotNumberTextView.setText(state.spotNumber);
+        bindState(holder, state);
 
         // Special markers for handicapped, EV charging, etc.
-        if (spot.isHandicapped()) {
+        if (state.handicapped) {
             holder.spotTypeTextView.setText("H");
             holder.spotTypeTextView.setVisibility(View.VISIBLE);
-        } else if (spot.isElectricCharging()) {
+        } else if (state.electricCharging) {
             holder.spotTypeTextView.setText("EV");
             holder.spotTypeTextView.setVisibility(View.VISIBLE);
-        } else if (spot.isReserved()) {
+        } else if (state.reserved) {
             holder.spotTypeTextView.setText("R");
             holder.spotTypeTextView.setVisibility(View.VISIBLE);
         } else {
             holder.spotTypeTextView.setVisibility(View.GONE);
         }
+    }
 
-        // Set click listener
-        holder.itemView.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                if (spot.isAvailable()) {
-                    int previousSelected = selectedPosition;
-                    selectedPosition = holder.getAdapterPosition();
-                    selectedSpot = spot;
-
-                    // Update UI for previously selected and newly selected spot
-                    if (previousSelected != -1) {
-                        notifyItemChanged(previousSelected);
-                    }
-                    notifyItemChanged(selectedPosition);
-
-                    // Notify listener
-                    listener.onSpotClick(spot);
-                }
-            }
-        });
+    @Override
+    public void onBindViewHolder(@NonNull SpotViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else {
+            bindState(holder, differ.getCurrentList().get(position));
+        }
+    }
+
+    // Set card background color based on availability and selection
+    private void bindState(SpotViewHolder holder, SpotState state) {
+        if (!state.available) {
+            holder.cardView.setCardBackgroundColor(unavailableColor);
+            holder.spotNumberTextView.setTextColor(whiteColor);
+        } else if (state.selected) {
+            holder.cardView.setCardBackgroundColor(selectedColor);
+            holder.spotNumberTextView.setTextColor(whiteColor);
+        } else {
+            holder.cardView.setCardBackgroundColor(availableColor);
+            holder.spotNumberTextView.setTextColor(blackColor);
+        }
     }
 
     @Override
     public int getItemCount() {
-        return spots.size();
+        return differ.getCurrentList().size();
     }
 
     public ParkingSpot getSelectedSpot() {
         return selectedSpot;
     }
 
+    /**
+     * Show a new list of spots, or refresh after spots changed in place.
+     * The cards are snapshotted now, the diff runs in the background.
+     */
+    public void updateData(List<ParkingSpot> newSpots) {
+        differ.submitList(toSpotStates(newSpots));
+    }
+
+    private List<ParkingSpot> currentSpots() {
+        List<SpotState> states = differ.getCurrentList();
+        List<ParkingSpot> spotList = new ArrayList<>(states.size());
+        for (SpotState state : states) {
+            spotList.add(state.spot);
+        }
+        return spotList;
+    }
+
+    private List<SpotState> toSpotStates(List<ParkingSpot> spotList) {
+        String selectedId = selectedSpot != null ? selectedSpot.getId() : null;
+        List<SpotState> states = new ArrayList<>(spotList.size());
+        for (ParkingSpot spot : spotList) {
+            states.add(new SpotState(spot, selectedId != null && selectedId.equals(spot.getId())));
+        }
+        return states;
+    }
+
+    /**
+     * Immutable copy of the values a card displays, with the spot it was
+     * taken from for clicks
+     */
+    private static final class SpotState {
+        final ParkingSpot spot;
+        final String id;
+        final String spotNumber;
+        final boolean handicapped;
+        final boolean electricCharging;
+        final boolean reserved;
+        final boolean available;
+        final boolean selected;
+
+        SpotState(ParkingSpot spot, boolean selected) {
+            this.spot = spot;
+            id = spot.getId();
+            spotNumber = spot.getSpotNumber();
+            handicapped = spot.isHandicapped();
+            electricCharging = spot.isElectricCharging();
+            reserved = spot.isReserved();
+            available = spot.isAvailable();
+            this.selected = selected;
+        }
+    }
+
+    // Runs on the differ's background thread, reads only the immutable state fields
+    private static final class SpotDiffCallback extends DiffUtil.ItemCallback<SpotState> {
+
+        @Override
+        public boolean areItemsTheSame(@NonNull SpotState oldState, @NonNull SpotState newState) {
+            return Objects.equals(oldState.id, newState.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull SpotState oldState, @NonNull SpotState newState) {
+            return sameLabel(oldState, newState)
+                    && oldState.available == newState.available
+                    && oldState.selected == newState.selected;
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull SpotState oldState, @NonNull SpotState newState) {
+            // Availability or selection only, otherwise a full rebind
+            return sameLabel(oldState, newState) ? PAYLOAD_STATE : null;
+        }
+
+        private static boolean sameLabel(SpotState oldState, SpotState newState) {
+            return Objects.equals(oldState.spotNumber, newState.spotNumber)
+                    && oldState.handicapped == newState.handicapped
+                    && oldState.electricCharging == newState.electricCharging
+                    && oldState.reserved == newState.reserved;
+        }
+    }
+
     static class SpotViewHolder extends RecyclerView.ViewHolder {
         CardView cardView;
         TextView spotNumberTextView;
@@ -124,4 +246,4 @@ public class ParkingSpotAdapter extends RecyclerView.Adapter<ParkingSpotAdapter.
             spotTypeTextView = itemView.findViewById(R.id.text_view_spot_type);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,22 +1,35 @@
 package com.example.parkingfinder.database;
 
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
 
 import com.example.parkingfinder.database.dao.BookingDao;
+import com.example.parkingfinder.database.dao.FavoriteDao;
+import com.example.parkingfinder.database.dao.GeocodeDao;
+import com.example.parkingfinder.database.dao.OccupancyTimelineDao;
 import com.example.parkingfinder.database.dao.ParkingAreaDao;
 import com.example.parkingfinder.database.dao.ParkingSpotDao;
 import com.example.parkingfinder.database.dao.UserDao;
 import com.example.parkingfinder.database.entities.BookingEntity;
+import com.example.parkingfinder.database.entities.FavoriteEntity;
+import com.example.parkingfinder.database.entities.GeocodeEntity;
+import com.example.parkingfinder.database.entities.OccupancyTimelineEntity;
 import com.example.parkingfinder.database.entities.ParkingAreaEntity;
 import com.example.parkingfinder.database.entities.ParkingSpotEntity;
 import com.example.parkingfinder.database.entities.UserEntity;
+import com.example.parkingfinder.database.profiling.ProfilingOpenHelperFactory;
+import com.example.parkingfinder.database.profiling.QueryProfiler;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -24,56 +37,129 @@ import java.util.concurrent.Executors;
         UserEntity.class,
         ParkingAreaEntity.class,
         ParkingSpotEntity.class,
-        BookingEntity.class
-}, version = 1, exportSchema = false)
+        BookingEntity.class,
+        OccupancyTimelineEntity.class,
+        GeocodeEntity.class,
+        FavoriteEntity.class
+}, version = 7, exportSchema = true)
 public abstract class AppDatabase extends RoomDatabase {
 
+    private static final String TAG = "AppDatabase";
+    private static final String DATABASE_NAME = "parking_finder_database";
+
+    // Optional prepopulated snapshot of static parking data, copied on first launch.
+    // It must be built with the current schema version.
+    private static final String PREPOPULATED_ASSET_DIR = "databases";
+    private static final String PREPOPULATED_ASSET_NAME = "parking_finder_prepopulated.db";
+
     // DAOs
     public abstract UserDao userDao();
     public abstract ParkingAreaDao parkingAreaDao();
     public abstract ParkingSpotDao parkingSpotDao();
     public abstract BookingDao bookingDao();
+    public abstract OccupancyTimelineDao occupancyTimelineDao();
+    public abstract GeocodeDao geocodeDao();
+    public abstract FavoriteDao favoriteDao();
 
     // Singleton instance
     private static volatile AppDatabase INSTANCE;
 
+    // Cap the WAL file size after checkpoints, so long sync bursts don't leave
+    // a large file behind. Checkpoints keep SQLite's default of every 1000 pages.
+    private static final long JOURNAL_SIZE_LIMIT_BYTES = 4 * 1024 * 1024;
+
     // Thread pool for database operations
     private static final int NUMBER_OF_THREADS = 4;
     public static final ExecutorService databaseWriteExecutor =
             Executors.newFixedThreadPool(NUMBER_OF_THREADS);
 
+    // Query profiler, only installed in debuggable builds
+    private static volatile QueryProfiler queryProfiler;
+
     // Get database instance
     public static AppDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
-                    INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
-                                    AppDatabase.class, "parking_finder_database")
-                            .addCallback(sRoomDatabaseCallback)
-                            .build();
+                    Context appContext = context.getApplicationContext();
+                    RoomDatabase.Builder<AppDatabase> builder = Room.databaseBuilder(appContext,
+                                    AppDatabase.class, DATABASE_NAME)
+                            .addMigrations(Migrations.ALL)
+                            .fallbackToDestructiveMigrationOnDowngrade()
+                            // Readers never wait on sync writes
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                            .addCallback(sRoomDatabaseCallback);
+
+                    if (hasPrepopulatedAsset(appContext)) {
+                        builder.createFromAsset(PREPOPULATED_ASSET_DIR + "/" + PREPOPULATED_ASSET_NAME,
+                                sPrepackagedDatabaseCallback);
+                    }
+
+                    if ((appContext.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+                        queryProfiler = new QueryProfiler();
+                        builder.openHelperFactory(new ProfilingOpenHelperFactory(
+                                        new FrameworkSQLiteOpenHelperFactory(), queryProfiler))
+                                .setQueryCallback(queryProfiler, Executors.newSingleThreadExecutor());
+                    }
+
+                    INSTANCE = builder.build();
                 }
             }
         }
         return INSTANCE;
     }
 
+    /**
+     * Get the query profiler, or null when the build is not debuggable
+     */
+    public static QueryProfiler getQueryProfiler() {
+        return queryProfiler;
+    }
+
+    private static boolean hasPrepopulatedAsset(Context context) {
+        try {
+            String[] assets = context.getAssets().list(PREPOPULATED_ASSET_DIR);
+            return assets != null && Arrays.asList(assets).contains(PREPOPULATED_ASSET_NAME);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to list database assets", e);
+            return false;
+        }
+    }
+
     // Callback for database creation
     private static final RoomDatabase.Callback sRoomDatabaseCallback = new RoomDatabase.Callback() {
         @Override
         public void onCreate(@NonNull SupportSQLiteDatabase db) {
             super.onCreate(db);
 
-            // If you want to prepopulate the database, you can do it here
-            databaseWriteExecutor.execute(() -> {
-                // Example of prepopulating the database with sample data
-                // This would be done in a real app if you wanted to have initial data
+            // Only called for an empty database. When the prepopulated asset is
+            // shipped Room copies it instead and sPrepackagedDatabaseCallback runs.
+            Log.d(TAG, "Created empty database, parking cache fills on first load");
+        }
+
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            super.onOpen(db);
 
-                // ParkingAreaDao dao = INSTANCE.parkingAreaDao();
-                // dao.insert(new ParkingAreaEntity(...));
-            });
+            // PRAGMAs that report a value have to go through query()
+            db.query("PRAGMA journal_size_limit = " + JOURNAL_SIZE_LIMIT_BYTES).close();
+            // NORMAL is durable across app crashes in WAL mode and avoids an fsync per commit
+            db.query("PRAGMA synchronous = NORMAL").close();
         }
     };
 
+    // Callback for the database copied from assets
+    private static final RoomDatabase.PrepackagedDatabaseCallback sPrepackagedDatabaseCallback =
+            new RoomDatabase.PrepackagedDatabaseCallback() {
+                @Override
+                public void onOpenPrepackagedDatabase(@NonNull SupportSQLiteDatabase db) {
+                    // Snapshot rows are shown immediately but treated as stale,
+                    // so the first network load still refreshes them
+                    db.execSQL("UPDATE parking_areas SET lastUpdated = 0");
+                    Log.d(TAG, "Opened prepopulated database");
+                }
+            };
+
     // Clear the database instance (for testing or when signing out)
     public static void destroyInstance() {
         INSTANCE = null;
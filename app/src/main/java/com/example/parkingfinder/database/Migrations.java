@@ -0,0 +1,118 @@
+package com.example.parkingfinder.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Schema migrations for AppDatabase.
+ * Every version bump gets a Migration here and an entry in ALL, so upgrades
+ * keep the offline cache and unsynced bookings instead of recreating the
+ * database. Exported schemas live in app/schemas and must be committed with
+ * each version change.
+ */
+public final class Migrations {
+
+    private Migrations() {
+        // No instances
+    }
+
+    /**
+     * Replace the single userId index on bookings with composite indices
+     * matching the booking tab, expiry and spot conflict queries
+     */
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("DROP INDEX IF EXISTS `index_bookings_userId`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_bookings_userId_createdAt` " +
+                    "ON `bookings` (`userId`, `createdAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_bookings_userId_startTime` " +
+                    "ON `bookings` (`userId`, `startTime`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_bookings_userId_endTime` " +
+                    "ON `bookings` (`userId`, `endTime`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_bookings_userId_status_createdAt` " +
+                    "ON `bookings` (`userId`, `status`, `createdAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_bookings_status_endTime` " +
+                    "ON `bookings` (`status`, `endTime`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_bookings_parkingAreaId_parkingSpotId_status_endTime` " +
+                    "ON `bookings` (`parkingAreaId`, `parkingSpotId`, `status`, `endTime`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_bookings_isSynced` " +
+                    "ON `bookings` (`isSynced`)");
+        }
+    };
+
+    /**
+     * Add the availability bitset ordinal to the cached spot layout
+     */
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `parking_spots` ADD COLUMN `ordinal` INTEGER NOT NULL DEFAULT -1");
+        }
+    };
+
+    /**
+     * Add the per-area occupancy history used for availability forecasts
+     */
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `occupancy_timelines` (" +
+                    "`parkingAreaId` TEXT NOT NULL, `latestBucket` INTEGER NOT NULL, " +
+                    "`occupancySums` BLOB, `sampleCounts` BLOB, `totalSpots` INTEGER NOT NULL, " +
+                    "`lastUpdated` INTEGER NOT NULL, PRIMARY KEY(`parkingAreaId`))");
+        }
+    };
+
+    /**
+     * Add the geocoder result cache
+     */
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `geocode_cache` (" +
+                    "`cacheKey` TEXT NOT NULL, `latitude` REAL NOT NULL, `longitude` REAL NOT NULL, " +
+                    "`addressLine` TEXT, `subThoroughfare` TEXT, `thoroughfare` TEXT, `locality` TEXT, " +
+                    "`adminArea` TEXT, `postalCode` TEXT, `countryName` TEXT, `countryCode` TEXT, " +
+                    "`cachedAt` INTEGER NOT NULL, PRIMARY KEY(`cacheKey`))");
+        }
+    };
+
+    /**
+     * Add the local favorites set and its pending sync state
+     */
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `favorites` (" +
+                    "`userId` TEXT NOT NULL, `parkingAreaId` TEXT NOT NULL, `isFavorite` INTEGER NOT NULL, " +
+                    "`isSynced` INTEGER NOT NULL, `updatedAt` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`userId`, `parkingAreaId`))");
+        }
+    };
+
+    /**
+     * Drop the isSynced index on bookings. The flag has two values and only the
+     * background sync filters on it, so the index cost every booking write and
+     * saved no reads.
+     */
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("DROP INDEX IF EXISTS `index_bookings_isSynced`");
+        }
+    };
+
+    /**
+     * All migrations, in version order
+     */
+    public static final Migration[] ALL = {
+            MIGRATION_1_2,
+            MIGRATION_2_3,
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7
+    };
+}
@@ -0,0 +1,329 @@
+package com.example.parkingfinder.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteConstraintException;
+import android.util.Log;
+
+import com.example.parkingfinder.database.entities.ParkingAreaEntity;
+import com.example.parkingfinder.database.entities.ParkingSpotEntity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for the small, frequent writes coming from the ViewModels
+ * (availability ticks, favorite toggles, sync results).
+ * Pending writes are coalesced per row, so only the latest value is written,
+ * and each flush runs as a single transaction. Room reuses the compiled
+ * statement for every row inside it. When the transaction fails the rows are
+ * written one by one, so one bad row doesn't roll back the rest. Rows that
+ * break a constraint are dropped, other failures are retried a few times.
+ */
+public class WriteBatcher {
+
+    private static final String TAG = "WriteBatcher";
+
+    // How long writes are held before flushing
+    private static final long FLUSH_DELAY_MS = 250;
+    // Retries of a row that failed for a reason other than a constraint
+    private static final long RETRY_DELAY_MS = 5000;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static volatile WriteBatcher instance;
+
+    private final AppDatabase database;
+    private final ScheduledExecutorService executor;
+
+    // Pending writes, keyed by row id. Guarded by "this".
+    private Map<String, ParkingAreaEntity> pendingAreaUpserts = new LinkedHashMap<>();
+    private Map<String, Integer> pendingAvailableSpots = new LinkedHashMap<>();
+    private Map<String, Boolean> pendingFavorites = new LinkedHashMap<>();
+    private Map<String, ParkingSpotEntity> pendingSpotUpserts = new LinkedHashMap<>();
+    private Map<String, Boolean> pendingSpotAvailability = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+
+    // Failed attempts per row, keyed by table and row id. Executor only.
+    private final Map<String, Integer> failedAttempts = new HashMap<>();
+
+    private interface RowWrite {
+        void run();
+    }
+
+    private WriteBatcher(AppDatabase database) {
+        this.database = database;
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    public static WriteBatcher getInstance(Context context) {
+        if (instance == null) {
+            synchronized (WriteBatcher.class) {
+                if (instance == null) {
+                    instance = new WriteBatcher(AppDatabase.getDatabase(context));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Queue full parking area rows. Later field updates for the same area are
+     * applied to the queued row instead of being written separately.
+     */
+    public synchronized void upsertParkingAreas(List<ParkingAreaEntity> entities) {
+        for (ParkingAreaEntity entity : entities) {
+            String id = entity.getId();
+            // The new row already carries the latest availability
+            pendingAvailableSpots.remove(id);
+            Boolean favorite = pendingFavorites.remove(id);
+            if (favorite != null) {
+                entity.setFavorite(favorite);
+            }
+            pendingAreaUpserts.put(id, entity);
+        }
+        scheduleFlush();
+    }
+
+    public synchronized void updateAvailableSpots(String parkingAreaId, int availableSpots) {
+        ParkingAreaEntity pending = pendingAreaUpserts.get(parkingAreaId);
+        if (pending != null) {
+            pending.setAvailableSpots(availableSpots);
+        } else {
+            pendingAvailableSpots.put(parkingAreaId, availableSpots);
+        }
+        scheduleFlush();
+    }
+
+    public synchronized void updateFavoriteStatus(String parkingAreaId, boolean isFavorite) {
+        ParkingAreaEntity pending = pendingAreaUpserts.get(parkingAreaId);
+        if (pending != null) {
+            pending.setFavorite(isFavorite);
+        } else {
+            pendingFavorites.put(parkingAreaId, isFavorite);
+        }
+        scheduleFlush();
+    }
+
+    public synchronized void upsertParkingSpots(List<ParkingSpotEntity> entities) {
+        for (ParkingSpotEntity entity : entities) {
+            pendingSpotAvailability.remove(entity.getId());
+            pendingSpotUpserts.put(entity.getId(), entity);
+        }
+        scheduleFlush();
+    }
+
+    public synchronized void updateSpotAvailability(String spotId, boolean isAvailable) {
+        ParkingSpotEntity pending = pendingSpotUpserts.get(spotId);
+        if (pending != null) {
+            pending.setAvailable(isAvailable);
+        } else {
+            pendingSpotAvailability.put(spotId, isAvailable);
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Write everything pending now instead of waiting for the delay
+     */
+    public void flush() {
+        executor.execute(this::flushPending);
+    }
+
+    private void scheduleFlush() {
+        scheduleFlush(FLUSH_DELAY_MS);
+    }
+
+    private void scheduleFlush(long delayMs) {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            executor.schedule(this::flushPending, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushPending() {
+        final Map<String, ParkingAreaEntity> areaUpserts;
+        final Map<String, Integer> availableSpots;
+        final Map<String, Boolean> favorites;
+        final Map<String, ParkingSpotEntity> spotUpserts;
+        final Map<String, Boolean> spotAvailability;
+
+        synchronized (this) {
+            flushScheduled = false;
+            areaUpserts = pendingAreaUpserts;
+            availableSpots = pendingAvailableSpots;
+            favorites = pendingFavorites;
+            spotUpserts = pendingSpotUpserts;
+            spotAvailability = pendingSpotAvailability;
+            pendingAreaUpserts = new LinkedHashMap<>();
+            pendingAvailableSpots = new LinkedHashMap<>();
+            pendingFavorites = new LinkedHashMap<>();
+            pendingSpotUpserts = new LinkedHashMap<>();
+            pendingSpotAvailability = new LinkedHashMap<>();
+        }
+
+        if (areaUpserts.isEmpty() && availableSpots.isEmpty() && favorites.isEmpty()
+                && spotUpserts.isEmpty() && spotAvailability.isEmpty()) {
+            return;
+        }
+
+        try {
+            database.runInTransaction(() -> {
+                // Parent rows first so spot foreign keys are satisfied
+                if (!areaUpserts.isEmpty()) {
+                    database.parkingAreaDao().upsertAll(new ArrayList<>(areaUpserts.values()));
+                }
+                for (Map.Entry<String, Integer> entry : availableSpots.entrySet()) {
+                    database.parkingAreaDao().updateAvailableSpots(entry.getKey(), entry.getValue());
+                }
+                for (Map.Entry<String, Boolean> entry : favorites.entrySet()) {
+                    database.parkingAreaDao().updateFavoriteStatus(entry.getKey(), entry.getValue());
+                }
+                if (!spotUpserts.isEmpty()) {
+                    database.parkingSpotDao().upsertAll(withStoredArea(spotUpserts.values()));
+                }
+                for (Map.Entry<String, Boolean> entry : spotAvailability.entrySet()) {
+                    database.parkingSpotDao().updateAvailability(entry.getKey(), entry.getValue());
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Error flushing batched writes, writing rows separately", e);
+            writeSeparately(areaUpserts, availableSpots, favorites, spotUpserts, spotAvailability);
+        }
+    }
+
+    /**
+     * The spots whose area has a row. Areas served straight from a region
+     * bundle are never stored, their spots would break the foreign key.
+     */
+    private List<ParkingSpotEntity> withStoredArea(Collection<ParkingSpotEntity> spots) {
+        Set<String> areaIds = new HashSet<>();
+        for (ParkingSpotEntity spot : spots) {
+            areaIds.add(spot.getParkingAreaId());
+        }
+        Set<String> storedIds = new HashSet<>(
+                database.parkingAreaDao().getStoredIds(new ArrayList<>(areaIds)));
+
+        List<ParkingSpotEntity> stored = new ArrayList<>();
+        for (ParkingSpotEntity spot : spots) {
+            if (storedIds.contains(spot.getParkingAreaId())) {
+                stored.add(spot);
+            }
+        }
+        if (stored.size() < spots.size()) {
+            Log.d(TAG, "Skipped " + (spots.size() - stored.size()) + " spots of areas not stored");
+        }
+        return stored;
+    }
+
+    /**
+     * Write each row in its own statement and queue the ones worth retrying
+     */
+    private void writeSeparately(Map<String, ParkingAreaEntity> areaUpserts,
+                                 Map<String, Integer> availableSpots,
+                                 Map<String, Boolean> favorites,
+                                 Map<String, ParkingSpotEntity> spotUpserts,
+                                 Map<String, Boolean> spotAvailability) {
+        Map<String, ParkingAreaEntity> retryAreaUpserts = new LinkedHashMap<>();
+        Map<String, Integer> retryAvailableSpots = new LinkedHashMap<>();
+        Map<String, Boolean> retryFavorites = new LinkedHashMap<>();
+        Map<String, ParkingSpotEntity> retrySpotUpserts = new LinkedHashMap<>();
+        Map<String, Boolean> retrySpotAvailability = new LinkedHashMap<>();
+
+        for (ParkingAreaEntity entity : areaUpserts.values()) {
+            if (!writeRow("parking_areas", entity.getId(),
+                    () -> database.parkingAreaDao().upsert(entity))) {
+                retryAreaUpserts.put(entity.getId(), entity);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : availableSpots.entrySet()) {
+            if (!writeRow("parking_areas", entry.getKey(),
+                    () -> database.parkingAreaDao().updateAvailableSpots(entry.getKey(), entry.getValue()))) {
+                retryAvailableSpots.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, Boolean> entry : favorites.entrySet()) {
+            if (!writeRow("parking_areas", entry.getKey(),
+                    () -> database.parkingAreaDao().updateFavoriteStatus(entry.getKey(), entry.getValue()))) {
+                retryFavorites.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (ParkingSpotEntity entity : spotUpserts.values()) {
+            if (!writeRow("parking_spots", entity.getId(),
+                    () -> database.parkingSpotDao().upsert(entity))) {
+                retrySpotUpserts.put(entity.getId(), entity);
+            }
+        }
+        for (Map.Entry<String, Boolean> entry : spotAvailability.entrySet()) {
+            if (!writeRow("parking_spots", entry.getKey(),
+                    () -> database.parkingSpotDao().updateAvailability(entry.getKey(), entry.getValue()))) {
+                retrySpotAvailability.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (retryAreaUpserts.isEmpty() && retryAvailableSpots.isEmpty() && retryFavorites.isEmpty()
+                && retrySpotUpserts.isEmpty() && retrySpotAvailability.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            // Writes queued since this flush are newer and win
+            for (ParkingAreaEntity entity : retryAreaUpserts.values()) {
+                pendingAreaUpserts.putIfAbsent(entity.getId(), entity);
+            }
+            for (Map.Entry<String, Integer> entry : retryAvailableSpots.entrySet()) {
+                if (!pendingAreaUpserts.containsKey(entry.getKey())) {
+                    pendingAvailableSpots.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+            for (Map.Entry<String, Boolean> entry : retryFavorites.entrySet()) {
+                if (!pendingAreaUpserts.containsKey(entry.getKey())) {
+                    pendingFavorites.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+            for (ParkingSpotEntity entity : retrySpotUpserts.values()) {
+                pendingSpotUpserts.putIfAbsent(entity.getId(), entity);
+            }
+            for (Map.Entry<String, Boolean> entry : retrySpotAvailability.entrySet()) {
+                if (!pendingSpotUpserts.containsKey(entry.getKey())) {
+                    pendingSpotAvailability.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+            scheduleFlush(RETRY_DELAY_MS);
+        }
+    }
+
+    /**
+     * Run one row's write. Returns false when it failed and should be retried.
+     */
+    private boolean writeRow(String table, String id, RowWrite write) {
+        String key = table + "/" + id;
+        try {
+            write.run();
+            failedAttempts.remove(key);
+            return true;
+        } catch (SQLiteConstraintException e) {
+            // A retry can't fix it, e.g. spots of an area that was never stored
+            failedAttempts.remove(key);
+            Log.e(TAG, "Dropping write to " + key, e);
+            return true;
+        } catch (Exception e) {
+            Integer previous = failedAttempts.get(key);
+            int attempts = previous == null ? 1 : previous + 1;
+            if (attempts >= MAX_ATTEMPTS) {
+                failedAttempts.remove(key);
+                Log.e(TAG, "Dropping write to " + key + " after " + attempts + " attempts", e);
+                return true;
+            }
+            failedAttempts.put(key, attempts);
+            Log.w(TAG, "Error writing " + key + ", retrying", e);
+            return false;
+        }
+    }
+}
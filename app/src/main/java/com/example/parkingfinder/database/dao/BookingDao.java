@@ -7,6 +7,7 @@ import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
+import androidx.room.Upsert;
 
 import com.example.parkingfinder.database.entities.BookingEntity;
 
@@ -20,6 +21,13 @@ public interface BookingDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertAll(List<BookingEntity> bookings);
 
+    // Insert or update in place, unlike REPLACE which deletes and re-inserts the row
+    @Upsert
+    void upsert(BookingEntity booking);
+
+    @Upsert
+    void upsertAll(List<BookingEntity> bookings);
+
     @Update
     void update(BookingEntity booking);
 
@@ -38,18 +46,27 @@ public interface BookingDao {
     @Query("SELECT * FROM bookings WHERE userId = :userId AND status = :status ORDER BY createdAt DESC")
     LiveData<List<BookingEntity>> getBookingsByUserIdAndStatus(String userId, String status);
 
-    @Query("SELECT * FROM bookings WHERE userId = :userId AND startTime >= :currentTime ORDER BY startTime ASC")
+    // Booking tabs, each served by its userId index
+    @Query("SELECT * FROM bookings WHERE userId = :userId AND startTime > :currentTime " +
+            "AND status IN ('PENDING', 'CONFIRMED') ORDER BY startTime ASC")
     LiveData<List<BookingEntity>> getUpcomingBookings(String userId, long currentTime);
 
-    @Query("SELECT * FROM bookings WHERE userId = :userId AND startTime <= :currentTime AND endTime >= :currentTime")
+    @Query("SELECT * FROM bookings WHERE userId = :userId " +
+            "AND ((startTime <= :currentTime AND endTime >= :currentTime) OR status = 'ACTIVE') " +
+            "ORDER BY endTime ASC")
     LiveData<List<BookingEntity>> getCurrentBookings(String userId, long currentTime);
 
-    @Query("SELECT * FROM bookings WHERE userId = :userId AND endTime < :currentTime ORDER BY endTime DESC")
-    LiveData<List<BookingEntity>> getPastBookings(String userId, long currentTime);
+    @Query("SELECT * FROM bookings WHERE userId = :userId " +
+            "AND (endTime < :currentTime OR status IN ('COMPLETED', 'CANCELLED')) " +
+            "ORDER BY endTime DESC LIMIT :limit")
+    LiveData<List<BookingEntity>> getPastBookings(String userId, long currentTime, int limit);
 
     @Query("SELECT * FROM bookings WHERE isSynced = 0")
     List<BookingEntity> getUnsyncedBookings();
 
+    @Query("SELECT id FROM bookings WHERE userId = :userId AND isSynced = 0")
+    List<String> getUnsyncedBookingIds(String userId);
+
     @Query("UPDATE bookings SET isSynced = 1 WHERE id = :id")
     void markAsSynced(String id);
 
@@ -86,6 +103,10 @@ public interface BookingDao {
     @Query("SELECT * FROM bookings WHERE parkingAreaId = :parkingAreaId AND parkingSpotId = :spotId AND status IN ('PENDING', 'CONFIRMED', 'ACTIVE') AND endTime > :currentTime")
     List<BookingEntity> getActiveBookingsForParkingSpot(String parkingAreaId, String spotId, long currentTime);
 
+    // Bookings that still hold a slot in the area, for the spot schedules
+    @Query("SELECT * FROM bookings WHERE parkingAreaId = :parkingAreaId AND status IN ('PENDING', 'CONFIRMED', 'ACTIVE') AND endTime > :currentTime")
+    List<BookingEntity> getActiveBookingsForParkingArea(String parkingAreaId, long currentTime);
+
     @Query("SELECT * FROM bookings WHERE userId = :userId ORDER BY createdAt DESC LIMIT :limit")
     LiveData<List<BookingEntity>> getRecentBookings(String userId, int limit);
 
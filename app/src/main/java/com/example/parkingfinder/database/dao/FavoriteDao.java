@@ -0,0 +1,35 @@
+package com.example.parkingfinder.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Upsert;
+
+import com.example.parkingfinder.database.entities.FavoriteEntity;
+
+import java.util.List;
+
+@Dao
+public interface FavoriteDao {
+    @Upsert
+    void upsert(FavoriteEntity favorite);
+
+    @Upsert
+    void upsertAll(List<FavoriteEntity> favorites);
+
+    @Query("SELECT * FROM favorites WHERE userId = :userId")
+    List<FavoriteEntity> getForUserSync(String userId);
+
+    @Query("SELECT * FROM favorites WHERE userId = :userId AND isSynced = 0")
+    List<FavoriteEntity> getUnsyncedSync(String userId);
+
+    // Rows toggled again while the sync was running keep their unsynced state
+    @Query("UPDATE favorites SET isSynced = 1 WHERE userId = :userId " +
+            "AND parkingAreaId IN (:parkingAreaIds) AND isFavorite = :isFavorite")
+    void markSynced(String userId, List<String> parkingAreaIds, boolean isFavorite);
+
+    @Query("DELETE FROM favorites WHERE userId = :userId AND isSynced = 1 AND isFavorite = 0")
+    void deleteSyncedRemovals(String userId);
+
+    @Query("DELETE FROM favorites WHERE userId = :userId AND isSynced = 1")
+    void deleteSynced(String userId);
+}
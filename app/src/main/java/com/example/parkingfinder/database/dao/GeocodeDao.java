@@ -0,0 +1,19 @@
+package com.example.parkingfinder.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Upsert;
+
+import com.example.parkingfinder.database.entities.GeocodeEntity;
+
+@Dao
+public interface GeocodeDao {
+    @Upsert
+    void upsert(GeocodeEntity geocode);
+
+    @Query("SELECT * FROM geocode_cache WHERE cacheKey = :cacheKey AND cachedAt >= :minCachedAt")
+    GeocodeEntity getFreshSync(String cacheKey, long minCachedAt);
+
+    @Query("DELETE FROM geocode_cache WHERE cachedAt < :cutoff")
+    void deleteOlderThan(long cutoff);
+}
@@ -0,0 +1,21 @@
+package com.example.parkingfinder.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Upsert;
+
+import com.example.parkingfinder.database.entities.OccupancyTimelineEntity;
+
+import java.util.List;
+
+@Dao
+public interface OccupancyTimelineDao {
+    @Upsert
+    void upsertAll(List<OccupancyTimelineEntity> timelines);
+
+    @Query("SELECT * FROM occupancy_timelines WHERE parkingAreaId = :parkingAreaId")
+    OccupancyTimelineEntity getTimelineSync(String parkingAreaId);
+
+    @Query("DELETE FROM occupancy_timelines WHERE lastUpdated < :cutoff")
+    void deleteOlderThan(long cutoff);
+}
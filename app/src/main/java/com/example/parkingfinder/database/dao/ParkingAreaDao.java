@@ -7,6 +7,7 @@ import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
+import androidx.room.Upsert;
 
 import com.example.parkingfinder.database.entities.ParkingAreaEntity;
 
@@ -20,6 +21,13 @@ public interface ParkingAreaDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertAll(List<ParkingAreaEntity> parkingAreas);
 
+    // Insert or update in place, unlike REPLACE which deletes and re-inserts the row
+    @Upsert
+    void upsert(ParkingAreaEntity parkingArea);
+
+    @Upsert
+    void upsertAll(List<ParkingAreaEntity> parkingAreas);
+
     @Update
     void update(ParkingAreaEntity parkingArea);
 
@@ -35,6 +43,10 @@ public interface ParkingAreaDao {
     @Query("SELECT * FROM parking_areas")
     LiveData<List<ParkingAreaEntity>> getAllParkingAreas();
 
+    // Which of the ids have a row, for writing child rows
+    @Query("SELECT id FROM parking_areas WHERE id IN (:ids)")
+    List<String> getStoredIds(List<String> ids);
+
     @Query("SELECT * FROM parking_areas WHERE isFavorite = 1")
     LiveData<List<ParkingAreaEntity>> getFavoriteParkingAreas();
 
@@ -100,9 +112,9 @@ public interface ParkingAreaDao {
     @Query("DELETE FROM parking_areas WHERE id = :id")
     void deleteById(String id);
 
-    // Added missing @Query annotation to the method
-    @Query("SELECT * FROM parking_areas WHERE " +
-            "((latitude - :latitude) * (latitude - :latitude) + " +
-            "(longitude - :longitude) * (longitude - :longitude)) <= :radiusSquared")
-    List<ParkingAreaEntity> getNearbyParkingAreasSync(double latitude, double longitude, double radiusSquared);
+    // Candidates for a radius search, the caller filters them by distance
+    @Query("SELECT * FROM parking_areas WHERE latitude BETWEEN :minLatitude AND :maxLatitude " +
+            "AND longitude BETWEEN :minLongitude AND :maxLongitude")
+    List<ParkingAreaEntity> getParkingAreasInBoundsSync(double minLatitude, double maxLatitude,
+                                                        double minLongitude, double maxLongitude);
 }
\ No newline at end of file
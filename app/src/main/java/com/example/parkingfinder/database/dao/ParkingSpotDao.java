@@ -7,6 +7,7 @@ import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
+import androidx.room.Upsert;
 
 import com.example.parkingfinder.database.entities.ParkingSpotEntity;
 
@@ -20,6 +21,13 @@ public interface ParkingSpotDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertAll(List<ParkingSpotEntity> parkingSpots);
 
+    // Insert or update in place, unlike REPLACE which deletes and re-inserts the row
+    @Upsert
+    void upsert(ParkingSpotEntity parkingSpot);
+
+    @Upsert
+    void upsertAll(List<ParkingSpotEntity> parkingSpots);
+
     @Update
     void update(ParkingSpotEntity parkingSpot);
 
@@ -35,6 +43,10 @@ public interface ParkingSpotDao {
     @Query("SELECT * FROM parking_spots WHERE parkingAreaId = :parkingAreaId")
     LiveData<List<ParkingSpotEntity>> getParkingSpotsByParkingAreaId(String parkingAreaId);
 
+    // Cached layout in bitset order
+    @Query("SELECT * FROM parking_spots WHERE parkingAreaId = :parkingAreaId ORDER BY ordinal")
+    List<ParkingSpotEntity> getLayoutSync(String parkingAreaId);
+
     @Query("SELECT * FROM parking_spots WHERE parkingAreaId = :parkingAreaId AND available = 1")
     LiveData<List<ParkingSpotEntity>> getAvailableParkingSpotsByParkingAreaId(String parkingAreaId);
 
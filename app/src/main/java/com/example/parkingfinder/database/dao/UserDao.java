@@ -7,6 +7,7 @@ import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
+import androidx.room.Upsert;
 
 import com.example.parkingfinder.database.entities.UserEntity;
 
@@ -15,6 +16,10 @@ public interface UserDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insert(UserEntity user);
 
+    // Insert or update in place. REPLACE would delete the row first and cascade to bookings.
+    @Upsert
+    void upsert(UserEntity user);
+
     @Update
     void update(UserEntity user);
 
@@ -16,7 +16,18 @@ import androidx.room.PrimaryKey;
                         onDelete = ForeignKey.CASCADE
                 )
         },
-        indices = {@Index("userId")}
+        indices = {
+                // Booking tabs and recent history: userId equality, then range/sort column
+                @Index(value = {"userId", "createdAt"}),
+                @Index(value = {"userId", "startTime"}),
+                @Index(value = {"userId", "endTime"}),
+                @Index(value = {"userId", "status", "createdAt"}),
+                // Expiry sweep: status = 'ACTIVE' AND endTime < now
+                @Index(value = {"status", "endTime"}),
+                // Spot conflict checks
+                @Index(value = {"parkingAreaId", "parkingSpotId", "status", "endTime"})
+                // No isSynced index: two values, and the unsynced rows are read in the background
+        }
 )
 public class BookingEntity {
     @PrimaryKey
@@ -0,0 +1,71 @@
+package com.example.parkingfinder.database.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * A user's favorite flag for one parking area. Unsynced rows are changes not
+ * yet written to the user's Firestore document, removals are kept as unsynced
+ * rows with isFavorite false until they are.
+ */
+@Entity(tableName = "favorites", primaryKeys = {"userId", "parkingAreaId"})
+public class FavoriteEntity {
+    @NonNull
+    private String userId;
+    @NonNull
+    private String parkingAreaId;
+    private boolean isFavorite;
+    private boolean isSynced;
+    private long updatedAt;
+
+    public FavoriteEntity(@NonNull String userId, @NonNull String parkingAreaId, boolean isFavorite,
+                          boolean isSynced, long updatedAt) {
+        this.userId = userId;
+        this.parkingAreaId = parkingAreaId;
+        this.isFavorite = isFavorite;
+        this.isSynced = isSynced;
+        this.updatedAt = updatedAt;
+    }
+
+    @NonNull
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(@NonNull String userId) {
+        this.userId = userId;
+    }
+
+    @NonNull
+    public String getParkingAreaId() {
+        return parkingAreaId;
+    }
+
+    public void setParkingAreaId(@NonNull String parkingAreaId) {
+        this.parkingAreaId = parkingAreaId;
+    }
+
+    public boolean isFavorite() {
+        return isFavorite;
+    }
+
+    public void setFavorite(boolean favorite) {
+        isFavorite = favorite;
+    }
+
+    public boolean isSynced() {
+        return isSynced;
+    }
+
+    public void setSynced(boolean synced) {
+        isSynced = synced;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.parkingfinder.database.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Cached geocoder result. The key is a rounded coordinate for reverse
+ * lookups or a normalized address string for forward lookups.
+ */
+@Entity(tableName = "geocode_cache")
+public class GeocodeEntity {
+    @PrimaryKey
+    @NonNull
+    private String cacheKey;
+    private double latitude;
+    private double longitude;
+    private String addressLine;
+    private String subThoroughfare;
+    private String thoroughfare;
+    private String locality;
+    private String adminArea;
+    private String postalCode;
+    private String countryName;
+    private String countryCode;
+    private long cachedAt;
+
+    public GeocodeEntity(@NonNull String cacheKey, double latitude, double longitude, String addressLine,
+                         String subThoroughfare, String thoroughfare, String locality, String adminArea,
+                         String postalCode, String countryName, String countryCode, long cachedAt) {
+        this.cacheKey = cacheKey;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.addressLine = addressLine;
+        this.subThoroughfare = subThoroughfare;
+        this.thoroughfare = thoroughfare;
+        this.locality = locality;
+        this.adminArea = adminArea;
+        this.postalCode = postalCode;
+        this.countryName = countryName;
+        this.countryCode = countryCode;
+        this.cachedAt = cachedAt;
+    }
+
+    @NonNull
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public void setCacheKey(@NonNull String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    public String getAddressLine() {
+        return addressLine;
+    }
+
+    public void setAddressLine(String addressLine) {
+        this.addressLine = addressLine;
+    }
+
+    public String getSubThoroughfare() {
+        return subThoroughfare;
+    }
+
+    public void setSubThoroughfare(String subThoroughfare) {
+        this.subThoroughfare = subThoroughfare;
+    }
+
+    public String getThoroughfare() {
+        return thoroughfare;
+    }
+
+    public void setThoroughfare(String thoroughfare) {
+        this.thoroughfare = thoroughfare;
+    }
+
+    public String getLocality() {
+        return locality;
+    }
+
+    public void setLocality(String locality) {
+        this.locality = locality;
+    }
+
+    public String getAdminArea() {
+        return adminArea;
+    }
+
+    public void setAdminArea(String adminArea) {
+        this.adminArea = adminArea;
+    }
+
+    public String getPostalCode() {
+        return postalCode;
+    }
+
+    public void setPostalCode(String postalCode) {
+        this.postalCode = postalCode;
+    }
+
+    public String getCountryName() {
+        return countryName;
+    }
+
+    public void setCountryName(String countryName) {
+        this.countryName = countryName;
+    }
+
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    public void setCountryCode(String countryCode) {
+        this.countryCode = countryCode;
+    }
+
+    public long getCachedAt() {
+        return cachedAt;
+    }
+
+    public void setCachedAt(long cachedAt) {
+        this.cachedAt = cachedAt;
+    }
+}
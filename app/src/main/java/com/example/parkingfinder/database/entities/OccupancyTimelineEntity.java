@@ -0,0 +1,80 @@
+package com.example.parkingfinder.database.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Persisted OccupancyTimeline of a parking area. The ring arrays are stored
+ * as BLOBs, about 4KB per area.
+ */
+@Entity(tableName = "occupancy_timelines")
+public class OccupancyTimelineEntity {
+    @PrimaryKey
+    @NonNull
+    private String parkingAreaId;
+    private long latestBucket;
+    private byte[] occupancySums;
+    private byte[] sampleCounts;
+    private int totalSpots;
+    private long lastUpdated;
+
+    public OccupancyTimelineEntity(@NonNull String parkingAreaId, long latestBucket,
+                                   byte[] occupancySums, byte[] sampleCounts, int totalSpots) {
+        this.parkingAreaId = parkingAreaId;
+        this.latestBucket = latestBucket;
+        this.occupancySums = occupancySums;
+        this.sampleCounts = sampleCounts;
+        this.totalSpots = totalSpots;
+        this.lastUpdated = System.currentTimeMillis();
+    }
+
+    @NonNull
+    public String getParkingAreaId() {
+        return parkingAreaId;
+    }
+
+    public void setParkingAreaId(@NonNull String parkingAreaId) {
+        this.parkingAreaId = parkingAreaId;
+    }
+
+    public long getLatestBucket() {
+        return latestBucket;
+    }
+
+    public void setLatestBucket(long latestBucket) {
+        this.latestBucket = latestBucket;
+    }
+
+    public byte[] getOccupancySums() {
+        return occupancySums;
+    }
+
+    public void setOccupancySums(byte[] occupancySums) {
+        this.occupancySums = occupancySums;
+    }
+
+    public byte[] getSampleCounts() {
+        return sampleCounts;
+    }
+
+    public void setSampleCounts(byte[] sampleCounts) {
+        this.sampleCounts = sampleCounts;
+    }
+
+    public int getTotalSpots() {
+        return totalSpots;
+    }
+
+    public void setTotalSpots(int totalSpots) {
+        this.totalSpots = totalSpots;
+    }
+
+    public long getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(long lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.parkingfinder.database.entities;
 
 import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
 import androidx.room.Index;
@@ -35,6 +36,9 @@ public class ParkingSpotEntity {
     private int positionY;
     private String type;
     private long lastUpdated;
+    // Index into the area's availability bitset, the rest of the row is the static layout
+    @ColumnInfo(defaultValue = "-1")
+    private int ordinal = -1;
 
     public ParkingSpotEntity(@NonNull String id, @NonNull String parkingAreaId, String spotNumber,
                              int floor, String section, boolean available, boolean isReserved,
@@ -160,4 +164,12 @@ public class ParkingSpotEntity {
     public void setLastUpdated(long lastUpdated) {
         this.lastUpdated = lastUpdated;
     }
-}
\ No newline at end of file
+
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    public void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+}
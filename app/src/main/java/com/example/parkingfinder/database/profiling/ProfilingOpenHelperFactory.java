@@ -0,0 +1,462 @@
+package com.example.parkingfinder.database.profiling;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.CancellationSignal;
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * SupportSQLiteOpenHelper.Factory that wraps another factory and times every
+ * statement going through the database it opens. Query timing runs until the
+ * cursor is closed, since SQLite only steps through the rows as Room reads them.
+ */
+public class ProfilingOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
+
+    private final SupportSQLiteOpenHelper.Factory delegate;
+    private final QueryProfiler profiler;
+
+    public ProfilingOpenHelperFactory(SupportSQLiteOpenHelper.Factory delegate, QueryProfiler profiler) {
+        this.delegate = delegate;
+        this.profiler = profiler;
+    }
+
+    @NonNull
+    @Override
+    public SupportSQLiteOpenHelper create(@NonNull SupportSQLiteOpenHelper.Configuration configuration) {
+        return new ProfilingOpenHelper(delegate.create(configuration), profiler);
+    }
+
+    private static class ProfilingOpenHelper implements SupportSQLiteOpenHelper {
+        private final SupportSQLiteOpenHelper delegate;
+        private final QueryProfiler profiler;
+        private volatile ProfilingDatabase database;
+
+        ProfilingOpenHelper(SupportSQLiteOpenHelper delegate, QueryProfiler profiler) {
+            this.delegate = delegate;
+            this.profiler = profiler;
+        }
+
+        @Nullable
+        @Override
+        public String getDatabaseName() {
+            return delegate.getDatabaseName();
+        }
+
+        @Override
+        public void setWriteAheadLoggingEnabled(boolean enabled) {
+            delegate.setWriteAheadLoggingEnabled(enabled);
+        }
+
+        @NonNull
+        @Override
+        public SupportSQLiteDatabase getWritableDatabase() {
+            return wrap(delegate.getWritableDatabase());
+        }
+
+        @NonNull
+        @Override
+        public SupportSQLiteDatabase getReadableDatabase() {
+            return wrap(delegate.getReadableDatabase());
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+
+        private SupportSQLiteDatabase wrap(SupportSQLiteDatabase db) {
+            ProfilingDatabase current = database;
+            if (current == null || current.delegate != db) {
+                current = new ProfilingDatabase(db, profiler);
+                database = current;
+            }
+            return current;
+        }
+    }
+
+    private static class ProfilingDatabase implements SupportSQLiteDatabase {
+        final SupportSQLiteDatabase delegate;
+        private final QueryProfiler profiler;
+
+        ProfilingDatabase(SupportSQLiteDatabase delegate, QueryProfiler profiler) {
+            this.delegate = delegate;
+            this.profiler = profiler;
+        }
+
+        // Profiled operations
+
+        @NonNull
+        @Override
+        public Cursor query(@NonNull String query) {
+            return query(new SimpleSQLiteQuery(query));
+        }
+
+        @NonNull
+        @Override
+        public Cursor query(@NonNull String query, @NonNull Object[] bindArgs) {
+            return query(new SimpleSQLiteQuery(query, bindArgs));
+        }
+
+        @NonNull
+        @Override
+        public Cursor query(@NonNull SupportSQLiteQuery query) {
+            long start = System.nanoTime();
+            Thread thread = Thread.currentThread();
+            Cursor cursor = delegate.query(query);
+            profiler.captureQueryPlan(delegate, query);
+            return new ProfilingCursor(cursor, query.getSql(), start, thread, profiler);
+        }
+
+        @NonNull
+        @Override
+        public Cursor query(@NonNull SupportSQLiteQuery query, @Nullable CancellationSignal cancellationSignal) {
+            long start = System.nanoTime();
+            Thread thread = Thread.currentThread();
+            Cursor cursor = delegate.query(query, cancellationSignal);
+            profiler.captureQueryPlan(delegate, query);
+            return new ProfilingCursor(cursor, query.getSql(), start, thread, profiler);
+        }
+
+        @NonNull
+        @Override
+        public SupportSQLiteStatement compileStatement(@NonNull String sql) {
+            return new ProfilingStatement(delegate.compileStatement(sql), sql, profiler);
+        }
+
+        @Override
+        public void execSQL(@NonNull String sql) throws SQLException {
+            long start = System.nanoTime();
+            delegate.execSQL(sql);
+            profiler.record(sql, System.nanoTime() - start, -1, Thread.currentThread());
+        }
+
+        @Override
+        public void execSQL(@NonNull String sql, @NonNull Object[] bindArgs) throws SQLException {
+            long start = System.nanoTime();
+            delegate.execSQL(sql, bindArgs);
+            profiler.record(sql, System.nanoTime() - start, -1, Thread.currentThread());
+        }
+
+        @Override
+        public long insert(@NonNull String table, int conflictAlgorithm, @NonNull ContentValues values)
+                throws SQLException {
+            long start = System.nanoTime();
+            long rowId = delegate.insert(table, conflictAlgorithm, values);
+            profiler.record("INSERT INTO " + table, System.nanoTime() - start, rowId == -1 ? 0 : 1,
+                    Thread.currentThread());
+            return rowId;
+        }
+
+        @Override
+        public int delete(@NonNull String table, @Nullable String whereClause, @Nullable Object[] whereArgs) {
+            long start = System.nanoTime();
+            int rows = delegate.delete(table, whereClause, whereArgs);
+            profiler.record("DELETE FROM " + table + (whereClause != null ? " WHERE " + whereClause : ""),
+                    System.nanoTime() - start, rows, Thread.currentThread());
+            return rows;
+        }
+
+        @Override
+        public int update(@NonNull String table, int conflictAlgorithm, @NonNull ContentValues values,
+                          @Nullable String whereClause, @Nullable Object[] whereArgs) {
+            long start = System.nanoTime();
+            int rows = delegate.update(table, conflictAlgorithm, values, whereClause, whereArgs);
+            profiler.record("UPDATE " + table + (whereClause != null ? " WHERE " + whereClause : ""),
+                    System.nanoTime() - start, rows, Thread.currentThread());
+            return rows;
+        }
+
+        // Plain delegation
+
+        @Override
+        public void beginTransaction() {
+            delegate.beginTransaction();
+        }
+
+        @Override
+        public void beginTransactionNonExclusive() {
+            delegate.beginTransactionNonExclusive();
+        }
+
+        @Override
+        public void beginTransactionWithListener(@NonNull SQLiteTransactionListener transactionListener) {
+            delegate.beginTransactionWithListener(transactionListener);
+        }
+
+        @Override
+        public void beginTransactionWithListenerNonExclusive(@NonNull SQLiteTransactionListener transactionListener) {
+            delegate.beginTransactionWithListenerNonExclusive(transactionListener);
+        }
+
+        @Override
+        public void endTransaction() {
+            delegate.endTransaction();
+        }
+
+        @Override
+        public void setTransactionSuccessful() {
+            delegate.setTransactionSuccessful();
+        }
+
+        @Override
+        public boolean inTransaction() {
+            return delegate.inTransaction();
+        }
+
+        @Override
+        public boolean isDbLockedByCurrentThread() {
+            return delegate.isDbLockedByCurrentThread();
+        }
+
+        @Override
+        public boolean yieldIfContendedSafely() {
+            return delegate.yieldIfContendedSafely();
+        }
+
+        @Override
+        public boolean yieldIfContendedSafely(long sleepAfterYieldDelayMillis) {
+            return delegate.yieldIfContendedSafely(sleepAfterYieldDelayMillis);
+        }
+
+        @Override
+        public boolean isExecPerConnectionSQLSupported() {
+            return delegate.isExecPerConnectionSQLSupported();
+        }
+
+        @Override
+        public void execPerConnectionSQL(@NonNull String sql, @Nullable Object[] bindArgs) {
+            delegate.execPerConnectionSQL(sql, bindArgs);
+        }
+
+        @Override
+        public int getVersion() {
+            return delegate.getVersion();
+        }
+
+        @Override
+        public void setVersion(int version) {
+            delegate.setVersion(version);
+        }
+
+        @Override
+        public long getMaximumSize() {
+            return delegate.getMaximumSize();
+        }
+
+        @Override
+        public long setMaximumSize(long numBytes) {
+            return delegate.setMaximumSize(numBytes);
+        }
+
+        @Override
+        public long getPageSize() {
+            return delegate.getPageSize();
+        }
+
+        @Override
+        public void setPageSize(long numBytes) {
+            delegate.setPageSize(numBytes);
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return delegate.isReadOnly();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public boolean needUpgrade(int newVersion) {
+            return delegate.needUpgrade(newVersion);
+        }
+
+        @Nullable
+        @Override
+        public String getPath() {
+            return delegate.getPath();
+        }
+
+        @Override
+        public void setLocale(@NonNull Locale locale) {
+            delegate.setLocale(locale);
+        }
+
+        @Override
+        public void setMaxSqlCacheSize(int cacheSize) {
+            delegate.setMaxSqlCacheSize(cacheSize);
+        }
+
+        @Override
+        public void setForeignKeyConstraintsEnabled(boolean enabled) {
+            delegate.setForeignKeyConstraintsEnabled(enabled);
+        }
+
+        @Override
+        public boolean enableWriteAheadLogging() {
+            return delegate.enableWriteAheadLogging();
+        }
+
+        @Override
+        public void disableWriteAheadLogging() {
+            delegate.disableWriteAheadLogging();
+        }
+
+        @Override
+        public boolean isWriteAheadLoggingEnabled() {
+            return delegate.isWriteAheadLoggingEnabled();
+        }
+
+        @Nullable
+        @Override
+        public List<Pair<String, String>> getAttachedDbs() {
+            return delegate.getAttachedDbs();
+        }
+
+        @Override
+        public boolean isDatabaseIntegrityOk() {
+            return delegate.isDatabaseIntegrityOk();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    /**
+     * Times compiled statements, which is how Room runs inserts, updates and deletes
+     */
+    private static class ProfilingStatement implements SupportSQLiteStatement {
+        private final SupportSQLiteStatement delegate;
+        private final String sql;
+        private final QueryProfiler profiler;
+
+        ProfilingStatement(SupportSQLiteStatement delegate, String sql, QueryProfiler profiler) {
+            this.delegate = delegate;
+            this.sql = sql;
+            this.profiler = profiler;
+        }
+
+        @Override
+        public void execute() {
+            long start = System.nanoTime();
+            delegate.execute();
+            profiler.record(sql, System.nanoTime() - start, -1, Thread.currentThread());
+        }
+
+        @Override
+        public int executeUpdateDelete() {
+            long start = System.nanoTime();
+            int rows = delegate.executeUpdateDelete();
+            profiler.record(sql, System.nanoTime() - start, rows, Thread.currentThread());
+            return rows;
+        }
+
+        @Override
+        public long executeInsert() {
+            long start = System.nanoTime();
+            long rowId = delegate.executeInsert();
+            profiler.record(sql, System.nanoTime() - start, rowId == -1 ? 0 : 1, Thread.currentThread());
+            return rowId;
+        }
+
+        @Override
+        public long simpleQueryForLong() {
+            long start = System.nanoTime();
+            long result = delegate.simpleQueryForLong();
+            profiler.record(sql, System.nanoTime() - start, 1, Thread.currentThread());
+            return result;
+        }
+
+        @Nullable
+        @Override
+        public String simpleQueryForString() {
+            long start = System.nanoTime();
+            String result = delegate.simpleQueryForString();
+            profiler.record(sql, System.nanoTime() - start, 1, Thread.currentThread());
+            return result;
+        }
+
+        @Override
+        public void bindNull(int index) {
+            delegate.bindNull(index);
+        }
+
+        @Override
+        public void bindLong(int index, long value) {
+            delegate.bindLong(index, value);
+        }
+
+        @Override
+        public void bindDouble(int index, double value) {
+            delegate.bindDouble(index, value);
+        }
+
+        @Override
+        public void bindString(int index, @NonNull String value) {
+            delegate.bindString(index, value);
+        }
+
+        @Override
+        public void bindBlob(int index, @NonNull byte[] value) {
+            delegate.bindBlob(index, value);
+        }
+
+        @Override
+        public void clearBindings() {
+            delegate.clearBindings();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    /**
+     * Records the query when the cursor is closed, once all rows have been read
+     */
+    private static class ProfilingCursor extends CursorWrapper {
+        private final String sql;
+        private final long startNanos;
+        private final Thread thread;
+        private final QueryProfiler profiler;
+        private boolean recorded = false;
+
+        ProfilingCursor(Cursor cursor, String sql, long startNanos, Thread thread, QueryProfiler profiler) {
+            super(cursor);
+            this.sql = sql;
+            this.startNanos = startNanos;
+            this.thread = thread;
+            this.profiler = profiler;
+        }
+
+        @Override
+        public void close() {
+            if (!recorded) {
+                recorded = true;
+                int rows = isClosed() ? -1 : getCount();
+                profiler.record(sql, System.nanoTime() - startNanos, rows, thread);
+            }
+            super.close();
+        }
+    }
+}
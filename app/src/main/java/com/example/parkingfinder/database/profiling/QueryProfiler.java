@@ -0,0 +1,305 @@
+package com.example.parkingfinder.database.profiling;
+
+import android.database.Cursor;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteProgram;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects per-statement timing for the Room database.
+ * Statements slower than the threshold are kept in a fixed size ring buffer,
+ * statements that run on the main thread are flagged, and SELECTs get their
+ * EXPLAIN QUERY PLAN captured once so full table scans show up in the log.
+ */
+public class QueryProfiler implements RoomDatabase.QueryCallback {
+
+    private static final String TAG = "QueryProfiler";
+
+    public static final long DEFAULT_SLOW_QUERY_THRESHOLD_MS = 16; // One frame
+    public static final int DEFAULT_RING_BUFFER_SIZE = 64;
+
+    private final long slowQueryThresholdNanos;
+    private final QueryRecord[] slowQueries;
+    private int slowQueryHead = 0;
+    private int slowQueryCount = 0;
+
+    // Number of times Room issued each statement (from the QueryCallback)
+    private final Map<String, Integer> statementCounts = new HashMap<>();
+
+    // Captured query plans, keyed by SQL text
+    private final Map<String, List<String>> queryPlans = new HashMap<>();
+
+    private long totalStatements = 0;
+    private long mainThreadStatements = 0;
+
+    /**
+     * Single profiled statement
+     */
+    public static class QueryRecord {
+        private final String sql;
+        private final long durationNanos;
+        private final int rowCount;
+        private final String threadName;
+        private final boolean mainThread;
+        private final long timestamp;
+
+        QueryRecord(String sql, long durationNanos, int rowCount, String threadName,
+                    boolean mainThread, long timestamp) {
+            this.sql = sql;
+            this.durationNanos = durationNanos;
+            this.rowCount = rowCount;
+            this.threadName = threadName;
+            this.mainThread = mainThread;
+            this.timestamp = timestamp;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public double getDurationMillis() {
+            return durationNanos / 1_000_000.0;
+        }
+
+        /**
+         * Rows returned for queries, rows affected for updates and deletes, -1 if unknown
+         */
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public boolean isMainThread() {
+            return mainThread;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%.2f ms, %d rows, thread=%s%s: %s",
+                    getDurationMillis(), rowCount, threadName, mainThread ? " (MAIN)" : "", sql);
+        }
+    }
+
+    public QueryProfiler() {
+        this(DEFAULT_SLOW_QUERY_THRESHOLD_MS, DEFAULT_RING_BUFFER_SIZE);
+    }
+
+    public QueryProfiler(long slowQueryThresholdMs, int ringBufferSize) {
+        this.slowQueryThresholdNanos = slowQueryThresholdMs * 1_000_000L;
+        this.slowQueries = new QueryRecord[ringBufferSize];
+    }
+
+    /**
+     * Room hands every statement it issues to this callback, on the executor
+     * given to setQueryCallback. Used only for per-statement frequency counts.
+     */
+    @Override
+    public void onQuery(@NonNull String sqlQuery, @NonNull List<Object> bindArgs) {
+        synchronized (statementCounts) {
+            Integer count = statementCounts.get(sqlQuery);
+            statementCounts.put(sqlQuery, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * Record a finished statement. Called by the profiling database wrapper.
+     */
+    void record(String sql, long durationNanos, int rowCount, Thread thread) {
+        boolean onMainThread = thread == Looper.getMainLooper().getThread();
+        QueryRecord record = new QueryRecord(sql, durationNanos, rowCount, thread.getName(),
+                onMainThread, System.currentTimeMillis());
+
+        synchronized (this) {
+            totalStatements++;
+            if (onMainThread) {
+                mainThreadStatements++;
+            }
+            if (durationNanos >= slowQueryThresholdNanos) {
+                slowQueries[slowQueryHead] = record;
+                slowQueryHead = (slowQueryHead + 1) % slowQueries.length;
+                if (slowQueryCount < slowQueries.length) {
+                    slowQueryCount++;
+                }
+            }
+        }
+
+        if (onMainThread) {
+            Log.w(TAG, "Query on main thread: " + record);
+        } else if (durationNanos >= slowQueryThresholdNanos) {
+            Log.w(TAG, "Slow query: " + record);
+        }
+    }
+
+    /**
+     * Capture the query plan for a SELECT the first time it is seen.
+     * The database passed in must be the unwrapped one so the EXPLAIN
+     * statement itself is not profiled.
+     */
+    void captureQueryPlan(SupportSQLiteDatabase db, SupportSQLiteQuery query) {
+        String sql = query.getSql();
+        if (!isSelect(sql)) return;
+
+        synchronized (queryPlans) {
+            if (queryPlans.containsKey(sql)) return;
+            // Reserve the slot so concurrent callers don't explain the same query twice
+            queryPlans.put(sql, Collections.emptyList());
+        }
+
+        List<String> plan = new ArrayList<>();
+        try (Cursor cursor = db.query(new ExplainQuery(query))) {
+            int detailIndex = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                if (detailIndex >= 0) {
+                    plan.add(cursor.getString(detailIndex));
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error capturing query plan", e);
+        }
+
+        synchronized (queryPlans) {
+            queryPlans.put(sql, plan);
+        }
+
+        if (isFullScan(plan)) {
+            Log.w(TAG, "Full table scan: " + sql + " -> " + plan);
+        }
+    }
+
+    /**
+     * Slow queries, oldest first
+     */
+    public synchronized List<QueryRecord> getSlowQueries() {
+        List<QueryRecord> result = new ArrayList<>(slowQueryCount);
+        int start = (slowQueryHead - slowQueryCount + slowQueries.length) % slowQueries.length;
+        for (int i = 0; i < slowQueryCount; i++) {
+            result.add(slowQueries[(start + i) % slowQueries.length]);
+        }
+        return result;
+    }
+
+    /**
+     * Queries whose plan scans a table without using an index
+     */
+    public Map<String, List<String>> getFullScanQueries() {
+        Map<String, List<String>> result = new HashMap<>();
+        synchronized (queryPlans) {
+            for (Map.Entry<String, List<String>> entry : queryPlans.entrySet()) {
+                if (isFullScan(entry.getValue())) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    public List<String> getQueryPlan(String sql) {
+        synchronized (queryPlans) {
+            return queryPlans.get(sql);
+        }
+    }
+
+    public synchronized long getTotalStatements() {
+        return totalStatements;
+    }
+
+    public synchronized long getMainThreadStatements() {
+        return mainThreadStatements;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < slowQueries.length; i++) {
+            slowQueries[i] = null;
+        }
+        slowQueryHead = 0;
+        slowQueryCount = 0;
+        totalStatements = 0;
+        mainThreadStatements = 0;
+        synchronized (statementCounts) {
+            statementCounts.clear();
+        }
+    }
+
+    /**
+     * Write a summary of everything collected so far to the log
+     */
+    public void dump() {
+        Log.i(TAG, "Statements: " + getTotalStatements() + ", on main thread: " + getMainThreadStatements());
+        for (QueryRecord record : getSlowQueries()) {
+            Log.i(TAG, "Slow: " + record);
+        }
+        for (Map.Entry<String, List<String>> entry : getFullScanQueries().entrySet()) {
+            Log.i(TAG, "Full scan: " + entry.getKey() + " -> " + entry.getValue());
+        }
+        synchronized (statementCounts) {
+            for (Map.Entry<String, Integer> entry : statementCounts.entrySet()) {
+                Log.i(TAG, entry.getValue() + "x " + entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * A plan line such as "SCAN bookings" (or "SCAN TABLE bookings" on older
+     * SQLite) without a "USING ... INDEX" suffix means every row is visited.
+     */
+    public static boolean isFullScan(List<String> plan) {
+        if (plan == null) return false;
+        for (String line : plan) {
+            if (line != null && line.startsWith("SCAN") && !line.contains("INDEX")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSelect(String sql) {
+        return sql != null && sql.trim().regionMatches(true, 0, "SELECT", 0, 6);
+    }
+
+    /**
+     * Wraps a query so it runs as EXPLAIN QUERY PLAN with the same bind arguments
+     */
+    private static class ExplainQuery implements SupportSQLiteQuery {
+        private final SupportSQLiteQuery query;
+
+        ExplainQuery(SupportSQLiteQuery query) {
+            this.query = query;
+        }
+
+        @NonNull
+        @Override
+        public String getSql() {
+            return "EXPLAIN QUERY PLAN " + query.getSql();
+        }
+
+        @Override
+        public void bindTo(@NonNull SupportSQLiteProgram statement) {
+            query.bindTo(statement);
+        }
+
+        @Override
+        public int getArgCount() {
+            return query.getArgCount();
+        }
+    }
+}
@@ -123,6 +123,16 @@ public class FirebaseAuthManager {
         }
     }
 
+    /**
+     * Called on the main thread with the current user, then after every login
+     * and logout
+     */
+    public void addAuthStateListener(FirebaseAuth.AuthStateListener listener) {
+        if (mAuth != null) {
+            mAuth.addAuthStateListener(listener);
+        }
+    }
+
     public FirebaseUser getCurrentUser() {
         return mAuth != null ? mAuth.getCurrentUser() : null;
     }
@@ -1,32 +1,76 @@
 package com.example.parkingfinder.firebase;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
 import androidx.annotation.NonNull;
 
+import com.example.parkingfinder.mappers.BookingMapper;
+import com.example.parkingfinder.mappers.ParkingAreaMapper;
+import com.example.parkingfinder.mappers.ParkingSpotMapper;
+import com.example.parkingfinder.mappers.UserMapper;
 import com.example.parkingfinder.models.Booking;
 import com.example.parkingfinder.models.ParkingArea;
 import com.example.parkingfinder.models.ParkingSpot;
 import com.example.parkingfinder.models.User;
+import com.example.parkingfinder.utils.Constants;
+import com.example.parkingfinder.utils.GeoMath;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
+import com.google.firebase.Timestamp;
 import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
 import com.google.firebase.firestore.GeoPoint;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.PersistentCacheSettings;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SnapshotMetadata;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
 import androidx.annotation.NonNull;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 public class FirestoreManager {
+    private static final String TAG = "FirestoreManager";
+
+    // Persistent cache budget. Parking areas and spots take a few MB, the rest
+    // leaves room for booking history. Low RAM devices get a smaller cache.
+    private static final long CACHE_SIZE_BYTES = 64L * 1024 * 1024;
+    private static final long LOW_RAM_CACHE_SIZE_BYTES = 16L * 1024 * 1024;
+
+    // A cache-then-server read stops waiting for the server after this long
+    private static final long SERVER_VERIFY_TIMEOUT_MS = 30 * 1000;
+
     private static FirestoreManager instance;
     private FirebaseFirestore db;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Snapshot listeners of cache-then-server reads still waiting for the
+    // server, with the action that gives up on them. Main thread only.
+    private final Map<ListenerRegistration, Runnable> pendingVerifications = new HashMap<>();
 
     // Collection names
     private static final String USERS_COLLECTION = "users";
@@ -34,16 +78,66 @@ public class FirestoreManager {
     private static final String PARKING_SPOTS_COLLECTION = "parking_spots";
     private static final String BOOKINGS_COLLECTION = "bookings";
 
+    private static final String FAVORITE_LOCATIONS_FIELD = "favoriteLocations";
+    // Server time of a parking area's last write, for delta reads
+    private static final String UPDATED_AT_FIELD = "updatedAt";
+
+    // Concurrent identical reads share one request
+    private final SingleFlight<DocumentSnapshot> documentReads = new SingleFlight<>("FirestoreDocuments");
+    private final SingleFlight<QuerySnapshot> queryReads = new SingleFlight<>("FirestoreQueries");
+
     public void deleteUserData(String uid, FirestoreCallback accountDeletedSuccessfully) {
 
     }
 
+    /**
+     * Add or remove one favorite with an array union/remove, without reading
+     * the user document first
+     */
     public void updateFavoriteStatus(String uid, String id, boolean isFavorite, FirestoreCallback firestoreCallback) {
+        db.collection(USERS_COLLECTION).document(uid)
+                .update(FAVORITE_LOCATIONS_FIELD,
+                        isFavorite ? FieldValue.arrayUnion(id) : FieldValue.arrayRemove(id))
+                .addOnSuccessListener(aVoid -> firestoreCallback.onSuccess())
+                .addOnFailureListener(e -> firestoreCallback.onFailure(e.getMessage()));
+    }
 
+    /**
+     * Apply a batch of favorite changes in one commit, one array union for the
+     * added ids and one array remove for the removed ones
+     */
+    public void updateFavorites(String uid, List<String> addedIds, List<String> removedIds,
+                                FirestoreCallback callback) {
+        DocumentReference userRef = db.collection(USERS_COLLECTION).document(uid);
+        WriteBatch batch = db.batch();
+        if (!addedIds.isEmpty()) {
+            batch.update(userRef, FAVORITE_LOCATIONS_FIELD, FieldValue.arrayUnion(addedIds.toArray()));
+        }
+        if (!removedIds.isEmpty()) {
+            batch.update(userRef, FAVORITE_LOCATIONS_FIELD, FieldValue.arrayRemove(removedIds.toArray()));
+        }
+        batch.commit()
+                .addOnSuccessListener(aVoid -> callback.onSuccess())
+                .addOnFailureListener(e -> callback.onFailure(e.getMessage()));
     }
 
+    /**
+     * Favorite parking area ids, read from the user document
+     */
     public void getUserFavorites(String userId, FirestoreManager.GetFavoritesCallback getFavoritesCallback) {
-
+        documentReads.run(USERS_COLLECTION + "/" + userId,
+                        () -> db.collection(USERS_COLLECTION).document(userId).get())
+                .addOnCompleteListener(task -> {
+                    if (!task.isSuccessful()) {
+                        getFavoritesCallback.onFailure(task.getException().getMessage());
+                        return;
+                    }
+                    DocumentSnapshot document = task.getResult();
+                    List<String> favoriteIds = document.exists()
+                            ? UserMapper.fromDocument(document).getFavoriteLocations()
+                            : null;
+                    getFavoritesCallback.onSuccess(favoriteIds != null ? favoriteIds : new ArrayList<>());
+                });
     }
 
     // Callback interfaces
@@ -52,19 +146,42 @@ public class FirestoreManager {
         void onFailure(String errorMessage);
     }
 
+    // The two argument onSuccess also says whether the result came from the
+    // local cache, override it to tell cached results from the server's
+
     public interface GetUserCallback {
         void onSuccess(User user);
         void onFailure(String errorMessage);
+
+        default void onSuccess(User user, boolean fromCache) {
+            onSuccess(user);
+        }
     }
 
     public interface GetParkingAreasCallback {
         void onSuccess(List<ParkingArea> parkingAreas);
         void onFailure(String errorMessage);
+
+        default void onSuccess(List<ParkingArea> parkingAreas, boolean fromCache) {
+            onSuccess(parkingAreas);
+        }
     }
 
     public interface GetParkingSpotsCallback {
         void onSuccess(List<ParkingSpot> parkingSpots);
         void onFailure(String errorMessage);
+
+        default void onSuccess(List<ParkingSpot> parkingSpots, boolean fromCache) {
+            onSuccess(parkingSpots);
+        }
+    }
+
+    /**
+     * Receives the snapshots of a policy read
+     */
+    private interface SnapshotCallback<T> {
+        void onSnapshot(T snapshot, boolean fromCache);
+        void onFailure(String errorMessage);
     }
 
     public interface GetBookingsCallback {
@@ -72,6 +189,15 @@ public class FirestoreManager {
         void onFailure(String errorMessage);
     }
 
+    /**
+     * Receives the bookings added or changed and the ones removed since the
+     * last call, the first call has every matching booking as changed
+     */
+    public interface BookingChangesCallback {
+        void onChanges(List<Booking> changed, List<Booking> removed);
+        void onFailure(String errorMessage);
+    }
+
     private FirestoreManager() {
         db = FirebaseFirestore.getInstance();
     }
@@ -83,6 +209,216 @@ public class FirestoreManager {
         return instance;
     }
 
+    /**
+     * Size the persistent cache and release pending server checks under
+     * memory pressure. Must run before anything else uses Firestore.
+     */
+    public static void configure(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = activityManager != null && activityManager.isLowRamDevice();
+
+        FirebaseFirestoreSettings settings = new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(PersistentCacheSettings.newBuilder()
+                        .setSizeBytes(lowRam ? LOW_RAM_CACHE_SIZE_BYTES : CACHE_SIZE_BYTES)
+                        .build())
+                .build();
+        try {
+            FirebaseFirestore.getInstance().setFirestoreSettings(settings);
+        } catch (IllegalStateException e) {
+            // Firestore was used before the settings could be applied
+            Log.w(TAG, "Firestore already started, keeping its cache settings", e);
+        }
+
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+                    getInstance().releasePendingVerifications();
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
+                // Not used
+            }
+
+            @Override
+            public void onLowMemory() {
+                getInstance().releasePendingVerifications();
+            }
+        });
+    }
+
+    /**
+     * Stop waiting for the server on every cache-then-server read. Their
+     * callers already have the cached result and get onFailure.
+     */
+    public void releasePendingVerifications() {
+        for (Runnable giveUp : new ArrayList<>(pendingVerifications.values())) {
+            giveUp.run();
+        }
+    }
+
+    /**
+     * Read a query with the given policy. Cache-only and server-only reads are
+     * shared between identical concurrent requests.
+     *
+     * @return removing it drops the callback and stops waiting for the server
+     */
+    private ListenerRegistration readQuery(String key, Query query, ReadPolicy policy,
+                                           SnapshotCallback<QuerySnapshot> callback) {
+        DetachableCallback<QuerySnapshot> detachable = new DetachableCallback<>(callback);
+        if (policy == ReadPolicy.CACHE_THEN_SERVER) {
+            ListenerRegistration read = readCacheThenServer(
+                    listener -> query.addSnapshotListener(MetadataChanges.INCLUDE, listener),
+                    QuerySnapshot::getMetadata, detachable);
+            return () -> {
+                detachable.remove();
+                read.remove();
+            };
+        }
+        Source source = policy == ReadPolicy.CACHE_ONLY ? Source.CACHE : Source.SERVER;
+        queryReads.run(key + "#" + policy, () -> query.get(source))
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        detachable.onSnapshot(task.getResult(), task.getResult().getMetadata().isFromCache());
+                    } else {
+                        detachable.onFailure(task.getException().getMessage());
+                    }
+                });
+        return detachable;
+    }
+
+    /**
+     * Read a document with the given policy
+     *
+     * @return removing it drops the callback and stops waiting for the server
+     */
+    private ListenerRegistration readDocument(String key, DocumentReference document, ReadPolicy policy,
+                                              SnapshotCallback<DocumentSnapshot> callback) {
+        DetachableCallback<DocumentSnapshot> detachable = new DetachableCallback<>(callback);
+        if (policy == ReadPolicy.CACHE_THEN_SERVER) {
+            ListenerRegistration read = readCacheThenServer(
+                    listener -> document.addSnapshotListener(MetadataChanges.INCLUDE, listener),
+                    DocumentSnapshot::getMetadata, detachable);
+            return () -> {
+                detachable.remove();
+                read.remove();
+            };
+        }
+        Source source = policy == ReadPolicy.CACHE_ONLY ? Source.CACHE : Source.SERVER;
+        documentReads.run(key + "#" + policy, () -> document.get(source))
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        detachable.onSnapshot(task.getResult(), task.getResult().getMetadata().isFromCache());
+                    } else {
+                        detachable.onFailure(task.getException().getMessage());
+                    }
+                });
+        return detachable;
+    }
+
+    /**
+     * Forwards to the caller's callback until removed. Reads that are still
+     * running then hold nothing of the caller, an Activity or ViewModel can
+     * go away without waiting for the server. Main thread only.
+     */
+    private static class DetachableCallback<T> implements SnapshotCallback<T>, ListenerRegistration {
+        private SnapshotCallback<T> callback;
+
+        DetachableCallback(SnapshotCallback<T> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onSnapshot(T snapshot, boolean fromCache) {
+            if (callback != null) {
+                callback.onSnapshot(snapshot, fromCache);
+            }
+        }
+
+        @Override
+        public void onFailure(String errorMessage) {
+            if (callback != null) {
+                callback.onFailure(errorMessage);
+            }
+        }
+
+        @Override
+        public void remove() {
+            callback = null;
+        }
+    }
+
+    /**
+     * Deliver the first snapshot, usually from the cache, then the first one
+     * confirmed by the server, and detach. Ends with the server snapshot or
+     * onFailure, after at most one cached snapshot.
+     *
+     * @return removing it detaches at once without calling back
+     */
+    private <T> ListenerRegistration readCacheThenServer(Function<EventListener<T>, ListenerRegistration> subscribe,
+                                                         Function<T, SnapshotMetadata> metadata,
+                                                         SnapshotCallback<T> callback) {
+        boolean[] done = {false};
+        boolean[] deliveredCached = {false};
+        ListenerRegistration[] registration = new ListenerRegistration[1];
+        Runnable[] giveUp = new Runnable[1];
+
+        Runnable detach = () -> {
+            if (done[0]) {
+                return;
+            }
+            done[0] = true;
+            registration[0].remove();
+            pendingVerifications.remove(registration[0]);
+            mainHandler.removeCallbacks(giveUp[0]);
+        };
+        giveUp[0] = () -> {
+            if (!done[0]) {
+                detach.run();
+                callback.onFailure("Timed out waiting for the server");
+            }
+        };
+
+        registration[0] = subscribe.apply((snapshot, e) -> {
+            if (done[0]) {
+                return;
+            }
+            if (e != null) {
+                detach.run();
+                callback.onFailure(e.getMessage());
+                return;
+            }
+            boolean fromCache = metadata.apply(snapshot).isFromCache();
+            if (!fromCache) {
+                detach.run();
+                callback.onSnapshot(snapshot, false);
+            } else if (!deliveredCached[0]) {
+                // Later cached snapshots add nothing until the server answers
+                deliveredCached[0] = true;
+                callback.onSnapshot(snapshot, true);
+            }
+        });
+        pendingVerifications.put(registration[0], giveUp[0]);
+        mainHandler.postDelayed(giveUp[0], SERVER_VERIFY_TIMEOUT_MS);
+        return detach::run;
+    }
+
+    /**
+     * Shared document reads, for metrics
+     */
+    public SingleFlight<DocumentSnapshot> getDocumentReads() {
+        return documentReads;
+    }
+
+    /**
+     * Shared query reads, for metrics
+     */
+    public SingleFlight<QuerySnapshot> getQueryReads() {
+        return queryReads;
+    }
+
     // User operations
     public void createUserProfile(User user, final FirestoreCallback callback) {
         db.collection(USERS_COLLECTION).document(user.getUid())
@@ -101,16 +437,41 @@ public class FirestoreManager {
                 });
     }
 
+    /**
+     * Read a user profile with the given policy
+     *
+     * @return remove it when the caller goes away, a cache-then-server read
+     * can keep waiting for the server for a while
+     */
+    public ListenerRegistration getUserProfile(String userId, ReadPolicy policy, final GetUserCallback callback) {
+        return readDocument(USERS_COLLECTION + "/" + userId, db.collection(USERS_COLLECTION).document(userId), policy,
+                new SnapshotCallback<DocumentSnapshot>() {
+                    @Override
+                    public void onSnapshot(DocumentSnapshot document, boolean fromCache) {
+                        if (document.exists()) {
+                            callback.onSuccess(UserMapper.fromDocument(document), fromCache);
+                        } else if (!fromCache) {
+                            callback.onFailure("User profile not found");
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(String errorMessage) {
+                        callback.onFailure(errorMessage);
+                    }
+                });
+    }
+
     public void getUserProfile(String userId, final GetUserCallback callback) {
-        db.collection(USERS_COLLECTION).document(userId)
-                .get()
+        documentReads.run(USERS_COLLECTION + "/" + userId,
+                        () -> db.collection(USERS_COLLECTION).document(userId).get())
                 .addOnCompleteListener(new OnCompleteListener<DocumentSnapshot>() {
                     @Override
                     public void onComplete(@NonNull Task<DocumentSnapshot> task) {
                         if (task.isSuccessful()) {
                             DocumentSnapshot document = task.getResult();
                             if (document.exists()) {
-                                User user = document.toObject(User.class);
+                                User user = UserMapper.fromDocument(document);
                                 callback.onSuccess(user);
                             } else {
                                 callback.onFailure("User profile not found");
@@ -139,51 +500,158 @@ public class FirestoreManager {
                 });
     }
 
+    /**
+     * Set only the profile image url, so a background upload doesn't
+     * overwrite profile fields edited in the meantime
+     */
+    public void updateProfileImageUrl(String userId, String imageUrl, final FirestoreCallback callback) {
+        db.collection(USERS_COLLECTION).document(userId)
+                .update("profileImageUrl", imageUrl)
+                .addOnSuccessListener(aVoid -> callback.onSuccess())
+                .addOnFailureListener(e -> callback.onFailure(e.getMessage()));
+    }
+
     // Parking Area operations
-    public void getNearbyParkingAreas(double latitude, double longitude, double radiusInKm,
-                                      final GetParkingAreasCallback callback) {
+
+    /**
+     * Read the parking areas near a location with the given policy
+     *
+     * @return remove it when the caller goes away, a cache-then-server read
+     * can keep waiting for the server for a while
+     */
+    public ListenerRegistration getNearbyParkingAreas(double latitude, double longitude, double radiusInKm,
+                                                      ReadPolicy policy, final GetParkingAreasCallback callback) {
         // In a real app, you would use Firestore's GeoPoint and geoquery capabilities
-        // For simplicity, we'll just fetch all parking areas and filter them client-side
-        db.collection(PARKING_AREAS_COLLECTION)
-                .get()
-                .addOnCompleteListener(new OnCompleteListener<QuerySnapshot>() {
+        // For simplicity, we'll just fetch all parking areas and filter them client-side.
+        // The read doesn't depend on location, so every caller shares the same key.
+        return readQuery(PARKING_AREAS_COLLECTION, db.collection(PARKING_AREAS_COLLECTION), policy,
+                new SnapshotCallback<QuerySnapshot>() {
                     @Override
-                    public void onComplete(@NonNull Task<QuerySnapshot> task) {
-                        if (task.isSuccessful()) {
-                            List<ParkingArea> nearbyParkingAreas = new ArrayList<>();
-                            for (QueryDocumentSnapshot document : task.getResult()) {
-                                ParkingArea parkingArea = document.toObject(ParkingArea.class);
-                                parkingArea.setId(document.getId());
-
-                                // Calculate distance and filter (simple implementation)
-                                // In a real app, you would use a more sophisticated approach
-                                double distance = calculateDistance(latitude, longitude,
-                                        parkingArea.getLatitude(), parkingArea.getLongitude());
-                                if (distance <= radiusInKm) {
-                                    nearbyParkingAreas.add(parkingArea);
-                                }
-                            }
-                            callback.onSuccess(nearbyParkingAreas);
-                        } else {
-                            callback.onFailure(task.getException().getMessage());
+                    public void onSnapshot(QuerySnapshot snapshot, boolean fromCache) {
+                        callback.onSuccess(filterNearby(snapshot, latitude, longitude, radiusInKm), fromCache);
+                    }
+
+                    @Override
+                    public void onFailure(String errorMessage) {
+                        callback.onFailure(errorMessage);
+                    }
+                });
+    }
+
+    /**
+     * Read from the server the parking areas written after a time, wherever
+     * they are. Only areas carrying the updatedAt stamp are found, so anything
+     * writing to the collection besides addParkingArea and updateParkingArea
+     * must set it too. Deleted areas don't show up.
+     */
+    public ListenerRegistration getParkingAreasUpdatedAfter(long updatedAfter,
+                                                           final GetParkingAreasCallback callback) {
+        Query query = db.collection(PARKING_AREAS_COLLECTION)
+                .whereGreaterThan(UPDATED_AT_FIELD, new Timestamp(new Date(updatedAfter)));
+        return readQuery(PARKING_AREAS_COLLECTION + "?updatedAfter=" + updatedAfter, query,
+                ReadPolicy.SERVER_ONLY, new SnapshotCallback<QuerySnapshot>() {
+                    @Override
+                    public void onSnapshot(QuerySnapshot snapshot, boolean fromCache) {
+                        List<ParkingArea> areas = new ArrayList<>();
+                        for (QueryDocumentSnapshot document : snapshot) {
+                            areas.add(ParkingAreaMapper.fromDocument(document));
                         }
+                        callback.onSuccess(areas, fromCache);
+                    }
+
+                    @Override
+                    public void onFailure(String errorMessage) {
+                        callback.onFailure(errorMessage);
                     }
                 });
     }
 
+    /**
+     * Load a data bundle into the local cache. Its documents and named
+     * queries are then readable without reading from the server.
+     */
+    public void loadBundle(byte[] bundle, final FirestoreCallback callback) {
+        db.loadBundle(bundle)
+                .addOnSuccessListener(progress -> callback.onSuccess())
+                .addOnFailureListener(e -> callback.onFailure(e.getMessage()));
+    }
+
+    /**
+     * Parking areas near a location from a named query of a loaded bundle.
+     * Runs against the local cache only, so it costs no document reads.
+     */
+    public void getBundledParkingAreas(String queryName, double latitude, double longitude,
+                                       double radiusInKm, final GetParkingAreasCallback callback) {
+        db.getNamedQuery(queryName).addOnCompleteListener(task -> {
+            Query query = task.isSuccessful() ? task.getResult() : null;
+            if (query == null) {
+                callback.onFailure("Named query " + queryName + " is not loaded");
+                return;
+            }
+            readQuery(queryName, query, ReadPolicy.CACHE_ONLY, new SnapshotCallback<QuerySnapshot>() {
+                @Override
+                public void onSnapshot(QuerySnapshot snapshot, boolean fromCache) {
+                    callback.onSuccess(filterNearby(snapshot, latitude, longitude, radiusInKm), true);
+                }
+
+                @Override
+                public void onFailure(String errorMessage) {
+                    callback.onFailure(errorMessage);
+                }
+            });
+        });
+    }
+
+    private List<ParkingArea> filterNearby(QuerySnapshot snapshot, double latitude, double longitude,
+                                           double radiusInKm) {
+        List<ParkingArea> nearbyParkingAreas = new ArrayList<>();
+        GeoMath.Origin origin = new GeoMath.Origin(latitude, longitude);
+        for (QueryDocumentSnapshot document : snapshot) {
+            ParkingArea parkingArea = ParkingAreaMapper.fromDocument(document);
+            // Far areas are rejected without the haversine
+            if (origin.isWithin(parkingArea.getLatitude(), parkingArea.getLongitude(), radiusInKm)) {
+                nearbyParkingAreas.add(parkingArea);
+            }
+        }
+        return nearbyParkingAreas;
+    }
+
+    /**
+     * Read the spots of an area with the given policy
+     *
+     * @return remove it when the caller goes away, a cache-then-server read
+     * can keep waiting for the server for a while
+     */
+    public ListenerRegistration getParkingSpots(String parkingAreaId, ReadPolicy policy,
+                                                final GetParkingSpotsCallback callback) {
+        String path = PARKING_AREAS_COLLECTION + "/" + parkingAreaId + "/" + PARKING_SPOTS_COLLECTION;
+        return readQuery(path, db.collection(path), policy, new SnapshotCallback<QuerySnapshot>() {
+            @Override
+            public void onSnapshot(QuerySnapshot snapshot, boolean fromCache) {
+                List<ParkingSpot> spots = new ArrayList<>();
+                for (QueryDocumentSnapshot document : snapshot) {
+                    spots.add(ParkingSpotMapper.fromDocument(document, parkingAreaId));
+                }
+                callback.onSuccess(spots, fromCache);
+            }
+
+            @Override
+            public void onFailure(String errorMessage) {
+                callback.onFailure(errorMessage);
+            }
+        });
+    }
+
     public void getParkingSpots(String parkingAreaId, final GetParkingSpotsCallback callback) {
-        db.collection(PARKING_AREAS_COLLECTION).document(parkingAreaId)
-                .collection(PARKING_SPOTS_COLLECTION)
-                .get()
+        String path = PARKING_AREAS_COLLECTION + "/" + parkingAreaId + "/" + PARKING_SPOTS_COLLECTION;
+        queryReads.run(path, () -> db.collection(path).get())
                 .addOnCompleteListener(new OnCompleteListener<QuerySnapshot>() {
                     @Override
                     public void onComplete(@NonNull Task<QuerySnapshot> task) {
                         if (task.isSuccessful()) {
                             List<ParkingSpot> spots = new ArrayList<>();
                             for (QueryDocumentSnapshot document : task.getResult()) {
-                                ParkingSpot spot = document.toObject(ParkingSpot.class);
-                                spot.setId(document.getId());
-                                spot.setParkingAreaId(parkingAreaId);
+                                ParkingSpot spot = ParkingSpotMapper.fromDocument(document, parkingAreaId);
                                 spots.add(spot);
                             }
                             callback.onSuccess(spots);
@@ -203,6 +671,7 @@ public class FirestoreManager {
                     @Override
                     public void onSuccess(DocumentReference documentReference) {
                         String bookingId = documentReference.getId();
+                        booking.setId(bookingId);
 
                         // Update parking spot status
                         updateParkingSpotStatus(booking.getParkingAreaId(), booking.getParkingSpotId(),
@@ -229,18 +698,18 @@ public class FirestoreManager {
     }
 
     public void getUserBookings(String userId, final GetBookingsCallback callback) {
-        db.collection(BOOKINGS_COLLECTION)
-                .whereEqualTo("userId", userId)
-                .orderBy("startTime", Query.Direction.DESCENDING)
-                .get()
+        queryReads.run(BOOKINGS_COLLECTION + "?userId=" + userId + "&orderBy=startTime",
+                        () -> db.collection(BOOKINGS_COLLECTION)
+                                .whereEqualTo("userId", userId)
+                                .orderBy("startTime", Query.Direction.DESCENDING)
+                                .get())
                 .addOnCompleteListener(new OnCompleteListener<QuerySnapshot>() {
                     @Override
                     public void onComplete(@NonNull Task<QuerySnapshot> task) {
                         if (task.isSuccessful()) {
                             List<Booking> bookings = new ArrayList<>();
                             for (QueryDocumentSnapshot document : task.getResult()) {
-                                Booking booking = document.toObject(Booking.class);
-                                booking.setId(document.getId());
+                                Booking booking = BookingMapper.fromDocument(document);
                                 bookings.add(booking);
                             }
                             callback.onSuccess(bookings);
@@ -251,6 +720,100 @@ public class FirestoreManager {
                 });
     }
 
+    /**
+     * One page of a user's bookings, newest first. Pass a null cursor for the
+     * first page, then the createdAt and id of the last booking received.
+     * The id breaks ties between bookings created in the same millisecond.
+     */
+    public void getUserBookingsPage(String userId, Date cursorCreatedAt, String cursorId, int limit,
+                                    final GetBookingsCallback callback) {
+        Query query = db.collection(BOOKINGS_COLLECTION)
+                .whereEqualTo("userId", userId)
+                .orderBy("createdAt", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+        if (cursorCreatedAt != null && cursorId != null) {
+            query = query.startAfter(cursorCreatedAt, cursorId);
+        }
+        Query pageQuery = query.limit(limit);
+
+        String key = BOOKINGS_COLLECTION + "?userId=" + userId + "&before="
+                + (cursorCreatedAt != null ? cursorCreatedAt.getTime() + "/" + cursorId : "") + "&limit=" + limit;
+        queryReads.run(key, pageQuery::get)
+                .addOnCompleteListener(task -> deliverBookings(task, callback));
+    }
+
+    /**
+     * A user's bookings created after the given time, oldest first
+     */
+    public void getUserBookingsCreatedAfter(String userId, Date createdAfter, int limit,
+                                            final GetBookingsCallback callback) {
+        queryReads.run(BOOKINGS_COLLECTION + "?userId=" + userId + "&after=" + createdAfter.getTime()
+                                + "&limit=" + limit,
+                        () -> db.collection(BOOKINGS_COLLECTION)
+                                .whereEqualTo("userId", userId)
+                                .whereGreaterThan("createdAt", createdAfter)
+                                .orderBy("createdAt", Query.Direction.ASCENDING)
+                                .limit(limit)
+                                .get())
+                .addOnCompleteListener(task -> deliverBookings(task, callback));
+    }
+
+    /**
+     * A user's bookings ending after the given time. These are the only ones
+     * whose status can still change, e.g. when cancelled or extended.
+     */
+    public void getUserOpenBookings(String userId, Date endAfter, final GetBookingsCallback callback) {
+        queryReads.run(BOOKINGS_COLLECTION + "?userId=" + userId + "&endAfter=" + endAfter.getTime(),
+                        () -> db.collection(BOOKINGS_COLLECTION)
+                                .whereEqualTo("userId", userId)
+                                .whereGreaterThan("endTime", endAfter)
+                                .get())
+                .addOnCompleteListener(task -> deliverBookings(task, callback));
+    }
+
+    private static void deliverBookings(Task<QuerySnapshot> task, GetBookingsCallback callback) {
+        if (task.isSuccessful()) {
+            List<Booking> bookings = new ArrayList<>();
+            for (QueryDocumentSnapshot document : task.getResult()) {
+                bookings.add(BookingMapper.fromDocument(document));
+            }
+            callback.onSuccess(bookings);
+        } else {
+            callback.onFailure(task.getException().getMessage());
+        }
+    }
+
+    /**
+     * Bookings of all users that still hold a slot in a parking area, as
+     * changes until the returned registration is removed
+     */
+    public ListenerRegistration listenToActiveBookingsForParkingArea(String parkingAreaId,
+                                                                    final BookingChangesCallback callback) {
+        return db.collection(BOOKINGS_COLLECTION)
+                .whereEqualTo("parkingAreaId", parkingAreaId)
+                .whereIn("status", Arrays.asList(Constants.BookingStatus.PENDING,
+                        Constants.BookingStatus.CONFIRMED, Constants.BookingStatus.ACTIVE))
+                .whereGreaterThan("endTime", new Date())
+                .addSnapshotListener((snapshot, e) -> {
+                    if (e != null) {
+                        callback.onFailure(e.getMessage());
+                        return;
+                    }
+                    List<Booking> changed = new ArrayList<>();
+                    List<Booking> removed = new ArrayList<>();
+                    // A cancelled or completed booking leaves the query as REMOVED
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        Booking booking = BookingMapper.fromDocument(change.getDocument());
+                        if (change.getType() == DocumentChange.Type.REMOVED) {
+                            removed.add(booking);
+                        } else {
+                            changed.add(booking);
+                        }
+                    }
+                    callback.onChanges(changed, removed);
+                });
+    }
+
     private void addBookingToUserHistory(String userId, String bookingId, final FirestoreCallback callback) {
         DocumentReference userRef = db.collection(USERS_COLLECTION).document(userId);
 
@@ -261,7 +824,7 @@ public class FirestoreManager {
                 if (task.isSuccessful()) {
                     DocumentSnapshot document = task.getResult();
                     if (document.exists()) {
-                        User user = document.toObject(User.class);
+                        User user = UserMapper.fromDocument(document);
                         user.addBookingToHistory(bookingId);
 
                         // Update user document
@@ -312,69 +875,29 @@ public class FirestoreManager {
                 });
     }
 
-    // Helper method to calculate distance between two points
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        // Simple implementation of haversine formula
-        final int R = 6371; // Radius of the earth in km
-
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return R * c; // Distance in km
-    }
-
     // Additional methods for parking area CRUD operations
     public void addParkingArea(ParkingArea parkingArea, final FirestoreCallback callback) {
-        db.collection(PARKING_AREAS_COLLECTION)
-                .add(parkingArea)
-                .addOnSuccessListener(new OnSuccessListener<DocumentReference>() {
-                    @Override
-                    public void onSuccess(DocumentReference documentReference) {
-                        parkingArea.setId(documentReference.getId());
-                        documentReference.set(parkingArea)
-                                .addOnSuccessListener(new OnSuccessListener<Void>() {
-                                    @Override
-                                    public void onSuccess(Void aVoid) {
-                                        callback.onSuccess();
-                                    }
-                                })
-                                .addOnFailureListener(new OnFailureListener() {
-                                    @Override
-                                    public void onFailure(@NonNull Exception e) {
-                                        callback.onFailure(e.getMessage());
-                                    }
-                                });
-                    }
-                })
-                .addOnFailureListener(new OnFailureListener() {
-                    @Override
-                    public void onFailure(@NonNull Exception e) {
-                        callback.onFailure(e.getMessage());
-                    }
-                });
+        DocumentReference areaRef = db.collection(PARKING_AREAS_COLLECTION).document();
+        parkingArea.setId(areaRef.getId());
+        writeParkingArea(areaRef, parkingArea, callback);
     }
 
     public void updateParkingArea(ParkingArea parkingArea, final FirestoreCallback callback) {
-        db.collection(PARKING_AREAS_COLLECTION).document(parkingArea.getId())
-                .set(parkingArea)
-                .addOnSuccessListener(new OnSuccessListener<Void>() {
-                    @Override
-                    public void onSuccess(Void aVoid) {
-                        callback.onSuccess();
-                    }
-                })
-                .addOnFailureListener(new OnFailureListener() {
-                    @Override
-                    public void onFailure(@NonNull Exception e) {
-                        callback.onFailure(e.getMessage());
-                    }
-                });
+        writeParkingArea(db.collection(PARKING_AREAS_COLLECTION).document(parkingArea.getId()),
+                parkingArea, callback);
+    }
+
+    /**
+     * Write an area with the server time of the write, so delta reads see it
+     */
+    private void writeParkingArea(DocumentReference areaRef, ParkingArea parkingArea,
+                                  final FirestoreCallback callback) {
+        WriteBatch batch = db.batch();
+        batch.set(areaRef, parkingArea);
+        batch.update(areaRef, UPDATED_AT_FIELD, FieldValue.serverTimestamp());
+        batch.commit()
+                .addOnSuccessListener(aVoid -> callback.onSuccess())
+                .addOnFailureListener(e -> callback.onFailure(e.getMessage()));
     }
 
     public void addParkingSpot(ParkingSpot parkingSpot, final FirestoreCallback callback) {
@@ -0,0 +1,24 @@
+package com.example.parkingfinder.firebase;
+
+/**
+ * Where a Firestore read is served from
+ */
+public enum ReadPolicy {
+    /**
+     * Local Firestore cache only, fails if nothing is cached. Never touches the network.
+     */
+    CACHE_ONLY,
+
+    /**
+     * Cached result first, then the server's once it answers. The callback may
+     * run twice, the second time with fromCache false. If the server doesn't
+     * answer (offline, timeout, memory pressure) onFailure follows the cached
+     * result, callers already showing it can keep it.
+     */
+    CACHE_THEN_SERVER,
+
+    /**
+     * Server only, fails when offline instead of quietly returning cached data
+     */
+    SERVER_ONLY
+}
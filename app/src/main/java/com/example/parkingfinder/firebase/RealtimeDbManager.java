@@ -1,18 +1,25 @@
 package com.example.parkingfinder.firebase;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import com.example.parkingfinder.mappers.ParkingAreaMapper;
+import com.example.parkingfinder.mappers.ParkingSpotMapper;
 import com.example.parkingfinder.models.ParkingArea;
 import com.example.parkingfinder.models.ParkingSpot;
+import com.example.parkingfinder.utils.AvailabilityBits;
+import com.example.parkingfinder.utils.GeoCells;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,8 +32,21 @@ public class RealtimeDbManager {
     private static RealtimeDbManager instance;
     private FirebaseDatabase database;
 
+    // Database paths
+    private static final String PARKING_SPOTS_PATH = "parking_spots";
+    private static final String PARKING_AREAS_PATH = "parking_areas";
+    // Same areas again, grouped by GeoCells cell: parking_areas_by_cell/<cell>/<areaId>
+    private static final String PARKING_AREAS_BY_CELL_PATH = "parking_areas_by_cell";
+    // Compact availability per area: parking_availability/<areaId>/bits, see AvailabilityBits
+    private static final String AVAILABILITY_PATH = "parking_availability";
+
     // Database references
     private DatabaseReference parkingSpotsRef;
+    private DatabaseReference availabilityRef;
+    private RealtimeSubscriptionHub subscriptionHub;
+
+    // Concurrent one-time reads of the same area's spots share one request
+    private final SingleFlight<DataSnapshot> spotReads = new SingleFlight<>("RealtimeSpots");
 
     // Callback interfaces
     public interface RealtimeCallback {
@@ -45,9 +65,18 @@ public class RealtimeDbManager {
         void onError(String errorMessage);
     }
 
+    public interface AvailabilityListener {
+        void onAvailabilityUpdated(BitSet available);
+        // The area has no bitset yet, fall back to the full spots listener
+        void onAvailabilityMissing();
+        void onError(String errorMessage);
+    }
+
     private RealtimeDbManager() {
         database = FirebaseDatabase.getInstance();
-        parkingSpotsRef = database.getReference("parking_spots");
+        parkingSpotsRef = database.getReference(PARKING_SPOTS_PATH);
+        availabilityRef = database.getReference(AVAILABILITY_PATH);
+        subscriptionHub = RealtimeSubscriptionHub.getInstance();
     }
 
     public static synchronized RealtimeDbManager getInstance() {
@@ -57,19 +86,38 @@ public class RealtimeDbManager {
         return instance;
     }
 
+    /**
+     * Shared spot reads, for metrics
+     */
+    public SingleFlight<DataSnapshot> getSpotReads() {
+        return spotReads;
+    }
+
     /**
      * Initialize or update all parking spots for a parking area.
      * This should be called when a new parking area is created or when
      * the layout of a parking area changes.
+     * Spots without an ordinal get the next free one, and the area's
+     * availability bitset is written together with the spots.
      */
     public void initializeParkingSpots(String parkingAreaId, List<ParkingSpot> spots,
                                        final RealtimeCallback callback) {
         Map<String, Object> spotsMap = new HashMap<>();
 
+        int nextOrdinal = 0;
+        for (ParkingSpot spot : spots) {
+            nextOrdinal = Math.max(nextOrdinal, spot.getOrdinal() + 1);
+        }
+
         for (ParkingSpot spot : spots) {
             // Ensure spot has the correct parkingAreaId
             spot.setParkingAreaId(parkingAreaId);
 
+            // Ordinals must stay stable once assigned, they index the bitset
+            if (spot.getOrdinal() < 0) {
+                spot.setOrdinal(nextOrdinal++);
+            }
+
             // Convert the spot to a map for database storage
             Map<String, Object> spotMap = new HashMap<>();
             spotMap.put("id", spot.getId());
@@ -84,14 +132,19 @@ public class RealtimeDbManager {
             spotMap.put("positionX", spot.getPositionX());
             spotMap.put("positionY", spot.getPositionY());
             spotMap.put("type", spot.getType());
+            spotMap.put("ordinal", spot.getOrdinal());
 
             // Add to the spots map
             spotsMap.put(spot.getId(), spotMap);
         }
 
-        // Save all spots under the parking area node
-        DatabaseReference parkingAreaSpotsRef = parkingSpotsRef.child(parkingAreaId);
-        parkingAreaSpotsRef.setValue(spotsMap)
+        // Save all spots under the parking area node, and the bitset next to them
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(PARKING_SPOTS_PATH + "/" + parkingAreaId, spotsMap);
+        updates.put(AVAILABILITY_PATH + "/" + parkingAreaId + "/bits",
+                AvailabilityBits.encode(AvailabilityBits.fromSpots(spots)));
+
+        database.getReference().updateChildren(updates)
                 .addOnSuccessListener(new OnSuccessListener<Void>() {
                     @Override
                     public void onSuccess(Void aVoid) {
@@ -112,6 +165,15 @@ public class RealtimeDbManager {
      */
     public void updateParkingSpotAvailability(String parkingAreaId, String spotId,
                                               boolean isAvailable, final RealtimeCallback callback) {
+        updateParkingSpotAvailability(parkingAreaId, spotId, -1, isAvailable, callback);
+    }
+
+    /**
+     * Update the availability of a spot and flip its bit in the area's bitset.
+     * Pass ordinal -1 for spots that have none, only the spot object is updated then.
+     */
+    public void updateParkingSpotAvailability(String parkingAreaId, String spotId, int ordinal,
+                                              boolean isAvailable, final RealtimeCallback callback) {
         DatabaseReference spotRef = parkingSpotsRef.child(parkingAreaId).child(spotId);
 
         Map<String, Object> updates = new HashMap<>();
@@ -121,7 +183,11 @@ public class RealtimeDbManager {
                 .addOnSuccessListener(new OnSuccessListener<Void>() {
                     @Override
                     public void onSuccess(Void aVoid) {
-                        callback.onSuccess();
+                        if (ordinal < 0) {
+                            callback.onSuccess();
+                        } else {
+                            setAvailabilityBit(parkingAreaId, ordinal, isAvailable, callback);
+                        }
                     }
                 })
                 .addOnFailureListener(new OnFailureListener() {
@@ -132,6 +198,68 @@ public class RealtimeDbManager {
                 });
     }
 
+    /**
+     * Flip one bit of an area's availability bitset. Runs as a transaction so
+     * concurrent bookings in the same area don't overwrite each other.
+     */
+    private void setAvailabilityBit(String parkingAreaId, int ordinal, boolean isAvailable,
+                                    final RealtimeCallback callback) {
+        availabilityRef.child(parkingAreaId).child("bits").runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                BitSet bits = AvailabilityBits.decode(currentData.getValue(String.class));
+                bits.set(ordinal, isAvailable);
+                currentData.setValue(AvailabilityBits.encode(bits));
+                return Transaction.success(currentData);
+            }
+
+            @Override
+            public void onComplete(@Nullable DatabaseError error, boolean committed,
+                                   @Nullable DataSnapshot currentData) {
+                if (error != null) {
+                    callback.onFailure(error.getMessage());
+                } else {
+                    callback.onSuccess();
+                }
+            }
+        });
+    }
+
+    /**
+     * Listen to an area's availability bitset only. Pair it with the spot
+     * layout cached in Room, so only a few hundred bytes move per change.
+     */
+    public RealtimeSubscriptionHub.Subscription addAvailabilityListener(String parkingAreaId,
+                                                                      final AvailabilityListener listener) {
+        return subscriptionHub.subscribe(AVAILABILITY_PATH + "/" + parkingAreaId + "/bits",
+                new RealtimeSubscriptionHub.SnapshotListener() {
+                    @Override
+                    public void onSnapshot(DataSnapshot dataSnapshot) {
+                        Object value = dataSnapshot.getValue();
+                        if (value instanceof String) {
+                            listener.onAvailabilityUpdated(AvailabilityBits.decode((String) value));
+                        } else {
+                            listener.onAvailabilityMissing();
+                        }
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        listener.onError(errorMessage);
+                    }
+                });
+    }
+
+    /**
+     * Remove an availability bitset listener.
+     */
+    public void removeAvailabilityListener(RealtimeSubscriptionHub.Subscription subscription) {
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
     /**
      * Get all parking spots for a specific parking area.
      * This method makes a one-time query, not a real-time listener.
@@ -139,14 +267,11 @@ public class RealtimeDbManager {
     public void getParkingSpots(String parkingAreaId, final GetParkingSpotsCallback callback) {
         DatabaseReference parkingAreaSpotsRef = parkingSpotsRef.child(parkingAreaId);
 
-        parkingAreaSpotsRef.get()
+        spotReads.run(parkingAreaId, parkingAreaSpotsRef::get)
                 .addOnSuccessListener(dataSnapshot -> {
                     List<ParkingSpot> spots = new ArrayList<>();
                     for (DataSnapshot spotSnapshot : dataSnapshot.getChildren()) {
-                        ParkingSpot spot = spotSnapshot.getValue(ParkingSpot.class);
-                        if (spot != null) {
-                            spots.add(spot);
-                        }
+                        spots.add(ParkingSpotMapper.fromSnapshot(spotSnapshot));
                     }
                     callback.onSuccess(spots);
                 })
@@ -156,95 +281,89 @@ public class RealtimeDbManager {
     /**
      * Set up a real-time listener for changes to parking spots in a specific area.
      * This is used to get live updates of spot availability.
-     * Returns the ValueEventListener that can be used to remove the listener later.
+     * Listeners on the same area share one Firebase listener through the hub.
+     * Returns the Subscription that must be passed to removeParkingSpotsListener later.
      */
-    public ValueEventListener addParkingSpotsListener(String parkingAreaId, final ParkingSpotsListener listener) {
-        DatabaseReference parkingAreaSpotsRef = parkingSpotsRef.child(parkingAreaId);
-
-        ValueEventListener valueEventListener = new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                List<ParkingSpot> spots = new ArrayList<>();
-                for (DataSnapshot spotSnapshot : dataSnapshot.getChildren()) {
-                    ParkingSpot spot = spotSnapshot.getValue(ParkingSpot.class);
-                    if (spot != null) {
-                        spots.add(spot);
+    public RealtimeSubscriptionHub.Subscription addParkingSpotsListener(String parkingAreaId,
+                                                                      final ParkingSpotsListener listener) {
+        return subscriptionHub.subscribe(PARKING_SPOTS_PATH + "/" + parkingAreaId,
+                new RealtimeSubscriptionHub.SnapshotListener() {
+                    @Override
+                    public void onSnapshot(DataSnapshot dataSnapshot) {
+                        List<ParkingSpot> spots = new ArrayList<>();
+                        for (DataSnapshot spotSnapshot : dataSnapshot.getChildren()) {
+                            spots.add(ParkingSpotMapper.fromSnapshot(spotSnapshot));
+                        }
+                        listener.onParkingSpotsUpdated(spots);
                     }
-                }
-                listener.onParkingSpotsUpdated(spots);
-            }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                listener.onError(databaseError.getMessage());
-            }
-        };
-
-        parkingAreaSpotsRef.addValueEventListener(valueEventListener);
-        return valueEventListener;
+                    @Override
+                    public void onError(String errorMessage) {
+                        listener.onError(errorMessage);
+                    }
+                });
     }
 
     /**
      * Set up a real-time listener for changes to a specific parking spot.
      * This is used to get live updates of a single spot's availability.
-     * Returns the ValueEventListener that can be used to remove the listener later.
+     * Returns the Subscription that must be passed to removeParkingSpotListener later.
      */
-    public ValueEventListener addParkingSpotListener(String parkingAreaId, String spotId,
-                                                     final ParkingSpotsListener listener) {
-        DatabaseReference spotRef = parkingSpotsRef.child(parkingAreaId).child(spotId);
-
-        ValueEventListener valueEventListener = new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                ParkingSpot spot = dataSnapshot.getValue(ParkingSpot.class);
-                if (spot != null) {
-                    listener.onParkingSpotUpdated(spot);
-                }
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                listener.onError(databaseError.getMessage());
-            }
-        };
+    public RealtimeSubscriptionHub.Subscription addParkingSpotListener(String parkingAreaId, String spotId,
+                                                                     final ParkingSpotsListener listener) {
+        return subscriptionHub.subscribe(PARKING_SPOTS_PATH + "/" + parkingAreaId + "/" + spotId,
+                new RealtimeSubscriptionHub.SnapshotListener() {
+                    @Override
+                    public void onSnapshot(DataSnapshot dataSnapshot) {
+                        // A removed spot comes through as an empty snapshot
+                        if (dataSnapshot.exists()) {
+                            listener.onParkingSpotUpdated(ParkingSpotMapper.fromSnapshot(dataSnapshot));
+                        }
+                    }
 
-        spotRef.addValueEventListener(valueEventListener);
-        return valueEventListener;
+                    @Override
+                    public void onError(String errorMessage) {
+                        listener.onError(errorMessage);
+                    }
+                });
     }
 
     /**
      * Remove a real-time listener for parking spots updates.
      */
-    public void removeParkingSpotsListener(String parkingAreaId, ValueEventListener listener) {
-        if (listener != null) {
-            DatabaseReference parkingAreaSpotsRef = parkingSpotsRef.child(parkingAreaId);
-            parkingAreaSpotsRef.removeEventListener(listener);
+    public void removeParkingSpotsListener(RealtimeSubscriptionHub.Subscription subscription) {
+        if (subscription != null) {
+            subscription.cancel();
         }
     }
 
     /**
      * Remove a real-time listener for a specific parking spot updates.
      */
-    public void removeParkingSpotListener(String parkingAreaId, String spotId, ValueEventListener listener) {
-        if (listener != null) {
-            DatabaseReference spotRef = parkingSpotsRef.child(parkingAreaId).child(spotId);
-            spotRef.removeEventListener(listener);
+    public void removeParkingSpotListener(RealtimeSubscriptionHub.Subscription subscription) {
+        if (subscription != null) {
+            subscription.cancel();
         }
     }
 
     /**
      * Update the total and available spots count in the parking area.
      * This should be called whenever the availability of a spot changes.
+     * The area node and its copy in the area's geo cell are updated atomically.
      */
-    public void updateParkingAreaSpotCounts(String parkingAreaId, int totalSpots, int availableSpots,
+    public void updateParkingAreaSpotCounts(String parkingAreaId, double latitude, double longitude,
+                                            int totalSpots, int availableSpots,
                                             final RealtimeCallback callback) {
-        DatabaseReference parkingAreaRef = database.getReference("parking_areas").child(parkingAreaId);
+        String areaPath = PARKING_AREAS_PATH + "/" + parkingAreaId;
+        String cellPath = getCellPath(GeoCells.cellKey(latitude, longitude)) + "/" + parkingAreaId;
 
         Map<String, Object> updates = new HashMap<>();
-        updates.put("totalSpots", totalSpots);
-        updates.put("availableSpots", availableSpots);
+        updates.put(areaPath + "/totalSpots", totalSpots);
+        updates.put(areaPath + "/availableSpots", availableSpots);
+        updates.put(cellPath + "/totalSpots", totalSpots);
+        updates.put(cellPath + "/availableSpots", availableSpots);
 
-        parkingAreaRef.updateChildren(updates)
+        database.getReference().updateChildren(updates)
                 .addOnSuccessListener(new OnSuccessListener<Void>() {
                     @Override
                     public void onSuccess(Void aVoid) {
@@ -260,44 +379,127 @@ public class RealtimeDbManager {
     }
 
     /**
-     * Set up a real-time listener for changes to parking areas.
-     * This is used to get live updates of all parking areas.
-     * Returns the ValueEventListener that can be used to remove the listener later.
+     * Write a parking area into its geo cell so viewport listeners pick it up.
+     * Call when an area is created or moved. Pass the previous position when
+     * moving, or null, so the entry in the old cell is removed.
      */
-    public ValueEventListener addParkingAreasListener(final ParkingAreaCallback listener) {
-        DatabaseReference parkingAreasRef = database.getReference("parking_areas");
+    public void indexParkingArea(ParkingArea parkingArea, @Nullable double[] previousPosition,
+                                 final RealtimeCallback callback) {
+        String cellKey = GeoCells.cellKey(parkingArea.getLatitude(), parkingArea.getLongitude());
+
+        Map<String, Object> areaMap = new HashMap<>();
+        areaMap.put("name", parkingArea.getName());
+        areaMap.put("address", parkingArea.getAddress());
+        areaMap.put("latitude", parkingArea.getLatitude());
+        areaMap.put("longitude", parkingArea.getLongitude());
+        areaMap.put("totalSpots", parkingArea.getTotalSpots());
+        areaMap.put("availableSpots", parkingArea.getAvailableSpots());
+        areaMap.put("hourlyRate", parkingArea.getHourlyRate());
 
-        ValueEventListener valueEventListener = new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                List<ParkingArea> parkingAreas = new ArrayList<>();
-                for (DataSnapshot areaSnapshot : dataSnapshot.getChildren()) {
-                    ParkingArea area = areaSnapshot.getValue(ParkingArea.class);
-                    if (area != null) {
-                        area.setId(areaSnapshot.getKey());
-                        parkingAreas.add(area);
-                    }
-                }
-                listener.onParkingAreasUpdated(parkingAreas);
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(getCellPath(cellKey) + "/" + parkingArea.getId(), areaMap);
+        if (previousPosition != null) {
+            String previousCell = GeoCells.cellKey(previousPosition[0], previousPosition[1]);
+            if (!previousCell.equals(cellKey)) {
+                updates.put(getCellPath(previousCell) + "/" + parkingArea.getId(), null);
             }
+        }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                listener.onError(databaseError.getMessage());
-            }
-        };
+        database.getReference().updateChildren(updates)
+                .addOnSuccessListener(new OnSuccessListener<Void>() {
+                    @Override
+                    public void onSuccess(Void aVoid) {
+                        callback.onSuccess();
+                    }
+                })
+                .addOnFailureListener(new OnFailureListener() {
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        callback.onFailure(e.getMessage());
+                    }
+                });
+    }
 
-        parkingAreasRef.addValueEventListener(valueEventListener);
-        return valueEventListener;
+    /**
+     * Listen to the parking areas in one geo cell. Use ViewportSubscriptionManager
+     * to keep the right set of cells subscribed as the viewport moves.
+     */
+    public RealtimeSubscriptionHub.Subscription addParkingAreasCellListener(String cellKey,
+                                                                          final ParkingAreaCallback listener) {
+        return subscriptionHub.subscribe(getCellPath(cellKey),
+                new RealtimeSubscriptionHub.SnapshotListener() {
+                    @Override
+                    public void onSnapshot(DataSnapshot dataSnapshot) {
+                        listener.onParkingAreasUpdated(toParkingAreas(dataSnapshot));
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        listener.onError(errorMessage);
+                    }
+                });
+    }
+
+    /**
+     * Hand the areas of every subscribed cell to the sampler once per update,
+     * however many screens share the cell. For recording history, screens use
+     * addParkingAreasCellListener.
+     */
+    public void setParkingAreasSampler(final ParkingAreaCallback sampler) {
+        subscriptionHub.setTap(PARKING_AREAS_BY_CELL_PATH + "/",
+                new RealtimeSubscriptionHub.SnapshotListener() {
+                    @Override
+                    public void onSnapshot(DataSnapshot dataSnapshot) {
+                        sampler.onParkingAreasUpdated(toParkingAreas(dataSnapshot));
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        sampler.onError(errorMessage);
+                    }
+                });
+    }
+
+    private static List<ParkingArea> toParkingAreas(DataSnapshot dataSnapshot) {
+        List<ParkingArea> parkingAreas = new ArrayList<>();
+        for (DataSnapshot areaSnapshot : dataSnapshot.getChildren()) {
+            parkingAreas.add(ParkingAreaMapper.fromSnapshot(areaSnapshot));
+        }
+        return parkingAreas;
+    }
+
+    private static String getCellPath(String cellKey) {
+        return PARKING_AREAS_BY_CELL_PATH + "/" + cellKey;
+    }
+
+    /**
+     * Set up a real-time listener for changes to parking areas.
+     * This is used to get live updates of all parking areas.
+     * Every change anywhere re-downloads the whole node, prefer
+     * ViewportSubscriptionManager for anything bound to a map or list.
+     * Returns the Subscription that must be passed to removeParkingAreasListener later.
+     */
+    public RealtimeSubscriptionHub.Subscription addParkingAreasListener(final ParkingAreaCallback listener) {
+        return subscriptionHub.subscribe(PARKING_AREAS_PATH,
+                new RealtimeSubscriptionHub.SnapshotListener() {
+                    @Override
+                    public void onSnapshot(DataSnapshot dataSnapshot) {
+                        listener.onParkingAreasUpdated(toParkingAreas(dataSnapshot));
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        listener.onError(errorMessage);
+                    }
+                });
     }
 
     /**
      * Remove a real-time listener for parking areas updates.
      */
-    public void removeParkingAreasListener(ValueEventListener listener) {
-        if (listener != null) {
-            DatabaseReference parkingAreasRef = database.getReference("parking_areas");
-            parkingAreasRef.removeEventListener(listener);
+    public void removeParkingAreasListener(RealtimeSubscriptionHub.Subscription subscription) {
+        if (subscription != null) {
+            subscription.cancel();
         }
     }
 
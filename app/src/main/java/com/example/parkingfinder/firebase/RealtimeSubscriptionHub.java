@@ -0,0 +1,226 @@
+package com.example.parkingfinder.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps at most one Realtime Database listener per path and fans its events
+ * out to every observer. The listener is attached when the first observer
+ * becomes active and detached a short grace period after the last one leaves,
+ * so quick screen switches and rotations don't re-download the path.
+ * Must be used from the main thread.
+ */
+public class RealtimeSubscriptionHub {
+
+    private static final String TAG = "RealtimeSubscriptionHub";
+
+    // How long a path stays attached after its last observer leaves
+    private static final long DETACH_GRACE_PERIOD_MS = 5000;
+
+    private static RealtimeSubscriptionHub instance;
+
+    private final FirebaseDatabase database;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, PathLiveData> paths = new HashMap<>();
+
+    // Listeners seeing each snapshot under their path prefix once, keyed by prefix.
+    // Set from any thread, read on the main thread.
+    private final Map<String, SnapshotListener> taps = new ConcurrentHashMap<>();
+
+    /**
+     * Callback style subscriber, for callers that don't hold a lifecycle
+     */
+    public interface SnapshotListener {
+        void onSnapshot(DataSnapshot snapshot);
+        void onError(String errorMessage);
+    }
+
+    /**
+     * Handle returned by subscribe(). Cancel it to stop receiving events.
+     */
+    public static class Subscription {
+        private final PathLiveData liveData;
+        private final Observer<DataSnapshot> snapshotObserver;
+        private final Observer<DatabaseError> errorObserver;
+        private boolean cancelled = false;
+
+        Subscription(PathLiveData liveData, Observer<DataSnapshot> snapshotObserver,
+                     Observer<DatabaseError> errorObserver) {
+            this.liveData = liveData;
+            this.snapshotObserver = snapshotObserver;
+            this.errorObserver = errorObserver;
+        }
+
+        public String getPath() {
+            return liveData.path;
+        }
+
+        public void cancel() {
+            if (cancelled) return;
+            cancelled = true;
+            liveData.errors.removeObserver(errorObserver);
+            liveData.removeObserver(snapshotObserver);
+        }
+    }
+
+    /**
+     * LiveData for one path. LiveData already counts active observers, so
+     * onActive/onInactive mark the first and last one.
+     */
+    public class PathLiveData extends LiveData<DataSnapshot> {
+        private final String path;
+        private final DatabaseReference reference;
+        private final MutableLiveData<DatabaseError> errors = new MutableLiveData<>();
+        private final Runnable detachRunnable = this::detach;
+        private ValueEventListener listener;
+
+        PathLiveData(String path) {
+            this.path = path;
+            this.reference = database.getReference(path);
+        }
+
+        /**
+         * Errors from the underlying listener, for example permission denied
+         */
+        public LiveData<DatabaseError> getErrors() {
+            return errors;
+        }
+
+        @Override
+        protected void onActive() {
+            mainHandler.removeCallbacks(detachRunnable);
+            if (listener == null) {
+                // A previous listener may have been cancelled, start clean
+                if (errors.getValue() != null) {
+                    errors.setValue(null);
+                }
+                listener = new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        setValue(snapshot);
+                        for (Map.Entry<String, SnapshotListener> tap : taps.entrySet()) {
+                            if (path.startsWith(tap.getKey())) {
+                                tap.getValue().onSnapshot(snapshot);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        // Firebase drops a cancelled listener, re-attach on next activation
+                        reference.removeEventListener(this);
+                        listener = null;
+                        errors.setValue(error);
+                    }
+                };
+                reference.addValueEventListener(listener);
+                Log.d(TAG, "Attached listener to " + path);
+            }
+        }
+
+        @Override
+        protected void onInactive() {
+            mainHandler.postDelayed(detachRunnable, DETACH_GRACE_PERIOD_MS);
+        }
+
+        private void detach() {
+            if (hasActiveObservers()) return;
+            if (listener != null) {
+                reference.removeEventListener(listener);
+                listener = null;
+                Log.d(TAG, "Detached listener from " + path);
+            }
+            // Observers may still be registered while inactive (stopped
+            // lifecycle owners), keep the entry for them
+            if (!hasObservers()) {
+                paths.remove(path);
+            }
+        }
+    }
+
+    private RealtimeSubscriptionHub() {
+        this(FirebaseDatabase.getInstance());
+    }
+
+    // For tests and benchmarks against a database of their own
+    RealtimeSubscriptionHub(FirebaseDatabase database) {
+        this.database = database;
+    }
+
+    public static synchronized RealtimeSubscriptionHub getInstance() {
+        if (instance == null) {
+            instance = new RealtimeSubscriptionHub();
+        }
+        return instance;
+    }
+
+    /**
+     * Shared LiveData for a path, observe it with a lifecycle owner
+     */
+    public PathLiveData observe(String path) {
+        PathLiveData liveData = paths.get(path);
+        if (liveData == null) {
+            liveData = new PathLiveData(path);
+            paths.put(path, liveData);
+        }
+        return liveData;
+    }
+
+    /**
+     * Subscribe without a lifecycle owner. The subscription must be cancelled.
+     */
+    public Subscription subscribe(String path, SnapshotListener listener) {
+        PathLiveData liveData = observe(path);
+        Observer<DataSnapshot> snapshotObserver = listener::onSnapshot;
+        Observer<DatabaseError> errorObserver = error -> {
+            if (error != null) {
+                listener.onError(error.getMessage());
+            }
+        };
+
+        // Data first: activating the path clears an old error before the
+        // error observer is added. A new observer immediately gets the last
+        // snapshot if there is one.
+        liveData.observeForever(snapshotObserver);
+        liveData.errors.observeForever(errorObserver);
+        return new Subscription(liveData, snapshotObserver, errorObserver);
+    }
+
+    /**
+     * Also hand every snapshot of the paths under a prefix to a tap, once per
+     * snapshot however many observers share the path. A tap doesn't keep any
+     * path attached, it only sees what observers already subscribed to.
+     */
+    public void setTap(String pathPrefix, SnapshotListener tap) {
+        taps.put(pathPrefix, tap);
+    }
+
+    /**
+     * Number of paths with an attached Firebase listener
+     */
+    public int getAttachedPathCount() {
+        int count = 0;
+        for (PathLiveData liveData : paths.values()) {
+            if (liveData.listener != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
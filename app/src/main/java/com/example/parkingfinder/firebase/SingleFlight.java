@@ -0,0 +1,82 @@
+package com.example.parkingfinder.firebase;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Shares one in-flight read between concurrent identical requests.
+ * The first caller for a key starts the Task, later callers with the same key
+ * get the same Task until it completes, so the Firebase read happens once and
+ * every caller's listener receives its result.
+ *
+ * Only use for reads. Writes and read-modify-write sequences must not be shared.
+ */
+public class SingleFlight<T> {
+
+    private static final String TAG = "SingleFlight";
+
+    private final String name;
+    private final Map<String, Task<T>> inFlight = new HashMap<>();
+
+    // Metrics
+    private long totalCalls = 0;
+    private long savedCalls = 0;
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Return the in-flight Task for the key, or start one with the supplier
+     */
+    public Task<T> run(String key, Supplier<Task<T>> supplier) {
+        Task<T> task;
+        synchronized (this) {
+            totalCalls++;
+            task = inFlight.get(key);
+            if (task != null) {
+                savedCalls++;
+                Log.d(TAG, name + ": joined in-flight read for " + key);
+                return task;
+            }
+
+            task = supplier.get();
+            inFlight.put(key, task);
+        }
+
+        final Task<T> started = task;
+        started.addOnCompleteListener(completed -> {
+            synchronized (SingleFlight.this) {
+                // Only remove our own Task, a newer one may already be registered
+                if (inFlight.get(key) == started) {
+                    inFlight.remove(key);
+                }
+            }
+        });
+        return started;
+    }
+
+    /**
+     * Number of requests made through this instance
+     */
+    public synchronized long getTotalCalls() {
+        return totalCalls;
+    }
+
+    /**
+     * Number of requests that joined an existing read instead of starting one
+     */
+    public synchronized long getSavedCalls() {
+        return savedCalls;
+    }
+
+    public synchronized void resetMetrics() {
+        totalCalls = 0;
+        savedCalls = 0;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.parkingfinder.firebase;
+
+import android.util.Log;
+
+import com.example.parkingfinder.models.ParkingArea;
+import com.example.parkingfinder.utils.GeoCells;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps live parking area listeners on just the geo cells covering the
+ * current map viewport or list radius. Cells are subscribed and dropped as
+ * the viewport moves, so traffic scales with what's on screen rather than
+ * with the whole parking_areas tree. Must be used from the main thread.
+ */
+public class ViewportSubscriptionManager {
+
+    private static final String TAG = "ViewportSubscriptions";
+
+    // Beyond this the user is zoomed out too far for live availability
+    private static final int MAX_CELLS = 36;
+
+    private final RealtimeDbManager realtimeDbManager;
+    private final RealtimeDbManager.ParkingAreaCallback callback;
+
+    private final Map<String, RealtimeSubscriptionHub.Subscription> subscriptions = new HashMap<>();
+    private final Map<String, List<ParkingArea>> areasByCell = new HashMap<>();
+    private Set<String> currentCells = new HashSet<>();
+
+    /**
+     * The callback receives the merged areas of all subscribed cells
+     * whenever any of them changes
+     */
+    public ViewportSubscriptionManager(RealtimeDbManager realtimeDbManager,
+                                       RealtimeDbManager.ParkingAreaCallback callback) {
+        this.realtimeDbManager = realtimeDbManager;
+        this.callback = callback;
+    }
+
+    /**
+     * Subscribe to the cells covering a map viewport
+     */
+    public void setViewport(double south, double west, double north, double east) {
+        updateCells(GeoCells.cellsForBounds(south, west, north, east, MAX_CELLS));
+    }
+
+    /**
+     * Subscribe to the cells covering a search radius
+     */
+    public void setRegion(double latitude, double longitude, double radiusInKm) {
+        updateCells(GeoCells.cellsForRadius(latitude, longitude, radiusInKm, MAX_CELLS));
+    }
+
+    /**
+     * Drop every cell subscription
+     */
+    public void clear() {
+        for (RealtimeSubscriptionHub.Subscription subscription : subscriptions.values()) {
+            subscription.cancel();
+        }
+        subscriptions.clear();
+        areasByCell.clear();
+        currentCells = new HashSet<>();
+    }
+
+    public int getSubscribedCellCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Copy live availability onto matching areas in a list.
+     * Returns true if any area changed.
+     */
+    public static boolean applyAvailability(List<ParkingArea> target, List<ParkingArea> liveAreas) {
+        if (target == null || liveAreas == null) return false;
+
+        Map<String, ParkingArea> liveById = new HashMap<>();
+        for (ParkingArea live : liveAreas) {
+            liveById.put(live.getId(), live);
+        }
+
+        boolean changed = false;
+        for (ParkingArea area : target) {
+            ParkingArea live = liveById.get(area.getId());
+            if (live != null && (live.getAvailableSpots() != area.getAvailableSpots()
+                    || live.getTotalSpots() != area.getTotalSpots())) {
+                area.setAvailableSpots(live.getAvailableSpots());
+                area.setTotalSpots(live.getTotalSpots());
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void updateCells(Set<String> cells) {
+        if (cells.isEmpty()) {
+            Log.d(TAG, "Viewport too large for live updates, dropping cell listeners");
+        }
+        // Set before subscribing, the hub can deliver a cached snapshot synchronously
+        currentCells = cells;
+
+        boolean removed = false;
+        Iterator<Map.Entry<String, RealtimeSubscriptionHub.Subscription>> iterator =
+                subscriptions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, RealtimeSubscriptionHub.Subscription> entry = iterator.next();
+            if (!cells.contains(entry.getKey())) {
+                entry.getValue().cancel();
+                areasByCell.remove(entry.getKey());
+                iterator.remove();
+                removed = true;
+            }
+        }
+
+        for (String cell : cells) {
+            if (!subscriptions.containsKey(cell)) {
+                subscriptions.put(cell, realtimeDbManager.addParkingAreasCellListener(cell,
+                        new RealtimeDbManager.ParkingAreaCallback() {
+                            @Override
+                            public void onParkingAreasUpdated(List<ParkingArea> parkingAreas) {
+                                // Ignore late events from a cell that was just dropped
+                                if (!currentCells.contains(cell)) return;
+                                areasByCell.put(cell, parkingAreas);
+                                publish();
+                            }
+
+                            @Override
+                            public void onError(String errorMessage) {
+                                callback.onError(errorMessage);
+                            }
+                        }));
+            }
+        }
+
+        if (removed) {
+            publish();
+        }
+    }
+
+    private void publish() {
+        List<ParkingArea> merged = new ArrayList<>();
+        for (List<ParkingArea> areas : areasByCell.values()) {
+            merged.addAll(areas);
+        }
+        callback.onParkingAreasUpdated(merged);
+    }
+}
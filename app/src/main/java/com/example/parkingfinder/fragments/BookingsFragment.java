@@ -27,12 +27,11 @@ import com.example.parkingfinder.adapters.BookingHistoryAdapter;
 import com.example.parkingfinder.firebase.FirebaseAuthManager;
 import com.example.parkingfinder.firebase.FirestoreManager;
 import com.example.parkingfinder.models.Booking;
+import com.example.parkingfinder.repositories.BookingScheduleRepository;
 import com.example.parkingfinder.viewmodels.BookingViewModel;
 import com.google.android.material.tabs.TabLayout;
 
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
 import java.util.List;
 
 public class BookingsFragment extends Fragment implements BookingHistoryAdapter.OnBookingClickListener {
@@ -50,9 +49,8 @@ public class BookingsFragment extends Fragment implements BookingHistoryAdapter.
     private View loginPromptView;
     private BookingHistoryAdapter adapter;
 
-    // State variables
-    private String currentTab = "all"; // all, upcoming, active, past
-    private List<Booking> bookings = new ArrayList<>();
+    // Rows left below the last visible one when the next page is requested
+    private static final int LOAD_MORE_THRESHOLD = 5;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -76,9 +74,20 @@ public class BookingsFragment extends Fragment implements BookingHistoryAdapter.
         loginPromptView = view.findViewById(R.id.login_prompt_container);
 
         // Setup RecyclerView
-        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
-        adapter = new BookingHistoryAdapter(getContext(), bookings, this);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        recyclerView.setLayoutManager(layoutManager);
+        adapter = new BookingHistoryAdapter(getContext(), new ArrayList<>(), this);
         recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && bookingViewModel != null
+                        && layoutManager.findLastVisibleItemPosition()
+                        >= adapter.getItemCount() - LOAD_MORE_THRESHOLD) {
+                    bookingViewModel.loadMore();
+                }
+            }
+        });
 
         // Setup swipe refresh
         swipeRefreshLayout.setOnRefreshListener(() -> {
@@ -143,21 +152,23 @@ public class BookingsFragment extends Fragment implements BookingHistoryAdapter.
         tabLayout.addOnTabSelectedListener(new TabLayout.OnTabSelectedListener() {
             @Override
             public void onTabSelected(TabLayout.Tab tab) {
+                if (bookingViewModel == null) {
+                    return;
+                }
                 switch (tab.getPosition()) {
                     case 0:
-                        currentTab = "all";
+                        bookingViewModel.setTab(BookingViewModel.Tab.ALL);
                         break;
                     case 1:
-                        currentTab = "upcoming";
+                        bookingViewModel.setTab(BookingViewModel.Tab.UPCOMING);
                         break;
                     case 2:
-                        currentTab = "active";
+                        bookingViewModel.setTab(BookingViewModel.Tab.ACTIVE);
                         break;
                     case 3:
-                        currentTab = "past";
+                        bookingViewModel.setTab(BookingViewModel.Tab.PAST);
                         break;
                 }
-                filterBookings();
             }
 
             @Override
@@ -173,25 +184,17 @@ public class BookingsFragment extends Fragment implements BookingHistoryAdapter.
     }
 
     private void observeBookings() {
+        // The view model outlives the view, show the tab it is on
+        TabLayout.Tab selectedTab = tabLayout.getTabAt(bookingViewModel.getTab().ordinal());
+        if (selectedTab != null) {
+            selectedTab.select();
+        }
+
         bookingViewModel.getBookings().observe(getViewLifecycleOwner(), new Observer<List<Booking>>() {
             @Override
             public void onChanged(List<Booking> bookingList) {
-                bookings.clear();
-                if (bookingList != null) {
-                    bookings.addAll(bookingList);
-                }
-                filterBookings();
-                progressBar.setVisibility(View.GONE);
-                swipeRefreshLayout.setRefreshing(false);
-
-                // Show empty view if no bookings
-                if (bookings.isEmpty()) {
-                    emptyTextView.setVisibility(View.VISIBLE);
-                    recyclerView.setVisibility(View.GONE);
-                } else {
-                    emptyTextView.setVisibility(View.GONE);
-                    recyclerView.setVisibility(View.VISIBLE);
-                }
+                // Each tab is its own Room query, the list is shown as is
+                showBookings(bookingList != null ? bookingList : new ArrayList<>());
             }
         });
 
@@ -218,57 +221,22 @@ public class BookingsFragment extends Fragment implements BookingHistoryAdapter.
         }
     }
 
-    private void filterBookings() {
-        if (bookings == null || bookings.isEmpty()) {
-            adapter.updateData(new ArrayList<>());
-            return;
-        }
-
-        List<Booking> filteredBookings = new ArrayList<>();
-        Date now = new Date();
-
-        for (Booking booking : bookings) {
-            switch (currentTab) {
-                case "all":
-                    filteredBookings.add(booking);
-                    break;
-                case "upcoming":
-                    if (booking.getStartTime().after(now) &&
-                            ("PENDING".equals(booking.getStatus()) || "CONFIRMED".equals(booking.getStatus()))) {
-                        filteredBookings.add(booking);
-                    }
-                    break;
-                case "active":
-                    if ((booking.getStartTime().before(now) && booking.getEndTime().after(now)) ||
-                            "ACTIVE".equals(booking.getStatus())) {
-                        filteredBookings.add(booking);
-                    }
-                    break;
-                case "past":
-                    if (booking.getEndTime().before(now) ||
-                            "COMPLETED".equals(booking.getStatus()) ||
-                            "CANCELLED".equals(booking.getStatus())) {
-                        filteredBookings.add(booking);
-                    }
-                    break;
-            }
-        }
-
-        adapter.updateData(filteredBookings);
+    private void showBookings(List<Booking> tabBookings) {
+        adapter.updateData(tabBookings);
 
         // Update empty text based on current tab
-        if (filteredBookings.isEmpty()) {
-            switch (currentTab) {
-                case "all":
+        if (tabBookings.isEmpty()) {
+            switch (bookingViewModel.getTab()) {
+                case ALL:
                     emptyTextView.setText("You don't have any bookings yet.");
                     break;
-                case "upcoming":
+                case UPCOMING:
                     emptyTextView.setText("You don't have any upcoming bookings.");
                     break;
-                case "active":
+                case ACTIVE:
                     emptyTextView.setText("You don't have any active bookings.");
                     break;
-                case "past":
+                case PAST:
                     emptyTextView.setText("You don't have any past bookings.");
                     break;
             }
@@ -314,6 +282,8 @@ public class BookingsFragment extends Fragment implements BookingHistoryAdapter.
                                 public void onSuccess() {
                                     progressBar.setVisibility(View.GONE);
                                     Toast.makeText(getContext(), "Booking cancelled successfully", Toast.LENGTH_SHORT).show();
+                                    BookingScheduleRepository.getInstance(progressBar.getContext()).removeBooking(
+                                            booking.getParkingAreaId(), booking.getParkingSpotId(), booking.getId());
                                     loadBookings();
                                 }
 
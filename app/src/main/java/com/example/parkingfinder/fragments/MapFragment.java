@@ -5,7 +5,6 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 import android.location.Location;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -20,6 +19,8 @@ import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 
 import com.example.parkingfinder.R;
+import com.example.parkingfinder.initializers.AppStartup;
+import com.example.parkingfinder.initializers.OsmdroidInitializer;
 import com.example.parkingfinder.models.ParkingArea;
 import com.example.parkingfinder.utils.PermissionUtils;
 import com.example.parkingfinder.viewmodels.MapViewModel;
@@ -28,8 +29,12 @@ import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.tasks.OnSuccessListener;
 
 import org.osmdroid.api.IMapController;
-import org.osmdroid.config.Configuration;
+import org.osmdroid.events.DelayedMapListener;
+import org.osmdroid.events.MapListener;
+import org.osmdroid.events.ScrollEvent;
+import org.osmdroid.events.ZoomEvent;
 import org.osmdroid.tileprovider.tilesource.TileSourceFactory;
+import org.osmdroid.util.BoundingBox;
 import org.osmdroid.util.GeoPoint;
 import org.osmdroid.views.MapView;
 import org.osmdroid.views.overlay.Marker;
@@ -45,6 +50,8 @@ public class MapFragment extends Fragment implements Marker.OnMarkerClickListene
 
     private static final String TAG = "MapFragment";
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 1;
+    // Wait for panning to settle before changing subscriptions
+    private static final long VIEWPORT_CHANGE_DELAY_MS = 300;
 
     private MapView map;
     private IMapController mapController;
@@ -60,9 +67,9 @@ public class MapFragment extends Fragment implements Marker.OnMarkerClickListene
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
-        // Initialize OSMDroid configuration
+        // OSMDroid must be configured before the MapView is created, usually prewarmed by now
         Context ctx = requireActivity().getApplicationContext();
-        Configuration.getInstance().load(ctx, PreferenceManager.getDefaultSharedPreferences(ctx));
+        AppStartup.getInstance(ctx).initialize(OsmdroidInitializer.class);
 
         // Inflate the layout for this fragment
         View rootView = inflater.inflate(R.layout.fragment_map, container, false);
@@ -107,10 +114,32 @@ public class MapFragment extends Fragment implements Marker.OnMarkerClickListene
             }
         });
 
+        // Keep live availability subscriptions in step with the visible region
+        map.addMapListener(new DelayedMapListener(new MapListener() {
+            @Override
+            public boolean onScroll(ScrollEvent event) {
+                onViewportChanged();
+                return false;
+            }
+
+            @Override
+            public boolean onZoom(ZoomEvent event) {
+                onViewportChanged();
+                return false;
+            }
+        }, VIEWPORT_CHANGE_DELAY_MS));
+
         // Check for location permission
         enableMyLocation();
     }
 
+    private void onViewportChanged() {
+        if (map == null || mapViewModel == null) return;
+        BoundingBox box = map.getBoundingBox();
+        mapViewModel.onViewportChanged(box.getLatSouth(), box.getLonWest(),
+                box.getLatNorth(), box.getLonEast());
+    }
+
     private void enableMyLocation() {
         if (PermissionUtils.hasLocationPermission(requireContext())) {
             if (ActivityCompat.checkSelfPermission(requireContext(),
@@ -27,12 +27,15 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
 import com.example.parkingfinder.R;
 import com.example.parkingfinder.activities.ParkingDetailsActivity;
 import com.example.parkingfinder.adapters.ParkingListAdapter;
 import com.example.parkingfinder.firebase.FirebaseAuthManager;
-import com.example.parkingfinder.firebase.FirestoreManager;
 import com.example.parkingfinder.models.ParkingArea;
+import com.example.parkingfinder.models.ParkingAreaTable;
+import com.example.parkingfinder.repositories.ParkingAreaRepository;
 import com.example.parkingfinder.utils.PermissionUtils;
 import com.example.parkingfinder.viewmodels.ParkingViewModel;
 import com.google.android.gms.location.FusedLocationProviderClient;
@@ -40,17 +43,18 @@ import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.tasks.OnSuccessListener;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 
 public class ParkingListFragment extends Fragment implements ParkingListAdapter.OnParkingItemClickListener {
 
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 1001;
 
+    // Rows ahead of the scroll position whose images are fetched in advance
+    private static final int MAX_PRELOAD_ROWS = 6;
+
     private ParkingViewModel parkingViewModel;
     private FirebaseAuthManager authManager;
-    private FirestoreManager firestoreManager;
     private FusedLocationProviderClient fusedLocationClient;
 
     // UI components
@@ -58,6 +62,8 @@ public class ParkingListFragment extends Fragment implements ParkingListAdapter.
     private RecyclerView recyclerView;
     private ProgressBar progressBar;
     private TextView emptyTextView;
+    // The list is from Firestore's local cache and not confirmed by the server yet
+    private boolean showingCachedAreas;
     private EditText searchEditText;
     private ImageButton clearSearchButton;
     private ImageButton sortButton;
@@ -66,7 +72,8 @@ public class ParkingListFragment extends Fragment implements ParkingListAdapter.
     private ParkingListAdapter adapter;
 
     // State variables
-    private List<ParkingArea> parkingAreas = new ArrayList<>();
+    // Rebuilt when the areas change, filtered and sorted on every keystroke
+    private ParkingAreaTable parkingAreaTable = ParkingAreaTable.EMPTY;
     private List<ParkingArea> filteredParkingAreas = new ArrayList<>();
     private String currentSearchQuery = "";
     private String currentSortOption = "distance"; // distance, price, availability, rating
@@ -88,7 +95,6 @@ public class ParkingListFragment extends Fragment implements ParkingListAdapter.
 
         // Initialize managers
         authManager = FirebaseAuthManager.getInstance();
-        firestoreManager = FirestoreManager.getInstance();
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(requireActivity());
 
         // Initialize UI components
@@ -106,8 +112,13 @@ public class ParkingListFragment extends Fragment implements ParkingListAdapter.
         adapter = new ParkingListAdapter(getContext(), filteredParkingAreas, this);
         recyclerView.setAdapter(adapter);
 
+        // Load images of the rows about to scroll into view
+        recyclerView.addOnScrollListener(new RecyclerViewPreloader<>(
+                Glide.with(this), adapter, adapter.getPreloadSizeProvider(), MAX_PRELOAD_ROWS));
+
         // Setup swipe refresh
-        swipeRefreshLayout.setOnRefreshListener(this::loadParkingAreas);
+        // Pull to refresh always goes to the network
+        swipeRefreshLayout.setOnRefreshListener(() -> loadParkingAreas(true));
 
         // Initialize ViewModel
         parkingViewModel = new ViewModelProvider(requireActivity()).get(ParkingViewModel.class);
@@ -139,16 +150,16 @@ public class ParkingListFragment extends Fragment implements ParkingListAdapter.
         parkingViewModel.getParkingAreas().observe(getViewLifecycleOwner(), new Observer<List<ParkingArea>>() {
             @Override
             public void onChanged(List<ParkingArea> areas) {
-                parkingAreas.clear();
-                if (areas != null) {
-                    parkingAreas.addAll(areas);
-                }
+                parkingAreaTable = areas != null ? new ParkingAreaTable(areas) : ParkingAreaTable.EMPTY;
                 applyFilters();
                 progressBar.setVisibility(View.GONE);
                 swipeRefreshLayout.setRefreshing(false);
             }
         });
 
+        parkingViewModel.getParkingAreasSource().observe(getViewLifecycleOwner(), source ->
+                showingCachedAreas = source == ParkingAreaRepository.Source.FIRESTORE_CACHE);
+
         parkingViewModel.getIsLoading().observe(getViewLifecycleOwner(), isLoading -> {
             if (isLoading) {
                 progressBar.setVisibility(View.VISIBLE);
@@ -180,7 +191,7 @@ public class ParkingListFragment extends Fragment implements ParkingListAdapter.
 
             @Override
             public void afterTextChanged(Editable s) {
-                currentSearchQuery = s.toString().trim().toLowerCase();
+                currentSearchQuery = s.toString().trim().toLowerCase(Locale.ROOT);
                 updateClearButton();
                 applyFilters();
             }
@@ -252,92 +263,48 @@ public class ParkingListFragment extends Fragment implements ParkingListAdapter.
     }
 
     private void applyFilters() {
-        if (parkingAreas.isEmpty()) {
+        if (parkingAreaTable.isEmpty()) {
             showEmptyState("No parking areas found");
             return;
         }
 
-        // Apply search filter
-        List<ParkingArea> searchFiltered = new ArrayList<>();
-        if (currentSearchQuery.isEmpty()) {
-            searchFiltered.addAll(parkingAreas);
-        } else {
-            for (ParkingArea area : parkingAreas) {
-                if (area.getName().toLowerCase().contains(currentSearchQuery) ||
-                        area.getAddress().toLowerCase().contains(currentSearchQuery)) {
-                    searchFiltered.add(area);
-                }
-            }
-        }
-
-        // Apply other filters
-        filteredParkingAreas.clear();
-        for (ParkingArea area : searchFiltered) {
-            boolean includeArea = true;
-
-            // Filter by availability
-            if (onlyShowAvailable && area.getAvailableSpots() <= 0) {
-                includeArea = false;
-            }
-
-            // Filter by price
-            if (area.getHourlyRate() > maxPrice) {
-                includeArea = false;
-            }
-
-            // Filter by EV charging
-            if (hasEVCharging && !area.isHasElectricCharging()) {
-                includeArea = false;
-            }
-
-            // Filter by disabled access
-            if (hasDisabledAccess && !area.isHasDisabledAccess()) {
-                includeArea = false;
-            }
-
-            if (includeArea) {
-                filteredParkingAreas.add(area);
-            }
-        }
+        int requiredFeatures = (hasEVCharging ? ParkingAreaTable.FEATURE_ELECTRIC_CHARGING : 0)
+                | (hasDisabledAccess ? ParkingAreaTable.FEATURE_DISABLED_ACCESS : 0);
+        int[] rows = parkingAreaTable.select(currentSearchQuery, onlyShowAvailable, maxPrice, requiredFeatures);
 
         // Apply sorting
-        sortFilteredList();
+        sortRows(rows);
+
+        parkingAreaTable.collect(rows, filteredParkingAreas);
 
         // Update adapter
         adapter.updateData(filteredParkingAreas);
 
         // Show/hide empty state
         if (filteredParkingAreas.isEmpty()) {
-            showEmptyState("No parking areas match your criteria");
+            showEmptyState(showingCachedAreas
+                    ? "Checking for parking areas nearby..."
+                    : "No parking areas match your criteria");
         } else {
             hideEmptyState();
         }
     }
 
-    private void sortFilteredList() {
+    private void sortRows(int[] rows) {
         switch (currentSortOption) {
             case "distance":
                 if (userLatitude != 0 && userLongitude != 0) {
-                    Collections.sort(filteredParkingAreas, (a, b) -> {
-                        double distanceA = a.distanceFrom(userLatitude, userLongitude);
-                        double distanceB = b.distanceFrom(userLatitude, userLongitude);
-                        return Double.compare(distanceA, distanceB);
-                    });
+                    parkingAreaTable.sort(rows, ParkingAreaTable.Order.DISTANCE, userLatitude, userLongitude);
                 }
                 break;
             case "price":
-                Collections.sort(filteredParkingAreas, Comparator.comparingDouble(ParkingArea::getHourlyRate));
+                parkingAreaTable.sort(rows, ParkingAreaTable.Order.PRICE, userLatitude, userLongitude);
                 break;
             case "availability":
-                Collections.sort(filteredParkingAreas, (a, b) -> {
-                    // Sort by percentage available (descending)
-                    double percentA = a.getTotalSpots() > 0 ? ((double) a.getAvailableSpots() / a.getTotalSpots()) : 0;
-                    double percentB = b.getTotalSpots() > 0 ? ((double) b.getAvailableSpots() / b.getTotalSpots()) : 0;
-                    return Double.compare(percentB, percentA);
-                });
+                parkingAreaTable.sort(rows, ParkingAreaTable.Order.AVAILABILITY, userLatitude, userLongitude);
                 break;
             case "rating":
-                Collections.sort(filteredParkingAreas, (a, b) -> Float.compare(b.getRating(), a.getRating()));
+                parkingAreaTable.sort(rows, ParkingAreaTable.Order.RATING, userLatitude, userLongitude);
                 break;
         }
     }
@@ -354,8 +321,12 @@ public class ParkingListFragment extends Fragment implements ParkingListAdapter.
     }
 
     private void loadParkingAreas() {
+        loadParkingAreas(false);
+    }
+
+    private void loadParkingAreas(boolean forceRefresh) {
         if (parkingViewModel != null) {
-            parkingViewModel.loadParkingAreas(userLatitude, userLongitude, 10.0);
+            parkingViewModel.loadParkingAreas(userLatitude, userLongitude, 10.0, forceRefresh);
         }
     }
 
@@ -429,26 +400,9 @@ public class ParkingListFragment extends Fragment implements ParkingListAdapter.
 
     @Override
     public void onFavoriteClick(ParkingArea parkingArea, boolean isFavorite) {
-        // Update favorite status in Firestore
         if (authManager.isUserLoggedIn()) {
-            firestoreManager.updateFavoriteStatus(
-                    authManager.getCurrentUser().getUid(),
-                    parkingArea.getId(),
-                    isFavorite,
-                    new FirestoreManager.FirestoreCallback() {
-                        @Override
-                        public void onSuccess() {
-                            // Success is already reflected in UI due to immediate feedback
-                        }
-
-                        @Override
-                        public void onFailure(String errorMessage) {
-                            // Revert UI change if failed
-                            parkingArea.setFavorite(!isFavorite);
-                            adapter.notifyDataSetChanged();
-                            Toast.makeText(getContext(), "Error updating favorite: " + errorMessage, Toast.LENGTH_SHORT).show();
-                        }
-                    });
+            // Applied locally at once, synced to Firestore in the background
+            parkingViewModel.setFavorite(parkingArea, isFavorite);
         } else {
             // Revert UI change if not logged in
             parkingArea.setFavorite(!isFavorite);
@@ -1,6 +1,7 @@
 package com.example.parkingfinder.fragments;
 
 import android.app.AlertDialog;
+import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
@@ -18,6 +19,7 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
 
 import com.bumptech.glide.Glide;
 import com.example.parkingfinder.R;
@@ -26,10 +28,9 @@ import com.example.parkingfinder.activities.MainActivity;
 import com.example.parkingfinder.firebase.FirebaseAuthManager;
 import com.example.parkingfinder.firebase.FirestoreManager;
 import com.example.parkingfinder.models.User;
+import com.example.parkingfinder.services.ProfileImageUploadWorker;
 import com.google.android.material.textfield.TextInputLayout;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
 
 public class ProfileFragment extends Fragment {
 
@@ -37,7 +38,6 @@ public class ProfileFragment extends Fragment {
 
     private FirebaseAuthManager authManager;
     private FirestoreManager firestoreManager;
-    private StorageReference storageReference;
     private User currentUser;
     private Uri selectedImageUri = null;
 
@@ -55,6 +55,11 @@ public class ProfileFragment extends Fragment {
     private Button viewFavoritesButton;
     private Button logoutButton;
     private ProgressBar progressBar;
+    private ProgressBar uploadProgressBar;
+
+    // Upload progress of the photo of the user shown, observed while the view exists
+    private LiveData<Integer> uploadProgress;
+    private String uploadProgressUserId;
 
     // UI components for guest view
     private View guestView;
@@ -68,7 +73,6 @@ public class ProfileFragment extends Fragment {
         // Initialize Firebase managers
         authManager = FirebaseAuthManager.getInstance();
         firestoreManager = FirestoreManager.getInstance();
-        storageReference = FirebaseStorage.getInstance().getReference("profile_images");
 
         // Initialize UI components
         authenticatedView = view.findViewById(R.id.authenticated_view);
@@ -77,6 +81,7 @@ public class ProfileFragment extends Fragment {
 
         // Initialize authenticated view components
         profileImageView = view.findViewById(R.id.image_view_profile);
+        uploadProgressBar = view.findViewById(R.id.progress_bar_upload);
         emailTextView = view.findViewById(R.id.text_view_email);
         nameInputLayout = view.findViewById(R.id.text_input_layout_name);
         nameEditText = view.findViewById(R.id.edit_text_name);
@@ -119,6 +124,7 @@ public class ProfileFragment extends Fragment {
         if (authManager.isUserLoggedIn()) {
             showAuthenticatedView();
             loadUserProfile();
+            observeUploadProgress();
         } else {
             showGuestView();
         }
@@ -131,11 +137,19 @@ public class ProfileFragment extends Fragment {
         if (authManager.isUserLoggedIn()) {
             showAuthenticatedView();
             loadUserProfile();
+            observeUploadProgress();
         } else {
             showGuestView();
         }
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        uploadProgress = null;
+        uploadProgressUserId = null;
+    }
+
     @Override
     public void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
@@ -197,6 +211,31 @@ public class ProfileFragment extends Fragment {
         });
     }
 
+    /**
+     * Show the signed in user's photo upload under the photo while it runs
+     */
+    private void observeUploadProgress() {
+        String userId = authManager.getCurrentUser().getUid();
+        if (userId.equals(uploadProgressUserId)) {
+            return;
+        }
+        if (uploadProgress != null) {
+            uploadProgress.removeObservers(getViewLifecycleOwner());
+        }
+        uploadProgressUserId = userId;
+        uploadProgress = ProfileImageUploadWorker.getProgress(requireContext(), userId);
+        uploadProgress.observe(getViewLifecycleOwner(), this::showUploadProgress);
+    }
+
+    private void showUploadProgress(int percent) {
+        if (percent < 0) {
+            uploadProgressBar.setVisibility(View.GONE);
+            return;
+        }
+        uploadProgressBar.setVisibility(View.VISIBLE);
+        uploadProgressBar.setProgress(percent);
+    }
+
     private void selectImage() {
         Intent intent = new Intent();
         intent.setType("image/*");
@@ -218,28 +257,25 @@ public class ProfileFragment extends Fragment {
 
         progressBar.setVisibility(View.VISIBLE);
 
-        // If image is selected, upload it first
-        if (selectedImageUri != null) {
-            uploadImageAndSaveProfile(name, phone);
-        } else {
-            saveUserData(name, phone, currentUser != null ? currentUser.getProfileImageUrl() : null);
-        }
+        // The profile is saved first, a selected image follows in the background
+        saveUserData(name, phone, currentUser != null ? currentUser.getProfileImageUrl() : null);
     }
 
-    private void uploadImageAndSaveProfile(String name, String phone) {
+    private void uploadProfileImage(Uri imageUri) {
         String userId = authManager.getCurrentUser().getUid();
-        StorageReference fileReference = storageReference.child(userId + ".jpg");
-
-        fileReference.putFile(selectedImageUri)
-                .addOnSuccessListener(taskSnapshot -> {
-                    fileReference.getDownloadUrl().addOnSuccessListener(uri -> {
-                        String imageUrl = uri.toString();
-                        saveUserData(name, phone, imageUrl);
-                    });
-                })
-                .addOnFailureListener(e -> {
-                    progressBar.setVisibility(View.GONE);
-                    Toast.makeText(getContext(), "Failed to upload image: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        // Still valid if the fragment was detached while saving
+        Context appContext = progressBar.getContext().getApplicationContext();
+        ProfileImageUploadWorker.enqueue(appContext, userId, imageUri,
+                new ProfileImageUploadWorker.EnqueueCallback() {
+                    @Override
+                    public void onSuccess() {
+                        Toast.makeText(appContext, "Uploading profile photo", Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onFailure(String errorMessage) {
+                        Toast.makeText(appContext, "Failed to upload image: " + errorMessage, Toast.LENGTH_SHORT).show();
+                    }
                 });
     }
 
@@ -259,7 +295,10 @@ public class ProfileFragment extends Fragment {
             public void onSuccess() {
                 progressBar.setVisibility(View.GONE);
                 Toast.makeText(getContext(), "Profile updated successfully", Toast.LENGTH_SHORT).show();
-                selectedImageUri = null;
+                if (selectedImageUri != null) {
+                    uploadProfileImage(selectedImageUri);
+                    selectedImageUri = null;
+                }
             }
 
             @Override
@@ -2,7 +2,6 @@ package com.example.parkingfinder.fragments;
 
 import android.content.Context;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -11,8 +10,9 @@ import android.view.ViewGroup;
 import androidx.fragment.app.Fragment;
 
 import com.example.parkingfinder.R;
+import com.example.parkingfinder.initializers.AppStartup;
+import com.example.parkingfinder.initializers.OsmdroidInitializer;
 
-import org.osmdroid.config.Configuration;
 import org.osmdroid.tileprovider.tilesource.TileSourceFactory;
 import org.osmdroid.util.GeoPoint;
 import org.osmdroid.views.MapView;
@@ -28,10 +28,9 @@ public class SimpleMapFragment extends Fragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        // Load OSMDroid configuration
+        // OSMDroid must be configured before the MapView is created, usually prewarmed by now
         Context ctx = requireActivity().getApplicationContext();
-        Configuration.getInstance().load(ctx, PreferenceManager.getDefaultSharedPreferences(ctx));
-        Log.d(TAG, "OSMDroid configuration loaded");
+        AppStartup.getInstance(ctx).initialize(OsmdroidInitializer.class);
     }
 
     @Override
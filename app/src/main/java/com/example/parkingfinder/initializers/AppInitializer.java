@@ -0,0 +1,37 @@
+package com.example.parkingfinder.initializers;
+
+import android.content.Context;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One step of application startup, run by AppStartup after its dependencies
+ */
+public interface AppInitializer {
+
+    enum Mode {
+        // Run in Application.onCreate, before the first frame
+        MAIN_THREAD,
+        // Started in Application.onCreate on the startup thread
+        BACKGROUND,
+        // Only run when first requested
+        ON_DEMAND
+    }
+
+    /**
+     * Name used in the startup timings
+     */
+    String getName();
+
+    Mode getMode();
+
+    /**
+     * Initializers that must have finished before this one runs
+     */
+    default List<Class<? extends AppInitializer>> getDependencies() {
+        return Collections.emptyList();
+    }
+
+    void initialize(Context context);
+}
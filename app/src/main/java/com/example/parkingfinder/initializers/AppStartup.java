@@ -0,0 +1,173 @@
+package com.example.parkingfinder.initializers;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs the application's initializers in dependency order, each exactly once.
+ * MAIN_THREAD initializers run in Application.onCreate, BACKGROUND ones start
+ * on a startup thread right after, and ON_DEMAND ones run when first
+ * requested through initialize(). A caller asking for an initializer that is
+ * already running on another thread waits for it to finish.
+ * The time each initializer took is logged and kept for getTimings().
+ */
+public class AppStartup {
+
+    private static final String TAG = "AppStartup";
+
+    private static volatile AppStartup instance;
+
+    private final Context context;
+    private final ExecutorService startupExecutor;
+
+    // Registered initializers in registration order
+    private final Map<Class<? extends AppInitializer>, AppInitializer> initializers = new LinkedHashMap<>();
+
+    // One task per initializer once it was requested. Guarded by this.
+    private final Map<Class<? extends AppInitializer>, FutureTask<Void>> tasks = new HashMap<>();
+
+    // Milliseconds per initializer name, in completion order. Guarded by itself.
+    private final Map<String, Long> timings = new LinkedHashMap<>();
+
+    private AppStartup(Context context) {
+        this.context = context;
+        this.startupExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    public static AppStartup getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AppStartup.class) {
+                if (instance == null) {
+                    instance = new AppStartup(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Add an initializer to the graph. Register everything before start().
+     */
+    public AppStartup register(AppInitializer initializer) {
+        initializers.put(initializer.getClass(), initializer);
+        return this;
+    }
+
+    /**
+     * Run the MAIN_THREAD initializers and start the BACKGROUND ones.
+     * Called from Application.onCreate.
+     */
+    public void start() {
+        // A missing dependency would otherwise only fail when first requested
+        for (AppInitializer initializer : initializers.values()) {
+            for (Class<? extends AppInitializer> dependency : initializer.getDependencies()) {
+                if (!initializers.containsKey(dependency)) {
+                    throw new IllegalStateException(initializer.getName() + " depends on "
+                            + dependency.getSimpleName() + ", which is not registered");
+                }
+            }
+        }
+
+        long startTime = SystemClock.elapsedRealtime();
+        for (AppInitializer initializer : initializers.values()) {
+            if (initializer.getMode() == AppInitializer.Mode.MAIN_THREAD) {
+                initialize(initializer.getClass());
+            }
+        }
+        Log.d(TAG, "Main thread startup took " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+
+        for (AppInitializer initializer : initializers.values()) {
+            if (initializer.getMode() == AppInitializer.Mode.BACKGROUND) {
+                prewarm(initializer.getClass());
+            }
+        }
+    }
+
+    /**
+     * Make sure an initializer and its dependencies have run, running them on
+     * the calling thread if nobody has yet
+     */
+    public void initialize(Class<? extends AppInitializer> type) {
+        initialize(type, new ArrayList<>());
+    }
+
+    /**
+     * Run an initializer on the startup thread ahead of its first use
+     */
+    public void prewarm(Class<? extends AppInitializer> type) {
+        startupExecutor.execute(() -> initialize(type));
+    }
+
+    /**
+     * Time taken by each initializer that has run, in milliseconds
+     */
+    public Map<String, Long> getTimings() {
+        synchronized (timings) {
+            return new LinkedHashMap<>(timings);
+        }
+    }
+
+    private void initialize(Class<? extends AppInitializer> type, List<Class<? extends AppInitializer>> path) {
+        AppInitializer initializer = initializers.get(type);
+        if (initializer == null) {
+            throw new IllegalStateException(type.getSimpleName() + " is not registered");
+        }
+        if (path.contains(type)) {
+            throw new IllegalStateException("Initializer cycle through " + type.getSimpleName());
+        }
+
+        FutureTask<Void> task;
+        synchronized (this) {
+            task = tasks.get(type);
+            if (task == null) {
+                List<Class<? extends AppInitializer>> dependencyPath = new ArrayList<>(path);
+                dependencyPath.add(type);
+                task = new FutureTask<>(() -> run(initializer, dependencyPath), null);
+                tasks.put(type, task);
+            }
+        }
+
+        // No-op if another thread already ran or is running it
+        task.run();
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, initializer.getName() + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(AppInitializer initializer, List<Class<? extends AppInitializer>> path) {
+        for (Class<? extends AppInitializer> dependency : initializer.getDependencies()) {
+            initialize(dependency, path);
+        }
+
+        long startTime = SystemClock.elapsedRealtime();
+        try {
+            initializer.initialize(context);
+        } catch (Exception e) {
+            Log.e(TAG, "Error in " + initializer.getName() + ": " + e.getMessage(), e);
+        }
+        long elapsed = SystemClock.elapsedRealtime() - startTime;
+
+        synchronized (timings) {
+            timings.put(initializer.getName(), elapsed);
+        }
+        boolean onMainThread = Looper.myLooper() == Looper.getMainLooper();
+        Log.d(TAG, initializer.getName() + " took " + elapsed + "ms on "
+                + (onMainThread ? "main thread" : Thread.currentThread().getName()));
+    }
+}
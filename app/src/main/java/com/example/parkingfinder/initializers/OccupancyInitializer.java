@@ -0,0 +1,36 @@
+package com.example.parkingfinder.initializers;
+
+import android.content.Context;
+
+import com.example.parkingfinder.repositories.OccupancyRepository;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Starts sampling live availability into the occupancy history, so it is
+ * recorded whichever screen subscribes to the areas first
+ */
+public class OccupancyInitializer implements AppInitializer {
+
+    @Override
+    public String getName() {
+        return "Occupancy";
+    }
+
+    @Override
+    public Mode getMode() {
+        return Mode.BACKGROUND;
+    }
+
+    @Override
+    public List<Class<? extends AppInitializer>> getDependencies() {
+        // The sampler is installed on the Realtime Database manager
+        return Collections.singletonList(FirebaseInitializer.class);
+    }
+
+    @Override
+    public void initialize(Context context) {
+        OccupancyRepository.getInstance(context);
+    }
+}
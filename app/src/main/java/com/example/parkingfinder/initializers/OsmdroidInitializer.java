@@ -0,0 +1,74 @@
+package com.example.parkingfinder.initializers;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import org.osmdroid.config.Configuration;
+import org.osmdroid.config.IConfigurationProvider;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads the OSMDroid configuration. Reads preferences, package info and
+ * creates the tile cache directory, so it is kept off the main thread:
+ * MainActivity prewarms it and the map fragments wait for it before
+ * creating a MapView.
+ */
+public class OsmdroidInitializer implements AppInitializer {
+
+    private static final String TAG = "OsmdroidInitializer";
+
+    @Override
+    public String getName() {
+        return "OSMDroid";
+    }
+
+    @Override
+    public Mode getMode() {
+        return Mode.ON_DEMAND;
+    }
+
+    @Override
+    public List<Class<? extends AppInitializer>> getDependencies() {
+        // Tiles are downloaded through the updated security provider
+        return Collections.singletonList(SecurityProviderInitializer.class);
+    }
+
+    @Override
+    public void initialize(Context context) {
+        IConfigurationProvider configuration = Configuration.getInstance();
+        configuration.load(context, PreferenceManager.getDefaultSharedPreferences(context));
+
+        // Important: Set user agent to avoid getting banned from OSM servers
+        String versionName;
+        try {
+            versionName = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionName;
+        } catch (PackageManager.NameNotFoundException e) {
+            versionName = "unknown";
+        }
+        configuration.setUserAgentValue(context.getPackageName() + "/" + versionName);
+
+        // Set custom tile cache path in app's internal storage (no permissions needed)
+        File osmdroidCacheDir = new File(context.getCacheDir(), "osmdroid");
+        if (!osmdroidCacheDir.exists() && !osmdroidCacheDir.mkdirs()) {
+            Log.w(TAG, "Failed to create OSMDroid cache directory");
+        }
+
+        configuration.setOsmdroidTileCache(osmdroidCacheDir);
+        configuration.setOsmdroidBasePath(context.getFilesDir());
+
+        // Additional configuration to avoid permission issues
+        configuration.setMapTileDownloaderFollowRedirects(true);
+
+        // Set a reasonable tile download limit to avoid overloading servers
+        configuration.setTileDownloadThreads((short) 2);
+        configuration.setTileFileSystemThreads((short) 4);
+        configuration.setTileDownloadMaxQueueSize((short) 50);
+
+        Log.d(TAG, "OSMDroid cache path: " + osmdroidCacheDir.getAbsolutePath());
+    }
+}
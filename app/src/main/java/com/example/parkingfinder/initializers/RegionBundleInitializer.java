@@ -0,0 +1,36 @@
+package com.example.parkingfinder.initializers;
+
+import android.content.Context;
+
+import com.example.parkingfinder.repositories.RegionBundleRepository;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads the shipped regional bundles into Firestore's cache, so the first
+ * nearby search can be answered from them right away
+ */
+public class RegionBundleInitializer implements AppInitializer {
+
+    @Override
+    public String getName() {
+        return "RegionBundles";
+    }
+
+    @Override
+    public Mode getMode() {
+        return Mode.BACKGROUND;
+    }
+
+    @Override
+    public List<Class<? extends AppInitializer>> getDependencies() {
+        // The Firestore cache settings must be applied first
+        return Collections.singletonList(FirebaseInitializer.class);
+    }
+
+    @Override
+    public void initialize(Context context) {
+        RegionBundleRepository.getInstance(context).preloadAssets();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.parkingfinder.initializers;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.google.android.gms.common.GoogleApiAvailability;
+import com.google.android.gms.security.ProviderInstaller;
+
+/**
+ * Updates the security provider to avoid SSL issues. The install itself is
+ * asynchronous, it only has to be started from the main thread.
+ */
+public class SecurityProviderInitializer implements AppInitializer, ProviderInstaller.ProviderInstallListener {
+
+    private static final String TAG = "SecurityProvider";
+
+    private Context context;
+
+    @Override
+    public String getName() {
+        return "SecurityProvider";
+    }
+
+    @Override
+    public Mode getMode() {
+        return Mode.MAIN_THREAD;
+    }
+
+    @Override
+    public void initialize(Context context) {
+        this.context = context;
+        try {
+            ProviderInstaller.installIfNeededAsync(context, this);
+        } catch (Exception e) {
+            Log.e(TAG, "Error installing security provider: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onProviderInstallFailed(int errorCode, Intent recoveryIntent) {
+        GoogleApiAvailability.getInstance().showErrorNotification(context, errorCode);
+    }
+
+    @Override
+    public void onProviderInstalled() {
+        Log.d(TAG, "Security provider installed successfully");
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.parkingfinder.mappers;
+
+import android.location.Address;
+
+import com.example.parkingfinder.database.entities.GeocodeEntity;
+
+import java.util.Locale;
+
+/**
+ * Maps geocoder addresses to and from the Room geocode cache. Only the
+ * fields the app displays are kept.
+ */
+public final class AddressMapper {
+
+    private AddressMapper() {
+        // No instances
+    }
+
+    public static GeocodeEntity toEntity(String cacheKey, Address address, long cachedAt) {
+        return new GeocodeEntity(
+                cacheKey,
+                address.getLatitude(),
+                address.getLongitude(),
+                address.getMaxAddressLineIndex() >= 0 ? address.getAddressLine(0) : null,
+                address.getSubThoroughfare(),
+                address.getThoroughfare(),
+                address.getLocality(),
+                address.getAdminArea(),
+                address.getPostalCode(),
+                address.getCountryName(),
+                address.getCountryCode(),
+                cachedAt
+        );
+    }
+
+    public static Address fromEntity(GeocodeEntity entity) {
+        Address address = new Address(Locale.getDefault());
+        address.setLatitude(entity.getLatitude());
+        address.setLongitude(entity.getLongitude());
+        if (entity.getAddressLine() != null) {
+            address.setAddressLine(0, entity.getAddressLine());
+        }
+        address.setSubThoroughfare(entity.getSubThoroughfare());
+        address.setThoroughfare(entity.getThoroughfare());
+        address.setLocality(entity.getLocality());
+        address.setAdminArea(entity.getAdminArea());
+        address.setPostalCode(entity.getPostalCode());
+        address.setCountryName(entity.getCountryName());
+        address.setCountryCode(entity.getCountryCode());
+        return address;
+    }
+}
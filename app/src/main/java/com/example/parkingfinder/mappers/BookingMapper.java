@@ -0,0 +1,98 @@
+package com.example.parkingfinder.mappers;
+
+import com.example.parkingfinder.database.entities.BookingEntity;
+import com.example.parkingfinder.models.Booking;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Date;
+
+import static com.example.parkingfinder.mappers.FieldValues.asBoolean;
+import static com.example.parkingfinder.mappers.FieldValues.asDate;
+import static com.example.parkingfinder.mappers.FieldValues.asDouble;
+import static com.example.parkingfinder.mappers.FieldValues.asString;
+
+/**
+ * Maps bookings between Firestore documents, the model and the Room entity
+ */
+public final class BookingMapper {
+
+    private BookingMapper() {
+        // No instances
+    }
+
+    /**
+     * Read a booking document. The id is taken from the document.
+     */
+    public static Booking fromDocument(DocumentSnapshot document) {
+        Booking booking = new Booking();
+        booking.setId(document.getId());
+        booking.setUserId(asString(document.get("userId")));
+        booking.setParkingAreaId(asString(document.get("parkingAreaId")));
+        booking.setParkingSpotId(asString(document.get("parkingSpotId")));
+        booking.setParkingAreaName(asString(document.get("parkingAreaName")));
+        booking.setParkingSpotNumber(asString(document.get("parkingSpotNumber")));
+        booking.setStartTime(asDate(document.get("startTime")));
+        booking.setEndTime(asDate(document.get("endTime")));
+        booking.setTotalCost(asDouble(document.get("totalCost")));
+        booking.setPaymentMethod(asString(document.get("paymentMethod")));
+        booking.setPaymentId(asString(document.get("paymentId")));
+        booking.setStatus(asString(document.get("status")));
+        Date createdAt = asDate(document.get("createdAt"));
+        if (createdAt != null) {
+            booking.setCreatedAt(createdAt);
+        }
+        booking.setVehicleRegistration(asString(document.get("vehicleRegistration")));
+        booking.setPaid(asBoolean(document.get("paid")));
+        booking.setConfirmationCode(asString(document.get("confirmationCode")));
+        return booking;
+    }
+
+    /**
+     * Convert to an entity. isSynced is left for the caller to set.
+     */
+    public static BookingEntity toEntity(Booking model) {
+        BookingEntity entity = new BookingEntity(
+                model.getId(),
+                model.getUserId(),
+                model.getParkingAreaId(),
+                model.getParkingSpotId(),
+                model.getParkingAreaName(),
+                model.getParkingSpotNumber(),
+                model.getStartTime() != null ? model.getStartTime().getTime() : 0,
+                model.getEndTime() != null ? model.getEndTime().getTime() : 0,
+                model.getTotalCost(),
+                model.getStatus()
+        );
+        entity.setVehicleRegistration(model.getVehicleRegistration());
+        entity.setPaymentMethod(model.getPaymentMethod());
+        entity.setPaymentId(model.getPaymentId());
+        entity.setPaid(model.isPaid());
+        entity.setConfirmationCode(model.getConfirmationCode());
+        if (model.getCreatedAt() != null) {
+            entity.setCreatedAt(model.getCreatedAt().getTime());
+        }
+        return entity;
+    }
+
+    public static Booking fromEntity(BookingEntity entity) {
+        Booking booking = new Booking(
+                entity.getUserId(),
+                entity.getParkingAreaId(),
+                entity.getParkingSpotId(),
+                entity.getParkingAreaName(),
+                entity.getParkingSpotNumber(),
+                new Date(entity.getStartTime()),
+                new Date(entity.getEndTime()),
+                entity.getTotalCost()
+        );
+        booking.setId(entity.getId());
+        booking.setStatus(entity.getStatus());
+        booking.setVehicleRegistration(entity.getVehicleRegistration());
+        booking.setPaymentMethod(entity.getPaymentMethod());
+        booking.setPaymentId(entity.getPaymentId());
+        booking.setPaid(entity.isPaid());
+        booking.setConfirmationCode(entity.getConfirmationCode());
+        booking.setCreatedAt(new Date(entity.getCreatedAt()));
+        return booking;
+    }
+}
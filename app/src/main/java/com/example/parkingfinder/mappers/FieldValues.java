@@ -0,0 +1,69 @@
+package com.example.parkingfinder.mappers;
+
+import com.google.firebase.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Typed reads of raw Firestore and Realtime Database field values.
+ * Both SDKs hand back numbers as Long or Double depending on how the value
+ * was written, so everything goes through Number.
+ */
+final class FieldValues {
+
+    private FieldValues() {
+        // No instances
+    }
+
+    static String asString(Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    static double asDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    static float asFloat(Object value) {
+        return value instanceof Number ? ((Number) value).floatValue() : 0f;
+    }
+
+    static int asInt(Object value) {
+        return asInt(value, 0);
+    }
+
+    static int asInt(Object value, int defaultValue) {
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+
+    static boolean asBoolean(Object value) {
+        return value instanceof Boolean && (Boolean) value;
+    }
+
+    /**
+     * Firestore stores dates as Timestamp, older documents may hold epoch millis
+     */
+    static Date asDate(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toDate();
+        } else if (value instanceof Date) {
+            return (Date) value;
+        } else if (value instanceof Number) {
+            return new Date(((Number) value).longValue());
+        }
+        return null;
+    }
+
+    static List<String> asStringList(Object value) {
+        List<String> result = new ArrayList<>();
+        if (value instanceof List) {
+            for (Object item : (List<?>) value) {
+                if (item instanceof String) {
+                    result.add((String) item);
+                }
+            }
+        }
+        return result;
+    }
+}
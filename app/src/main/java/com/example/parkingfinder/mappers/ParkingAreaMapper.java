@@ -0,0 +1,118 @@
+package com.example.parkingfinder.mappers;
+
+import com.example.parkingfinder.database.entities.ParkingAreaEntity;
+import com.example.parkingfinder.models.ParkingArea;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import static com.example.parkingfinder.mappers.FieldValues.asBoolean;
+import static com.example.parkingfinder.mappers.FieldValues.asDouble;
+import static com.example.parkingfinder.mappers.FieldValues.asFloat;
+import static com.example.parkingfinder.mappers.FieldValues.asInt;
+import static com.example.parkingfinder.mappers.FieldValues.asString;
+import static com.example.parkingfinder.mappers.FieldValues.asStringList;
+
+/**
+ * Maps parking areas between Firebase snapshots, the model and the Room entity.
+ * Field names match what toObject/getValue used, so existing data reads the same.
+ */
+public final class ParkingAreaMapper {
+
+    private ParkingAreaMapper() {
+        // No instances
+    }
+
+    /**
+     * Read a parking area document. The id is taken from the document.
+     */
+    public static ParkingArea fromDocument(DocumentSnapshot document) {
+        ParkingArea area = new ParkingArea();
+        area.setId(document.getId());
+        area.setName(asString(document.get("name")));
+        area.setAddress(asString(document.get("address")));
+        area.setLatitude(asDouble(document.get("latitude")));
+        area.setLongitude(asDouble(document.get("longitude")));
+        area.setTotalSpots(asInt(document.get("totalSpots")));
+        area.setAvailableSpots(asInt(document.get("availableSpots")));
+        area.setImageUrl(asString(document.get("imageUrl")));
+        area.setHourlyRate(asDouble(document.get("hourlyRate")));
+        area.setOperatingHours(asString(document.get("operatingHours")));
+        area.setAmenities(asStringList(document.get("amenities")));
+        area.setHasCoveredParking(asBoolean(document.get("hasCoveredParking")));
+        area.setHasDisabledAccess(asBoolean(document.get("hasDisabledAccess")));
+        area.setHasElectricCharging(asBoolean(document.get("hasElectricCharging")));
+        area.setRating(asFloat(document.get("rating")));
+        area.setNumberOfRatings(asInt(document.get("numberOfRatings")));
+        area.setFavorite(asBoolean(document.get("favorite")));
+        return area;
+    }
+
+    /**
+     * Read a parking area node. The id is taken from the node key.
+     */
+    public static ParkingArea fromSnapshot(DataSnapshot snapshot) {
+        ParkingArea area = new ParkingArea();
+        area.setId(snapshot.getKey());
+        area.setName(asString(snapshot.child("name").getValue()));
+        area.setAddress(asString(snapshot.child("address").getValue()));
+        area.setLatitude(asDouble(snapshot.child("latitude").getValue()));
+        area.setLongitude(asDouble(snapshot.child("longitude").getValue()));
+        area.setTotalSpots(asInt(snapshot.child("totalSpots").getValue()));
+        area.setAvailableSpots(asInt(snapshot.child("availableSpots").getValue()));
+        area.setImageUrl(asString(snapshot.child("imageUrl").getValue()));
+        area.setHourlyRate(asDouble(snapshot.child("hourlyRate").getValue()));
+        area.setOperatingHours(asString(snapshot.child("operatingHours").getValue()));
+        area.setAmenities(asStringList(snapshot.child("amenities").getValue()));
+        area.setHasCoveredParking(asBoolean(snapshot.child("hasCoveredParking").getValue()));
+        area.setHasDisabledAccess(asBoolean(snapshot.child("hasDisabledAccess").getValue()));
+        area.setHasElectricCharging(asBoolean(snapshot.child("hasElectricCharging").getValue()));
+        area.setRating(asFloat(snapshot.child("rating").getValue()));
+        area.setNumberOfRatings(asInt(snapshot.child("numberOfRatings").getValue()));
+        area.setFavorite(asBoolean(snapshot.child("favorite").getValue()));
+        return area;
+    }
+
+    public static ParkingAreaEntity toEntity(ParkingArea model) {
+        ParkingAreaEntity entity = new ParkingAreaEntity(
+                model.getId(),
+                model.getName(),
+                model.getAddress(),
+                model.getLatitude(),
+                model.getLongitude(),
+                model.getTotalSpots(),
+                model.getAvailableSpots(),
+                model.getImageUrl(),
+                model.getHourlyRate(),
+                model.getOperatingHours(),
+                model.isHasCoveredParking(),
+                model.isHasDisabledAccess(),
+                model.isHasElectricCharging(),
+                model.getRating(),
+                model.getNumberOfRatings()
+        );
+        // The row is upserted whole, a default false would clear the stored flag
+        entity.setFavorite(model.isFavorite());
+        return entity;
+    }
+
+    public static ParkingArea fromEntity(ParkingAreaEntity entity) {
+        ParkingArea model = new ParkingArea();
+        model.setId(entity.getId());
+        model.setName(entity.getName());
+        model.setAddress(entity.getAddress());
+        model.setLatitude(entity.getLatitude());
+        model.setLongitude(entity.getLongitude());
+        model.setTotalSpots(entity.getTotalSpots());
+        model.setAvailableSpots(entity.getAvailableSpots());
+        model.setImageUrl(entity.getImageUrl());
+        model.setHourlyRate(entity.getHourlyRate());
+        model.setOperatingHours(entity.getOperatingHours());
+        model.setHasCoveredParking(entity.isHasCoveredParking());
+        model.setHasDisabledAccess(entity.isHasDisabledAccess());
+        model.setHasElectricCharging(entity.isHasElectricCharging());
+        model.setRating(entity.getRating());
+        model.setNumberOfRatings(entity.getNumberOfRatings());
+        model.setFavorite(entity.isFavorite());
+        return model;
+    }
+}
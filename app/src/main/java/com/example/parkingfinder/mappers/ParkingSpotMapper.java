@@ -0,0 +1,105 @@
+package com.example.parkingfinder.mappers;
+
+import com.example.parkingfinder.database.entities.ParkingSpotEntity;
+import com.example.parkingfinder.models.ParkingSpot;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import static com.example.parkingfinder.mappers.FieldValues.asBoolean;
+import static com.example.parkingfinder.mappers.FieldValues.asInt;
+import static com.example.parkingfinder.mappers.FieldValues.asString;
+
+/**
+ * Maps parking spots between Firebase snapshots, the model and the Room entity
+ */
+public final class ParkingSpotMapper {
+
+    private ParkingSpotMapper() {
+        // No instances
+    }
+
+    /**
+     * Read a spot document from an area's spots subcollection
+     */
+    public static ParkingSpot fromDocument(DocumentSnapshot document, String parkingAreaId) {
+        ParkingSpot spot = new ParkingSpot();
+        spot.setId(document.getId());
+        spot.setParkingAreaId(parkingAreaId);
+        spot.setSpotNumber(asString(document.get("spotNumber")));
+        spot.setFloor(asInt(document.get("floor")));
+        spot.setSection(asString(document.get("section")));
+        spot.setAvailable(asBoolean(document.get("available")));
+        spot.setReserved(asBoolean(document.get("reserved")));
+        spot.setHandicapped(asBoolean(document.get("handicapped")));
+        spot.setElectricCharging(asBoolean(document.get("electricCharging")));
+        spot.setPositionX(asInt(document.get("positionX")));
+        spot.setPositionY(asInt(document.get("positionY")));
+        spot.setType(asString(document.get("type")));
+        spot.setOrdinal(asInt(document.get("ordinal"), -1));
+        return spot;
+    }
+
+    /**
+     * Read a spot node. Stored id and parkingAreaId fields win, the node key
+     * is used when the id field is missing. initializeParkingSpots writes the
+     * flags with an "is" prefix, so both spellings are read.
+     */
+    public static ParkingSpot fromSnapshot(DataSnapshot snapshot) {
+        ParkingSpot spot = new ParkingSpot();
+        String id = asString(snapshot.child("id").getValue());
+        spot.setId(id != null ? id : snapshot.getKey());
+        spot.setParkingAreaId(asString(snapshot.child("parkingAreaId").getValue()));
+        spot.setSpotNumber(asString(snapshot.child("spotNumber").getValue()));
+        spot.setFloor(asInt(snapshot.child("floor").getValue()));
+        spot.setSection(asString(snapshot.child("section").getValue()));
+        spot.setAvailable(asBoolean(snapshot.child("available").getValue()));
+        spot.setReserved(asBoolean(snapshot.child("reserved").getValue())
+                || asBoolean(snapshot.child("isReserved").getValue()));
+        spot.setHandicapped(asBoolean(snapshot.child("handicapped").getValue())
+                || asBoolean(snapshot.child("isHandicapped").getValue()));
+        spot.setElectricCharging(asBoolean(snapshot.child("electricCharging").getValue())
+                || asBoolean(snapshot.child("isElectricCharging").getValue()));
+        spot.setPositionX(asInt(snapshot.child("positionX").getValue()));
+        spot.setPositionY(asInt(snapshot.child("positionY").getValue()));
+        spot.setType(asString(snapshot.child("type").getValue()));
+        spot.setOrdinal(asInt(snapshot.child("ordinal").getValue(), -1));
+        return spot;
+    }
+
+    public static ParkingSpotEntity toEntity(ParkingSpot model) {
+        ParkingSpotEntity entity = new ParkingSpotEntity(
+                model.getId(),
+                model.getParkingAreaId(),
+                model.getSpotNumber(),
+                model.getFloor(),
+                model.getSection(),
+                model.isAvailable(),
+                model.isReserved(),
+                model.isHandicapped(),
+                model.isElectricCharging(),
+                model.getPositionX(),
+                model.getPositionY(),
+                model.getType()
+        );
+        entity.setOrdinal(model.getOrdinal());
+        return entity;
+    }
+
+    public static ParkingSpot fromEntity(ParkingSpotEntity entity) {
+        ParkingSpot model = new ParkingSpot();
+        model.setId(entity.getId());
+        model.setParkingAreaId(entity.getParkingAreaId());
+        model.setSpotNumber(entity.getSpotNumber());
+        model.setFloor(entity.getFloor());
+        model.setSection(entity.getSection());
+        model.setAvailable(entity.isAvailable());
+        model.setReserved(entity.isReserved());
+        model.setHandicapped(entity.isHandicapped());
+        model.setElectricCharging(entity.isElectricCharging());
+        model.setPositionX(entity.getPositionX());
+        model.setPositionY(entity.getPositionY());
+        model.setType(entity.getType());
+        model.setOrdinal(entity.getOrdinal());
+        return model;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.parkingfinder.mappers;
+
+import com.example.parkingfinder.database.entities.UserEntity;
+import com.example.parkingfinder.models.User;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import static com.example.parkingfinder.mappers.FieldValues.asString;
+import static com.example.parkingfinder.mappers.FieldValues.asStringList;
+
+/**
+ * Maps users between Firestore documents, the model and the Room entity
+ */
+public final class UserMapper {
+
+    private UserMapper() {
+        // No instances
+    }
+
+    public static User fromDocument(DocumentSnapshot document) {
+        User user = new User();
+        String uid = asString(document.get("uid"));
+        user.setUid(uid != null ? uid : document.getId());
+        user.setName(asString(document.get("name")));
+        user.setEmail(asString(document.get("email")));
+        user.setPhoneNumber(asString(document.get("phoneNumber")));
+        user.setProfileImageUrl(asString(document.get("profileImageUrl")));
+        user.setFavoriteLocations(asStringList(document.get("favoriteLocations")));
+        user.setBookingHistory(asStringList(document.get("bookingHistory")));
+        return user;
+    }
+
+    public static UserEntity toEntity(User model) {
+        return new UserEntity(
+                model.getUid(),
+                model.getName(),
+                model.getEmail(),
+                model.getPhoneNumber(),
+                model.getProfileImageUrl()
+        );
+    }
+
+    public static User fromEntity(UserEntity entity) {
+        User model = new User();
+        model.setUid(entity.getUid());
+        model.setName(entity.getName());
+        model.setEmail(entity.getEmail());
+        model.setPhoneNumber(entity.getPhoneNumber());
+        model.setProfileImageUrl(entity.getProfileImageUrl());
+        return model;
+    }
+}
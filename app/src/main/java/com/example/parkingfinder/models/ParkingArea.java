@@ -1,5 +1,7 @@
 package com.example.parkingfinder.models;
 
+import com.example.parkingfinder.utils.GeoMath;
+
 import java.util.List;
 
 public class ParkingArea {
@@ -156,18 +158,7 @@ public class ParkingArea {
 
     // Helper method to calculate distance from a location
     public double distanceFrom(double lat, double lng) {
-        final int R = 6371; // Radius of the earth in km
-
-        double latDistance = Math.toRadians(this.latitude - lat);
-        double lonDistance = Math.toRadians(this.longitude - lng);
-
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat)) * Math.cos(Math.toRadians(this.latitude))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return R * c; // Distance in km
+        return GeoMath.distanceKm(lat, lng, this.latitude, this.longitude);
     }
 
 
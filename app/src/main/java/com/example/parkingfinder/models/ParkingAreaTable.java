@@ -0,0 +1,183 @@
+package com.example.parkingfinder.models;
+
+import com.example.parkingfinder.utils.GeoMath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Column store of the fields the parking list filters and sorts on, built once
+ * per data change. Each column is a primitive array indexed by row, features
+ * are packed into bit flags and the lowercase search text is shared between
+ * rows with the same name or address. Filters and sorts work on int arrays of
+ * row indexes, the areas themselves are only touched to build the shown list.
+ * The rows refer to the caller's areas rather than copies, the adapter binds
+ * those objects and the ViewModel holds them anyway. The table's own cost is
+ * 52 bytes of columns a row plus one lowercase copy of each distinct name and
+ * address, ParkingAreaTableMemoryTest measures it on a device.
+ */
+public final class ParkingAreaTable {
+
+    public static final int FEATURE_COVERED = 1;
+    public static final int FEATURE_DISABLED_ACCESS = 1 << 1;
+    public static final int FEATURE_ELECTRIC_CHARGING = 1 << 2;
+
+    public static final ParkingAreaTable EMPTY = new ParkingAreaTable(new ArrayList<>());
+
+    public enum Order {
+        // Nearest first
+        DISTANCE,
+        // Cheapest first
+        PRICE,
+        // Largest share of free spots first
+        AVAILABILITY,
+        // Best rated first
+        RATING
+    }
+
+    private final ParkingArea[] areas;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] totalSpots;
+    private final int[] availableSpots;
+    private final double[] hourlyRates;
+    private final float[] ratings;
+    private final int[] features;
+    private final String[] searchNames;
+    private final String[] searchAddresses;
+
+    public ParkingAreaTable(List<ParkingArea> source) {
+        int size = source.size();
+        areas = source.toArray(new ParkingArea[0]);
+        latitudes = new double[size];
+        longitudes = new double[size];
+        totalSpots = new int[size];
+        availableSpots = new int[size];
+        hourlyRates = new double[size];
+        ratings = new float[size];
+        features = new int[size];
+        searchNames = new String[size];
+        searchAddresses = new String[size];
+
+        // Chains repeat their names and streets, keep one copy of each
+        Map<String, String> strings = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            ParkingArea area = areas[i];
+            latitudes[i] = area.getLatitude();
+            longitudes[i] = area.getLongitude();
+            totalSpots[i] = area.getTotalSpots();
+            availableSpots[i] = area.getAvailableSpots();
+            hourlyRates[i] = area.getHourlyRate();
+            ratings[i] = area.getRating();
+            features[i] = (area.isHasCoveredParking() ? FEATURE_COVERED : 0)
+                    | (area.isHasDisabledAccess() ? FEATURE_DISABLED_ACCESS : 0)
+                    | (area.isHasElectricCharging() ? FEATURE_ELECTRIC_CHARGING : 0);
+            searchNames[i] = lowercase(area.getName(), strings);
+            searchAddresses[i] = lowercase(area.getAddress(), strings);
+        }
+    }
+
+    public int size() {
+        return areas.length;
+    }
+
+    public boolean isEmpty() {
+        return areas.length == 0;
+    }
+
+    /**
+     * Indexes of the rows matching every criterion, in row order
+     *
+     * @param query            lowercase text to find in the name or address, empty for any
+     * @param requiredFeatures FEATURE_ flags the area must all have
+     */
+    public int[] select(String query, boolean onlyAvailable, double maxPrice, int requiredFeatures) {
+        int[] rows = new int[areas.length];
+        int count = 0;
+        for (int i = 0; i < areas.length; i++) {
+            if ((onlyAvailable && availableSpots[i] <= 0)
+                    || hourlyRates[i] > maxPrice
+                    || (features[i] & requiredFeatures) != requiredFeatures) {
+                continue;
+            }
+            if (!query.isEmpty() && !searchNames[i].contains(query) && !searchAddresses[i].contains(query)) {
+                continue;
+            }
+            rows[count++] = i;
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Sort row indexes in place. Each row's key is computed once, then the
+     * keys are sorted as primitives with the row index in the low bits, so
+     * equal keys keep their order.
+     */
+    public void sort(int[] rows, Order order, double userLatitude, double userLongitude) {
+        double[] distances = null;
+        if (order == Order.DISTANCE) {
+            // Ranking only needs the order, the approximate squared distance keeps it
+            distances = new double[rows.length];
+            new GeoMath.Origin(userLatitude, userLongitude)
+                    .approxDistancesSquared(latitudes, longitudes, rows, distances);
+        }
+
+        long[] keyed = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            int row = rows[i];
+            float key;
+            switch (order) {
+                case DISTANCE:
+                    key = (float) distances[i];
+                    break;
+                case PRICE:
+                    key = (float) hourlyRates[row];
+                    break;
+                case AVAILABILITY:
+                    key = totalSpots[row] > 0 ? -((float) availableSpots[row] / totalSpots[row]) : 0f;
+                    break;
+                case RATING:
+                default:
+                    key = -ratings[row];
+                    break;
+            }
+            keyed[i] = ((long) sortableBits(key) << 32) | row;
+        }
+        Arrays.sort(keyed);
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = (int) keyed[i];
+        }
+    }
+
+    /**
+     * The areas of the given rows, in that order
+     */
+    public void collect(int[] rows, List<ParkingArea> out) {
+        out.clear();
+        for (int row : rows) {
+            out.add(areas[row]);
+        }
+    }
+
+    /**
+     * Float bits as an int that orders the same way as the float
+     */
+    private static int sortableBits(float value) {
+        // -0 and 0 compare equal in the lists, keep them together
+        int bits = Float.floatToIntBits(value == 0f ? 0f : value);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+
+    private static String lowercase(String text, Map<String, String> strings) {
+        if (text == null) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        String shared = strings.putIfAbsent(lower, lower);
+        return shared != null ? shared : lower;
+    }
+}
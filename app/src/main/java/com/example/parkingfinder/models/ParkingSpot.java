@@ -13,11 +13,28 @@ public class ParkingSpot {
     private int positionX; // For visual representation in the UI
     private int positionY; // For visual representation in the UI
     private String type; // Regular, Compact, SUV, etc.
+    private int ordinal = -1; // Stable index into the area's availability bitset, -1 if unassigned
 
     public ParkingSpot() {
         // Required empty constructor for Firestore
     }
 
+    public ParkingSpot(ParkingSpot other) {
+        id = other.id;
+        parkingAreaId = other.parkingAreaId;
+        spotNumber = other.spotNumber;
+        floor = other.floor;
+        section = other.section;
+        available = other.available;
+        isReserved = other.isReserved;
+        isHandicapped = other.isHandicapped;
+        isElectricCharging = other.isElectricCharging;
+        positionX = other.positionX;
+        positionY = other.positionY;
+        type = other.type;
+        ordinal = other.ordinal;
+    }
+
     // Getters and Setters
     public String getId() {
         return id;
@@ -114,4 +131,12 @@ public class ParkingSpot {
     public void setType(String type) {
         this.type = type;
     }
-}
\ No newline at end of file
+
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    public void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.parkingfinder.repositories;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.parkingfinder.database.AppDatabase;
+import com.example.parkingfinder.database.dao.BookingDao;
+import com.example.parkingfinder.database.dao.UserDao;
+import com.example.parkingfinder.database.entities.BookingEntity;
+import com.example.parkingfinder.database.entities.UserEntity;
+import com.example.parkingfinder.firebase.FirestoreManager;
+import com.example.parkingfinder.mappers.BookingMapper;
+import com.example.parkingfinder.models.Booking;
+import com.example.parkingfinder.utils.Constants;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps a user's bookings in Room, which the booking tabs read from.
+ * History is fetched from Firestore a page at a time, newest first, with a
+ * (createdAt, id) cursor saved across launches. A refresh only asks for
+ * bookings created after the newest one seen, plus the bookings that have
+ * not ended yet, as those are the only ones whose status can still change.
+ * Opening the screen costs the same however long the history is.
+ * Call from the main thread, callbacks run on the main thread.
+ */
+public class BookingHistoryRepository {
+
+    private static final String TAG = "BookingHistoryRepo";
+
+    public static final int PAGE_SIZE = 20;
+    // Bookings made on other devices since the last refresh, usually a handful
+    private static final int NEWER_BATCH_SIZE = 50;
+
+    private static final String PREFS_NAME = "booking_history";
+    private static final String PREF_NEWEST_CREATED_AT = "newest_created_at_";
+    private static final String PREF_CURSOR_CREATED_AT = "cursor_created_at_";
+    private static final String PREF_CURSOR_ID = "cursor_id_";
+    private static final String PREF_HISTORY_COMPLETE = "history_complete_";
+
+    private static volatile BookingHistoryRepository instance;
+
+    private final FirestoreManager firestoreManager;
+    private final BookingDao bookingDao;
+    private final UserDao userDao;
+    private final SharedPreferences preferences;
+
+    // Callbacks waiting on a running refresh or page load, keyed by user. Main thread only.
+    private final Map<String, List<SyncCallback>> refreshing = new HashMap<>();
+    private final Map<String, List<SyncCallback>> loadingOlder = new HashMap<>();
+
+    public interface SyncCallback {
+        void onSuccess();
+        void onFailure(String errorMessage);
+    }
+
+    private BookingHistoryRepository(Context context) {
+        firestoreManager = FirestoreManager.getInstance();
+        AppDatabase database = AppDatabase.getDatabase(context);
+        bookingDao = database.bookingDao();
+        userDao = database.userDao();
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static BookingHistoryRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (BookingHistoryRepository.class) {
+                if (instance == null) {
+                    instance = new BookingHistoryRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * True while older bookings remain on the server that are not in Room
+     */
+    public boolean hasMoreHistory(String userId) {
+        return !preferences.getBoolean(PREF_HISTORY_COMPLETE + userId, false);
+    }
+
+    /**
+     * Bring Room up to date. The first call for a user loads the newest page,
+     * later calls only fetch what changed.
+     */
+    public void refresh(String userId, SyncCallback callback) {
+        if (!join(refreshing, userId, callback)) {
+            return;
+        }
+
+        long newest = preferences.getLong(PREF_NEWEST_CREATED_AT + userId, 0);
+        if (newest == 0 && !preferences.contains(PREF_CURSOR_ID + userId)) {
+            loadPage(userId, refreshing);
+        } else {
+            fetchNewer(userId, newest);
+        }
+    }
+
+    /**
+     * Load the next page of older bookings into Room
+     */
+    public void loadOlder(String userId, SyncCallback callback) {
+        if (!hasMoreHistory(userId)) {
+            callback.onSuccess();
+            return;
+        }
+        if (join(loadingOlder, userId, callback)) {
+            loadPage(userId, loadingOlder);
+        }
+    }
+
+    private void loadPage(String userId, Map<String, List<SyncCallback>> waiters) {
+        long cursorTime = preferences.getLong(PREF_CURSOR_CREATED_AT + userId, 0);
+        String cursorId = preferences.getString(PREF_CURSOR_ID + userId, null);
+        Date cursorCreatedAt = cursorId != null ? new Date(cursorTime) : null;
+
+        firestoreManager.getUserBookingsPage(userId, cursorCreatedAt, cursorId, PAGE_SIZE,
+                new FirestoreManager.GetBookingsCallback() {
+                    @Override
+                    public void onSuccess(List<Booking> bookings) {
+                        SharedPreferences.Editor editor = preferences.edit();
+                        if (!bookings.isEmpty()) {
+                            Booking last = bookings.get(bookings.size() - 1);
+                            editor.putLong(PREF_CURSOR_CREATED_AT + userId, createdAt(last))
+                                    .putString(PREF_CURSOR_ID + userId, last.getId());
+                        }
+                        if (bookings.size() < PAGE_SIZE) {
+                            editor.putBoolean(PREF_HISTORY_COMPLETE + userId, true);
+                        }
+                        editor.putLong(PREF_NEWEST_CREATED_AT + userId,
+                                Math.max(newestCreatedAt(userId), maxCreatedAt(bookings)));
+                        editor.apply();
+
+                        saveBookings(userId, bookings);
+                        if (waiters == refreshing) {
+                            // The page covers recent history, the open bookings may be older
+                            fetchOpen(userId);
+                        } else {
+                            finish(waiters, userId, null);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(String errorMessage) {
+                        finish(waiters, userId, errorMessage);
+                    }
+                });
+    }
+
+    private void fetchNewer(String userId, long newest) {
+        firestoreManager.getUserBookingsCreatedAfter(userId, new Date(newest), NEWER_BATCH_SIZE,
+                new FirestoreManager.GetBookingsCallback() {
+                    @Override
+                    public void onSuccess(List<Booking> bookings) {
+                        long latest = Math.max(newest, maxCreatedAt(bookings));
+                        preferences.edit().putLong(PREF_NEWEST_CREATED_AT + userId, latest).apply();
+                        saveBookings(userId, bookings);
+
+                        if (bookings.size() == NEWER_BATCH_SIZE) {
+                            fetchNewer(userId, latest);
+                        } else {
+                            fetchOpen(userId);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(String errorMessage) {
+                        finish(refreshing, userId, errorMessage);
+                    }
+                });
+    }
+
+    private void fetchOpen(String userId) {
+        // Include bookings just past their end that the expiry sweep may still complete
+        Date endAfter = new Date(System.currentTimeMillis() - Constants.Time.BOOKING_EXPIRED_GRACE_PERIOD);
+        firestoreManager.getUserOpenBookings(userId, endAfter, new FirestoreManager.GetBookingsCallback() {
+            @Override
+            public void onSuccess(List<Booking> bookings) {
+                saveBookings(userId, bookings);
+                finish(refreshing, userId, null);
+            }
+
+            @Override
+            public void onFailure(String errorMessage) {
+                finish(refreshing, userId, errorMessage);
+            }
+        });
+    }
+
+    /**
+     * Upsert fetched bookings, leaving local changes that are not synced yet alone
+     */
+    private void saveBookings(String userId, List<Booking> bookings) {
+        if (bookings.isEmpty()) {
+            return;
+        }
+        AppDatabase.databaseWriteExecutor.execute(() -> {
+            try {
+                // Bookings reference the user row
+                if (userDao.getUserByIdSync(userId) == null) {
+                    userDao.upsert(new UserEntity(userId, null, null, null, null));
+                }
+
+                Set<String> unsynced = new HashSet<>(bookingDao.getUnsyncedBookingIds(userId));
+                List<BookingEntity> entities = new ArrayList<>();
+                for (Booking booking : bookings) {
+                    if (!unsynced.contains(booking.getId())) {
+                        BookingEntity entity = BookingMapper.toEntity(booking);
+                        entity.setSynced(true);
+                        entities.add(entity);
+                    }
+                }
+                bookingDao.upsertAll(entities);
+            } catch (Exception e) {
+                Log.e(TAG, "Error saving bookings", e);
+            }
+        });
+    }
+
+    private boolean join(Map<String, List<SyncCallback>> waiters, String userId, SyncCallback callback) {
+        List<SyncCallback> waiting = waiters.get(userId);
+        if (waiting != null) {
+            waiting.add(callback);
+            return false;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        waiters.put(userId, waiting);
+        return true;
+    }
+
+    private void finish(Map<String, List<SyncCallback>> waiters, String userId, String errorMessage) {
+        List<SyncCallback> waiting = waiters.remove(userId);
+        if (waiting == null) {
+            return;
+        }
+        for (SyncCallback callback : waiting) {
+            if (errorMessage == null) {
+                callback.onSuccess();
+            } else {
+                callback.onFailure(errorMessage);
+            }
+        }
+    }
+
+    private long newestCreatedAt(String userId) {
+        return preferences.getLong(PREF_NEWEST_CREATED_AT + userId, 0);
+    }
+
+    private static long maxCreatedAt(List<Booking> bookings) {
+        long max = 0;
+        for (Booking booking : bookings) {
+            max = Math.max(max, createdAt(booking));
+        }
+        return max;
+    }
+
+    private static long createdAt(Booking booking) {
+        return booking.getCreatedAt() != null ? booking.getCreatedAt().getTime() : 0;
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.parkingfinder.repositories;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.parkingfinder.database.AppDatabase;
+import com.example.parkingfinder.database.dao.BookingDao;
+import com.example.parkingfinder.database.entities.BookingEntity;
+import com.example.parkingfinder.firebase.FirestoreManager;
+import com.example.parkingfinder.models.Booking;
+import com.example.parkingfinder.utils.IntervalTree;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Booked time ranges of every spot in a parking area, used to reject
+ * overlapping bookings and to find spots free for a time window.
+ * A schedule is built from the bookings cached in Room plus the area's
+ * active bookings in Firestore, and is kept current while any screen
+ * watches it: other users' bookings through one Firestore listener per
+ * area, the user's own as they book or cancel. All methods are called on
+ * the main thread.
+ */
+public class BookingScheduleRepository {
+
+    private static final String TAG = "BookingScheduleRepo";
+
+    private static volatile BookingScheduleRepository instance;
+
+    private final FirestoreManager firestoreManager;
+    private final BookingDao bookingDao;
+    private final ExecutorService databaseExecutor;
+    private final Handler mainHandler;
+
+    // Live schedules of the areas some screen watches, keyed by parking area id
+    private final Map<String, AreaWatch> watches = new HashMap<>();
+
+    /**
+     * Always called once loaded, offline with only the locally cached bookings
+     */
+    public interface ScheduleCallback {
+        void onScheduleLoaded(AreaSchedule schedule);
+    }
+
+    /**
+     * A screen's watch on a schedule, cancel it when the screen stops
+     */
+    public class Watch {
+        private final String parkingAreaId;
+        private final ScheduleCallback callback;
+
+        private Watch(String parkingAreaId, ScheduleCallback callback) {
+            this.parkingAreaId = parkingAreaId;
+            this.callback = callback;
+        }
+
+        public void cancel() {
+            unwatch(parkingAreaId, callback);
+        }
+    }
+
+    private static class AreaWatch {
+        final List<ScheduleCallback> callbacks = new ArrayList<>();
+        ListenerRegistration registration;
+        // Null until the first bookings arrive
+        AreaSchedule schedule;
+    }
+
+    /**
+     * Booked ranges per spot of one parking area. Ranges are half-open,
+     * a booking ending at 10:00 does not conflict with one starting at 10:00.
+     */
+    public static class AreaSchedule {
+        private final String parkingAreaId;
+        private final Map<String, IntervalTree> spots = new HashMap<>();
+
+        AreaSchedule(String parkingAreaId) {
+            this.parkingAreaId = parkingAreaId;
+        }
+
+        public String getParkingAreaId() {
+            return parkingAreaId;
+        }
+
+        /**
+         * Whether the spot has no booking overlapping [startTime, endTime)
+         */
+        public boolean isFree(String spotId, long startTime, long endTime) {
+            IntervalTree bookings = spots.get(spotId);
+            return bookings == null || !bookings.overlaps(startTime, endTime);
+        }
+
+        /**
+         * Earliest start at or after from with the spot free for duration
+         */
+        public long nextFreeSlot(String spotId, long from, long duration) {
+            IntervalTree bookings = spots.get(spotId);
+            return bookings == null ? from : bookings.nextFreeSlot(from, duration);
+        }
+
+        /**
+         * The given spots that are free for the whole of [startTime, endTime)
+         */
+        public List<String> getFreeSpots(List<String> spotIds, long startTime, long endTime) {
+            List<String> free = new ArrayList<>();
+            for (String spotId : spotIds) {
+                if (isFree(spotId, startTime, endTime)) {
+                    free.add(spotId);
+                }
+            }
+            return free;
+        }
+
+        void add(String spotId, String bookingId, long startTime, long endTime) {
+            if (spotId == null || bookingId == null) {
+                return;
+            }
+            IntervalTree bookings = spots.get(spotId);
+            if (bookings == null) {
+                bookings = new IntervalTree();
+                spots.put(spotId, bookings);
+            }
+            bookings.insert(bookingId, startTime, endTime);
+        }
+
+        void remove(String spotId, String bookingId) {
+            IntervalTree bookings = spots.get(spotId);
+            if (bookings != null) {
+                bookings.remove(bookingId);
+            }
+        }
+    }
+
+    private BookingScheduleRepository(Context context) {
+        firestoreManager = FirestoreManager.getInstance();
+        bookingDao = AppDatabase.getDatabase(context).bookingDao();
+        databaseExecutor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    public static BookingScheduleRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (BookingScheduleRepository.class) {
+                if (instance == null) {
+                    instance = new BookingScheduleRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get the schedule of a parking area now and again after every change to
+     * its bookings, until the returned watch is cancelled
+     */
+    public Watch watchSchedule(String parkingAreaId, ScheduleCallback callback) {
+        AreaWatch watch = watches.get(parkingAreaId);
+        if (watch == null) {
+            watch = new AreaWatch();
+            watches.put(parkingAreaId, watch);
+            startWatching(parkingAreaId, watch);
+        } else if (watch.schedule != null) {
+            callback.onScheduleLoaded(watch.schedule);
+        }
+        watch.callbacks.add(callback);
+        return new Watch(parkingAreaId, callback);
+    }
+
+    /**
+     * Add a booking the user just made to its area's schedule
+     */
+    public void recordBooking(Booking booking) {
+        AreaSchedule schedule = currentSchedule(booking.getParkingAreaId());
+        if (schedule != null && booking.getStartTime() != null && booking.getEndTime() != null) {
+            schedule.add(booking.getParkingSpotId(), booking.getId(),
+                    booking.getStartTime().getTime(), booking.getEndTime().getTime());
+            notifyWatchers(booking.getParkingAreaId());
+        }
+    }
+
+    /**
+     * Free the slot of a cancelled booking
+     */
+    public void removeBooking(String parkingAreaId, String parkingSpotId, String bookingId) {
+        AreaSchedule schedule = currentSchedule(parkingAreaId);
+        if (schedule != null) {
+            schedule.remove(parkingSpotId, bookingId);
+            notifyWatchers(parkingAreaId);
+        }
+    }
+
+    private AreaSchedule currentSchedule(String parkingAreaId) {
+        AreaWatch watch = watches.get(parkingAreaId);
+        return watch != null ? watch.schedule : null;
+    }
+
+    private void startWatching(String parkingAreaId, AreaWatch watch) {
+        long now = System.currentTimeMillis();
+        AreaSchedule schedule = new AreaSchedule(parkingAreaId);
+
+        databaseExecutor.execute(() -> {
+            List<BookingEntity> localBookings = loadLocalBookings(parkingAreaId, now);
+            mainHandler.post(() -> {
+                // Every watcher left before Room answered
+                if (watches.get(parkingAreaId) != watch) {
+                    return;
+                }
+                addLocalBookings(schedule, localBookings);
+
+                watch.registration = firestoreManager.listenToActiveBookingsForParkingArea(parkingAreaId,
+                        new FirestoreManager.BookingChangesCallback() {
+                            @Override
+                            public void onChanges(List<Booking> changed, List<Booking> removed) {
+                                for (Booking booking : removed) {
+                                    schedule.remove(booking.getParkingSpotId(), booking.getId());
+                                }
+                                for (Booking booking : changed) {
+                                    if (booking.getStartTime() != null && booking.getEndTime() != null) {
+                                        schedule.add(booking.getParkingSpotId(), booking.getId(),
+                                                booking.getStartTime().getTime(),
+                                                booking.getEndTime().getTime());
+                                    }
+                                }
+                                watch.schedule = schedule;
+                                notifyWatchers(parkingAreaId);
+                            }
+
+                            @Override
+                            public void onFailure(String errorMessage) {
+                                Log.e(TAG, "Error watching area bookings: " + errorMessage);
+                                // The listener stops after an error, local bookings are the best we have
+                                if (watch.schedule == null) {
+                                    watch.schedule = schedule;
+                                    notifyWatchers(parkingAreaId);
+                                }
+                            }
+                        });
+            });
+        });
+    }
+
+    private void unwatch(String parkingAreaId, ScheduleCallback callback) {
+        AreaWatch watch = watches.get(parkingAreaId);
+        if (watch == null || !watch.callbacks.remove(callback) || !watch.callbacks.isEmpty()) {
+            return;
+        }
+        watches.remove(parkingAreaId);
+        if (watch.registration != null) {
+            watch.registration.remove();
+        }
+    }
+
+    private void notifyWatchers(String parkingAreaId) {
+        AreaWatch watch = watches.get(parkingAreaId);
+        if (watch == null || watch.schedule == null) {
+            return;
+        }
+        // A watcher may cancel from its callback
+        for (ScheduleCallback callback : new ArrayList<>(watch.callbacks)) {
+            callback.onScheduleLoaded(watch.schedule);
+        }
+    }
+
+    private List<BookingEntity> loadLocalBookings(String parkingAreaId, long now) {
+        try {
+            return bookingDao.getActiveBookingsForParkingArea(parkingAreaId, now);
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading bookings from local database", e);
+            return new ArrayList<>();
+        }
+    }
+
+    private static void addLocalBookings(AreaSchedule schedule, List<BookingEntity> localBookings) {
+        for (BookingEntity entity : localBookings) {
+            schedule.add(entity.getParkingSpotId(), entity.getId(),
+                    entity.getStartTime(), entity.getEndTime());
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.parkingfinder.repositories;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.parkingfinder.database.AppDatabase;
+import com.example.parkingfinder.database.WriteBatcher;
+import com.example.parkingfinder.database.dao.FavoriteDao;
+import com.example.parkingfinder.database.entities.FavoriteEntity;
+import com.example.parkingfinder.firebase.FirebaseAuthManager;
+import com.example.parkingfinder.firebase.FirestoreManager;
+import com.example.parkingfinder.models.ParkingArea;
+import com.example.parkingfinder.utils.Constants;
+import com.google.firebase.auth.FirebaseUser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local-first favorites of the signed in user.
+ * Membership is a hash set loaded from the favorites table when the user
+ * signs in, so checks are O(1) and toggles apply immediately. Until it has
+ * loaded, areas keep the flags they came with. Toggles are written to Room as unsynced
+ * rows and sent to the user's Firestore document in one batch once the user
+ * stops toggling for a moment. Unsynced rows survive restarts and are sent on
+ * the next load. Call from the main thread.
+ */
+public class FavoritesRepository {
+
+    private static final String TAG = "FavoritesRepository";
+
+    // Toggles within this window go out as one write
+    private static final long SYNC_DELAY_MS = 2000;
+    private static final long SYNC_RETRY_DELAY_MS = Constants.Time.MINUTE;
+
+    private static volatile FavoritesRepository instance;
+
+    private final FavoriteDao favoriteDao;
+    private final WriteBatcher writeBatcher;
+    private final FirestoreManager firestoreManager;
+    // Single thread, so Room writes are applied in toggle order
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+
+    // Favorite area ids of the current user, read from any thread
+    private final Set<String> favoriteIds = ConcurrentHashMap.newKeySet();
+
+    // False while the set of a newly signed in user is loading from Room
+    private volatile boolean loaded;
+
+    // Changes not yet sent to Firestore, area id to new state. Main thread only.
+    private final Map<String, Boolean> pendingChanges = new LinkedHashMap<>();
+
+    // Told when the set changes or finishes loading. Main thread only.
+    private final List<FavoritesCallback> listeners = new ArrayList<>();
+
+    private String userId;
+    private boolean syncing;
+    private final Runnable syncRunnable = this::sync;
+
+    /**
+     * Called on the main thread when the favorite set has changed
+     */
+    public interface FavoritesCallback {
+        void onFavoritesChanged();
+    }
+
+    private FavoritesRepository(Context context) {
+        favoriteDao = AppDatabase.getDatabase(context).favoriteDao();
+        writeBatcher = WriteBatcher.getInstance(context);
+        firestoreManager = FirestoreManager.getInstance();
+        executor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+
+        FirebaseAuthManager.getInstance().addAuthStateListener(auth -> onUserChanged(auth.getCurrentUser()));
+    }
+
+    public static FavoritesRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (FavoritesRepository.class) {
+                if (instance == null) {
+                    instance = new FavoritesRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean isFavorite(String parkingAreaId) {
+        return favoriteIds.contains(parkingAreaId);
+    }
+
+    public void addListener(FavoritesCallback listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(FavoritesCallback listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Set the favorite flag of each area from the current set. Does nothing
+     * while the set is loading, an empty set would clear every flag.
+     *
+     * @return true if any flag changed
+     */
+    public boolean applyTo(List<ParkingArea> areas) {
+        if (!loaded) {
+            return false;
+        }
+        boolean changed = false;
+        for (ParkingArea area : areas) {
+            boolean favorite = favoriteIds.contains(area.getId());
+            if (area.isFavorite() != favorite) {
+                area.setFavorite(favorite);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Favorite or unfavorite an area. The set and the area's flag column are
+     * updated right away, Firestore is updated after a short delay.
+     */
+    public void setFavorite(String userId, String parkingAreaId, boolean isFavorite) {
+        switchUser(userId);
+
+        if (isFavorite) {
+            favoriteIds.add(parkingAreaId);
+        } else {
+            favoriteIds.remove(parkingAreaId);
+        }
+        writeBatcher.updateFavoriteStatus(parkingAreaId, isFavorite);
+
+        FavoriteEntity row = new FavoriteEntity(userId, parkingAreaId, isFavorite, false,
+                System.currentTimeMillis());
+        executor.execute(() -> {
+            try {
+                favoriteDao.upsert(row);
+            } catch (Exception e) {
+                Log.e(TAG, "Error saving favorite", e);
+            }
+        });
+
+        pendingChanges.put(parkingAreaId, isFavorite);
+        scheduleSync(SYNC_DELAY_MS);
+    }
+
+    /**
+     * Load the user's favorites from Room, then reconcile them with the user
+     * document in a single read. Local changes not yet synced win.
+     */
+    public void refresh(String userId) {
+        switchUser(userId);
+
+        firestoreManager.getUserFavorites(userId, new FirestoreManager.GetFavoritesCallback() {
+            @Override
+            public void onSuccess(List<String> remoteIds) {
+                // Queued behind the local load, so the remote set is applied last
+                executor.execute(() -> {
+                    try {
+                        saveRemote(userId, remoteIds);
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error saving favorites", e);
+                    }
+                    mainHandler.post(() -> {
+                        if (userId.equals(FavoritesRepository.this.userId)
+                                && replaceFavorites(new HashSet<>(remoteIds))) {
+                            notifyListeners();
+                        }
+                    });
+                });
+            }
+
+            @Override
+            public void onFailure(String errorMsg) {
+                Log.e(TAG, "Error getting user favorites: " + errorMsg);
+            }
+        });
+    }
+
+    private void onUserChanged(FirebaseUser user) {
+        if (user != null) {
+            switchUser(user.getUid());
+            return;
+        }
+        // Signed out: nothing is a favorite. Unsynced rows stay in Room and
+        // are sent when the user signs in again.
+        userId = null;
+        pendingChanges.clear();
+        mainHandler.removeCallbacks(syncRunnable);
+        replaceFavorites(new HashSet<>());
+        loaded = true;
+        notifyListeners();
+    }
+
+    /**
+     * Start tracking another user, loading their local favorites and any
+     * changes left unsynced by an earlier session
+     */
+    private void switchUser(String userId) {
+        if (userId.equals(this.userId)) {
+            return;
+        }
+        this.userId = userId;
+        loaded = false;
+        pendingChanges.clear();
+        mainHandler.removeCallbacks(syncRunnable);
+        // The flag column still holds the previous user's favorites
+        replaceFavorites(new HashSet<>());
+
+        executor.execute(() -> {
+            List<FavoriteEntity> rows;
+            try {
+                rows = favoriteDao.getForUserSync(userId);
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading favorites", e);
+                return;
+            }
+            mainHandler.post(() -> {
+                if (!userId.equals(this.userId)) {
+                    return;
+                }
+                Set<String> local = new HashSet<>();
+                for (FavoriteEntity row : rows) {
+                    if (row.isFavorite()) {
+                        local.add(row.getParkingAreaId());
+                    }
+                    if (!row.isSynced() && !pendingChanges.containsKey(row.getParkingAreaId())) {
+                        pendingChanges.put(row.getParkingAreaId(), row.isFavorite());
+                    }
+                }
+                replaceFavorites(local);
+                loaded = true;
+                notifyListeners();
+                scheduleSync(SYNC_DELAY_MS);
+            });
+        });
+    }
+
+    /**
+     * Replace the set with the given ids plus pending local changes, and
+     * update the flag column of the areas whose state changed
+     *
+     * @return true if the set changed
+     */
+    private boolean replaceFavorites(Set<String> ids) {
+        for (Map.Entry<String, Boolean> change : pendingChanges.entrySet()) {
+            if (change.getValue()) {
+                ids.add(change.getKey());
+            } else {
+                ids.remove(change.getKey());
+            }
+        }
+
+        boolean changed = false;
+        for (String id : ids) {
+            if (!favoriteIds.contains(id)) {
+                writeBatcher.updateFavoriteStatus(id, true);
+                changed = true;
+            }
+        }
+        for (String id : favoriteIds) {
+            if (!ids.contains(id)) {
+                writeBatcher.updateFavoriteStatus(id, false);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return false;
+        }
+
+        favoriteIds.retainAll(ids);
+        favoriteIds.addAll(ids);
+        return true;
+    }
+
+    private void notifyListeners() {
+        for (FavoritesCallback listener : new ArrayList<>(listeners)) {
+            listener.onFavoritesChanged();
+        }
+    }
+
+    /**
+     * Replace the synced rows with the remote ids, keeping unsynced rows.
+     * Runs on the executor.
+     */
+    private void saveRemote(String userId, List<String> remoteIds) {
+        Set<String> unsynced = new HashSet<>();
+        for (FavoriteEntity row : favoriteDao.getUnsyncedSync(userId)) {
+            unsynced.add(row.getParkingAreaId());
+        }
+
+        long now = System.currentTimeMillis();
+        List<FavoriteEntity> rows = new ArrayList<>();
+        for (String id : remoteIds) {
+            if (!unsynced.contains(id)) {
+                rows.add(new FavoriteEntity(userId, id, true, true, now));
+            }
+        }
+        favoriteDao.deleteSynced(userId);
+        favoriteDao.upsertAll(rows);
+    }
+
+    private void scheduleSync(long delayMs) {
+        // Restarted on every toggle, so a burst of toggles is sent once
+        mainHandler.removeCallbacks(syncRunnable);
+        mainHandler.postDelayed(syncRunnable, delayMs);
+    }
+
+    /**
+     * Send the pending changes in one batch
+     */
+    private void sync() {
+        if (syncing || pendingChanges.isEmpty() || userId == null) {
+            return;
+        }
+        syncing = true;
+
+        String syncUserId = userId;
+        Map<String, Boolean> sent = new HashMap<>(pendingChanges);
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (Map.Entry<String, Boolean> change : sent.entrySet()) {
+            (change.getValue() ? added : removed).add(change.getKey());
+        }
+
+        firestoreManager.updateFavorites(syncUserId, added, removed, new FirestoreManager.FirestoreCallback() {
+            @Override
+            public void onSuccess() {
+                syncing = false;
+                if (syncUserId.equals(userId)) {
+                    // A toggle made while the batch was in flight stays pending
+                    for (Map.Entry<String, Boolean> change : sent.entrySet()) {
+                        if (change.getValue().equals(pendingChanges.get(change.getKey()))) {
+                            pendingChanges.remove(change.getKey());
+                        }
+                    }
+                }
+
+                executor.execute(() -> {
+                    try {
+                        if (!added.isEmpty()) {
+                            favoriteDao.markSynced(syncUserId, added, true);
+                        }
+                        if (!removed.isEmpty()) {
+                            favoriteDao.markSynced(syncUserId, removed, false);
+                        }
+                        favoriteDao.deleteSyncedRemovals(syncUserId);
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error marking favorites synced", e);
+                    }
+                });
+
+                if (!pendingChanges.isEmpty()) {
+                    scheduleSync(SYNC_DELAY_MS);
+                }
+            }
+
+            @Override
+            public void onFailure(String errorMessage) {
+                syncing = false;
+                Log.e(TAG, "Error syncing favorites: " + errorMessage);
+                // Rows stay unsynced in Room, so nothing is lost if the app exits first
+                scheduleSync(SYNC_RETRY_DELAY_MS);
+            }
+        });
+    }
+}
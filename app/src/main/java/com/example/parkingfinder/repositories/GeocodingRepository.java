@@ -0,0 +1,210 @@
+package com.example.parkingfinder.repositories;
+
+import android.content.Context;
+import android.location.Address;
+import android.location.Geocoder;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.parkingfinder.database.AppDatabase;
+import com.example.parkingfinder.database.dao.GeocodeDao;
+import com.example.parkingfinder.database.entities.GeocodeEntity;
+import com.example.parkingfinder.mappers.AddressMapper;
+import com.example.parkingfinder.utils.Constants;
+
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Asynchronous, cached front-end for the platform Geocoder.
+ * Reverse lookups are keyed by the coordinate rounded to 4 decimals (about
+ * 11 m), forward lookups by the normalized address string. Results live in a
+ * memory LRU backed by the geocode_cache table, and several requests for the
+ * same key while a lookup is running share its result.
+ * Callbacks run on the main thread.
+ */
+public class GeocodingRepository {
+
+    private static final String TAG = "GeocodingRepository";
+
+    // Street addresses rarely change, a month old result is still good
+    private static final long CACHE_TTL_MS = 30 * Constants.Time.DAY;
+    private static final int MEMORY_CACHE_ENTRIES = 200;
+
+    // Geocoder calls are blocking network requests
+    private static final int GEOCODER_THREADS = 2;
+
+    private static volatile GeocodingRepository instance;
+
+    private final Context context;
+    private final GeocodeDao geocodeDao;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+    private final LruCache<String, Address> memoryCache = new LruCache<>(MEMORY_CACHE_ENTRIES);
+
+    // Callbacks waiting on a running lookup, keyed by cache key. Main thread only.
+    private final Map<String, List<GeocodingCallback>> inFlight = new HashMap<>();
+
+    public interface GeocodingCallback {
+        void onAddressReceived(Address address);
+        void onError(String message);
+    }
+
+    private GeocodingRepository(Context context) {
+        this.context = context;
+        geocodeDao = AppDatabase.getDatabase(context).geocodeDao();
+        executor = Executors.newFixedThreadPool(GEOCODER_THREADS);
+        mainHandler = new Handler(Looper.getMainLooper());
+
+        executor.execute(() -> {
+            try {
+                geocodeDao.deleteOlderThan(System.currentTimeMillis() - CACHE_TTL_MS);
+            } catch (Exception e) {
+                Log.e(TAG, "Error pruning geocode cache", e);
+            }
+        });
+    }
+
+    public static GeocodingRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (GeocodingRepository.class) {
+                if (instance == null) {
+                    instance = new GeocodingRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Look up the address at a coordinate. Called from the main thread with
+     * a result in memory, the callback runs before this returns.
+     */
+    public void getAddress(double latitude, double longitude, GeocodingCallback callback) {
+        lookup(coordinateKey(latitude, longitude), callback, geocoder -> {
+            List<Address> addresses = geocoder.getFromLocation(latitude, longitude, 1);
+            return addresses != null && !addresses.isEmpty() ? addresses.get(0) : null;
+        }, "No address found");
+    }
+
+    /**
+     * Look up the coordinate of an address
+     */
+    public void getLocation(String addressString, GeocodingCallback callback) {
+        String key = addressKey(addressString);
+        if (key == null) {
+            callback.onError("No location found for address");
+            return;
+        }
+        lookup(key, callback, geocoder -> {
+            List<Address> addresses = geocoder.getFromLocationName(addressString, 1);
+            return addresses != null && !addresses.isEmpty() ? addresses.get(0) : null;
+        }, "No location found for address");
+    }
+
+    private interface GeocoderCall {
+        Address call(Geocoder geocoder) throws IOException;
+    }
+
+    private void lookup(String key, GeocodingCallback callback, GeocoderCall call,
+                        String notFoundMessage) {
+        // May be called from any thread, callbacks and bookkeeping stay on main
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(() -> lookup(key, callback, call, notFoundMessage));
+            return;
+        }
+
+        Address cached = memoryCache.get(key);
+        if (cached != null) {
+            callback.onAddressReceived(cached);
+            return;
+        }
+
+        List<GeocodingCallback> waiting = inFlight.get(key);
+        if (waiting != null) {
+            waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        inFlight.put(key, waiting);
+
+        executor.execute(() -> {
+            long now = System.currentTimeMillis();
+            Address address = null;
+            String error = null;
+
+            try {
+                GeocodeEntity entity = geocodeDao.getFreshSync(key, now - CACHE_TTL_MS);
+                if (entity != null) {
+                    address = AddressMapper.fromEntity(entity);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading geocode cache", e);
+            }
+
+            if (address == null) {
+                try {
+                    address = call.call(new Geocoder(context, Locale.getDefault()));
+                    if (address != null) {
+                        geocodeDao.upsert(AddressMapper.toEntity(key, address, now));
+                    } else {
+                        error = notFoundMessage;
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Geocoding failed: " + e.getMessage());
+                    error = "Geocoding failed: " + e.getMessage();
+                } catch (Exception e) {
+                    Log.e(TAG, "Error saving geocode result", e);
+                }
+            }
+
+            final Address result = address;
+            final String errorMessage = error;
+            mainHandler.post(() -> deliver(key, result, errorMessage));
+        });
+    }
+
+    private void deliver(String key, Address address, String errorMessage) {
+        if (address != null) {
+            memoryCache.put(key, address);
+        }
+        List<GeocodingCallback> waiting = inFlight.remove(key);
+        if (waiting == null) {
+            return;
+        }
+        for (GeocodingCallback callback : waiting) {
+            if (address != null) {
+                callback.onAddressReceived(address);
+            } else {
+                callback.onError(errorMessage != null ? errorMessage : "Geocoding failed");
+            }
+        }
+    }
+
+    private static String coordinateKey(double latitude, double longitude) {
+        return String.format(Locale.US, "latlng:%.4f,%.4f", latitude, longitude);
+    }
+
+    // Case, accents, punctuation and spacing don't change the result
+    private static String addressKey(String addressString) {
+        if (addressString == null) {
+            return null;
+        }
+        String normalized = Normalizer.normalize(addressString, Normalizer.Form.NFKD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{L}\\p{N}]+", " ")
+                .trim();
+        return normalized.isEmpty() ? null : "address:" + normalized;
+    }
+}
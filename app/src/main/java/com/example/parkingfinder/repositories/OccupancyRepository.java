@@ -0,0 +1,257 @@
+package com.example.parkingfinder.repositories;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.parkingfinder.database.AppDatabase;
+import com.example.parkingfinder.database.dao.BookingDao;
+import com.example.parkingfinder.database.dao.OccupancyTimelineDao;
+import com.example.parkingfinder.database.entities.BookingEntity;
+import com.example.parkingfinder.database.entities.OccupancyTimelineEntity;
+import com.example.parkingfinder.firebase.RealtimeDbManager;
+import com.example.parkingfinder.models.ParkingArea;
+import com.example.parkingfinder.utils.Constants;
+import com.example.parkingfinder.utils.OccupancyTimeline;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Occupancy history per parking area and the availability forecast built on it.
+ * Live availability is sampled once per update where it arrives, in
+ * RealtimeDbManager, not per screen showing it, folded into hourly
+ * OccupancyTimeline buckets and saved to Room periodically. The forecast for a time is the mean occupancy of
+ * the same hour of the week over the last four weeks, capped by the bookings
+ * already known to overlap that time.
+ * Timelines are only touched on the repository's own thread.
+ */
+public class OccupancyRepository {
+
+    private static final String TAG = "OccupancyRepository";
+
+    // Timelines are written back at most this often
+    private static final long SAVE_DELAY_MS = Constants.Time.MINUTE;
+
+    // Areas not seen for longer than the ring covers have nothing left to forecast from
+    private static final long RETENTION_MS = OccupancyTimeline.CAPACITY * OccupancyTimeline.BUCKET_MS;
+
+    // Timelines kept in memory, the least recently used are dropped once saved
+    private static final int MAX_LOADED_TIMELINES = 256;
+
+    private static volatile OccupancyRepository instance;
+
+    private final OccupancyTimelineDao timelineDao;
+    private final BookingDao bookingDao;
+    private final ScheduledExecutorService executor;
+    private final Handler mainHandler;
+
+    // Loaded timelines, least recently used first, and the areas changed since
+    // the last save. Executor thread only.
+    private final Map<String, AreaTimeline> timelines =
+            new LinkedHashMap<String, AreaTimeline>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, AreaTimeline> eldest) {
+                    // Unsaved samples stay until saveDirty has written them
+                    return size() > MAX_LOADED_TIMELINES && !dirtyAreas.contains(eldest.getKey());
+                }
+            };
+    private final Set<String> dirtyAreas = new LinkedHashSet<>();
+    private boolean saveScheduled = false;
+
+    /**
+     * Called on the main thread. availableSpots is -1 when there is no history
+     * and no booking for that time.
+     */
+    public interface PredictionCallback {
+        void onPrediction(int availableSpots, int sampledWeeks);
+    }
+
+    private static class AreaTimeline {
+        final OccupancyTimeline timeline;
+        int totalSpots;
+        // Last sample, cell updates resend areas that didn't change
+        float lastOccupancy = -1f;
+        long lastSampleBucket = Long.MIN_VALUE;
+
+        AreaTimeline(OccupancyTimeline timeline, int totalSpots) {
+            this.timeline = timeline;
+            this.totalSpots = totalSpots;
+        }
+    }
+
+    private OccupancyRepository(Context context) {
+        AppDatabase database = AppDatabase.getDatabase(context);
+        timelineDao = database.occupancyTimelineDao();
+        bookingDao = database.bookingDao();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+
+        executor.execute(() -> {
+            try {
+                timelineDao.deleteOlderThan(System.currentTimeMillis() - RETENTION_MS);
+            } catch (Exception e) {
+                Log.e(TAG, "Error pruning occupancy timelines", e);
+            }
+        });
+
+        RealtimeDbManager.getInstance().setParkingAreasSampler(new RealtimeDbManager.ParkingAreaCallback() {
+            @Override
+            public void onParkingAreasUpdated(List<ParkingArea> parkingAreas) {
+                for (ParkingArea area : parkingAreas) {
+                    recordAvailability(area.getId(), area.getAvailableSpots(), area.getTotalSpots());
+                }
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                Log.e(TAG, "Live availability error: " + errorMessage);
+            }
+        });
+    }
+
+    public static OccupancyRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (OccupancyRepository.class) {
+                if (instance == null) {
+                    instance = new OccupancyRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private void recordAvailability(String parkingAreaId, int availableSpots, int totalSpots) {
+        if (parkingAreaId == null || totalSpots <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        float occupancy = 1f - (float) availableSpots / totalSpots;
+
+        executor.execute(() -> {
+            AreaTimeline areaTimeline = getTimeline(parkingAreaId);
+            long bucket = OccupancyTimeline.bucketOf(now);
+            if (bucket == areaTimeline.lastSampleBucket && occupancy == areaTimeline.lastOccupancy
+                    && totalSpots == areaTimeline.totalSpots) {
+                return;
+            }
+            areaTimeline.timeline.record(now, occupancy);
+            areaTimeline.totalSpots = totalSpots;
+            areaTimeline.lastOccupancy = occupancy;
+            areaTimeline.lastSampleBucket = bucket;
+            dirtyAreas.add(parkingAreaId);
+            scheduleSave();
+        });
+    }
+
+    /**
+     * Predict how many spots of an area will be free at the given time
+     */
+    public void predictedAvailability(String parkingAreaId, long time, PredictionCallback callback) {
+        executor.execute(() -> {
+            AreaTimeline areaTimeline = getTimeline(parkingAreaId);
+            int totalSpots = areaTimeline.totalSpots;
+            float occupancy = areaTimeline.timeline.forecastOccupancy(time);
+            int sampledWeeks = areaTimeline.timeline.countSampledWeeks(time);
+
+            // Bookings already holding a spot at that time
+            int booked = 0;
+            try {
+                for (BookingEntity booking : bookingDao.getActiveBookingsForParkingArea(
+                        parkingAreaId, System.currentTimeMillis())) {
+                    if (booking.getStartTime() <= time && booking.getEndTime() > time) {
+                        booked++;
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading bookings for forecast", e);
+            }
+
+            int predicted = -1;
+            if (occupancy >= 0f && totalSpots > 0) {
+                predicted = Math.round(totalSpots * (1f - occupancy));
+            }
+            if (booked > 0 && totalSpots > 0) {
+                int unbooked = Math.max(0, totalSpots - booked);
+                predicted = predicted < 0 ? unbooked : Math.min(predicted, unbooked);
+            }
+
+            final int availableSpots = predicted;
+            mainHandler.post(() -> callback.onPrediction(availableSpots, sampledWeeks));
+        });
+    }
+
+    // Load a timeline from Room on first use
+    private AreaTimeline getTimeline(String parkingAreaId) {
+        AreaTimeline areaTimeline = timelines.get(parkingAreaId);
+        if (areaTimeline != null) {
+            return areaTimeline;
+        }
+
+        OccupancyTimelineEntity entity = null;
+        try {
+            entity = timelineDao.getTimelineSync(parkingAreaId);
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading occupancy timeline", e);
+        }
+
+        if (entity != null) {
+            areaTimeline = new AreaTimeline(OccupancyTimeline.fromBytes(entity.getOccupancySums(),
+                    entity.getSampleCounts(), entity.getLatestBucket()), entity.getTotalSpots());
+        } else {
+            areaTimeline = new AreaTimeline(new OccupancyTimeline(), 0);
+        }
+        timelines.put(parkingAreaId, areaTimeline);
+        return areaTimeline;
+    }
+
+    // Drop the timelines removeEldestEntry kept while they had unsaved samples
+    private void trimTimelines() {
+        Iterator<String> iterator = timelines.keySet().iterator();
+        while (timelines.size() > MAX_LOADED_TIMELINES && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private void scheduleSave() {
+        if (!saveScheduled) {
+            saveScheduled = true;
+            executor.schedule(this::saveDirty, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void saveDirty() {
+        saveScheduled = false;
+        if (dirtyAreas.isEmpty()) {
+            return;
+        }
+
+        List<OccupancyTimelineEntity> entities = new ArrayList<>();
+        for (String parkingAreaId : dirtyAreas) {
+            AreaTimeline areaTimeline = timelines.get(parkingAreaId);
+            entities.add(new OccupancyTimelineEntity(parkingAreaId,
+                    areaTimeline.timeline.getLatestBucket(),
+                    areaTimeline.timeline.sumsToBytes(),
+                    areaTimeline.timeline.countsToBytes(),
+                    areaTimeline.totalSpots));
+        }
+        dirtyAreas.clear();
+        trimTimelines();
+
+        try {
+            timelineDao.upsertAll(entities);
+        } catch (Exception e) {
+            Log.e(TAG, "Error saving occupancy timelines", e);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.example.parkingfinder.repositories;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.parkingfinder.database.AppDatabase;
+import com.example.parkingfinder.database.WriteBatcher;
+import com.example.parkingfinder.database.dao.ParkingAreaDao;
+import com.example.parkingfinder.database.entities.ParkingAreaEntity;
+import com.example.parkingfinder.firebase.FirestoreManager;
+import com.example.parkingfinder.firebase.ReadPolicy;
+import com.example.parkingfinder.mappers.ParkingAreaMapper;
+import com.example.parkingfinder.models.ParkingArea;
+import com.example.parkingfinder.utils.Constants;
+import com.example.parkingfinder.utils.GeoMath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Single source of parking areas for the map and list screens.
+ * Reads go memory -> Room -> Firestore. Cached results are returned right away
+ * and, once older than their tier's TTL, refreshed from Firestore in the
+ * background (stale-while-revalidate). Room only counts as fresh inside the
+ * circle of a recent server fetch, elsewhere its rows may be an incomplete
+ * set. With nothing in Room, the bundle of the region is used if one covers
+ * the location, otherwise Firestore's own cache is shown until the server
+ * answers. Bundle results are revalidated by reading only the areas written
+ * since the bundle was built. Every result says which tier it came from.
+ */
+public class ParkingAreaRepository {
+
+    private static final String TAG = "ParkingAreaRepository";
+
+    // Region cells are about 1.1 km wide, small moves of the user hit the same cell
+    private static final double CELL_SIZE_DEGREES = 0.01;
+    private static final int MEMORY_CACHE_CELLS = 32;
+
+    // Age after which each tier is considered stale
+    private static final long MEMORY_TTL_MS = 2 * Constants.Time.MINUTE;
+    private static final long DATABASE_TTL_MS = 15 * Constants.Time.MINUTE;
+    // Deleted areas only drop out of bundle results with a full read, which
+    // this bounds. Changed areas are read since the bundle at the Room TTL,
+    // availability comes live from the realtime database either way.
+    private static final long BUNDLE_TTL_MS = 30 * Constants.Time.DAY;
+
+    private static volatile ParkingAreaRepository instance;
+
+    private final FirestoreManager firestoreManager;
+    private final ParkingAreaDao parkingAreaDao;
+    private final WriteBatcher writeBatcher;
+    private final FavoritesRepository favoritesRepository;
+    private final RegionBundleRepository regionBundleRepository;
+    private final QueryCoverage queryCoverage;
+    private final ExecutorService databaseExecutor;
+    private final Handler mainHandler;
+
+    private final LruCache<String, CacheEntry> memoryCache = new LruCache<>(MEMORY_CACHE_CELLS);
+
+    // Callbacks waiting on a network fetch, keyed by cache key. Main thread only.
+    private final Map<String, List<ParkingAreasCallback>> inFlightFetches = new HashMap<>();
+
+    /**
+     * Where a result was served from
+     */
+    public enum Source {
+        MEMORY,
+        DATABASE,
+        // Firestore's local cache, shown while the server is asked
+        FIRESTORE_CACHE,
+        // A pre-built regional bundle in Firestore's cache
+        BUNDLE,
+        NETWORK
+    }
+
+    /**
+     * Parking areas plus where they came from and how old they are
+     */
+    public static class ParkingAreasResult {
+        private final List<ParkingArea> areas;
+        private final Source source;
+        private final long fetchedAt;
+        private final boolean stale;
+        private final boolean revalidating;
+
+        ParkingAreasResult(List<ParkingArea> areas, Source source, long fetchedAt,
+                           boolean stale, boolean revalidating) {
+            this.areas = areas;
+            this.source = source;
+            this.fetchedAt = fetchedAt;
+            this.stale = stale;
+            this.revalidating = revalidating;
+        }
+
+        public List<ParkingArea> getAreas() {
+            return areas;
+        }
+
+        public Source getSource() {
+            return source;
+        }
+
+        /**
+         * When the data was last fetched from Firestore (0 if unknown)
+         */
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+
+        /**
+         * True when the data is past its tier's TTL
+         */
+        public boolean isStale() {
+            return stale;
+        }
+
+        /**
+         * True when a network refresh is running and another result will follow
+         */
+        public boolean isRevalidating() {
+            return revalidating;
+        }
+    }
+
+    /**
+     * Called on the main thread. onResult can be called twice, first with the
+     * cached data and then with the refreshed data.
+     */
+    public interface ParkingAreasCallback {
+        void onResult(ParkingAreasResult result);
+        void onFailure(String message);
+    }
+
+    private static class CacheEntry {
+        final List<ParkingArea> areas;
+        final long fetchedAt;
+        final long ttlMs;
+        // Creation time of the bundle the areas came from, 0 if none
+        final long bundleCreatedAt;
+
+        CacheEntry(List<ParkingArea> areas, long fetchedAt, long ttlMs) {
+            this(areas, fetchedAt, ttlMs, 0);
+        }
+
+        CacheEntry(List<ParkingArea> areas, long fetchedAt, long ttlMs, long bundleCreatedAt) {
+            this.areas = areas;
+            this.fetchedAt = fetchedAt;
+            this.ttlMs = ttlMs;
+            this.bundleCreatedAt = bundleCreatedAt;
+        }
+    }
+
+    private ParkingAreaRepository(Context context) {
+        firestoreManager = FirestoreManager.getInstance();
+        parkingAreaDao = AppDatabase.getDatabase(context).parkingAreaDao();
+        writeBatcher = WriteBatcher.getInstance(context);
+        favoritesRepository = FavoritesRepository.getInstance(context);
+        regionBundleRepository = RegionBundleRepository.getInstance(context);
+        queryCoverage = new QueryCoverage(context);
+        databaseExecutor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    public static ParkingAreaRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ParkingAreaRepository.class) {
+                if (instance == null) {
+                    instance = new ParkingAreaRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get parking areas around a location. Must be called on the main thread.
+     *
+     * @param forceRefresh skip the TTL check and always revalidate from Firestore
+     */
+    public void getParkingAreas(double latitude, double longitude, double radiusInKm,
+                                boolean forceRefresh, ParkingAreasCallback callback) {
+        String key = cacheKey(latitude, longitude, radiusInKm);
+        long now = System.currentTimeMillis();
+
+        CacheEntry cached = memoryCache.get(key);
+        if (cached != null) {
+            boolean stale = forceRefresh || now - cached.fetchedAt > cached.ttlMs;
+            callback.onResult(new ParkingAreasResult(new ArrayList<>(cached.areas), Source.MEMORY,
+                    cached.fetchedAt, stale, stale));
+            if (stale && cached.bundleCreatedAt != 0 && !forceRefresh
+                    && now - cached.bundleCreatedAt <= BUNDLE_TTL_MS) {
+                fetchBundleChanges(key, latitude, longitude, radiusInKm, cached.areas,
+                        cached.bundleCreatedAt, callback);
+            } else if (stale) {
+                fetchFromNetwork(key, latitude, longitude, radiusInKm, ReadPolicy.SERVER_ONLY, callback);
+            }
+            return;
+        }
+
+        databaseExecutor.execute(() -> {
+            List<ParkingArea> localAreas = new ArrayList<>();
+            long oldestUpdate = Long.MAX_VALUE;
+            try {
+                GeoMath.Origin origin = new GeoMath.Origin(latitude, longitude);
+                double[] bounds = origin.boundingBox(radiusInKm);
+                List<ParkingAreaEntity> entities = parkingAreaDao.getParkingAreasInBoundsSync(
+                        bounds[0], bounds[1], bounds[2], bounds[3]);
+                for (ParkingAreaEntity entity : entities) {
+                    ParkingArea area = ParkingAreaMapper.fromEntity(entity);
+                    if (origin.isWithin(area.getLatitude(), area.getLongitude(), radiusInKm)) {
+                        localAreas.add(area);
+                        oldestUpdate = Math.min(oldestUpdate, entity.getLastUpdated());
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading parking areas from local database", e);
+            }
+            long coveredSince = queryCoverage.coveredSince(latitude, longitude, radiusInKm);
+
+            final long fetchedAt = coveredSince != 0 ? coveredSince
+                    : localAreas.isEmpty() ? 0 : oldestUpdate;
+            mainHandler.post(() -> {
+                boolean stale = forceRefresh || coveredSince == 0
+                        || System.currentTimeMillis() - coveredSince > DATABASE_TTL_MS;
+                // An empty answer is only trusted when the server gave it recently
+                if (localAreas.isEmpty() && stale) {
+                    fetchFromBundle(key, latitude, longitude, radiusInKm, forceRefresh, callback);
+                    return;
+                }
+
+                // Aged from the fetch that stored them, so they keep the Room TTL
+                memoryCache.put(key, new CacheEntry(localAreas, fetchedAt, DATABASE_TTL_MS));
+                callback.onResult(new ParkingAreasResult(new ArrayList<>(localAreas), Source.DATABASE,
+                        fetchedAt, stale, stale));
+                if (stale) {
+                    fetchFromNetwork(key, latitude, longitude, radiusInKm, ReadPolicy.SERVER_ONLY, callback);
+                }
+            });
+        });
+    }
+
+    /**
+     * Drop everything held in memory. Room rows stay and are revalidated by TTL.
+     */
+    public void invalidate() {
+        memoryCache.evictAll();
+    }
+
+    /**
+     * Stop delivering to a callback whose owner is going away. Fetches it
+     * was waiting on keep running and still fill the caches. Main thread only.
+     */
+    public void removeCallback(ParkingAreasCallback callback) {
+        for (List<ParkingAreasCallback> waiters : inFlightFetches.values()) {
+            waiters.removeAll(Collections.singleton(callback));
+        }
+    }
+
+    /**
+     * Answer from the region's bundle without reading documents. Its areas
+     * stay out of Room, so later cold starts are served from the bundle too
+     * and only read the areas changed since it was built.
+     */
+    private void fetchFromBundle(String key, double latitude, double longitude, double radiusInKm,
+                                 boolean forceRefresh, ParkingAreasCallback callback) {
+        regionBundleRepository.getParkingAreas(latitude, longitude, radiusInKm,
+                new RegionBundleRepository.BundledAreasCallback() {
+                    @Override
+                    public void onSuccess(List<ParkingArea> areas, RegionBundleRepository.Region region) {
+                        long createdAt = region.getCreatedAt();
+                        boolean expired = forceRefresh
+                                || System.currentTimeMillis() - createdAt > BUNDLE_TTL_MS;
+                        favoritesRepository.applyTo(areas);
+                        // Always revalidated, areas may have changed since the bundle was built
+                        callback.onResult(new ParkingAreasResult(new ArrayList<>(areas), Source.BUNDLE,
+                                createdAt, true, true));
+                        if (expired) {
+                            fetchFromNetwork(key, latitude, longitude, radiusInKm, ReadPolicy.SERVER_ONLY, callback);
+                        } else {
+                            fetchBundleChanges(key, latitude, longitude, radiusInKm, areas, createdAt, callback);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(String message) {
+                        // No bundle here, Firestore's cache can still answer before the server
+                        fetchFromNetwork(key, latitude, longitude, radiusInKm, ReadPolicy.CACHE_THEN_SERVER, callback);
+                    }
+                });
+    }
+
+    /**
+     * Bring bundle areas up to date with the areas written since the bundle
+     * was built, costing one read per changed area instead of the whole
+     * collection. Held in memory only, like the bundle areas.
+     */
+    private void fetchBundleChanges(String key, double latitude, double longitude, double radiusInKm,
+                                    List<ParkingArea> bundleAreas, long bundleCreatedAt,
+                                    ParkingAreasCallback callback) {
+        if (joinFetch(key, callback)) {
+            return;
+        }
+
+        firestoreManager.getParkingAreasUpdatedAfter(bundleCreatedAt,
+                new FirestoreManager.GetParkingAreasCallback() {
+                    @Override
+                    public void onSuccess(List<ParkingArea> changedAreas) {
+                        long fetchedAt = System.currentTimeMillis();
+                        Map<String, ParkingArea> merged = new LinkedHashMap<>();
+                        for (ParkingArea area : bundleAreas) {
+                            merged.put(area.getId(), area);
+                        }
+                        // A changed area may have moved out of the circle, or into it
+                        GeoMath.Origin origin = new GeoMath.Origin(latitude, longitude);
+                        for (ParkingArea area : changedAreas) {
+                            merged.remove(area.getId());
+                            if (origin.isWithin(area.getLatitude(), area.getLongitude(), radiusInKm)) {
+                                merged.put(area.getId(), area);
+                            }
+                        }
+                        List<ParkingArea> areas = new ArrayList<>(merged.values());
+                        favoritesRepository.applyTo(areas);
+                        memoryCache.put(key, new CacheEntry(areas, fetchedAt, DATABASE_TTL_MS, bundleCreatedAt));
+
+                        for (ParkingAreasCallback waiter : removeWaiters(key)) {
+                            waiter.onResult(new ParkingAreasResult(new ArrayList<>(areas),
+                                    Source.BUNDLE, fetchedAt, false, false));
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(String message) {
+                        for (ParkingAreasCallback waiter : removeWaiters(key)) {
+                            waiter.onFailure(message);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Revalidations read from the server only, a cached answer would be
+     * reported as fresh
+     */
+    private void fetchFromNetwork(String key, double latitude, double longitude, double radiusInKm,
+                                  ReadPolicy policy, ParkingAreasCallback callback) {
+        if (joinFetch(key, callback)) {
+            return;
+        }
+
+        firestoreManager.getNearbyParkingAreas(latitude, longitude, radiusInKm, policy,
+                new FirestoreManager.GetParkingAreasCallback() {
+                    @Override
+                    public void onSuccess(List<ParkingArea> areas) {
+                        onSuccess(areas, false);
+                    }
+
+                    @Override
+                    public void onSuccess(List<ParkingArea> areas, boolean fromCache) {
+                        if (fromCache) {
+                            // Shown while the server answers, not cached or saved
+                            favoritesRepository.applyTo(areas);
+                            List<ParkingAreasCallback> waiters = inFlightFetches.get(key);
+                            if (waiters != null) {
+                                for (ParkingAreasCallback waiter : new ArrayList<>(waiters)) {
+                                    waiter.onResult(new ParkingAreasResult(new ArrayList<>(areas),
+                                            Source.FIRESTORE_CACHE, 0, true, true));
+                                }
+                            }
+                            return;
+                        }
+
+                        long fetchedAt = System.currentTimeMillis();
+                        // Firestore rows don't carry the user's favorites, keep the local flags.
+                        // Rows saved while the set is still loading get theirs back when it
+                        // loads, every favorite's flag is written then.
+                        favoritesRepository.applyTo(areas);
+                        memoryCache.put(key, new CacheEntry(areas, fetchedAt, MEMORY_TTL_MS));
+                        saveToLocalDatabase(areas);
+                        queryCoverage.record(latitude, longitude, radiusInKm, fetchedAt);
+
+                        for (ParkingAreasCallback waiter : removeWaiters(key)) {
+                            waiter.onResult(new ParkingAreasResult(new ArrayList<>(areas),
+                                    Source.NETWORK, fetchedAt, false, false));
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(String message) {
+                        for (ParkingAreasCallback waiter : removeWaiters(key)) {
+                            waiter.onFailure(message);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Wait on the fetch already running for the same cell, if there is one
+     *
+     * @return false when the caller has to start the fetch
+     */
+    private boolean joinFetch(String key, ParkingAreasCallback callback) {
+        List<ParkingAreasCallback> waiting = inFlightFetches.get(key);
+        if (waiting != null) {
+            waiting.add(callback);
+            return true;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        inFlightFetches.put(key, waiting);
+        return false;
+    }
+
+    private List<ParkingAreasCallback> removeWaiters(String key) {
+        List<ParkingAreasCallback> waiters = inFlightFetches.remove(key);
+        return waiters != null ? waiters : new ArrayList<>();
+    }
+
+    private void saveToLocalDatabase(List<ParkingArea> areas) {
+        List<ParkingAreaEntity> entities = new ArrayList<>();
+        for (ParkingArea area : areas) {
+            entities.add(ParkingAreaMapper.toEntity(area));
+        }
+        writeBatcher.upsertParkingAreas(entities);
+    }
+
+    private static String cacheKey(double latitude, double longitude, double radiusInKm) {
+        long cellLat = (long) Math.floor(latitude / CELL_SIZE_DEGREES);
+        long cellLng = (long) Math.floor(longitude / CELL_SIZE_DEGREES);
+        return String.format(Locale.US, "%d:%d:%.1f", cellLat, cellLng, radiusInKm);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.parkingfinder.repositories;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.parkingfinder.database.AppDatabase;
+import com.example.parkingfinder.database.WriteBatcher;
+import com.example.parkingfinder.database.dao.ParkingSpotDao;
+import com.example.parkingfinder.database.entities.ParkingSpotEntity;
+import com.example.parkingfinder.firebase.RealtimeDbManager;
+import com.example.parkingfinder.mappers.ParkingSpotMapper;
+import com.example.parkingfinder.models.ParkingSpot;
+import com.example.parkingfinder.utils.Constants;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Static spot layout per parking area (numbers, floors, positions, ordinals).
+ * The layout is fetched from the Realtime Database once, cached in Room and
+ * then paired with the area's availability bitset for live updates.
+ */
+public class ParkingSpotRepository {
+
+    private static final String TAG = "ParkingSpotRepository";
+
+    // Layouts rarely change, refetch at most once a day
+    private static final long LAYOUT_TTL_MS = Constants.Time.DAY;
+
+    private static volatile ParkingSpotRepository instance;
+
+    private final RealtimeDbManager realtimeDbManager;
+    private final ParkingSpotDao parkingSpotDao;
+    private final WriteBatcher writeBatcher;
+    private final ExecutorService databaseExecutor;
+    private final Handler mainHandler;
+
+    /**
+     * Called on the main thread with spots sorted by ordinal
+     */
+    public interface LayoutCallback {
+        void onLayoutLoaded(List<ParkingSpot> layout);
+        void onFailure(String message);
+    }
+
+    private ParkingSpotRepository(Context context) {
+        realtimeDbManager = RealtimeDbManager.getInstance();
+        parkingSpotDao = AppDatabase.getDatabase(context).parkingSpotDao();
+        writeBatcher = WriteBatcher.getInstance(context);
+        databaseExecutor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    public static ParkingSpotRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ParkingSpotRepository.class) {
+                if (instance == null) {
+                    instance = new ParkingSpotRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get the spot layout for an area, from Room when a complete and recent
+     * copy is cached, otherwise from the Realtime Database
+     */
+    public void getLayout(String parkingAreaId, LayoutCallback callback) {
+        databaseExecutor.execute(() -> {
+            List<ParkingSpot> cached = new ArrayList<>();
+            boolean usable = true;
+            long now = System.currentTimeMillis();
+            try {
+                for (ParkingSpotEntity entity : parkingSpotDao.getLayoutSync(parkingAreaId)) {
+                    // Rows cached before ordinals existed can't be paired with the bitset
+                    if (entity.getOrdinal() < 0 || now - entity.getLastUpdated() > LAYOUT_TTL_MS) {
+                        usable = false;
+                    }
+                    cached.add(ParkingSpotMapper.fromEntity(entity));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading spot layout from local database", e);
+                usable = false;
+            }
+
+            final boolean fresh = usable && !cached.isEmpty();
+            mainHandler.post(() -> {
+                if (fresh) {
+                    callback.onLayoutLoaded(cached);
+                } else {
+                    fetchLayout(parkingAreaId, cached, callback);
+                }
+            });
+        });
+    }
+
+    private void fetchLayout(String parkingAreaId, List<ParkingSpot> fallback, LayoutCallback callback) {
+        realtimeDbManager.getParkingSpots(parkingAreaId, new RealtimeDbManager.GetParkingSpotsCallback() {
+            @Override
+            public void onSuccess(List<ParkingSpot> spots) {
+                List<ParkingSpotEntity> entities = new ArrayList<>();
+                for (ParkingSpot spot : spots) {
+                    if (spot.getParkingAreaId() == null) {
+                        spot.setParkingAreaId(parkingAreaId);
+                    }
+                    entities.add(ParkingSpotMapper.toEntity(spot));
+                }
+                Collections.sort(spots, Comparator.comparingInt(ParkingSpot::getOrdinal));
+                // Not kept for areas that aren't in Room, they are fetched again next time
+                writeBatcher.upsertParkingSpots(entities);
+                callback.onLayoutLoaded(spots);
+            }
+
+            @Override
+            public void onFailure(String errorMessage) {
+                // An old layout is still better than nothing
+                if (!fallback.isEmpty()) {
+                    callback.onLayoutLoaded(fallback);
+                } else {
+                    callback.onFailure(errorMessage);
+                }
+            }
+        });
+    }
+}
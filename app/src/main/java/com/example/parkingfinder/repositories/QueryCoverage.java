@@ -0,0 +1,121 @@
+package com.example.parkingfinder.repositories;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.parkingfinder.utils.GeoMath;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The circles of the map whose parking areas were last fetched from the
+ * server, with when. Room keeps the areas of every past query, so rows near
+ * a location don't mean all areas there are stored. A query can only be
+ * answered from Room as fresh when a recent fetch covered its whole circle.
+ */
+class QueryCoverage {
+
+    private static final String TAG = "QueryCoverage";
+
+    private static final String PREFS_NAME = "parking_area_coverage";
+    private static final String PREF_CIRCLES = "circles";
+    private static final int MAX_CIRCLES = 32;
+
+    private final SharedPreferences preferences;
+
+    // Oldest first. Guarded by "this".
+    private final List<Circle> circles = new ArrayList<>();
+
+    private static class Circle {
+        final double latitude;
+        final double longitude;
+        final double radiusInKm;
+        final long fetchedAt;
+
+        Circle(double latitude, double longitude, double radiusInKm, long fetchedAt) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusInKm = radiusInKm;
+            this.fetchedAt = fetchedAt;
+        }
+
+        boolean contains(double lat, double lng, double radius) {
+            return GeoMath.distanceKm(latitude, longitude, lat, lng) + radius <= radiusInKm;
+        }
+    }
+
+    QueryCoverage(Context context) {
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load();
+    }
+
+    /**
+     * Remember that every area in the circle was fetched at fetchedAt
+     */
+    synchronized void record(double latitude, double longitude, double radiusInKm, long fetchedAt) {
+        Circle added = new Circle(latitude, longitude, radiusInKm, fetchedAt);
+        Iterator<Circle> iterator = circles.iterator();
+        while (iterator.hasNext()) {
+            Circle circle = iterator.next();
+            // Older and inside the new one, it can't answer anything the new one can't
+            if (circle.fetchedAt <= fetchedAt
+                    && added.contains(circle.latitude, circle.longitude, circle.radiusInKm)) {
+                iterator.remove();
+            }
+        }
+        circles.add(added);
+        while (circles.size() > MAX_CIRCLES) {
+            circles.remove(0);
+        }
+        save();
+    }
+
+    /**
+     * When the newest fetch covering the whole circle ran, 0 if none did
+     */
+    synchronized long coveredSince(double latitude, double longitude, double radiusInKm) {
+        long newest = 0;
+        for (Circle circle : circles) {
+            if (circle.fetchedAt > newest && circle.contains(latitude, longitude, radiusInKm)) {
+                newest = circle.fetchedAt;
+            }
+        }
+        return newest;
+    }
+
+    private void load() {
+        String stored = preferences.getString(PREF_CIRCLES, null);
+        if (stored == null) {
+            return;
+        }
+        try {
+            JSONArray values = new JSONArray(stored);
+            for (int i = 0; i + 3 < values.length(); i += 4) {
+                circles.add(new Circle(values.getDouble(i), values.getDouble(i + 1),
+                        values.getDouble(i + 2), values.getLong(i + 3)));
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error reading query coverage", e);
+            circles.clear();
+        }
+    }
+
+    private void save() {
+        JSONArray values = new JSONArray();
+        try {
+            for (Circle circle : circles) {
+                values.put(circle.latitude).put(circle.longitude).put(circle.radiusInKm).put(circle.fetchedAt);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error writing query coverage", e);
+            return;
+        }
+        preferences.edit().putString(PREF_CIRCLES, values.toString()).apply();
+    }
+}
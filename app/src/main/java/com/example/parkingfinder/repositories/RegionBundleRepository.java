@@ -0,0 +1,353 @@
+package com.example.parkingfinder.repositories;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.parkingfinder.firebase.FirestoreManager;
+import com.example.parkingfinder.models.ParkingArea;
+import com.google.firebase.storage.FirebaseStorage;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Firestore data bundles of the parking areas of a region, built offline by
+ * the bundlebuilder tool. assets/bundles/manifest.json lists the regions.
+ * A region's bundle is loaded into Firestore's cache once, from the assets or,
+ * when it isn't shipped, downloaded from storage. Nearby searches inside a
+ * loaded region are then answered by the region's named query from the
+ * cache, with no document reads.
+ * The manifest and bundles are not checked in, they are built from an export
+ * of the parking_areas collection before a release with
+ * ./gradlew :bundlebuilder:run --args="build snapshot.json regions.json app/src/main/assets/bundles"
+ * (formats in BundleBuilder), and the next build ships them as assets.
+ * Without a manifest no region is covered and searches go to Firestore.
+ * Call from the main thread, callbacks run on the main thread.
+ */
+public class RegionBundleRepository {
+
+    private static final String TAG = "RegionBundleRepository";
+
+    private static final String ASSET_DIR = "bundles";
+    private static final String MANIFEST_NAME = "manifest.json";
+    private static final String STORAGE_BUNDLES = "bundles";
+    private static final long MAX_DOWNLOAD_BYTES = 10L * 1024 * 1024;
+
+    // Creation time of the bundle loaded for each region, a newer manifest reloads it
+    private static final String PREFS_NAME = "region_bundles";
+    private static final String PREF_LOADED = "loaded_";
+
+    private static volatile RegionBundleRepository instance;
+
+    private final Context context;
+    private final FirestoreManager firestoreManager;
+    private final SharedPreferences preferences;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+
+    // Read from the assets on first use. Executor only.
+    private List<Region> regions;
+
+    // Callbacks waiting on a bundle load, keyed by region id. Main thread only.
+    private final Map<String, List<FirestoreManager.FirestoreCallback>> loading = new HashMap<>();
+
+    /**
+     * Part of the map covered by one bundle
+     */
+    public static class Region {
+        private final String id;
+        private final double minLatitude;
+        private final double maxLatitude;
+        private final double minLongitude;
+        private final double maxLongitude;
+        private final String file;
+        private final String queryName;
+        private final long createdAt;
+
+        Region(JSONObject json, long createdAt) throws JSONException {
+            id = json.getString("id");
+            minLatitude = json.getDouble("minLatitude");
+            maxLatitude = json.getDouble("maxLatitude");
+            minLongitude = json.getDouble("minLongitude");
+            maxLongitude = json.getDouble("maxLongitude");
+            file = json.getString("file");
+            queryName = json.getString("query");
+            this.createdAt = createdAt;
+        }
+
+        public boolean contains(double latitude, double longitude) {
+            return latitude >= minLatitude && latitude <= maxLatitude
+                    && longitude >= minLongitude && longitude <= maxLongitude;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * When the dataset snapshot behind the bundle was taken
+         */
+        public long getCreatedAt() {
+            return createdAt;
+        }
+    }
+
+    public interface BundledAreasCallback {
+        void onSuccess(List<ParkingArea> areas, Region region);
+        void onFailure(String errorMessage);
+    }
+
+    private RegionBundleRepository(Context context) {
+        this.context = context;
+        firestoreManager = FirestoreManager.getInstance();
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        executor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    public static RegionBundleRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (RegionBundleRepository.class) {
+                if (instance == null) {
+                    instance = new RegionBundleRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Parking areas near a location from the bundle of the region it is in.
+     * Fails when no region covers the location or the bundle has no areas
+     * nearby, the caller then asks Firestore.
+     */
+    public void getParkingAreas(double latitude, double longitude, double radiusInKm,
+                                BundledAreasCallback callback) {
+        executor.execute(() -> {
+            Region region = findRegion(latitude, longitude);
+            mainHandler.post(() -> {
+                if (region == null) {
+                    callback.onFailure("No bundled region covers this location");
+                    return;
+                }
+                ensureLoaded(region, new FirestoreManager.FirestoreCallback() {
+                    @Override
+                    public void onSuccess() {
+                        queryRegion(region, latitude, longitude, radiusInKm, callback);
+                    }
+
+                    @Override
+                    public void onFailure(String errorMessage) {
+                        callback.onFailure(errorMessage);
+                    }
+                });
+            });
+        });
+    }
+
+    /**
+     * Load the shipped bundles that aren't loaded yet, so the first search
+     * doesn't wait for them
+     */
+    public void preloadAssets() {
+        executor.execute(() -> {
+            for (Region region : getRegions()) {
+                if (!isLoaded(region) && hasAsset(region.file)) {
+                    mainHandler.post(() -> ensureLoaded(region, new FirestoreManager.FirestoreCallback() {
+                        @Override
+                        public void onSuccess() {
+                            Log.d(TAG, "Loaded bundle of " + region.id);
+                        }
+
+                        @Override
+                        public void onFailure(String errorMessage) {
+                            Log.e(TAG, "Error loading bundle of " + region.id + ": " + errorMessage);
+                        }
+                    }));
+                }
+            }
+        });
+    }
+
+    private void queryRegion(Region region, double latitude, double longitude, double radiusInKm,
+                             BundledAreasCallback callback) {
+        firestoreManager.getBundledParkingAreas(region.queryName, latitude, longitude, radiusInKm,
+                new FirestoreManager.GetParkingAreasCallback() {
+                    @Override
+                    public void onSuccess(List<ParkingArea> areas) {
+                        if (areas.isEmpty()) {
+                            // Nothing nearby, or the cache has dropped the documents
+                            callback.onFailure("No bundled parking areas nearby");
+                        } else {
+                            callback.onSuccess(areas, region);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(String errorMessage) {
+                        // The cache was cleared since, load the bundle again next time
+                        preferences.edit().remove(PREF_LOADED + region.id).apply();
+                        callback.onFailure(errorMessage);
+                    }
+                });
+    }
+
+    /**
+     * Load a region's bundle unless this version of it already is
+     */
+    private void ensureLoaded(Region region, FirestoreManager.FirestoreCallback callback) {
+        if (isLoaded(region)) {
+            callback.onSuccess();
+            return;
+        }
+
+        List<FirestoreManager.FirestoreCallback> waiting = loading.get(region.id);
+        if (waiting != null) {
+            waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        loading.put(region.id, waiting);
+
+        executor.execute(() -> {
+            byte[] bundle = null;
+            try {
+                bundle = readAsset(region.file);
+            } catch (IOException e) {
+                Log.e(TAG, "Error reading bundle asset " + region.file, e);
+            }
+            byte[] shipped = bundle;
+            mainHandler.post(() -> {
+                if (shipped != null) {
+                    loadBundle(region, shipped);
+                } else {
+                    download(region);
+                }
+            });
+        });
+    }
+
+    /**
+     * Fetch a bundle that isn't shipped. Once loaded it stays in the cache,
+     * so each region is downloaded once per version.
+     */
+    private void download(Region region) {
+        FirebaseStorage.getInstance().getReference(STORAGE_BUNDLES).child(region.file)
+                .getBytes(MAX_DOWNLOAD_BYTES)
+                .addOnSuccessListener(bytes -> loadBundle(region, bytes))
+                .addOnFailureListener(e -> finish(region, e.getMessage()));
+    }
+
+    private void loadBundle(Region region, byte[] bundle) {
+        firestoreManager.loadBundle(bundle, new FirestoreManager.FirestoreCallback() {
+            @Override
+            public void onSuccess() {
+                preferences.edit().putLong(PREF_LOADED + region.id, region.createdAt).apply();
+                finish(region, null);
+            }
+
+            @Override
+            public void onFailure(String errorMessage) {
+                finish(region, errorMessage);
+            }
+        });
+    }
+
+    private void finish(Region region, String errorMessage) {
+        List<FirestoreManager.FirestoreCallback> waiting = loading.remove(region.id);
+        if (waiting == null) {
+            return;
+        }
+        for (FirestoreManager.FirestoreCallback callback : waiting) {
+            if (errorMessage == null) {
+                callback.onSuccess();
+            } else {
+                callback.onFailure(errorMessage);
+            }
+        }
+    }
+
+    private boolean isLoaded(Region region) {
+        return preferences.getLong(PREF_LOADED + region.id, 0) == region.createdAt;
+    }
+
+    private Region findRegion(double latitude, double longitude) {
+        for (Region region : getRegions()) {
+            if (region.contains(latitude, longitude)) {
+                return region;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Regions of the shipped manifest, empty when there is none. Executor only.
+     */
+    private List<Region> getRegions() {
+        if (regions != null) {
+            return regions;
+        }
+        regions = Collections.emptyList();
+        try {
+            byte[] bytes = readAsset(MANIFEST_NAME);
+            if (bytes == null) {
+                Log.i(TAG, "No bundle manifest in the assets, bundles are off");
+                return regions;
+            }
+            JSONObject manifest = new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+            long createdAt = manifest.getLong("createdAt");
+            JSONArray entries = manifest.getJSONArray("regions");
+            List<Region> parsed = new ArrayList<>();
+            for (int i = 0; i < entries.length(); i++) {
+                parsed.add(new Region(entries.getJSONObject(i), createdAt));
+            }
+            regions = parsed;
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Error reading bundle manifest", e);
+        }
+        return regions;
+    }
+
+    private boolean hasAsset(String name) {
+        try (InputStream ignored = context.getAssets().open(ASSET_DIR + "/" + name)) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Contents of a file in the bundle assets, or null when it isn't shipped
+     */
+    private byte[] readAsset(String name) throws IOException {
+        try (InputStream in = context.getAssets().open(ASSET_DIR + "/" + name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+}
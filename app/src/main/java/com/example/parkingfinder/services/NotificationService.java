@@ -22,6 +22,7 @@ import com.example.parkingfinder.activities.ParkingDetailsActivity;
 import com.example.parkingfinder.database.AppDatabase;
 import com.example.parkingfinder.database.entities.BookingEntity;
 import com.example.parkingfinder.firebase.FirebaseAuthManager;
+import com.example.parkingfinder.mappers.BookingMapper;
 import com.example.parkingfinder.models.Booking;
 import com.example.parkingfinder.models.ParkingArea;
 
@@ -269,22 +270,22 @@ public class NotificationService {
                     // Check if booking is starting in 30 minutes
                     if (now.before(startTime) && startTime.getTime() - now.getTime() <= thirtyMinutesMs) {
                         // Convert to Booking model and send notification
-                        notificationService.sendUpcomingBookingNotification(convertToBooking(booking));
+                        notificationService.sendUpcomingBookingNotification(BookingMapper.fromEntity(booking));
                     }
 
                     // Check if booking just started (within last 5 minutes)
                     if (startTime.before(now) && now.getTime() - startTime.getTime() <= TimeUnit.MINUTES.toMillis(5)) {
-                        notificationService.sendBookingStartedNotification(convertToBooking(booking));
+                        notificationService.sendBookingStartedNotification(BookingMapper.fromEntity(booking));
                     }
 
                     // Check if booking is ending in 30 minutes
                     if (now.before(endTime) && endTime.getTime() - now.getTime() <= thirtyMinutesMs) {
-                        notificationService.sendBookingEndingSoonNotification(convertToBooking(booking));
+                        notificationService.sendBookingEndingSoonNotification(BookingMapper.fromEntity(booking));
                     }
 
                     // Check if booking just expired (within last 5 minutes)
                     if (endTime.before(now) && now.getTime() - endTime.getTime() <= TimeUnit.MINUTES.toMillis(5)) {
-                        notificationService.sendBookingExpiredNotification(convertToBooking(booking));
+                        notificationService.sendBookingExpiredNotification(BookingMapper.fromEntity(booking));
                     }
                 }
 
@@ -294,22 +295,5 @@ public class NotificationService {
                 return Result.failure();
             }
         }
-
-        private Booking convertToBooking(BookingEntity entity) {
-            Booking booking = new Booking(
-                    entity.getUserId(),
-                    entity.getParkingAreaId(),
-                    entity.getParkingSpotId(),
-                    entity.getParkingAreaName(),
-                    entity.getParkingSpotNumber(),
-                    new Date(entity.getStartTime()),
-                    new Date(entity.getEndTime()),
-                    entity.getTotalCost()
-            );
-            booking.setId(entity.getId());
-            booking.setStatus(entity.getStatus());
-            booking.setVehicleRegistration(entity.getVehicleRegistration());
-            return booking;
-        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,277 @@
+package com.example.parkingfinder.services;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Transformations;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.parkingfinder.database.AppDatabase;
+import com.example.parkingfinder.database.dao.UserDao;
+import com.example.parkingfinder.database.entities.UserEntity;
+import com.example.parkingfinder.firebase.FirestoreManager;
+import com.example.parkingfinder.utils.Constants;
+import com.example.parkingfinder.utils.ImageDownscaler;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads a profile photo in the background and points the user profile at it.
+ * The photo is downscaled into app storage before the work is queued, so the
+ * work only depends on files the app owns. The storage upload session is
+ * saved as soon as it starts, and a retried run (after a lost connection or
+ * process death) resumes from the bytes already sent.
+ */
+public class ProfileImageUploadWorker extends Worker {
+
+    private static final String TAG = "ProfileImageUpload";
+
+    public static final String KEY_PROGRESS = "progress";
+    private static final String KEY_USER_ID = "user_id";
+    private static final String KEY_FILE_PATH = "file_path";
+
+    // Profile images are shown as small circles, 1024px covers every screen
+    private static final int MAX_DIMENSION_PX = 1024;
+    private static final int JPEG_QUALITY = 82;
+
+    private static final String PREFS_NAME = "profile_image_upload";
+    private static final String PREF_SESSION_URI = "session_uri_";
+
+    private static final ExecutorService downscaleExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Called on the main thread once the upload is queued
+     */
+    public interface EnqueueCallback {
+        void onSuccess();
+        void onFailure(String errorMessage);
+    }
+
+    public ProfileImageUploadWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Downscale the picked image and queue its upload, replacing any upload
+     * still pending for the user
+     */
+    public static void enqueue(Context context, String userId, Uri imageUri, EnqueueCallback callback) {
+        Context appContext = context.getApplicationContext();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        downscaleExecutor.execute(() -> {
+            File directory = new File(appContext.getFilesDir(), PREFS_NAME);
+            File file = new File(directory, userId + ".jpg");
+            try {
+                if (!directory.exists() && !directory.mkdirs()) {
+                    throw new IOException("Could not create " + directory);
+                }
+                ImageDownscaler.downscale(appContext, imageUri, file, MAX_DIMENSION_PX, JPEG_QUALITY);
+            } catch (Exception e) {
+                Log.e(TAG, "Error downscaling profile image", e);
+                mainHandler.post(() -> callback.onFailure(e.getMessage()));
+                return;
+            }
+
+            // A new file can't continue the previous upload's session
+            clearSession(appContext, userId);
+
+            OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(ProfileImageUploadWorker.class)
+                    .setInputData(new Data.Builder()
+                            .putString(KEY_USER_ID, userId)
+                            .putString(KEY_FILE_PATH, file.getAbsolutePath())
+                            .build())
+                    .setConstraints(new Constraints.Builder()
+                            .setRequiredNetworkType(NetworkType.CONNECTED)
+                            .build())
+                    .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 30, TimeUnit.SECONDS)
+                    .build();
+            WorkManager.getInstance(appContext).enqueueUniqueWork(
+                    uniqueWorkName(userId), ExistingWorkPolicy.REPLACE, request);
+
+            mainHandler.post(callback::onSuccess);
+        });
+    }
+
+    /**
+     * Upload progress of the user's profile image in percent, -1 when no upload is running
+     */
+    public static LiveData<Integer> getProgress(Context context, String userId) {
+        LiveData<List<WorkInfo>> workInfos = WorkManager.getInstance(context.getApplicationContext())
+                .getWorkInfosForUniqueWorkLiveData(uniqueWorkName(userId));
+        return Transformations.map(workInfos, infos -> {
+            if (infos == null || infos.isEmpty() || infos.get(0).getState().isFinished()) {
+                return -1;
+            }
+            return infos.get(0).getProgress().getInt(KEY_PROGRESS, 0);
+        });
+    }
+
+    /**
+     * Name of the unique work for a user's upload, to observe its progress
+     */
+    public static String uniqueWorkName(String userId) {
+        return Constants.WorkManager.PROFILE_IMAGE_UPLOAD_WORKER + "_" + userId;
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        String userId = getInputData().getString(KEY_USER_ID);
+        String filePath = getInputData().getString(KEY_FILE_PATH);
+        if (userId == null || filePath == null) {
+            return Result.failure();
+        }
+
+        File file = new File(filePath);
+        if (!file.exists()) {
+            Log.e(TAG, "Downscaled profile image is missing");
+            clearSession(context, userId);
+            return Result.failure();
+        }
+
+        StorageReference reference = FirebaseStorage.getInstance()
+                .getReference(Constants.Firebase.STORAGE_PROFILE_IMAGES)
+                .child(userId + ".jpg");
+        StorageMetadata metadata = new StorageMetadata.Builder()
+                .setContentType("image/jpeg")
+                .build();
+
+        // Sessions are keyed by the file version, a replaced file never resumes an old session
+        String sessionKey = PREF_SESSION_URI + userId + "_" + file.lastModified();
+        String savedSession = getPreferences(context).getString(sessionKey, null);
+        UploadTask uploadTask = savedSession != null
+                ? reference.putFile(Uri.fromFile(file), metadata, Uri.parse(savedSession))
+                : reference.putFile(Uri.fromFile(file), metadata);
+
+        String[] storedSession = {savedSession};
+        uploadTask.addOnProgressListener(Runnable::run, snapshot -> {
+            // Save the session as soon as it exists so a later run can resume
+            Uri sessionUri = snapshot.getUploadSessionUri();
+            if (sessionUri != null && !sessionUri.toString().equals(storedSession[0])) {
+                storedSession[0] = sessionUri.toString();
+                getPreferences(context).edit()
+                        .putString(sessionKey, storedSession[0])
+                        .apply();
+            }
+            if (snapshot.getTotalByteCount() > 0) {
+                int percent = (int) (100 * snapshot.getBytesTransferred() / snapshot.getTotalByteCount());
+                setProgressAsync(new Data.Builder().putInt(KEY_PROGRESS, percent).build());
+            }
+        });
+
+        String imageUrl;
+        try {
+            Tasks.await(uploadTask);
+            imageUrl = Tasks.await(reference.getDownloadUrl()).toString();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Error uploading profile image", e);
+            if (savedSession != null) {
+                // The session may have expired, start over on the next run
+                clearSession(context, userId);
+            }
+            return Result.retry();
+        } catch (InterruptedException e) {
+            // Stopped by WorkManager, the saved session is resumed on the next run
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        }
+
+        if (!saveProfileImageUrl(context, userId, imageUrl)) {
+            // The downscaled file is small, the retry simply uploads it again
+            clearSession(context, userId);
+            return Result.retry();
+        }
+
+        clearSession(context, userId);
+        if (!file.delete()) {
+            Log.w(TAG, "Could not delete " + file);
+        }
+        return Result.success();
+    }
+
+    private static boolean saveProfileImageUrl(Context context, String userId, String imageUrl) {
+        CountDownLatch latch = new CountDownLatch(1);
+        boolean[] saved = new boolean[1];
+        FirestoreManager.getInstance().updateProfileImageUrl(userId, imageUrl,
+                new FirestoreManager.FirestoreCallback() {
+                    @Override
+                    public void onSuccess() {
+                        saved[0] = true;
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onFailure(String errorMessage) {
+                        Log.e(TAG, "Error saving profile image url: " + errorMessage);
+                        latch.countDown();
+                    }
+                });
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (!saved[0]) {
+            return false;
+        }
+
+        // Keep the local copy in sync
+        try {
+            UserDao userDao = AppDatabase.getDatabase(context).userDao();
+            UserEntity user = userDao.getUserByIdSync(userId);
+            if (user != null) {
+                user.setProfileImageUrl(imageUrl);
+                userDao.update(user);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating local user", e);
+        }
+        return true;
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static void clearSession(Context context, String userId) {
+        SharedPreferences preferences = getPreferences(context);
+        SharedPreferences.Editor editor = preferences.edit();
+        for (String key : preferences.getAll().keySet()) {
+            if (key.startsWith(PREF_SESSION_URI + userId + "_")) {
+                editor.remove(key);
+            }
+        }
+        editor.apply();
+    }
+}
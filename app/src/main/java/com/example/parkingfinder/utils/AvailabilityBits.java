@@ -0,0 +1,69 @@
+package com.example.parkingfinder.utils;
+
+import android.util.Base64;
+
+import com.example.parkingfinder.models.ParkingSpot;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Compact per-area availability: bit N is set when the spot with ordinal N is
+ * free. Stored in the Realtime Database as base64 (little-endian bytes), so a
+ * 2,000 spot garage is about 340 characters instead of 2,000 spot objects.
+ */
+public final class AvailabilityBits {
+
+    private AvailabilityBits() {
+        // No instances
+    }
+
+    public static String encode(BitSet bits) {
+        return Base64.encodeToString(bits.toByteArray(), Base64.NO_WRAP);
+    }
+
+    /**
+     * Decode a stored bitset, an empty or malformed value reads as all occupied
+     */
+    public static BitSet decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return new BitSet();
+        }
+        try {
+            return BitSet.valueOf(Base64.decode(encoded, Base64.NO_WRAP));
+        } catch (IllegalArgumentException e) {
+            return new BitSet();
+        }
+    }
+
+    /**
+     * Build the bitset for a spot layout from each spot's available flag
+     */
+    public static BitSet fromSpots(List<ParkingSpot> spots) {
+        BitSet bits = new BitSet(spots.size());
+        for (ParkingSpot spot : spots) {
+            if (spot.getOrdinal() >= 0 && spot.isAvailable()) {
+                bits.set(spot.getOrdinal());
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Set each spot's available flag from the bitset. Spots without an ordinal are left alone.
+     */
+    public static void applyToSpots(BitSet bits, List<ParkingSpot> spots) {
+        for (ParkingSpot spot : spots) {
+            if (spot.getOrdinal() >= 0) {
+                spot.setAvailable(bits.get(spot.getOrdinal()));
+            }
+        }
+    }
+
+    /**
+     * Number of free spots, a popcount over the words
+     */
+    public static int countAvailable(BitSet bits) {
+        return bits.cardinality();
+    }
+}
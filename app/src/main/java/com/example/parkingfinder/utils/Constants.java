@@ -119,6 +119,7 @@ public class Constants {
         public static final String BOOKING_NOTIFICATION_WORKER = "booking_notifications";
         public static final String PERIODIC_SYNC_WORKER = "periodic_sync";
         public static final String LOCATION_TRACKING_WORKER = "location_tracking";
+        public static final String PROFILE_IMAGE_UPLOAD_WORKER = "profile_image_upload";
     }
 
     /**
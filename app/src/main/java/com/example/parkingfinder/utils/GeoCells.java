@@ -0,0 +1,80 @@
+package com.example.parkingfinder.utils;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Fixed lat/lng grid used to partition parking areas in the Realtime Database.
+ * A cell key is "<row>_<column>" and is safe to use as a database key.
+ */
+public final class GeoCells {
+
+    // About 5.5 km north-south, a city viewport covers a handful of cells
+    public static final double CELL_SIZE_DEGREES = 0.05;
+
+    // Rough length of one degree of latitude
+    private static final double KM_PER_DEGREE = 111.0;
+
+    private GeoCells() {
+        // No instances
+    }
+
+    /**
+     * Key of the cell containing a point
+     */
+    public static String cellKey(double latitude, double longitude) {
+        return cellKey(row(latitude), column(longitude));
+    }
+
+    /**
+     * Keys of all cells overlapping a bounding box. Returns an empty set when
+     * the box would need more than maxCells cells.
+     */
+    public static Set<String> cellsForBounds(double south, double west, double north, double east,
+                                             int maxCells) {
+        Set<String> cells = new LinkedHashSet<>();
+        long minRow = row(south);
+        long maxRow = row(north);
+        long minColumn = column(west);
+        long maxColumn = column(east);
+
+        // A viewport crossing the antimeridian has west > east, not worth handling here
+        if (maxRow < minRow || maxColumn < minColumn) {
+            return cells;
+        }
+        if ((maxRow - minRow + 1) * (maxColumn - minColumn + 1) > maxCells) {
+            return cells;
+        }
+
+        for (long r = minRow; r <= maxRow; r++) {
+            for (long c = minColumn; c <= maxColumn; c++) {
+                cells.add(cellKey(r, c));
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Keys of all cells overlapping a circle, approximated by its bounding box
+     */
+    public static Set<String> cellsForRadius(double latitude, double longitude, double radiusInKm,
+                                             int maxCells) {
+        double latDelta = radiusInKm / KM_PER_DEGREE;
+        double lngDelta = radiusInKm / (KM_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+        return cellsForBounds(latitude - latDelta, longitude - lngDelta,
+                latitude + latDelta, longitude + lngDelta, maxCells);
+    }
+
+    private static long row(double latitude) {
+        return (long) Math.floor(latitude / CELL_SIZE_DEGREES);
+    }
+
+    private static long column(double longitude) {
+        return (long) Math.floor(longitude / CELL_SIZE_DEGREES);
+    }
+
+    private static String cellKey(long row, long column) {
+        return String.format(Locale.US, "%d_%d", row, column);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.parkingfinder.utils;
+
+/**
+ * Distances on the earth. distanceKm is the exact haversine distance, for
+ * anything shown to the user and for final radius checks. An Origin ranks
+ * and prefilters points around one location with an equirectangular
+ * approximation: the origin's cosine of latitude is computed once, after
+ * which each point costs a few multiplications instead of four trig calls.
+ *
+ * Up to 80 degrees of latitude the approximation is within 3.8% of the
+ * haversine distance for points up to 200 km away and within 2% up to
+ * 100 km. Below 60 degrees it is within 0.1% up to 10 km, so ranking by it
+ * can only swap two points whose distances differ by less than 0.2%, at most
+ * 20 m in a 10 km search. GeoMathTest checks these bounds.
+ */
+public final class GeoMath {
+
+    public static final double EARTH_RADIUS_KM = 6371;
+
+    private static final double KM_PER_DEGREE = Math.PI / 180 * EARTH_RADIUS_KM;
+
+    // Where the approximation stays within the bounds above
+    private static final double MAX_APPROX_LATITUDE = 80;
+    private static final double MAX_APPROX_RADIUS_KM = 200;
+    // Margin of the fast radius checks, above the worst error in range, so
+    // no point is put on the wrong side of the radius
+    private static final double PREFILTER_SLACK = 1.05;
+
+    private GeoMath() {
+        // No instances
+    }
+
+    /**
+     * Exact great-circle distance in km
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+
+        double sinLat = Math.sin(latDistance / 2);
+        double sinLon = Math.sin(lonDistance / 2);
+        double a = sinLat * sinLat
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+
+        return 2 * EARTH_RADIUS_KM * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * A location to measure many points from
+     */
+    public static final class Origin {
+        private final double latitude;
+        private final double longitude;
+        // Length of one degree of longitude at the origin
+        private final double kmPerDegreeLongitude;
+        private final boolean approximable;
+
+        public Origin(double latitude, double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.kmPerDegreeLongitude = KM_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+            this.approximable = Math.abs(latitude) <= MAX_APPROX_LATITUDE;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        /**
+         * Approximate squared distance in square km, for ranking. Orders points
+         * the same way as the approximate distance without the square root.
+         */
+        public double approxDistanceSquared(double lat, double lng) {
+            double y = (lat - latitude) * KM_PER_DEGREE;
+            double x = wrapLongitude(lng - longitude) * kmPerDegreeLongitude;
+            return x * x + y * y;
+        }
+
+        /**
+         * Approximate squared distances of a batch of points in one pass.
+         * out[i] is the value for the point at rows[i].
+         */
+        public void approxDistancesSquared(double[] latitudes, double[] longitudes, int[] rows, double[] out) {
+            for (int i = 0; i < rows.length; i++) {
+                int row = rows[i];
+                double y = (latitudes[row] - latitude) * KM_PER_DEGREE;
+                double x = wrapLongitude(longitudes[row] - longitude) * kmPerDegreeLongitude;
+                out[i] = x * x + y * y;
+            }
+        }
+
+        /**
+         * Exact radius check, with the haversine only for points near the edge
+         */
+        public boolean isWithin(double lat, double lng, double radiusInKm) {
+            if (approximable && radiusInKm <= MAX_APPROX_RADIUS_KM) {
+                double approx = approxDistanceSquared(lat, lng);
+                double outer = radiusInKm * PREFILTER_SLACK;
+                double inner = radiusInKm / PREFILTER_SLACK;
+                if (approx > outer * outer) {
+                    return false;
+                }
+                if (approx <= inner * inner) {
+                    return true;
+                }
+            }
+            return distanceKm(lat, lng) <= radiusInKm;
+        }
+
+        public double distanceKm(double lat, double lng) {
+            return GeoMath.distanceKm(latitude, longitude, lat, lng);
+        }
+
+        /**
+         * Smallest latitude/longitude box holding every point within the
+         * radius, as {minLat, maxLat, minLng, maxLng}. Longitude covers the
+         * whole range when the circle reaches a pole or the antimeridian.
+         */
+        public double[] boundingBox(double radiusInKm) {
+            double angle = radiusInKm / EARTH_RADIUS_KM;
+            double latitudeDelta = Math.toDegrees(angle);
+            double minLat = latitude - latitudeDelta;
+            double maxLat = latitude + latitudeDelta;
+            if (minLat <= -90 || maxLat >= 90) {
+                return new double[] {Math.max(minLat, -90), Math.min(maxLat, 90), -180, 180};
+            }
+            double longitudeDelta = Math.toDegrees(
+                    Math.asin(Math.sin(angle) / Math.cos(Math.toRadians(latitude))));
+            double minLng = longitude - longitudeDelta;
+            double maxLng = longitude + longitudeDelta;
+            if (minLng < -180 || maxLng > 180) {
+                return new double[] {minLat, maxLat, -180, 180};
+            }
+            return new double[] {minLat, maxLat, minLng, maxLng};
+        }
+    }
+
+    private static double wrapLongitude(double degrees) {
+        if (degrees > 180) {
+            return degrees - 360;
+        }
+        if (degrees < -180) {
+            return degrees + 360;
+        }
+        return degrees;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.parkingfinder.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ExifInterface;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Shrinks picked photos before they are uploaded. The source is decoded with
+ * a power of two inSampleSize, scaled to the target size and re-encoded as
+ * JPEG. Re-encoding drops all EXIF data, only the orientation is written back.
+ * Blocking, call off the main thread.
+ */
+public final class ImageDownscaler {
+
+    private ImageDownscaler() {
+        // No instances
+    }
+
+    /**
+     * Write a JPEG of the image at source to target, with its longer side at
+     * most maxDimension pixels
+     */
+    public static void downscale(Context context, Uri source, File target, int maxDimension, int quality)
+            throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+
+        // Read the dimensions only
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream input = openStream(resolver, source)) {
+            BitmapFactory.decodeStream(input, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not an image: " + source);
+        }
+
+        // Largest power of two that keeps the longer side at or above the target
+        int longerSide = Math.max(options.outWidth, options.outHeight);
+        int sampleSize = 1;
+        while (longerSide / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+
+        options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap;
+        try (InputStream input = openStream(resolver, source)) {
+            bitmap = BitmapFactory.decodeStream(input, null, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("Could not decode " + source);
+        }
+
+        // inSampleSize only halves, finish with a filtered scale
+        float scale = (float) maxDimension / Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (scale < 1f) {
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                    Math.round(bitmap.getWidth() * scale), Math.round(bitmap.getHeight() * scale), true);
+            bitmap.recycle();
+            bitmap = scaled;
+        }
+
+        try (OutputStream output = new FileOutputStream(target)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, output);
+        } finally {
+            bitmap.recycle();
+        }
+
+        // Keep the orientation, the pixels are stored unrotated
+        int orientation = readOrientation(resolver, source);
+        if (orientation != ExifInterface.ORIENTATION_NORMAL && orientation != ExifInterface.ORIENTATION_UNDEFINED) {
+            ExifInterface exif = new ExifInterface(target.getAbsolutePath());
+            exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(orientation));
+            exif.saveAttributes();
+        }
+    }
+
+    private static int readOrientation(ContentResolver resolver, Uri source) {
+        try (InputStream input = openStream(resolver, source)) {
+            return new ExifInterface(input).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_UNDEFINED);
+        } catch (IOException e) {
+            return ExifInterface.ORIENTATION_UNDEFINED;
+        }
+    }
+
+    private static InputStream openStream(ContentResolver resolver, Uri source) throws IOException {
+        InputStream input = resolver.openInputStream(source);
+        if (input == null) {
+            throw new IOException("Could not open " + source);
+        }
+        return input;
+    }
+}
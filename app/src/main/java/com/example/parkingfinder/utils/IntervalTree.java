@@ -0,0 +1,221 @@
+package com.example.parkingfinder.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Set of half-open time ranges [start, end), each identified by an id
+ * (a booking id for spot schedules).
+ * Stored as an AVL tree ordered by start where every node also keeps the
+ * largest end in its subtree, so overlap checks follow a single path and
+ * run in O(log n). Not thread safe.
+ */
+public class IntervalTree {
+
+    private static final class Node {
+        final String id;
+        final long start;
+        final long end;
+        long maxEnd;
+        int height = 1;
+        Node left;
+        Node right;
+
+        Node(String id, long start, long end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+        }
+    }
+
+    private Node root;
+
+    // Start of every stored interval, so intervals can be removed by id
+    private final Map<String, Long> startsById = new HashMap<>();
+
+    /**
+     * Add an interval, replacing any interval stored with the same id.
+     * Empty ranges are ignored.
+     */
+    public void insert(String id, long start, long end) {
+        remove(id);
+        if (end <= start) {
+            return;
+        }
+        root = insert(root, new Node(id, start, end));
+        startsById.put(id, start);
+    }
+
+    /**
+     * Remove the interval with the given id. Returns false if there was none.
+     */
+    public boolean remove(String id) {
+        Long start = startsById.remove(id);
+        if (start == null) {
+            return false;
+        }
+        root = remove(root, start, id);
+        return true;
+    }
+
+    public int size() {
+        return startsById.size();
+    }
+
+    public boolean isEmpty() {
+        return startsById.isEmpty();
+    }
+
+    /**
+     * Whether any stored interval overlaps [start, end)
+     */
+    public boolean overlaps(long start, long end) {
+        return findEarliestOverlap(start, end) != null;
+    }
+
+    /**
+     * Earliest time at or after from when [t, t + duration) is free
+     */
+    public long nextFreeSlot(long from, long duration) {
+        long t = from;
+        Node overlap;
+        while ((overlap = findEarliestOverlap(t, t + duration)) != null) {
+            t = overlap.end;
+        }
+        return t;
+    }
+
+    /**
+     * Id of the earliest starting interval overlapping [start, end), or null
+     */
+    public String findOverlap(long start, long end) {
+        Node overlap = findEarliestOverlap(start, end);
+        return overlap != null ? overlap.id : null;
+    }
+
+    private Node findEarliestOverlap(long start, long end) {
+        if (end <= start) {
+            return null;
+        }
+        Node node = root;
+        while (node != null) {
+            if (node.left != null && node.left.maxEnd > start) {
+                // Either the left subtree holds an overlap or nothing to the right can
+                node = node.left;
+            } else if (node.start < end && node.end > start) {
+                return node;
+            } else if (node.start >= end) {
+                return null;
+            } else {
+                node = node.right;
+            }
+        }
+        return null;
+    }
+
+    private static int compare(long start, String id, Node node) {
+        int result = Long.compare(start, node.start);
+        return result != 0 ? result : id.compareTo(node.id);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return rebalance(node);
+    }
+
+    private static Node remove(Node node, long start, String id) {
+        if (node == null) {
+            return null;
+        }
+        int result = compare(start, id, node);
+        if (result < 0) {
+            node.left = remove(node.left, start, id);
+        } else if (result > 0) {
+            node.right = remove(node.right, start, id);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // Replace with the smallest node of the right subtree
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return rebalance(node);
+    }
+
+    private static Node removeMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return rebalance(node);
+    }
+
+    private static int height(Node node) {
+        return node != null ? node.height : 0;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+}
@@ -5,12 +5,10 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.location.Address;
-import android.location.Geocoder;
 import android.location.Location;
 import android.net.Uri;
 import android.os.Build;
 import android.provider.Settings;
-import android.util.Log;
 
 import androidx.core.app.ActivityCompat;
 
@@ -20,8 +18,6 @@ import com.google.android.gms.tasks.OnSuccessListener;
 
 import org.osmdroid.util.GeoPoint;
 
-import java.io.IOException;
-import java.util.List;
 import java.util.Locale;
 
 /**
@@ -30,7 +26,6 @@ import java.util.Locale;
 public class LocationUtils {
 
     private static final String TAG = "LocationUtils";
-    private static final double EARTH_RADIUS = 6371; // Radius of the earth in km
 
     /**
      * Check if location permissions are granted
@@ -113,16 +108,7 @@ public class LocationUtils {
      * Calculate distance between two points using Haversine formula
      */
     public static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return EARTH_RADIUS * c; // Distance in km
+        return GeoMath.distanceKm(lat1, lon1, lat2, lon2);
     }
 
     /**
@@ -166,54 +152,6 @@ public class LocationUtils {
         return new GeoPoint(location.getLatitude(), location.getLongitude());
     }
 
-    /**
-     * Get address from location coordinates (Geocoding)
-     */
-    public static void getAddressFromLocation(Context context, double latitude, double longitude,
-                                              final GeocodingCallback callback) {
-        if (context == null || callback == null) return;
-
-        Geocoder geocoder = new Geocoder(context, Locale.getDefault());
-
-        try {
-            List<Address> addresses = geocoder.getFromLocation(latitude, longitude, 1);
-
-            if (addresses != null && !addresses.isEmpty()) {
-                Address address = addresses.get(0);
-                callback.onAddressReceived(address);
-            } else {
-                callback.onError("No address found");
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Geocoding failed: " + e.getMessage());
-            callback.onError("Geocoding failed: " + e.getMessage());
-        }
-    }
-
-    /**
-     * Get coordinates from address (Reverse Geocoding)
-     */
-    public static void getLocationFromAddress(Context context, String addressString,
-                                              final GeocodingCallback callback) {
-        if (context == null || addressString == null || callback == null) return;
-
-        Geocoder geocoder = new Geocoder(context, Locale.getDefault());
-
-        try {
-            List<Address> addresses = geocoder.getFromLocationName(addressString, 1);
-
-            if (addresses != null && !addresses.isEmpty()) {
-                Address address = addresses.get(0);
-                callback.onAddressReceived(address);
-            } else {
-                callback.onError("No location found for address");
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Reverse geocoding failed: " + e.getMessage());
-            callback.onError("Reverse geocoding failed: " + e.getMessage());
-        }
-    }
-
     /**
      * Format address into a readable string
      */
@@ -365,12 +303,4 @@ public class LocationUtils {
         void onLocationReceived(Location location);
         void onError(String message);
     }
-
-    /**
-     * Callback interface for geocoding operations
-     */
-    public interface GeocodingCallback {
-        void onAddressReceived(Address address);
-        void onError(String message);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+package com.example.parkingfinder.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Occupancy history of one parking area in fixed one hour buckets, kept in a
+ * ring of primitive arrays covering the last four weeks.
+ * Each bucket holds the sum and number of occupancy samples (0 = empty,
+ * 1 = full). Buckets are aligned to absolute hours, so the same hour of the
+ * week is always a multiple of WEEK_BUCKETS apart. Not thread safe.
+ */
+public class OccupancyTimeline {
+
+    public static final long BUCKET_MS = Constants.Time.HOUR;
+    public static final int WEEK_BUCKETS = 7 * 24;
+    public static final int CAPACITY = 4 * WEEK_BUCKETS;
+
+    private final float[] occupancySums;
+    private final short[] sampleCounts;
+
+    // Absolute index (hours since epoch) of the newest bucket, -1 when empty
+    private long latestBucket;
+
+    public OccupancyTimeline() {
+        occupancySums = new float[CAPACITY];
+        sampleCounts = new short[CAPACITY];
+        latestBucket = -1;
+    }
+
+    private OccupancyTimeline(float[] occupancySums, short[] sampleCounts, long latestBucket) {
+        this.occupancySums = occupancySums;
+        this.sampleCounts = sampleCounts;
+        this.latestBucket = latestBucket;
+    }
+
+    public static long bucketOf(long timeMillis) {
+        return Math.floorDiv(timeMillis, BUCKET_MS);
+    }
+
+    public long getLatestBucket() {
+        return latestBucket;
+    }
+
+    /**
+     * Add an occupancy sample (fraction of spots taken) at the given time.
+     * Samples older than the ring are dropped.
+     */
+    public void record(long timeMillis, float occupancy) {
+        long bucket = bucketOf(timeMillis);
+        if (latestBucket >= 0 && bucket <= latestBucket - CAPACITY) {
+            return;
+        }
+
+        if (bucket > latestBucket) {
+            // Clear the slots the ring moves over
+            long from = latestBucket < 0 ? bucket - CAPACITY + 1 : Math.max(latestBucket + 1, bucket - CAPACITY + 1);
+            for (long b = from; b <= bucket; b++) {
+                int slot = slot(b);
+                occupancySums[slot] = 0f;
+                sampleCounts[slot] = 0;
+            }
+            latestBucket = bucket;
+        }
+
+        int slot = slot(bucket);
+        if (sampleCounts[slot] == Short.MAX_VALUE) {
+            return;
+        }
+        occupancySums[slot] += Math.max(0f, Math.min(1f, occupancy));
+        sampleCounts[slot]++;
+    }
+
+    /**
+     * Mean occupancy of a bucket, or -1 if it has no samples or is outside the ring
+     */
+    public float getOccupancy(long bucket) {
+        if (latestBucket < 0 || bucket > latestBucket || bucket <= latestBucket - CAPACITY) {
+            return -1f;
+        }
+        int slot = slot(bucket);
+        return sampleCounts[slot] == 0 ? -1f : occupancySums[slot] / sampleCounts[slot];
+    }
+
+    /**
+     * Seasonal forecast: mean occupancy of the same hour of the week over the
+     * weeks held in the ring, or -1 if none of them has samples
+     */
+    public float forecastOccupancy(long timeMillis) {
+        if (latestBucket < 0) {
+            return -1f;
+        }
+        long target = bucketOf(timeMillis);
+
+        // Newest bucket in the ring with the same hour of the week
+        long bucket = latestBucket - Math.floorMod(latestBucket - target, (long) WEEK_BUCKETS);
+
+        float sum = 0f;
+        int weeks = 0;
+        for (; bucket > latestBucket - CAPACITY; bucket -= WEEK_BUCKETS) {
+            float occupancy = getOccupancy(bucket);
+            if (occupancy >= 0f) {
+                sum += occupancy;
+                weeks++;
+            }
+        }
+        return weeks == 0 ? -1f : sum / weeks;
+    }
+
+    /**
+     * Number of past weeks that have samples for the hour of the week of timeMillis
+     */
+    public int countSampledWeeks(long timeMillis) {
+        if (latestBucket < 0) {
+            return 0;
+        }
+        long bucket = latestBucket - Math.floorMod(latestBucket - bucketOf(timeMillis), (long) WEEK_BUCKETS);
+        int weeks = 0;
+        for (; bucket > latestBucket - CAPACITY; bucket -= WEEK_BUCKETS) {
+            if (getOccupancy(bucket) >= 0f) {
+                weeks++;
+            }
+        }
+        return weeks;
+    }
+
+    // Serialized form, for the Room BLOB columns
+
+    public byte[] sumsToBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(CAPACITY * 4);
+        buffer.asFloatBuffer().put(occupancySums);
+        return buffer.array();
+    }
+
+    public byte[] countsToBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(CAPACITY * 2);
+        buffer.asShortBuffer().put(sampleCounts);
+        return buffer.array();
+    }
+
+    /**
+     * Rebuild a timeline from its serialized arrays. Returns an empty timeline
+     * when the data doesn't match the current capacity.
+     */
+    public static OccupancyTimeline fromBytes(byte[] sums, byte[] counts, long latestBucket) {
+        if (sums == null || counts == null || sums.length != CAPACITY * 4 || counts.length != CAPACITY * 2) {
+            return new OccupancyTimeline();
+        }
+        float[] occupancySums = new float[CAPACITY];
+        short[] sampleCounts = new short[CAPACITY];
+        ByteBuffer.wrap(sums).asFloatBuffer().get(occupancySums);
+        ByteBuffer.wrap(counts).asShortBuffer().get(sampleCounts);
+        return new OccupancyTimeline(occupancySums, sampleCounts, latestBucket);
+    }
+
+    private static int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) CAPACITY);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.parkingfinder.utils;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelCache;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.load.model.stream.BaseGlideUrlLoader;
+
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Glide loader that asks image hosts with on-the-fly resizing for a variant
+ * close to the target size, instead of downloading the original photo and
+ * downsampling on the device. Urls of other hosts are left to the default loader.
+ */
+public class SizedImageUrlLoader extends BaseGlideUrlLoader<String> {
+
+    // Sizes are rounded up to this step so nearby sizes share CDN and disk cache entries
+    private static final int SIZE_STEP_PX = 100;
+
+    private SizedImageUrlLoader(ModelLoader<GlideUrl, InputStream> concreteLoader,
+                                ModelCache<String, GlideUrl> modelCache) {
+        super(concreteLoader, modelCache);
+    }
+
+    @Override
+    public boolean handles(@NonNull String model) {
+        return isResizableHost(Uri.parse(model).getHost());
+    }
+
+    @Override
+    protected String getUrl(String model, int width, int height, Options options) {
+        if (width <= 0 || height <= 0) {
+            // Size.ORIGINAL, nothing to ask for
+            return model;
+        }
+        return sizedUrl(model, roundUp(width), roundUp(height));
+    }
+
+    /**
+     * Url of a width x height, center cropped variant of the image, or the
+     * url itself when the host can't resize
+     */
+    public static String sizedUrl(String url, int width, int height) {
+        Uri uri = Uri.parse(url);
+        String host = uri.getHost();
+        if (host == null) {
+            return url;
+        }
+
+        if (host.endsWith("googleusercontent.com") || host.endsWith("ggpht.com")) {
+            // Size options follow the last '=' of the path
+            String path = uri.getEncodedPath();
+            int optionsStart = path != null ? path.lastIndexOf('=') : -1;
+            String basePath = optionsStart >= 0 ? path.substring(0, optionsStart) : path;
+            return uri.buildUpon()
+                    .encodedPath(basePath + String.format(Locale.US, "=w%d-h%d-c", width, height))
+                    .build().toString();
+        }
+
+        if (host.endsWith("imgix.net") || host.equals("images.unsplash.com")) {
+            Uri.Builder builder = uri.buildUpon().clearQuery();
+            for (String name : uri.getQueryParameterNames()) {
+                if (!name.equals("w") && !name.equals("h") && !name.equals("fit")) {
+                    for (String value : uri.getQueryParameters(name)) {
+                        builder.appendQueryParameter(name, value);
+                    }
+                }
+            }
+            return builder.appendQueryParameter("w", String.valueOf(width))
+                    .appendQueryParameter("h", String.valueOf(height))
+                    .appendQueryParameter("fit", "crop")
+                    .build().toString();
+        }
+
+        if (host.equals("res.cloudinary.com")) {
+            // Transformations go right after the delivery type
+            return url.replaceFirst("/upload/",
+                    String.format(Locale.US, "/upload/w_%d,h_%d,c_fill/", width, height));
+        }
+
+        return url;
+    }
+
+    private static boolean isResizableHost(String host) {
+        return host != null && (host.endsWith("googleusercontent.com")
+                || host.endsWith("ggpht.com")
+                || host.endsWith("imgix.net")
+                || host.equals("images.unsplash.com")
+                || host.equals("res.cloudinary.com"));
+    }
+
+    private static int roundUp(int size) {
+        return (size + SIZE_STEP_PX - 1) / SIZE_STEP_PX * SIZE_STEP_PX;
+    }
+
+    public static class Factory implements ModelLoaderFactory<String, InputStream> {
+        private final ModelCache<String, GlideUrl> modelCache = new ModelCache<>(500);
+
+        @NonNull
+        @Override
+        public ModelLoader<String, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new SizedImageUrlLoader(multiFactory.build(GlideUrl.class, InputStream.class), modelCache);
+        }
+
+        @Override
+        public void teardown() {
+            // Nothing to release
+        }
+    }
+}
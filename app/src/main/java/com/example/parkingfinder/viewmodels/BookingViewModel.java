@@ -1,28 +1,79 @@
 package com.example.parkingfinder.viewmodels;
 
+import android.app.Application;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
+import androidx.lifecycle.Transformations;
 
 import com.example.parkingfinder.database.AppDatabase;
+import com.example.parkingfinder.database.dao.BookingDao;
 import com.example.parkingfinder.database.entities.BookingEntity;
 import com.example.parkingfinder.firebase.FirestoreManager;
+import com.example.parkingfinder.mappers.BookingMapper;
 import com.example.parkingfinder.models.Booking;
+import com.example.parkingfinder.repositories.BookingHistoryRepository;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class BookingViewModel extends ViewModel {
+public class BookingViewModel extends AndroidViewModel {
+    private static final String TAG = "BookingViewModel";
+
+    /**
+     * Booking tabs, each backed by its own Room query
+     */
+    public enum Tab {
+        ALL,
+        UPCOMING,
+        ACTIVE,
+        PAST
+    }
+
     private FirestoreManager firestoreManager;
-    private MutableLiveData<List<Booking>> bookings = new MutableLiveData<>();
+    private BookingHistoryRepository historyRepository;
+    private BookingDao bookingDao;
+
+    // What the tab query currently shows
+    private MutableLiveData<TabQuery> tabQuery = new MutableLiveData<>();
+    private LiveData<List<Booking>> bookings;
     private MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private MutableLiveData<String> errorMessage = new MutableLiveData<>();
 
-    public BookingViewModel() {
+    private String userId;
+    private Tab tab = Tab.ALL;
+    private int limit = BookingHistoryRepository.PAGE_SIZE;
+
+    private static class TabQuery {
+        final String userId;
+        final Tab tab;
+        final long now;
+        final int limit;
+
+        TabQuery(String userId, Tab tab, long now, int limit) {
+            this.userId = userId;
+            this.tab = tab;
+            this.now = now;
+            this.limit = limit;
+        }
+    }
+
+    public BookingViewModel(@NonNull Application application) {
+        super(application);
         firestoreManager = FirestoreManager.getInstance();
-        bookings.setValue(new ArrayList<>());
+        historyRepository = BookingHistoryRepository.getInstance(application);
+        bookingDao = AppDatabase.getDatabase(application).bookingDao();
+
+        bookings = Transformations.switchMap(tabQuery,
+                query -> Transformations.map(queryTab(query), BookingViewModel::toModels));
     }
 
+    /**
+     * Bookings of the selected tab, straight from Room
+     */
     public LiveData<List<Booking>> getBookings() {
         return bookings;
     }
@@ -35,106 +86,107 @@ public class BookingViewModel extends ViewModel {
         return errorMessage;
     }
 
+    public Tab getTab() {
+        return tab;
+    }
+
+    /**
+     * Show the user's cached bookings and fetch what changed since the last load
+     */
     public void loadBookings(String userId) {
-        isLoading.setValue(true);
+        if (!userId.equals(this.userId)) {
+            this.userId = userId;
+            limit = BookingHistoryRepository.PAGE_SIZE;
+        }
+        // Re-query with the current time, the tabs are split by it
+        updateQuery();
 
-        firestoreManager.getUserBookings(userId, new FirestoreManager.GetBookingsCallback() {
+        isLoading.setValue(true);
+        historyRepository.refresh(userId, new BookingHistoryRepository.SyncCallback() {
             @Override
-            public void onSuccess(List<Booking> bookingList) {
-                bookings.setValue(bookingList);
+            public void onSuccess() {
                 isLoading.setValue(false);
-
-                // Cache bookings in local database for offline access
-                cacheBookingsInLocalDb(userId, bookingList);
             }
 
             @Override
             public void onFailure(String message) {
+                // Room still has the bookings from the last sync
                 errorMessage.setValue(message);
                 isLoading.setValue(false);
-
-                // Try to load from local database if online fetch fails
-                loadBookingsFromLocalDb(userId);
             }
         });
     }
 
-    private void cacheBookingsInLocalDb(String userId, List<Booking> bookingList) {
-        // This method would convert Booking models to BookingEntity objects and store them in Room
-        // This is just a skeleton - implementation depends on how you've set up your Room database
+    public void setTab(Tab tab) {
+        if (this.tab == tab) {
+            return;
+        }
+        this.tab = tab;
+        limit = BookingHistoryRepository.PAGE_SIZE;
+        updateQuery();
+    }
 
-        // Example implementation:
-        /*
-        AppDatabase.databaseWriteExecutor.execute(() -> {
-            List<BookingEntity> bookingEntities = new ArrayList<>();
-            for (Booking booking : bookingList) {
-                BookingEntity entity = new BookingEntity(
-                    booking.getId(),
-                    booking.getUserId(),
-                    booking.getParkingAreaId(),
-                    booking.getParkingSpotId(),
-                    booking.getParkingAreaName(),
-                    booking.getParkingSpotNumber(),
-                    booking.getStartTime().getTime(),
-                    booking.getEndTime().getTime(),
-                    booking.getTotalCost(),
-                    booking.getStatus()
-                );
-                entity.setVehicleRegistration(booking.getVehicleRegistration());
-                entity.setPaymentMethod(booking.getPaymentMethod());
-                entity.setPaymentId(booking.getPaymentId());
-                entity.setPaid(booking.isPaid());
-                entity.setConfirmationCode(booking.getConfirmationCode());
-                entity.setCreatedAt(booking.getCreatedAt().getTime());
-                entity.setSynced(true);
-
-                bookingEntities.add(entity);
-            }
+    /**
+     * Show the next page of the all or past tab, fetching older history
+     * once Room has no more to show
+     */
+    public void loadMore() {
+        if (userId == null || (tab != Tab.ALL && tab != Tab.PAST) || Boolean.TRUE.equals(isLoading.getValue())) {
+            return;
+        }
+
+        List<Booking> shown = bookings.getValue();
+        boolean roomExhausted = shown == null || shown.size() < limit;
+        if (roomExhausted && !historyRepository.hasMoreHistory(userId)) {
+            return;
+        }
+
+        limit += BookingHistoryRepository.PAGE_SIZE;
+        updateQuery();
+
+        if (roomExhausted) {
+            isLoading.setValue(true);
+            historyRepository.loadOlder(userId, new BookingHistoryRepository.SyncCallback() {
+                @Override
+                public void onSuccess() {
+                    isLoading.setValue(false);
+                }
 
-            AppDatabase db = AppDatabase.getInstance();
-            db.bookingDao().deleteAllByUserId(userId);
-            db.bookingDao().insertAll(bookingEntities);
-        });
-        */
+                @Override
+                public void onFailure(String message) {
+                    errorMessage.setValue(message);
+                    isLoading.setValue(false);
+                }
+            });
+        }
     }
 
-    private void loadBookingsFromLocalDb(String userId) {
-        // This method would load BookingEntity objects from Room and convert them to Booking models
-        // This is just a skeleton - implementation depends on how you've set up your Room database
+    private void updateQuery() {
+        if (userId != null) {
+            tabQuery.setValue(new TabQuery(userId, tab, System.currentTimeMillis(), limit));
+        }
+    }
 
-        // Example implementation:
-        /*
-        AppDatabase db = AppDatabase.getInstance();
-        db.bookingDao().getBookingsByUserId(userId).observeForever(bookingEntities -> {
-            if (bookingEntities != null && !bookingEntities.isEmpty()) {
-                List<Booking> localBookings = new ArrayList<>();
-                for (BookingEntity entity : bookingEntities) {
-                    Booking booking = new Booking(
-                        entity.getUserId(),
-                        entity.getParkingAreaId(),
-                        entity.getParkingSpotId(),
-                        entity.getParkingAreaName(),
-                        entity.getParkingSpotNumber(),
-                        new Date(entity.getStartTime()),
-                        new Date(entity.getEndTime()),
-                        entity.getTotalCost()
-                    );
-                    booking.setId(entity.getId());
-                    booking.setStatus(entity.getStatus());
-                    booking.setVehicleRegistration(entity.getVehicleRegistration());
-                    booking.setPaymentMethod(entity.getPaymentMethod());
-                    booking.setPaymentId(entity.getPaymentId());
-                    booking.setPaid(entity.isPaid());
-                    booking.setConfirmationCode(entity.getConfirmationCode());
-                    booking.setCreatedAt(new Date(entity.getCreatedAt()));
-
-                    localBookings.add(booking);
-                }
+    private LiveData<List<BookingEntity>> queryTab(TabQuery query) {
+        switch (query.tab) {
+            case UPCOMING:
+                return bookingDao.getUpcomingBookings(query.userId, query.now);
+            case ACTIVE:
+                return bookingDao.getCurrentBookings(query.userId, query.now);
+            case PAST:
+                return bookingDao.getPastBookings(query.userId, query.now, query.limit);
+            case ALL:
+            default:
+                return bookingDao.getRecentBookings(query.userId, query.limit);
+        }
+    }
 
-                bookings.postValue(localBookings);
-            }
-        });
-        */
+    private static List<Booking> toModels(List<BookingEntity> entities) {
+        List<Booking> models = new ArrayList<>(entities.size());
+        for (BookingEntity entity : entities) {
+            models.add(BookingMapper.fromEntity(entity));
+        }
+        return models;
     }
 
     public void cancelBooking(String bookingId, String parkingAreaId, String parkingSpotId) {
@@ -144,17 +196,14 @@ public class BookingViewModel extends ViewModel {
                 new FirestoreManager.FirestoreCallback() {
                     @Override
                     public void onSuccess() {
-                        // Refresh bookings list
-                        if (bookings.getValue() != null) {
-                            List<Booking> currentBookings = new ArrayList<>(bookings.getValue());
-                            for (Booking booking : currentBookings) {
-                                if (booking.getId().equals(bookingId)) {
-                                    booking.setStatus("CANCELLED");
-                                    break;
-                                }
+                        // The tab queries pick the new status up from Room
+                        AppDatabase.databaseWriteExecutor.execute(() -> {
+                            try {
+                                bookingDao.updateStatus(bookingId, "CANCELLED");
+                            } catch (Exception e) {
+                                Log.e(TAG, "Error updating booking status", e);
                             }
-                            bookings.setValue(currentBookings);
-                        }
+                        });
                         isLoading.setValue(false);
                     }
 
@@ -176,18 +225,8 @@ public class BookingViewModel extends ViewModel {
             new FirestoreManager.FirestoreCallback() {
                 @Override
                 public void onSuccess() {
-                    // Refresh bookings list or update the specific booking
-                    if (bookings.getValue() != null) {
-                        List<Booking> currentBookings = new ArrayList<>(bookings.getValue());
-                        for (Booking booking : currentBookings) {
-                            if (booking.getId().equals(bookingId)) {
-                                booking.setEndTime(new Date(newEndTime));
-                                booking.setTotalCost(newTotalCost);
-                                break;
-                            }
-                        }
-                        bookings.setValue(currentBookings);
-                    }
+                    AppDatabase.databaseWriteExecutor.execute(() ->
+                            bookingDao.updateBookingEndTime(bookingId, newEndTime, newTotalCost));
                     isLoading.setValue(false);
                 }
 
@@ -199,4 +238,4 @@ public class BookingViewModel extends ViewModel {
             });
         */
     }
-}
\ No newline at end of file
+}
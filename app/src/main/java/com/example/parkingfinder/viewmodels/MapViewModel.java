@@ -1,29 +1,79 @@
 package com.example.parkingfinder.viewmodels;
 
+import android.app.Application;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
-import com.example.parkingfinder.firebase.FirestoreManager;
+import com.example.parkingfinder.firebase.RealtimeDbManager;
+import com.example.parkingfinder.firebase.ViewportSubscriptionManager;
 import com.example.parkingfinder.models.ParkingArea;
+import com.example.parkingfinder.repositories.ParkingAreaRepository;
 
+import java.util.ArrayList;
 import java.util.List;
 
-public class MapViewModel extends ViewModel {
-    private FirestoreManager firestoreManager;
+public class MapViewModel extends AndroidViewModel {
+    private static final String TAG = "MapViewModel";
+
+    private ParkingAreaRepository parkingAreaRepository;
+    private ViewportSubscriptionManager viewportSubscriptions;
     private MutableLiveData<List<ParkingArea>> parkingAreas = new MutableLiveData<>();
+    private MutableLiveData<ParkingAreaRepository.Source> parkingAreasSource = new MutableLiveData<>();
     private MutableLiveData<ParkingArea> selectedParkingArea = new MutableLiveData<>();
     private MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private MutableLiveData<String> errorMessage = new MutableLiveData<>();
 
-    public MapViewModel() {
-        firestoreManager = FirestoreManager.getInstance();
+    // One callback for every load, so onCleared can detach it from the repository
+    private final ParkingAreaRepository.ParkingAreasCallback areasCallback =
+            new ParkingAreaRepository.ParkingAreasCallback() {
+                @Override
+                public void onResult(ParkingAreaRepository.ParkingAreasResult result) {
+                    parkingAreas.setValue(result.getAreas());
+                    parkingAreasSource.setValue(result.getSource());
+                    isLoading.setValue(result.isRevalidating());
+                }
+
+                @Override
+                public void onFailure(String message) {
+                    errorMessage.setValue(message);
+                    isLoading.setValue(false);
+                }
+            };
+
+    public MapViewModel(@NonNull Application application) {
+        super(application);
+        parkingAreaRepository = ParkingAreaRepository.getInstance(application);
+
+        // Live availability for the areas on screen only
+        viewportSubscriptions = new ViewportSubscriptionManager(RealtimeDbManager.getInstance(),
+                new RealtimeDbManager.ParkingAreaCallback() {
+                    @Override
+                    public void onParkingAreasUpdated(List<ParkingArea> liveAreas) {
+                        List<ParkingArea> current = parkingAreas.getValue();
+                        if (ViewportSubscriptionManager.applyAvailability(current, liveAreas)) {
+                            parkingAreas.setValue(new ArrayList<>(current));
+                        }
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        Log.e(TAG, "Live availability error: " + message);
+                    }
+                });
     }
 
     public LiveData<List<ParkingArea>> getParkingAreas() {
         return parkingAreas;
     }
 
+    public LiveData<ParkingAreaRepository.Source> getParkingAreasSource() {
+        return parkingAreasSource;
+    }
+
     public LiveData<ParkingArea> getSelectedParkingArea() {
         return selectedParkingArea;
     }
@@ -39,20 +89,15 @@ public class MapViewModel extends ViewModel {
     public void loadNearbyParkingAreas(double latitude, double longitude, double radiusInKm) {
         isLoading.setValue(true);
 
-        firestoreManager.getNearbyParkingAreas(latitude, longitude, radiusInKm,
-                new FirestoreManager.GetParkingAreasCallback() {
-                    @Override
-                    public void onSuccess(List<ParkingArea> areas) {
-                        parkingAreas.setValue(areas);
-                        isLoading.setValue(false);
-                    }
+        // Shares the cache with the list screen, so switching tabs doesn't refetch
+        parkingAreaRepository.getParkingAreas(latitude, longitude, radiusInKm, false, areasCallback);
+    }
 
-                    @Override
-                    public void onFailure(String message) {
-                        errorMessage.setValue(message);
-                        isLoading.setValue(false);
-                    }
-                });
+    /**
+     * Called when the visible map region changes
+     */
+    public void onViewportChanged(double south, double west, double north, double east) {
+        viewportSubscriptions.setViewport(south, west, north, east);
     }
 
     public void selectParkingArea(ParkingArea parkingArea) {
@@ -66,4 +111,11 @@ public class MapViewModel extends ViewModel {
     public void clearSelectedParkingArea() {
         selectedParkingArea.setValue(null);
     }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        parkingAreaRepository.removeCallback(areasCallback);
+        viewportSubscriptions.clear();
+    }
 }
\ No newline at end of file
@@ -8,21 +8,22 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
-import com.example.parkingfinder.database.AppDatabase;
-import com.example.parkingfinder.database.dao.ParkingAreaDao;
-import com.example.parkingfinder.database.entities.ParkingAreaEntity;
+import com.example.parkingfinder.database.WriteBatcher;
 import com.example.parkingfinder.firebase.FirebaseAuthManager;
 import com.example.parkingfinder.firebase.FirestoreManager;
 import com.example.parkingfinder.firebase.RealtimeDbManager;
+import com.example.parkingfinder.firebase.RealtimeSubscriptionHub;
+import com.example.parkingfinder.firebase.ViewportSubscriptionManager;
 import com.example.parkingfinder.models.ParkingArea;
 import com.example.parkingfinder.models.ParkingSpot;
-import com.example.parkingfinder.utils.Constants;
-import com.google.firebase.database.ValueEventListener;
+import com.example.parkingfinder.repositories.FavoritesRepository;
+import com.example.parkingfinder.repositories.ParkingAreaRepository;
+import com.example.parkingfinder.repositories.ParkingSpotRepository;
+import com.example.parkingfinder.utils.AvailabilityBits;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class ParkingViewModel extends AndroidViewModel {
     private static final String TAG = "ParkingViewModel";
@@ -32,12 +33,15 @@ public class ParkingViewModel extends AndroidViewModel {
     private FirestoreManager firestoreManager;
     private RealtimeDbManager realtimeDbManager;
 
-    // Database access
-    private ParkingAreaDao parkingAreaDao;
-    private ExecutorService databaseExecutor;
+    // Data access
+    private ParkingAreaRepository parkingAreaRepository;
+    private ParkingSpotRepository parkingSpotRepository;
+    private FavoritesRepository favoritesRepository;
+    private WriteBatcher writeBatcher;
 
     // LiveData objects
     private MutableLiveData<List<ParkingArea>> parkingAreas = new MutableLiveData<>();
+    private MutableLiveData<ParkingAreaRepository.Source> parkingAreasSource = new MutableLiveData<>();
     private MutableLiveData<ParkingArea> selectedParkingArea = new MutableLiveData<>();
     private MutableLiveData<List<ParkingSpot>> parkingSpots = new MutableLiveData<>();
     private MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
@@ -46,7 +50,40 @@ public class ParkingViewModel extends AndroidViewModel {
     // State variables
     private double currentLatitude = 0;
     private double currentLongitude = 0;
-    private ValueEventListener spotsListener;
+    private RealtimeSubscriptionHub.Subscription spotsSubscription;
+    private String spotsAreaId;
+    private boolean availabilityMissing;
+    private ViewportSubscriptionManager areaSubscriptions;
+
+    // One callback for every load, so onCleared can detach it from the repository
+    // Re-stamps the shown areas once the favorites have loaded or changed
+    private final FavoritesRepository.FavoritesCallback favoritesListener = this::onFavoritesChanged;
+
+    private final ParkingAreaRepository.ParkingAreasCallback areasCallback =
+            new ParkingAreaRepository.ParkingAreasCallback() {
+                @Override
+                public void onResult(ParkingAreaRepository.ParkingAreasResult result) {
+                    // Set lookups, so stamping the flags costs nothing next to the load
+                    favoritesRepository.applyTo(result.getAreas());
+                    // Source first, so list observers know where the areas came from
+                    parkingAreasSource.setValue(result.getSource());
+                    parkingAreas.setValue(result.getAreas());
+                    isLoading.setValue(result.isRevalidating());
+
+                    // A fresh bundle result is not followed by a network one
+                    boolean firstLoad = result.getSource() == ParkingAreaRepository.Source.NETWORK
+                            || result.getSource() == ParkingAreaRepository.Source.BUNDLE;
+                    if (firstLoad && authManager.isUserLoggedIn()) {
+                        refreshFavorites();
+                    }
+                }
+
+                @Override
+                public void onFailure(String message) {
+                    errorMessage.setValue("Error loading parking areas: " + message);
+                    isLoading.setValue(false);
+                }
+            };
 
     public ParkingViewModel(@NonNull Application application) {
         super(application);
@@ -56,10 +93,29 @@ public class ParkingViewModel extends AndroidViewModel {
         firestoreManager = FirestoreManager.getInstance();
         realtimeDbManager = RealtimeDbManager.getInstance();
 
-        // Initialize database access
-        AppDatabase database = AppDatabase.getDatabase(application);
-        parkingAreaDao = database.parkingAreaDao();
-        databaseExecutor = Executors.newSingleThreadExecutor();
+        // Initialize data access
+        parkingAreaRepository = ParkingAreaRepository.getInstance(application);
+        parkingSpotRepository = ParkingSpotRepository.getInstance(application);
+        favoritesRepository = FavoritesRepository.getInstance(application);
+        favoritesRepository.addListener(favoritesListener);
+        writeBatcher = WriteBatcher.getInstance(application);
+
+        // Live availability for the areas within the list radius only
+        areaSubscriptions = new ViewportSubscriptionManager(realtimeDbManager,
+                new RealtimeDbManager.ParkingAreaCallback() {
+                    @Override
+                    public void onParkingAreasUpdated(List<ParkingArea> liveAreas) {
+                        List<ParkingArea> current = parkingAreas.getValue();
+                        if (ViewportSubscriptionManager.applyAvailability(current, liveAreas)) {
+                            parkingAreas.setValue(current);
+                        }
+                    }
+
+                    @Override
+                    public void onError(String errorMsg) {
+                        Log.e(TAG, "Live availability error: " + errorMsg);
+                    }
+                });
 
         // Initialize LiveData
         parkingAreas.setValue(new ArrayList<>());
@@ -71,6 +127,13 @@ public class ParkingViewModel extends AndroidViewModel {
         return parkingAreas;
     }
 
+    /**
+     * Where the current parking areas were served from (memory, Room or Firestore)
+     */
+    public LiveData<ParkingAreaRepository.Source> getParkingAreasSource() {
+        return parkingAreasSource;
+    }
+
     public LiveData<ParkingArea> getSelectedParkingArea() {
         return selectedParkingArea;
     }
@@ -91,52 +154,103 @@ public class ParkingViewModel extends AndroidViewModel {
      * Load nearby parking areas based on user location
      */
     public void loadParkingAreas(double latitude, double longitude, double radiusInKm) {
+        loadParkingAreas(latitude, longitude, radiusInKm, false);
+    }
+
+    /**
+     * Load nearby parking areas, optionally bypassing the cache TTLs (pull to refresh)
+     */
+    public void loadParkingAreas(double latitude, double longitude, double radiusInKm,
+                                 boolean forceRefresh) {
         isLoading.setValue(true);
         currentLatitude = latitude;
         currentLongitude = longitude;
+        areaSubscriptions.setRegion(latitude, longitude, radiusInKm);
+
+        parkingAreaRepository.getParkingAreas(latitude, longitude, radiusInKm, forceRefresh, areasCallback);
+    }
+
+    /**
+     * Load parking spots for a specific parking area. The static layout comes
+     * from the spot repository and only the availability bitset is streamed.
+     */
+    public void loadParkingSpots(String parkingAreaId) {
+        isLoading.setValue(true);
 
-        // First try to get from local database while fetching from server
-        loadFromLocalDatabase(latitude, longitude);
+        // Remove any existing listener, whichever area it was for
+        removeSpotsListener();
+        spotsAreaId = parkingAreaId;
+
+        parkingSpotRepository.getLayout(parkingAreaId, new ParkingSpotRepository.LayoutCallback() {
+            @Override
+            public void onLayoutLoaded(List<ParkingSpot> layout) {
+                // Another area was selected in the meantime
+                if (!parkingAreaId.equals(spotsAreaId)) {
+                    return;
+                }
+                parkingSpots.setValue(layout);
+                listenToAvailability(parkingAreaId);
+            }
 
-        // Then fetch from Firestore
-        firestoreManager.getNearbyParkingAreas(latitude, longitude, radiusInKm,
-                new FirestoreManager.GetParkingAreasCallback() {
+            @Override
+            public void onFailure(String message) {
+                if (parkingAreaId.equals(spotsAreaId)) {
+                    listenToFullSpots(parkingAreaId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stream the availability bitset for the layout currently in parkingSpots
+     */
+    private void listenToAvailability(String parkingAreaId) {
+        availabilityMissing = false;
+        spotsSubscription = realtimeDbManager.addAvailabilityListener(parkingAreaId,
+                new RealtimeDbManager.AvailabilityListener() {
                     @Override
-                    public void onSuccess(List<ParkingArea> areas) {
-                        parkingAreas.setValue(areas);
+                    public void onAvailabilityUpdated(BitSet bits) {
+                        List<ParkingSpot> layout = parkingSpots.getValue();
+                        if (layout == null) {
+                            return;
+                        }
+                        AvailabilityBits.applyToSpots(bits, layout);
+                        parkingSpots.setValue(layout);
                         isLoading.setValue(false);
 
-                        // Cache results in local database
-                        saveToLocalDatabase(areas);
+                        // Also update available count in selected parking area
+                        setAvailableSpotCount(parkingAreaId, AvailabilityBits.countAvailable(bits));
+                    }
 
-                        // Update favorites status
-                        if (authManager.isUserLoggedIn()) {
-                            updateFavoritesStatus(areas);
+                    @Override
+                    public void onAvailabilityMissing() {
+                        // Area has no bitset yet, the hub may report this before subscribe returns
+                        if (spotsSubscription != null) {
+                            listenToFullSpots(parkingAreaId);
+                        } else {
+                            availabilityMissing = true;
                         }
                     }
 
                     @Override
-                    public void onFailure(String message) {
-                        errorMessage.setValue("Error loading parking areas: " + message);
+                    public void onError(String errorMsg) {
+                        errorMessage.setValue("Error loading parking spots: " + errorMsg);
                         isLoading.setValue(false);
                     }
                 });
+
+        if (availabilityMissing) {
+            listenToFullSpots(parkingAreaId);
+        }
     }
 
     /**
-     * Load parking spots for a specific parking area
+     * Listen to the full spot nodes, for areas without an availability bitset
      */
-    public void loadParkingSpots(String parkingAreaId) {
-        isLoading.setValue(true);
-
-        // Remove any existing listener
-        if (spotsListener != null) {
-            realtimeDbManager.removeParkingSpotsListener(parkingAreaId, spotsListener);
-            spotsListener = null;
-        }
+    private void listenToFullSpots(String parkingAreaId) {
+        removeSpotsListener();
 
-        // Set up real-time listener for parking spots
-        spotsListener = realtimeDbManager.addParkingSpotsListener(parkingAreaId,
+        spotsSubscription = realtimeDbManager.addParkingSpotsListener(parkingAreaId,
                 new RealtimeDbManager.ParkingSpotsListener() {
                     @Override
                     public void onParkingSpotsUpdated(List<ParkingSpot> spots) {
@@ -196,50 +310,53 @@ public class ParkingViewModel extends AndroidViewModel {
      * Toggle favorite status of a parking area
      */
     public void toggleFavorite(ParkingArea parkingArea) {
+        setFavorite(parkingArea, !parkingArea.isFavorite());
+    }
+
+    /**
+     * Favorite or unfavorite a parking area. Applied locally right away, the
+     * favorites repository syncs it to Firestore in the background.
+     */
+    public void setFavorite(ParkingArea parkingArea, boolean isFavorite) {
         if (!authManager.isUserLoggedIn()) {
             errorMessage.setValue("Please log in to save favorites");
             return;
         }
 
         String userId = authManager.getCurrentUser().getUid();
-        boolean newStatus = !parkingArea.isFavorite();
+        favoritesRepository.setFavorite(userId, parkingArea.getId(), isFavorite);
 
-        firestoreManager.updateFavoriteStatus(userId, parkingArea.getId(), newStatus,
-                new FirestoreManager.FirestoreCallback() {
-                    @Override
-                    public void onSuccess() {
-                        // Update the parking area in our list
-                        parkingArea.setFavorite(newStatus);
-                        updateParkingAreaInList(parkingArea);
-
-                        // If this is the selected parking area, update it too
-                        if (selectedParkingArea.getValue() != null &&
-                                selectedParkingArea.getValue().getId().equals(parkingArea.getId())) {
-                            selectedParkingArea.setValue(parkingArea);
-                        }
-
-                        // Update in local database
-                        updateFavoriteInLocalDatabase(parkingArea.getId(), newStatus);
-                    }
+        // Update the parking area in our list
+        parkingArea.setFavorite(isFavorite);
+        updateParkingAreaInList(parkingArea);
 
-                    @Override
-                    public void onFailure(String errorMsg) {
-                        errorMessage.setValue("Error updating favorite: " + errorMsg);
-                    }
-                });
+        // If this is the selected parking area, update it too
+        ParkingArea selectedArea = selectedParkingArea.getValue();
+        if (selectedArea != null && selectedArea.getId().equals(parkingArea.getId())) {
+            selectedArea.setFavorite(isFavorite);
+            selectedParkingArea.setValue(selectedArea);
+        }
     }
 
     /**
      * Clear the selected parking area
      */
     public void clearSelectedParkingArea() {
+        // Remove the spots listener before the selection it belongs to is cleared
+        removeSpotsListener();
+        spotsAreaId = null;
+
         selectedParkingArea.setValue(null);
+    }
 
-        // Remove any existing spots listener
-        if (spotsListener != null && selectedParkingArea.getValue() != null) {
-            realtimeDbManager.removeParkingSpotsListener(
-                    selectedParkingArea.getValue().getId(), spotsListener);
-            spotsListener = null;
+    /**
+     * Stop listening to spot updates. The shared Firebase listener is
+     * detached by the hub once no one else is watching the area.
+     */
+    private void removeSpotsListener() {
+        if (spotsSubscription != null) {
+            realtimeDbManager.removeParkingSpotsListener(spotsSubscription);
+            spotsSubscription = null;
         }
     }
 
@@ -269,7 +386,13 @@ public class ParkingViewModel extends AndroidViewModel {
                 availableCount++;
             }
         }
+        setAvailableSpotCount(parkingAreaId, availableCount);
+    }
 
+    /**
+     * Set the available spot count of a parking area
+     */
+    private void setAvailableSpotCount(String parkingAreaId, int availableCount) {
         // Update the selected parking area if it matches
         ParkingArea selectedArea = selectedParkingArea.getValue();
         if (selectedArea != null && selectedArea.getId().equals(parkingAreaId)) {
@@ -293,164 +416,34 @@ public class ParkingViewModel extends AndroidViewModel {
         updateAvailableSpotsInLocalDatabase(parkingAreaId, availableCount);
     }
 
-    /**
-     * Load parking areas from local database
-     */
-    private void loadFromLocalDatabase(double latitude, double longitude) {
-        databaseExecutor.execute(() -> {
-            try {
-                // Calculate squared radius for faster query (avoiding square root calculations)
-                double radiusSquared = Constants.Location.DEFAULT_SEARCH_RADIUS * Constants.Location.DEFAULT_SEARCH_RADIUS;
-
-                // Get nearby parking areas from local database
-                List<ParkingAreaEntity> parkingAreaEntities =
-                        parkingAreaDao.getNearbyParkingAreasSync(latitude, longitude, radiusSquared);
-
-                if (parkingAreaEntities != null && !parkingAreaEntities.isEmpty()) {
-                    // Convert entities to model objects
-                    List<ParkingArea> localParkingAreas = new ArrayList<>();
-                    for (ParkingAreaEntity entity : parkingAreaEntities) {
-                        ParkingArea area = convertEntityToModel(entity);
-                        localParkingAreas.add(area);
-                    }
-
-                    // Post to main thread
-                    parkingAreas.postValue(localParkingAreas);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error loading from local database", e);
-            }
-        });
-    }
-
-    /**
-     * Save parking areas to local database
-     */
-    private void saveToLocalDatabase(List<ParkingArea> areas) {
-        databaseExecutor.execute(() -> {
-            try {
-                List<ParkingAreaEntity> entities = new ArrayList<>();
-                for (ParkingArea area : areas) {
-                    ParkingAreaEntity entity = convertModelToEntity(area);
-                    entities.add(entity);
-                }
-
-                // Save entities to database
-                parkingAreaDao.insertAll(entities);
-            } catch (Exception e) {
-                Log.e(TAG, "Error saving to local database", e);
-            }
-        });
-    }
-
-    /**
-     * Update favorite status in local database
-     */
-    private void updateFavoriteInLocalDatabase(String parkingAreaId, boolean isFavorite) {
-        databaseExecutor.execute(() -> {
-            try {
-                parkingAreaDao.updateFavoriteStatus(parkingAreaId, isFavorite);
-            } catch (Exception e) {
-                Log.e(TAG, "Error updating favorite in local database", e);
-            }
-        });
-    }
-
     /**
      * Update available spots count in local database
      */
     private void updateAvailableSpotsInLocalDatabase(String parkingAreaId, int availableSpots) {
-        databaseExecutor.execute(() -> {
-            try {
-                parkingAreaDao.updateAvailableSpots(parkingAreaId, availableSpots);
-            } catch (Exception e) {
-                Log.e(TAG, "Error updating available spots in local database", e);
-            }
-        });
+        writeBatcher.updateAvailableSpots(parkingAreaId, availableSpots);
     }
 
     /**
-     * Update favorites status based on user's saved favorites
+     * Reconcile the favorites with the user's document. The repository
+     * updates the flag column of the changed areas only, and the listener
+     * re-stamps the list.
      */
-    private void updateFavoritesStatus(List<ParkingArea> areas) {
-        String userId = authManager.getCurrentUser().getUid();
-
-        firestoreManager.getUserFavorites(userId, new FirestoreManager.GetFavoritesCallback() {
-            @Override
-            public void onSuccess(List<String> favoriteIds) {
-                if (favoriteIds != null && !favoriteIds.isEmpty()) {
-                    List<ParkingArea> updatedAreas = new ArrayList<>(areas);
-                    boolean changed = false;
-
-                    for (ParkingArea area : updatedAreas) {
-                        boolean isFavorite = favoriteIds.contains(area.getId());
-                        if (area.isFavorite() != isFavorite) {
-                            area.setFavorite(isFavorite);
-                            changed = true;
-                        }
-                    }
-
-                    if (changed) {
-                        parkingAreas.setValue(updatedAreas);
-
-                        // Update in local database
-                        saveToLocalDatabase(updatedAreas);
-                    }
-                }
-            }
-
-            @Override
-            public void onFailure(String errorMsg) {
-                Log.e(TAG, "Error getting user favorites: " + errorMsg);
-            }
-        });
+    private void refreshFavorites() {
+        favoritesRepository.refresh(authManager.getCurrentUser().getUid());
     }
 
-    /**
-     * Convert ParkingArea model to ParkingAreaEntity
-     */
-    private ParkingAreaEntity convertModelToEntity(ParkingArea model) {
-        return new ParkingAreaEntity(
-                model.getId(),
-                model.getName(),
-                model.getAddress(),
-                model.getLatitude(),
-                model.getLongitude(),
-                model.getTotalSpots(),
-                model.getAvailableSpots(),
-                model.getImageUrl(),
-                model.getHourlyRate(),
-                model.getOperatingHours(),
-                model.isHasCoveredParking(),
-                model.isHasDisabledAccess(),
-                model.isHasElectricCharging(),
-                model.getRating(),
-                model.getNumberOfRatings()
-        );
-    }
+    private void onFavoritesChanged() {
+        List<ParkingArea> currentAreas = parkingAreas.getValue();
+        if (currentAreas != null && favoritesRepository.applyTo(currentAreas)) {
+            parkingAreas.setValue(currentAreas);
+        }
 
-    /**
-     * Convert ParkingAreaEntity to ParkingArea model
-     */
-    private ParkingArea convertEntityToModel(ParkingAreaEntity entity) {
-        ParkingArea model = new ParkingArea();
-        model.setId(entity.getId());
-        model.setName(entity.getName());
-        model.setAddress(entity.getAddress());
-        model.setLatitude(entity.getLatitude());
-        model.setLongitude(entity.getLongitude());
-        model.setTotalSpots(entity.getTotalSpots());
-        model.setAvailableSpots(entity.getAvailableSpots());
-        model.setImageUrl(entity.getImageUrl());
-        model.setHourlyRate(entity.getHourlyRate());
-        model.setOperatingHours(entity.getOperatingHours());
-        model.setHasCoveredParking(entity.isHasCoveredParking());
-        model.setHasDisabledAccess(entity.isHasDisabledAccess());
-        model.setHasElectricCharging(entity.isHasElectricCharging());
-        model.setRating(entity.getRating());
-        model.setNumberOfRatings(entity.getNumberOfRatings());
-        model.setFavorite(entity.isFavorite());
-        return model;
+        ParkingArea selectedArea = selectedParkingArea.getValue();
+        if (selectedArea != null
+                && selectedArea.isFavorite() != favoritesRepository.isFavorite(selectedArea.getId())) {
+            selectedArea.setFavorite(!selectedArea.isFavorite());
+            selectedParkingArea.setValue(selectedArea);
+        }
     }
 
     /**
@@ -461,13 +454,9 @@ public class ParkingViewModel extends AndroidViewModel {
         super.onCleared();
 
         // Remove any active listeners
-        if (spotsListener != null && selectedParkingArea.getValue() != null) {
-            realtimeDbManager.removeParkingSpotsListener(
-                    selectedParkingArea.getValue().getId(), spotsListener);
-            spotsListener = null;
-        }
-
-        // Shut down executor
-        databaseExecutor.shutdown();
+        parkingAreaRepository.removeCallback(areasCallback);
+        favoritesRepository.removeListener(favoritesListener);
+        removeSpotsListener();
+        areaSubscriptions.clear();
     }
 }
\ No newline at end of file
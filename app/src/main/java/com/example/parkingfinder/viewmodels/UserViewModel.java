@@ -14,11 +14,12 @@ import com.example.parkingfinder.database.dao.UserDao;
 import com.example.parkingfinder.database.entities.UserEntity;
 import com.example.parkingfinder.firebase.FirebaseAuthManager;
 import com.example.parkingfinder.firebase.FirestoreManager;
+import com.example.parkingfinder.firebase.ReadPolicy;
+import com.example.parkingfinder.mappers.UserMapper;
 import com.example.parkingfinder.models.User;
-import com.example.parkingfinder.utils.Constants;
+import com.example.parkingfinder.services.ProfileImageUploadWorker;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
+import com.google.firebase.firestore.ListenerRegistration;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -30,12 +31,14 @@ public class UserViewModel extends AndroidViewModel {
     // Firebase managers
     private FirebaseAuthManager authManager;
     private FirestoreManager firestoreManager;
-    private StorageReference storageReference;
 
     // Database access
     private UserDao userDao;
     private ExecutorService databaseExecutor;
 
+    // The profile read still waiting for the server, removed when cleared
+    private ListenerRegistration profileRead;
+
     // LiveData
     private MutableLiveData<User> currentUser = new MutableLiveData<>();
     private MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
@@ -49,7 +52,6 @@ public class UserViewModel extends AndroidViewModel {
         // Initialize Firebase managers
         authManager = FirebaseAuthManager.getInstance();
         firestoreManager = FirestoreManager.getInstance();
-        storageReference = FirebaseStorage.getInstance().getReference(Constants.Firebase.STORAGE_PROFILE_IMAGES);
 
         // Initialize database access
         AppDatabase database = AppDatabase.getDatabase(application);
@@ -176,12 +178,24 @@ public class UserViewModel extends AndroidViewModel {
         // First try to get from local database
         loadUserFromLocalDatabase(firebaseUser.getUid());
 
-        // Then fetch from Firestore to ensure we have the latest data
-        firestoreManager.getUserProfile(firebaseUser.getUid(), new FirestoreManager.GetUserCallback() {
+        // Then Firestore, its cache answers at once and the server confirms
+        if (profileRead != null) {
+            profileRead.remove();
+        }
+        profileRead = firestoreManager.getUserProfile(firebaseUser.getUid(), ReadPolicy.CACHE_THEN_SERVER,
+                new FirestoreManager.GetUserCallback() {
             @Override
             public void onSuccess(User user) {
-                isLoading.setValue(false);
+                onSuccess(user, false);
+            }
+
+            @Override
+            public void onSuccess(User user, boolean fromCache) {
                 currentUser.setValue(user);
+                if (fromCache) {
+                    return;
+                }
+                isLoading.setValue(false);
 
                 // Save to local database
                 saveUserToLocalDatabase(user);
@@ -216,32 +230,29 @@ public class UserViewModel extends AndroidViewModel {
         user.setName(name);
         user.setPhoneNumber(phone);
 
-        // If image is selected, upload it first
+        // Save the profile right away, a selected image is uploaded in the
+        // background and set on the profile once it's stored
+        saveUserProfile(user);
         if (imageUri != null) {
-            uploadImageAndSaveProfile(user, imageUri);
-        } else {
-            saveUserProfile(user);
+            uploadProfileImage(user.getUid(), imageUri);
         }
     }
 
     /**
-     * Upload profile image to Firebase Storage
+     * Queue the profile image upload, it continues if the app is closed
      */
-    private void uploadImageAndSaveProfile(User user, Uri imageUri) {
-        String userId = user.getUid();
-        StorageReference fileReference = storageReference.child(userId + ".jpg");
-
-        fileReference.putFile(imageUri)
-                .addOnSuccessListener(taskSnapshot -> {
-                    fileReference.getDownloadUrl().addOnSuccessListener(uri -> {
-                        String imageUrl = uri.toString();
-                        user.setProfileImageUrl(imageUrl);
-                        saveUserProfile(user);
-                    });
-                })
-                .addOnFailureListener(e -> {
-                    isLoading.setValue(false);
-                    errorMessage.setValue("Failed to upload image: " + e.getMessage());
+    private void uploadProfileImage(String userId, Uri imageUri) {
+        ProfileImageUploadWorker.enqueue(getApplication(), userId, imageUri,
+                new ProfileImageUploadWorker.EnqueueCallback() {
+                    @Override
+                    public void onSuccess() {
+                        Log.d(TAG, "Profile image upload queued");
+                    }
+
+                    @Override
+                    public void onFailure(String errorMsg) {
+                        errorMessage.setValue("Failed to upload image: " + errorMsg);
+                    }
                 });
     }
 
@@ -393,7 +404,7 @@ public class UserViewModel extends AndroidViewModel {
             try {
                 UserEntity entity = userDao.getUserByIdSync(userId);
                 if (entity != null) {
-                    User user = convertEntityToModel(entity);
+                    User user = UserMapper.fromEntity(entity);
                     currentUser.postValue(user);
                 }
             } catch (Exception e) {
@@ -408,8 +419,8 @@ public class UserViewModel extends AndroidViewModel {
     private void saveUserToLocalDatabase(User user) {
         databaseExecutor.execute(() -> {
             try {
-                UserEntity entity = convertModelToEntity(user);
-                userDao.insert(entity);
+                UserEntity entity = UserMapper.toEntity(user);
+                userDao.upsert(entity);
             } catch (Exception e) {
                 Log.e(TAG, "Error saving user to local database", e);
             }
@@ -429,38 +440,16 @@ public class UserViewModel extends AndroidViewModel {
         });
     }
 
-    /**
-     * Convert User model to UserEntity
-     */
-    private UserEntity convertModelToEntity(User model) {
-        return new UserEntity(
-                model.getUid(),
-                model.getName(),
-                model.getEmail(),
-                model.getPhoneNumber(),
-                model.getProfileImageUrl()
-        );
-    }
-
-    /**
-     * Convert UserEntity to User model
-     */
-    private User convertEntityToModel(UserEntity entity) {
-        User model = new User();
-        model.setUid(entity.getUid());
-        model.setName(entity.getName());
-        model.setEmail(entity.getEmail());
-        model.setPhoneNumber(entity.getPhoneNumber());
-        model.setProfileImageUrl(entity.getProfileImageUrl());
-        return model;
-    }
-
     /**
      * Clean up resources when ViewModel is cleared
      */
     @Override
     protected void onCleared() {
         super.onCleared();
+        if (profileRead != null) {
+            profileRead.remove();
+            profileRead = null;
+        }
         databaseExecutor.shutdown();
     }
 }
\ No newline at end of file
@@ -0,0 +1,669 @@
+package com.example.parkingfinder.views;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RecordingCanvas;
+import android.graphics.RectF;
+import android.graphics.RenderNode;
+import android.util.AttributeSet;
+import android.util.SparseIntArray;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.example.parkingfinder.R;
+import com.example.parkingfinder.models.ParkingSpot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Floor plan of a parking area drawn in a single View, one floor at a time.
+ * Spots are placed on a grid by positionX/positionY (column/row), or laid out
+ * in rows by section when the data has no positions. Spot rects are packed in
+ * a float array and recorded into RenderNode tiles, so an availability change
+ * only re-records the tiles holding the changed spots. Supports pinch zoom,
+ * panning and tapping available spots to select them.
+ */
+public class FloorPlanView extends View {
+
+    public interface OnSpotClickListener {
+        void onSpotClick(ParkingSpot spot);
+    }
+
+    // Spot size and spacing in dp at scale 1
+    private static final float SPOT_WIDTH_DP = 44f;
+    private static final float SPOT_HEIGHT_DP = 72f;
+    private static final float SPOT_GAP_DP = 6f;
+    private static final float MARKER_SIZE_DP = 10f;
+    private static final float LABEL_TEXT_SIZE_SP = 12f;
+
+    // Spot numbers are only drawn once spots are at least this wide on screen
+    private static final float MIN_LABEL_WIDTH_DP = 28f;
+
+    // Used when the spots carry no positions
+    private static final int AUTO_LAYOUT_COLUMNS = 10;
+
+    // Tiles of TILE_CELLS x TILE_CELLS cells are recorded as a unit
+    private static final int TILE_CELLS = 16;
+
+    private static final float MIN_SCALE = 0.1f;
+    private static final float MAX_SCALE = 4f;
+
+    private static final byte STATE_AVAILABLE = 0;
+    private static final byte STATE_UNAVAILABLE = 1;
+    private static final byte STATE_SELECTED = 2;
+
+    private final float spotWidth;
+    private final float spotHeight;
+    private final float pitchX;
+    private final float pitchY;
+    private final float markerSize;
+    private final float minLabelWidth;
+
+    // Fill paint per state, indexed by STATE_*
+    private final Paint[] statePaints = new Paint[3];
+    private final Paint outlinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint handicappedPaint = new Paint();
+    private final Paint electricPaint = new Paint();
+    private final Paint reservedPaint = new Paint();
+    private final Paint darkLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint lightLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    // All spots of the area and their state, indexed alike
+    private List<ParkingSpot> spots = Collections.emptyList();
+    private byte[] states = new byte[0];
+    private int[] cellColumns = new int[0];
+    private int[] cellRows = new int[0];
+    private final Map<String, Integer> indexById = new HashMap<>();
+    private String selectedSpotId;
+
+    // Floors in ascending order and the layout of the one shown
+    private final List<Integer> floors = new ArrayList<>();
+    private int currentFloor;
+    private FloorLayout floorLayout;
+
+    // Content to screen transform
+    private float scale = 1f;
+    private float translateX = 0f;
+    private float translateY = 0f;
+    private boolean needsFit = true;
+
+    private final RectF viewport = new RectF();
+    private final RectF tileBounds = new RectF();
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+    private OnSpotClickListener listener;
+
+    /**
+     * Spots of one floor with their rects packed as left, top, right, bottom
+     */
+    private static class FloorLayout {
+        int[] spotIndices;
+        float[] rects;
+        float width;
+        float height;
+        int columnCount;
+        // Cell key (row * columnCount + column) to entry, for hit-testing
+        SparseIntArray cells;
+        Tile[] tiles;
+        int tileColumns;
+        // Tile of each entry
+        int[] entryTiles;
+        // Entry of each spot of the area, -1 for spots on other floors
+        int[] spotEntries;
+    }
+
+    private static class Tile {
+        final RenderNode node = new RenderNode("FloorPlanTile");
+        int[] entries;
+        boolean dirty = true;
+    }
+
+    public FloorPlanView(Context context) {
+        this(context, null);
+    }
+
+    public FloorPlanView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+
+        float density = getResources().getDisplayMetrics().density;
+        spotWidth = SPOT_WIDTH_DP * density;
+        spotHeight = SPOT_HEIGHT_DP * density;
+        pitchX = spotWidth + SPOT_GAP_DP * density;
+        pitchY = spotHeight + SPOT_GAP_DP * density;
+        markerSize = MARKER_SIZE_DP * density;
+        minLabelWidth = MIN_LABEL_WIDTH_DP * density;
+
+        statePaints[STATE_AVAILABLE] = fillPaint(R.color.available_spot);
+        statePaints[STATE_UNAVAILABLE] = fillPaint(R.color.unavailable_spot);
+        statePaints[STATE_SELECTED] = fillPaint(R.color.selected_spot);
+        handicappedPaint.setColor(ContextCompat.getColor(context, R.color.handicapped_spot));
+        electricPaint.setColor(ContextCompat.getColor(context, R.color.electric_spot));
+        reservedPaint.setColor(ContextCompat.getColor(context, R.color.reserved_spot));
+
+        outlinePaint.setStyle(Paint.Style.STROKE);
+        outlinePaint.setStrokeWidth(density);
+        outlinePaint.setColor(ContextCompat.getColor(context, R.color.divider));
+
+        float textSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, LABEL_TEXT_SIZE_SP,
+                getResources().getDisplayMetrics());
+        darkLabelPaint.setTextSize(textSize);
+        darkLabelPaint.setTextAlign(Paint.Align.CENTER);
+        darkLabelPaint.setColor(ContextCompat.getColor(context, R.color.black));
+        lightLabelPaint.set(darkLabelPaint);
+        lightLabelPaint.setColor(ContextCompat.getColor(context, R.color.white));
+
+        scaleDetector = new ScaleGestureDetector(context, new ScaleListener());
+        gestureDetector = new GestureDetector(context, new GestureListener());
+    }
+
+    private Paint fillPaint(int colorRes) {
+        Paint paint = new Paint();
+        paint.setStyle(Paint.Style.FILL);
+        paint.setColor(ContextCompat.getColor(getContext(), colorRes));
+        return paint;
+    }
+
+    public void setOnSpotClickListener(OnSpotClickListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Floors present in the current spots, in ascending order
+     */
+    public List<Integer> getFloors() {
+        return Collections.unmodifiableList(floors);
+    }
+
+    public int getCurrentFloor() {
+        return currentFloor;
+    }
+
+    @Nullable
+    public ParkingSpot getSelectedSpot() {
+        Integer index = selectedSpotId != null ? indexById.get(selectedSpotId) : null;
+        return index != null ? spots.get(index) : null;
+    }
+
+    /**
+     * Show a set of spots. When only availability changed since the last call,
+     * just the affected tiles are redrawn.
+     */
+    public void setSpots(List<ParkingSpot> newSpots) {
+        if (hasSameLayout(newSpots)) {
+            spots = new ArrayList<>(newSpots);
+            for (int i = 0; i < spots.size(); i++) {
+                byte state = stateOf(spots.get(i));
+                if (state != states[i]) {
+                    states[i] = state;
+                    markDirty(i);
+                }
+            }
+            invalidate();
+            return;
+        }
+
+        spots = new ArrayList<>(newSpots);
+        indexById.clear();
+        for (int i = 0; i < spots.size(); i++) {
+            indexById.put(spots.get(i).getId(), i);
+        }
+        if (selectedSpotId != null && !indexById.containsKey(selectedSpotId)) {
+            selectedSpotId = null;
+        }
+        states = new byte[spots.size()];
+        for (int i = 0; i < spots.size(); i++) {
+            states[i] = stateOf(spots.get(i));
+        }
+        assignCells();
+
+        floors.clear();
+        for (ParkingSpot spot : spots) {
+            if (!floors.contains(spot.getFloor())) {
+                floors.add(spot.getFloor());
+            }
+        }
+        Collections.sort(floors);
+
+        int floor = floors.contains(currentFloor) || floors.isEmpty() ? currentFloor : floors.get(0);
+        showFloor(floor);
+    }
+
+    /**
+     * Switch to another floor and fit it to the view
+     */
+    public void setFloor(int floor) {
+        if (floor != currentFloor || floorLayout == null) {
+            showFloor(floor);
+        }
+    }
+
+    private void showFloor(int floor) {
+        currentFloor = floor;
+        if (floorLayout != null) {
+            for (Tile tile : floorLayout.tiles) {
+                tile.node.discardDisplayList();
+            }
+        }
+        floorLayout = buildFloorLayout(floor);
+        needsFit = true;
+        invalidate();
+    }
+
+    private boolean hasSameLayout(List<ParkingSpot> newSpots) {
+        if (floorLayout == null || newSpots.size() != spots.size()) {
+            return false;
+        }
+        for (int i = 0; i < newSpots.size(); i++) {
+            ParkingSpot oldSpot = spots.get(i);
+            ParkingSpot newSpot = newSpots.get(i);
+            if (!oldSpot.getId().equals(newSpot.getId())
+                    || oldSpot.getFloor() != newSpot.getFloor()
+                    || oldSpot.getPositionX() != newSpot.getPositionX()
+                    || oldSpot.getPositionY() != newSpot.getPositionY()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte stateOf(ParkingSpot spot) {
+        if (!spot.isAvailable()) {
+            return STATE_UNAVAILABLE;
+        }
+        return spot.getId().equals(selectedSpotId) ? STATE_SELECTED : STATE_AVAILABLE;
+    }
+
+    /**
+     * Grid cell of every spot, from its position or, when no spot has one,
+     * in rows of AUTO_LAYOUT_COLUMNS with each section starting a new row
+     */
+    private void assignCells() {
+        int count = spots.size();
+        cellColumns = new int[count];
+        cellRows = new int[count];
+
+        boolean hasPositions = false;
+        for (ParkingSpot spot : spots) {
+            if (spot.getPositionX() != 0 || spot.getPositionY() != 0) {
+                hasPositions = true;
+                break;
+            }
+        }
+
+        if (hasPositions) {
+            for (int i = 0; i < count; i++) {
+                cellColumns[i] = Math.max(0, spots.get(i).getPositionX());
+                cellRows[i] = Math.max(0, spots.get(i).getPositionY());
+            }
+            return;
+        }
+
+        // Per floor: next free column and row, and the section being filled
+        Map<Integer, int[]> cursors = new HashMap<>();
+        Map<Integer, String> sections = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            ParkingSpot spot = spots.get(i);
+            int[] cursor = cursors.get(spot.getFloor());
+            if (cursor == null) {
+                cursor = new int[]{0, 0};
+                cursors.put(spot.getFloor(), cursor);
+                sections.put(spot.getFloor(), spot.getSection());
+            }
+            String section = sections.get(spot.getFloor());
+            boolean newSection = section == null ? spot.getSection() != null : !section.equals(spot.getSection());
+            if (cursor[0] >= AUTO_LAYOUT_COLUMNS || (newSection && cursor[0] > 0)) {
+                cursor[0] = 0;
+                cursor[1]++;
+            }
+            sections.put(spot.getFloor(), spot.getSection());
+            cellColumns[i] = cursor[0]++;
+            cellRows[i] = cursor[1];
+        }
+    }
+
+    private FloorLayout buildFloorLayout(int floor) {
+        int entryCount = 0;
+        for (ParkingSpot spot : spots) {
+            if (spot.getFloor() == floor) {
+                entryCount++;
+            }
+        }
+
+        FloorLayout layout = new FloorLayout();
+        layout.spotIndices = new int[entryCount];
+        layout.rects = new float[entryCount * 4];
+        layout.spotEntries = new int[spots.size()];
+        Arrays.fill(layout.spotEntries, -1);
+
+        int columnCount = 0;
+        int rowCount = 0;
+        int entry = 0;
+        for (int i = 0; i < spots.size(); i++) {
+            if (spots.get(i).getFloor() != floor) {
+                continue;
+            }
+            layout.spotIndices[entry] = i;
+            layout.spotEntries[i] = entry;
+            float left = cellColumns[i] * pitchX;
+            float top = cellRows[i] * pitchY;
+            layout.rects[entry * 4] = left;
+            layout.rects[entry * 4 + 1] = top;
+            layout.rects[entry * 4 + 2] = left + spotWidth;
+            layout.rects[entry * 4 + 3] = top + spotHeight;
+            columnCount = Math.max(columnCount, cellColumns[i] + 1);
+            rowCount = Math.max(rowCount, cellRows[i] + 1);
+            entry++;
+        }
+        layout.columnCount = columnCount;
+        layout.width = columnCount * pitchX;
+        layout.height = rowCount * pitchY;
+
+        // Hit-test index, filled in key order so every put appends
+        long[] keyed = new long[entryCount];
+        for (int e = 0; e < entryCount; e++) {
+            int spotIndex = layout.spotIndices[e];
+            long key = (long) cellRows[spotIndex] * columnCount + cellColumns[spotIndex];
+            keyed[e] = (key << 32) | e;
+        }
+        Arrays.sort(keyed);
+        layout.cells = new SparseIntArray(entryCount);
+        for (long value : keyed) {
+            layout.cells.put((int) (value >>> 32), (int) value);
+        }
+
+        // Group entries into tiles
+        layout.tileColumns = Math.max(1, (columnCount + TILE_CELLS - 1) / TILE_CELLS);
+        int tileRows = Math.max(1, (rowCount + TILE_CELLS - 1) / TILE_CELLS);
+        int[] tileSizes = new int[layout.tileColumns * tileRows];
+        layout.entryTiles = new int[entryCount];
+        for (int e = 0; e < entryCount; e++) {
+            int spotIndex = layout.spotIndices[e];
+            int tile = (cellRows[spotIndex] / TILE_CELLS) * layout.tileColumns
+                    + cellColumns[spotIndex] / TILE_CELLS;
+            layout.entryTiles[e] = tile;
+            tileSizes[tile]++;
+        }
+        layout.tiles = new Tile[tileSizes.length];
+        for (int t = 0; t < tileSizes.length; t++) {
+            layout.tiles[t] = new Tile();
+            layout.tiles[t].entries = new int[tileSizes[t]];
+            int left = Math.round((t % layout.tileColumns) * TILE_CELLS * pitchX);
+            int top = Math.round((t / layout.tileColumns) * TILE_CELLS * pitchY);
+            layout.tiles[t].node.setPosition(left, top,
+                    left + (int) Math.ceil(TILE_CELLS * pitchX), top + (int) Math.ceil(TILE_CELLS * pitchY));
+        }
+        int[] filled = new int[tileSizes.length];
+        for (int e = 0; e < entryCount; e++) {
+            int tile = layout.entryTiles[e];
+            layout.tiles[tile].entries[filled[tile]++] = e;
+        }
+        return layout;
+    }
+
+    private void markDirty(int spotIndex) {
+        int entry = floorLayout != null ? floorLayout.spotEntries[spotIndex] : -1;
+        if (entry >= 0) {
+            floorLayout.tiles[floorLayout.entryTiles[entry]].dirty = true;
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        needsFit = true;
+    }
+
+    // Fit the floor to the view width, never zooming in past scale 1
+    private void fitToView() {
+        needsFit = false;
+        if (floorLayout == null || floorLayout.width == 0 || getWidth() == 0) {
+            return;
+        }
+        scale = clamp(getWidth() / floorLayout.width, MIN_SCALE, 1f);
+        translateX = 0;
+        translateY = 0;
+        clampTranslation();
+    }
+
+    // Keep the floor on screen, centered along axes where it is smaller than the view
+    private void clampTranslation() {
+        if (floorLayout == null) {
+            return;
+        }
+        float contentWidth = floorLayout.width * scale;
+        float contentHeight = floorLayout.height * scale;
+        translateX = contentWidth <= getWidth()
+                ? (getWidth() - contentWidth) / 2f
+                : clamp(translateX, getWidth() - contentWidth, 0f);
+        translateY = contentHeight <= getHeight()
+                ? (getHeight() - contentHeight) / 2f
+                : clamp(translateY, getHeight() - contentHeight, 0f);
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        if (floorLayout == null || floorLayout.spotIndices.length == 0) {
+            return;
+        }
+        if (needsFit) {
+            fitToView();
+        }
+
+        canvas.save();
+        canvas.translate(translateX, translateY);
+        canvas.scale(scale, scale);
+        viewport.set(-translateX / scale, -translateY / scale,
+                (getWidth() - translateX) / scale, (getHeight() - translateY) / scale);
+
+        if (canvas.isHardwareAccelerated()) {
+            for (Tile tile : floorLayout.tiles) {
+                if (tile.entries.length == 0 || !RectF.intersects(viewport, tileBounds(tile))) {
+                    continue;
+                }
+                if (tile.dirty || !tile.node.hasDisplayList()) {
+                    recordTile(tile);
+                }
+                canvas.drawRenderNode(tile.node);
+            }
+        } else {
+            drawEntries(canvas, null, viewport);
+        }
+
+        if (spotWidth * scale >= minLabelWidth) {
+            drawLabels(canvas);
+        }
+        canvas.restore();
+    }
+
+    private RectF tileBounds(Tile tile) {
+        tileBounds.set(tile.node.getLeft(), tile.node.getTop(), tile.node.getRight(), tile.node.getBottom());
+        return tileBounds;
+    }
+
+    private void recordTile(Tile tile) {
+        RecordingCanvas recordingCanvas = tile.node.beginRecording();
+        try {
+            recordingCanvas.translate(-tile.node.getLeft(), -tile.node.getTop());
+            drawEntries(recordingCanvas, tile.entries, null);
+        } finally {
+            tile.node.endRecording();
+        }
+        tile.dirty = false;
+    }
+
+    /**
+     * Draw spot rects, grouped by paint so consecutive draws share state.
+     * entries null means every entry of the floor, clip null means no culling.
+     */
+    private void drawEntries(Canvas canvas, @Nullable int[] entries, @Nullable RectF clip) {
+        float[] rects = floorLayout.rects;
+        int count = entries != null ? entries.length : floorLayout.spotIndices.length;
+
+        for (byte state = STATE_AVAILABLE; state <= STATE_SELECTED; state++) {
+            Paint paint = statePaints[state];
+            for (int n = 0; n < count; n++) {
+                int e = entries != null ? entries[n] : n;
+                if (states[floorLayout.spotIndices[e]] != state || isClipped(rects, e, clip)) {
+                    continue;
+                }
+                canvas.drawRect(rects[e * 4], rects[e * 4 + 1], rects[e * 4 + 2], rects[e * 4 + 3], paint);
+            }
+        }
+
+        for (int n = 0; n < count; n++) {
+            int e = entries != null ? entries[n] : n;
+            if (isClipped(rects, e, clip)) {
+                continue;
+            }
+            canvas.drawRect(rects[e * 4], rects[e * 4 + 1], rects[e * 4 + 2], rects[e * 4 + 3], outlinePaint);
+
+            ParkingSpot spot = spots.get(floorLayout.spotIndices[e]);
+            Paint markerPaint = spot.isHandicapped() ? handicappedPaint
+                    : spot.isElectricCharging() ? electricPaint
+                    : spot.isReserved() ? reservedPaint : null;
+            if (markerPaint != null) {
+                canvas.drawRect(rects[e * 4 + 2] - markerSize, rects[e * 4 + 1],
+                        rects[e * 4 + 2], rects[e * 4 + 1] + markerSize, markerPaint);
+            }
+        }
+    }
+
+    private static boolean isClipped(float[] rects, int e, @Nullable RectF clip) {
+        return clip != null && (rects[e * 4 + 2] < clip.left || rects[e * 4] > clip.right
+                || rects[e * 4 + 3] < clip.top || rects[e * 4 + 1] > clip.bottom);
+    }
+
+    // Labels depend on zoom, so they are drawn directly and only for visible spots
+    private void drawLabels(Canvas canvas) {
+        float[] rects = floorLayout.rects;
+        float baselineOffset = -(darkLabelPaint.ascent() + darkLabelPaint.descent()) / 2f;
+        for (int e = 0; e < floorLayout.spotIndices.length; e++) {
+            if (isClipped(rects, e, viewport)) {
+                continue;
+            }
+            int spotIndex = floorLayout.spotIndices[e];
+            String label = spots.get(spotIndex).getSpotNumber();
+            if (label == null) {
+                continue;
+            }
+            Paint paint = states[spotIndex] == STATE_AVAILABLE ? darkLabelPaint : lightLabelPaint;
+            canvas.drawText(label, (rects[e * 4] + rects[e * 4 + 2]) / 2f,
+                    (rects[e * 4 + 1] + rects[e * 4 + 3]) / 2f + baselineOffset, paint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN && getParent() != null) {
+            // Pan and zoom instead of scrolling the enclosing screen
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+        boolean handled = scaleDetector.onTouchEvent(event);
+        handled |= gestureDetector.onTouchEvent(event);
+        return handled || super.onTouchEvent(event);
+    }
+
+    /**
+     * Spot index at a point in view coordinates, or -1
+     */
+    private int hitTest(float x, float y) {
+        if (floorLayout == null || floorLayout.columnCount == 0) {
+            return -1;
+        }
+        float contentX = (x - translateX) / scale;
+        float contentY = (y - translateY) / scale;
+        if (contentX < 0 || contentY < 0) {
+            return -1;
+        }
+        int column = (int) (contentX / pitchX);
+        int row = (int) (contentY / pitchY);
+        // Taps in the gap between spots don't count
+        if (column >= floorLayout.columnCount
+                || contentX - column * pitchX > spotWidth || contentY - row * pitchY > spotHeight) {
+            return -1;
+        }
+        int entry = floorLayout.cells.get(row * floorLayout.columnCount + column, -1);
+        return entry >= 0 ? floorLayout.spotIndices[entry] : -1;
+    }
+
+    private void selectSpot(int spotIndex) {
+        Integer previous = selectedSpotId != null ? indexById.get(selectedSpotId) : null;
+        selectedSpotId = spots.get(spotIndex).getId();
+        if (previous != null && previous != spotIndex) {
+            states[previous] = stateOf(spots.get(previous));
+            markDirty(previous);
+        }
+        states[spotIndex] = stateOf(spots.get(spotIndex));
+        markDirty(spotIndex);
+        invalidate();
+    }
+
+    private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+        @Override
+        public boolean onScale(@NonNull ScaleGestureDetector detector) {
+            float newScale = clamp(scale * detector.getScaleFactor(), MIN_SCALE, MAX_SCALE);
+            float factor = newScale / scale;
+            // Zoom around the focus point
+            translateX = detector.getFocusX() - (detector.getFocusX() - translateX) * factor;
+            translateY = detector.getFocusY() - (detector.getFocusY() - translateY) * factor;
+            scale = newScale;
+            clampTranslation();
+            invalidate();
+            return true;
+        }
+    }
+
+    private class GestureListener extends GestureDetector.SimpleOnGestureListener {
+        @Override
+        public boolean onDown(@NonNull MotionEvent e) {
+            return true;
+        }
+
+        @Override
+        public boolean onScroll(@Nullable MotionEvent e1, @NonNull MotionEvent e2,
+                                float distanceX, float distanceY) {
+            translateX -= distanceX;
+            translateY -= distanceY;
+            clampTranslation();
+            invalidate();
+            return true;
+        }
+
+        @Override
+        public boolean onSingleTapUp(@NonNull MotionEvent e) {
+            int spotIndex = hitTest(e.getX(), e.getY());
+            if (spotIndex < 0 || !spots.get(spotIndex).isAvailable()) {
+                return false;
+            }
+            selectSpot(spotIndex);
+            if (listener != null) {
+                listener.onSpotClick(spots.get(spotIndex));
+            }
+            performClick();
+            return true;
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.parkingfinder.models;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the table's filters and sorts against the list code the parking
+ * list used before, on the same generated areas.
+ */
+public class ParkingAreaTableTest {
+
+    private static final int AREAS = 2000;
+    private static final double USER_LATITUDE = 51.5074;
+    private static final double USER_LONGITUDE = -0.1278;
+
+    private static final String[] NAMES = {"City Car Park", "Station Garage", "Market Lot", "Riverside Parking"};
+    private static final String[] STREETS = {"High Street", "Station Road", "Church Lane", "Mill Road"};
+
+    private static List<ParkingArea> areas;
+    private static ParkingAreaTable table;
+
+    @BeforeClass
+    public static void createAreas() {
+        areas = generateAreas(AREAS, new Random(42));
+        table = new ParkingAreaTable(areas);
+    }
+
+    @Test
+    public void selectMatchesListFilter() {
+        String[] queries = {"", "station", "market lot", "7 high", "no such place"};
+        double[] maxPrices = {100, 4.5, 0.5};
+        int[] featureSets = {
+                0,
+                ParkingAreaTable.FEATURE_ELECTRIC_CHARGING,
+                ParkingAreaTable.FEATURE_DISABLED_ACCESS,
+                ParkingAreaTable.FEATURE_ELECTRIC_CHARGING | ParkingAreaTable.FEATURE_DISABLED_ACCESS
+        };
+        for (String query : queries) {
+            for (boolean onlyAvailable : new boolean[] {false, true}) {
+                for (double maxPrice : maxPrices) {
+                    for (int features : featureSets) {
+                        boolean ev = (features & ParkingAreaTable.FEATURE_ELECTRIC_CHARGING) != 0;
+                        boolean disabled = (features & ParkingAreaTable.FEATURE_DISABLED_ACCESS) != 0;
+                        List<ParkingArea> expected = listFilter(areas, query, onlyAvailable, maxPrice, ev, disabled);
+
+                        List<ParkingArea> actual = new ArrayList<>();
+                        table.collect(table.select(query, onlyAvailable, maxPrice, features), actual);
+                        assertEquals(query + " " + onlyAvailable + " " + maxPrice + " " + features,
+                                expected, actual);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void priceSortMatchesComparator() {
+        assertSortMatches(ParkingAreaTable.Order.PRICE, Comparator.comparingDouble(ParkingArea::getHourlyRate));
+    }
+
+    @Test
+    public void availabilitySortMatchesComparator() {
+        assertSortMatches(ParkingAreaTable.Order.AVAILABILITY, (a, b) -> {
+            double percentA = a.getTotalSpots() > 0 ? ((double) a.getAvailableSpots() / a.getTotalSpots()) : 0;
+            double percentB = b.getTotalSpots() > 0 ? ((double) b.getAvailableSpots() / b.getTotalSpots()) : 0;
+            return Double.compare(percentB, percentA);
+        });
+    }
+
+    @Test
+    public void ratingSortMatchesComparator() {
+        assertSortMatches(ParkingAreaTable.Order.RATING, (a, b) -> Float.compare(b.getRating(), a.getRating()));
+    }
+
+    @Test
+    public void distanceSortMatchesHaversineWithinBound() {
+        List<ParkingArea> expected = new ArrayList<>(areas);
+        Collections.sort(expected, (a, b) -> Double.compare(
+                a.distanceFrom(USER_LATITUDE, USER_LONGITUDE), b.distanceFrom(USER_LATITUDE, USER_LONGITUDE)));
+
+        int[] rows = table.select("", false, Double.MAX_VALUE, 0);
+        table.sort(rows, ParkingAreaTable.Order.DISTANCE, USER_LATITUDE, USER_LONGITUDE);
+        List<ParkingArea> actual = new ArrayList<>();
+        table.collect(rows, actual);
+
+        // The approximation may only swap areas at nearly the same distance,
+        // within 0.1% each way for areas up to 10 km away below 60 degrees
+        assertEquals(expected.size(), actual.size());
+        assertTrue(actual.containsAll(expected));
+        for (int i = 0; i < expected.size(); i++) {
+            double expectedKm = expected.get(i).distanceFrom(USER_LATITUDE, USER_LONGITUDE);
+            double actualKm = actual.get(i).distanceFrom(USER_LATITUDE, USER_LONGITUDE);
+            assertEquals("position " + i, expectedKm, actualKm, expectedKm * 0.002 + 1e-9);
+        }
+    }
+
+    @Test
+    public void sortKeepsOrderOfEqualKeys() {
+        List<ParkingArea> same = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            same.add(area("area" + i, "Same", "Street", 51.5, -0.12, 10, 5, 3.0, 4.0f, false, false, false));
+        }
+        ParkingAreaTable sameTable = new ParkingAreaTable(same);
+        for (ParkingAreaTable.Order order : ParkingAreaTable.Order.values()) {
+            int[] rows = sameTable.select("", false, Double.MAX_VALUE, 0);
+            sameTable.sort(rows, order, 51.5, -0.12);
+            assertArrayEquals(order.name(), new int[] {0, 1, 2, 3, 4}, rows);
+        }
+    }
+
+    @Test
+    public void negativeAndPositiveKeysSortInOrder() {
+        List<ParkingArea> rated = Arrays.asList(
+                area("low", "Low", "Street", 51.5, -0.12, 10, 0, 0.0, 1.0f, false, false, false),
+                area("none", "None", "Street", 51.5, -0.12, 0, 0, 0.0, 0.0f, false, false, false),
+                area("high", "High", "Street", 51.5, -0.12, 10, 10, 0.0, 5.0f, false, false, false));
+        ParkingAreaTable ratedTable = new ParkingAreaTable(rated);
+
+        int[] rows = ratedTable.select("", false, Double.MAX_VALUE, 0);
+        ratedTable.sort(rows, ParkingAreaTable.Order.RATING, 51.5, -0.12);
+        assertArrayEquals(new int[] {2, 0, 1}, rows);
+
+        // An area without spots ties with a full one at 0% free
+        rows = ratedTable.select("", false, Double.MAX_VALUE, 0);
+        ratedTable.sort(rows, ParkingAreaTable.Order.AVAILABILITY, 51.5, -0.12);
+        assertArrayEquals(new int[] {2, 0, 1}, rows);
+    }
+
+    @Test
+    public void missingTextMatchesOnlyEmptyQuery() {
+        ParkingAreaTable nullText = new ParkingAreaTable(Collections.singletonList(
+                area("id", null, null, 51.5, -0.12, 10, 5, 2.0, 4.0f, false, false, false)));
+        assertEquals(1, nullText.select("", false, Double.MAX_VALUE, 0).length);
+        assertEquals(0, nullText.select("street", false, Double.MAX_VALUE, 0).length);
+    }
+
+    private static void assertSortMatches(ParkingAreaTable.Order order, Comparator<ParkingArea> comparator) {
+        List<ParkingArea> expected = listFilter(areas, "", true, 6.0, false, false);
+        Collections.sort(expected, comparator);
+
+        int[] rows = table.select("", true, 6.0, 0);
+        table.sort(rows, order, USER_LATITUDE, USER_LONGITUDE);
+        List<ParkingArea> actual = new ArrayList<>();
+        table.collect(rows, actual);
+        assertEquals(order.name(), expected, actual);
+    }
+
+    /**
+     * The parking list's filter before the table
+     */
+    static List<ParkingArea> listFilter(List<ParkingArea> source, String query, boolean onlyAvailable,
+                                        double maxPrice, boolean hasEVCharging, boolean hasDisabledAccess) {
+        List<ParkingArea> searchFiltered = new ArrayList<>();
+        if (query.isEmpty()) {
+            searchFiltered.addAll(source);
+        } else {
+            for (ParkingArea area : source) {
+                if (area.getName().toLowerCase(Locale.ROOT).contains(query)
+                        || area.getAddress().toLowerCase(Locale.ROOT).contains(query)) {
+                    searchFiltered.add(area);
+                }
+            }
+        }
+
+        List<ParkingArea> filtered = new ArrayList<>();
+        for (ParkingArea area : searchFiltered) {
+            if ((onlyAvailable && area.getAvailableSpots() <= 0)
+                    || area.getHourlyRate() > maxPrice
+                    || (hasEVCharging && !area.isHasElectricCharging())
+                    || (hasDisabledAccess && !area.isHasDisabledAccess())) {
+                continue;
+            }
+            filtered.add(area);
+        }
+        return filtered;
+    }
+
+    /**
+     * Areas within about 10 km of central London. Names, streets, prices
+     * and ratings repeat so the sorts have ties to keep in order.
+     */
+    static List<ParkingArea> generateAreas(int count, Random random) {
+        List<ParkingArea> generated = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int totalSpots = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(400);
+            generated.add(area("area" + i,
+                    NAMES[random.nextInt(NAMES.length)] + " " + (i % 50),
+                    (1 + random.nextInt(200)) + " " + STREETS[random.nextInt(STREETS.length)],
+                    USER_LATITUDE + (random.nextDouble() - 0.5) * 0.18,
+                    USER_LONGITUDE + (random.nextDouble() - 0.5) * 0.28,
+                    totalSpots,
+                    totalSpots == 0 ? 0 : random.nextInt(totalSpots + 1),
+                    random.nextInt(41) * 0.25,
+                    random.nextInt(9) * 0.5f + 1,
+                    random.nextBoolean(), random.nextBoolean(), random.nextBoolean()));
+        }
+        return generated;
+    }
+
+    private static ParkingArea area(String id, String name, String address, double latitude, double longitude,
+                                    int totalSpots, int availableSpots, double hourlyRate, float rating,
+                                    boolean covered, boolean disabledAccess, boolean electricCharging) {
+        ParkingArea area = new ParkingArea();
+        area.setId(id);
+        area.setName(name);
+        area.setAddress(address);
+        area.setLatitude(latitude);
+        area.setLongitude(longitude);
+        area.setTotalSpots(totalSpots);
+        area.setAvailableSpots(availableSpots);
+        area.setHourlyRate(hourlyRate);
+        area.setRating(rating);
+        area.setHasCoveredParking(covered);
+        area.setHasDisabledAccess(disabledAccess);
+        area.setHasElectricCharging(electricCharging);
+        return area;
+    }
+}
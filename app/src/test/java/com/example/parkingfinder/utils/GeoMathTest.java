@@ -0,0 +1,141 @@
+package com.example.parkingfinder.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the error bounds given in GeoMath's documentation against the
+ * haversine distance, and that the fast radius checks and the bounding box
+ * agree with it exactly.
+ */
+public class GeoMathTest {
+
+    @Test
+    public void haversineMatchesKnownDistance() {
+        // London to Paris
+        assertEquals(343.5, GeoMath.distanceKm(51.5074, -0.1278, 48.8566, 2.3522), 0.5);
+        assertEquals(0, GeoMath.distanceKm(51.5, -0.12, 51.5, -0.12), 0);
+    }
+
+    @Test
+    public void approximationWithin3Point8PercentUpTo200KmAt80Degrees() {
+        assertEquals(0.038, worstRelativeError(80, 200), 0.0005);
+    }
+
+    @Test
+    public void approximationWithin2PercentUpTo100KmAt80Degrees() {
+        assertTrue(worstRelativeError(80, 100) <= 0.02);
+    }
+
+    @Test
+    public void approximationWithinTenthOfPercentUpTo10KmBelow60Degrees() {
+        assertTrue(worstRelativeError(60, 10) <= 0.001);
+    }
+
+    @Test
+    public void approximationWrapsAroundAntimeridian() {
+        GeoMath.Origin origin = new GeoMath.Origin(0, 179.95);
+        double exact = origin.distanceKm(0, -179.95);
+        assertEquals(exact, Math.sqrt(origin.approxDistanceSquared(0, -179.95)), exact * 0.001);
+    }
+
+    @Test
+    public void batchMatchesSinglePoints() {
+        GeoMath.Origin origin = new GeoMath.Origin(51.5, -0.12);
+        double[] latitudes = {51.6, 51.4, 52.0, 51.5};
+        double[] longitudes = {-0.1, -0.3, 0.5, -0.12};
+        int[] rows = {3, 0, 2};
+        double[] out = new double[rows.length];
+        origin.approxDistancesSquared(latitudes, longitudes, rows, out);
+        for (int i = 0; i < rows.length; i++) {
+            assertEquals(origin.approxDistanceSquared(latitudes[rows[i]], longitudes[rows[i]]), out[i], 0);
+        }
+    }
+
+    @Test
+    public void isWithinAgreesWithHaversine() {
+        Random random = new Random(7);
+        double[] originLatitudes = {0, 35, 51.5, 60, 79.9, 85, -70};
+        double[] radii = {0.5, 10, 100, 200, 500};
+        for (double originLatitude : originLatitudes) {
+            GeoMath.Origin origin = new GeoMath.Origin(originLatitude, 10);
+            for (double radius : radii) {
+                for (int i = 0; i < 2000; i++) {
+                    // Most points near the edge, where the fast checks must step aside
+                    double[] point = destination(originLatitude, 10, random.nextDouble() * 360,
+                            radius * (0.9 + random.nextDouble() * 0.2));
+                    boolean exact = origin.distanceKm(point[0], point[1]) <= radius;
+                    assertEquals(originLatitude + " " + radius, exact,
+                            origin.isWithin(point[0], point[1], radius));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void boundingBoxHoldsCircle() {
+        double[] originLatitudes = {0, 51.5, -60, 80};
+        for (double originLatitude : originLatitudes) {
+            GeoMath.Origin origin = new GeoMath.Origin(originLatitude, 10);
+            double[] box = origin.boundingBox(100);
+            for (int bearing = 0; bearing < 360; bearing++) {
+                double[] point = destination(originLatitude, 10, bearing, 99.999);
+                assertTrue(originLatitude + " " + bearing, point[0] >= box[0] && point[0] <= box[1]);
+                assertTrue(originLatitude + " " + bearing, point[1] >= box[2] && point[1] <= box[3]);
+            }
+            // Tight in latitude, the circle's north and south points are on the edges
+            assertEquals(destination(originLatitude, 10, 0, 100)[0], box[1], 1e-9);
+            assertEquals(destination(originLatitude, 10, 180, 100)[0], box[0], 1e-9);
+        }
+    }
+
+    @Test
+    public void boundingBoxCoversAllLongitudesNearPoleAndAntimeridian() {
+        double[] nearPole = new GeoMath.Origin(89.5, 10).boundingBox(100);
+        assertEquals(90, nearPole[1], 0);
+        assertEquals(-180, nearPole[2], 0);
+        assertEquals(180, nearPole[3], 0);
+
+        double[] nearAntimeridian = new GeoMath.Origin(0, 179.5).boundingBox(100);
+        assertEquals(-180, nearAntimeridian[2], 0);
+        assertEquals(180, nearAntimeridian[3], 0);
+    }
+
+    /**
+     * Worst relative error of the approximation for origins up to maxLatitude
+     * and points up to maxKm away in every direction
+     */
+    private static double worstRelativeError(double maxLatitude, double maxKm) {
+        double worst = 0;
+        for (double latitude = -maxLatitude; latitude <= maxLatitude; latitude += maxLatitude / 20) {
+            GeoMath.Origin origin = new GeoMath.Origin(latitude, 10);
+            for (int bearing = 0; bearing < 360; bearing += 2) {
+                for (double km = maxKm / 50; km <= maxKm; km += maxKm / 50) {
+                    double[] point = destination(latitude, 10, bearing, km);
+                    double exact = origin.distanceKm(point[0], point[1]);
+                    double approx = Math.sqrt(origin.approxDistanceSquared(point[0], point[1]));
+                    worst = Math.max(worst, Math.abs(approx - exact) / exact);
+                }
+            }
+        }
+        return worst;
+    }
+
+    /**
+     * The point km away from a location along a great circle
+     */
+    private static double[] destination(double latitude, double longitude, double bearingDegrees, double km) {
+        double angle = km / GeoMath.EARTH_RADIUS_KM;
+        double bearing = Math.toRadians(bearingDegrees);
+        double lat1 = Math.toRadians(latitude);
+        double lat2 = Math.asin(Math.sin(lat1) * Math.cos(angle)
+                + Math.cos(lat1) * Math.sin(angle) * Math.cos(bearing));
+        double lng2 = Math.toRadians(longitude) + Math.atan2(Math.sin(bearing) * Math.sin(angle) * Math.cos(lat1),
+                Math.cos(angle) - Math.sin(lat1) * Math.sin(lat2));
+        double lng = Math.toDegrees(lng2);
+        return new double[] {Math.toDegrees(lat2), ((lng + 540) % 360) - 180};
+    }
+}
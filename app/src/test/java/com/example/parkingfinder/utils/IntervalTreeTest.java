@@ -0,0 +1,148 @@
+package com.example.parkingfinder.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the tree against a brute force scan of the same intervals after
+ * every insert and removal, so a subtree's maxEnd left stale by a rotation
+ * or a removal shows up as a wrong answer.
+ */
+public class IntervalTreeTest {
+
+    @Test
+    public void matchesBruteForceUnderRandomInsertsAndRemovals() {
+        Random random = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            IntervalTree tree = new IntervalTree();
+            Map<String, long[]> intervals = new HashMap<>();
+            for (int step = 0; step < 400; step++) {
+                String id = "b" + random.nextInt(60);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(intervals.remove(id) != null, tree.remove(id));
+                } else {
+                    long start = random.nextInt(500);
+                    // Mostly short bookings with a few long ones spanning many nodes
+                    long end = start + (random.nextInt(10) == 0 ? random.nextInt(300) : random.nextInt(20));
+                    tree.insert(id, start, end);
+                    if (end > start) {
+                        intervals.put(id, new long[] {start, end});
+                    } else {
+                        intervals.remove(id);
+                    }
+                }
+                assertEquals(intervals.size(), tree.size());
+                assertQueriesMatch(tree, intervals, random);
+            }
+        }
+    }
+
+    @Test
+    public void longIntervalSurvivesRotations() {
+        IntervalTree tree = new IntervalTree();
+        tree.insert("long", 0, 10_000);
+        // Ascending starts rotate left again and again, moving "long" deep into the tree
+        for (int i = 1; i <= 200; i++) {
+            tree.insert("short" + i, i * 10L, i * 10L + 5);
+        }
+        assertEquals("long", tree.findOverlap(5_000, 5_001));
+        assertEquals("long", tree.findOverlap(16, 19));
+        assertEquals(10_000, tree.nextFreeSlot(2_006, 1));
+
+        // Removals rebuild the paths above the removed nodes
+        for (int i = 1; i <= 200; i += 2) {
+            assertTrue(tree.remove("short" + i));
+        }
+        assertEquals("long", tree.findOverlap(5_000, 5_001));
+        assertTrue(tree.remove("long"));
+        assertNull(tree.findOverlap(5_000, 5_001));
+        assertFalse(tree.overlaps(11, 19));
+        assertEquals(11, tree.nextFreeSlot(11, 9));
+        assertEquals(25, tree.nextFreeSlot(11, 10));
+    }
+
+    @Test
+    public void insertReplacesSameIdAndIgnoresEmptyRanges() {
+        IntervalTree tree = new IntervalTree();
+        tree.insert("a", 10, 20);
+        tree.insert("a", 30, 40);
+        assertEquals(1, tree.size());
+        assertFalse(tree.overlaps(10, 20));
+        assertEquals("a", tree.findOverlap(35, 36));
+
+        // An empty range still replaces, leaving nothing stored
+        tree.insert("a", 50, 50);
+        assertTrue(tree.isEmpty());
+        assertFalse(tree.remove("a"));
+    }
+
+    @Test
+    public void rangesAreHalfOpen() {
+        IntervalTree tree = new IntervalTree();
+        tree.insert("a", 10, 20);
+        assertFalse(tree.overlaps(20, 30));
+        assertFalse(tree.overlaps(0, 10));
+        assertTrue(tree.overlaps(19, 20));
+        assertFalse(tree.overlaps(15, 15));
+        assertEquals(20, tree.nextFreeSlot(10, 1));
+        assertEquals(0, tree.nextFreeSlot(0, 10));
+    }
+
+    private static void assertQueriesMatch(IntervalTree tree, Map<String, long[]> intervals, Random random) {
+        for (int i = 0; i < 20; i++) {
+            long start = random.nextInt(900);
+            long end = start + 1 + random.nextInt(40);
+            String expected = earliestOverlap(intervals, start, end);
+            assertEquals(start + "-" + end, expected, tree.findOverlap(start, end));
+            assertEquals(expected != null, tree.overlaps(start, end));
+            assertEquals(start + "+" + (end - start), nextFreeSlot(intervals, start, end - start),
+                    tree.nextFreeSlot(start, end - start));
+        }
+    }
+
+    /**
+     * Id of the overlapping interval with the smallest start, ties broken by id like the tree
+     */
+    private static String earliestOverlap(Map<String, long[]> intervals, long start, long end) {
+        String best = null;
+        long bestStart = 0;
+        for (Map.Entry<String, long[]> entry : intervals.entrySet()) {
+            long[] interval = entry.getValue();
+            if (interval[0] < end && interval[1] > start
+                    && (best == null || interval[0] < bestStart
+                    || (interval[0] == bestStart && entry.getKey().compareTo(best) < 0))) {
+                best = entry.getKey();
+                bestStart = interval[0];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * A free slot starts at from or where an interval ends, try those in order
+     */
+    private static long nextFreeSlot(Map<String, long[]> intervals, long from, long duration) {
+        TreeSet<Long> candidates = new TreeSet<>();
+        candidates.add(from);
+        List<long[]> all = new ArrayList<>(intervals.values());
+        for (long[] interval : all) {
+            if (interval[1] > from) {
+                candidates.add(interval[1]);
+            }
+        }
+        for (long t : candidates) {
+            if (earliestOverlap(intervals, t, t + duration) == null) {
+                return t;
+            }
+        }
+        throw new AssertionError("The last end is always free");
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.parkingfinder.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Covers the ring wrapping past CAPACITY, forecasts from the same hour of
+ * each week and the BLOB form stored in Room.
+ */
+public class OccupancyTimelineTest {
+
+    private static final long HOUR = OccupancyTimeline.BUCKET_MS;
+    private static final long WEEK = OccupancyTimeline.WEEK_BUCKETS * HOUR;
+    private static final long START = OccupancyTimeline.bucketOf(1_700_000_000_000L) * HOUR;
+
+    @Test
+    public void bucketAveragesItsSamples() {
+        OccupancyTimeline timeline = new OccupancyTimeline();
+        timeline.record(START, 0.1f);
+        timeline.record(START + HOUR - 1, 0.3f);
+        // Clamped to [0, 1]
+        timeline.record(START + HOUR, 1.5f);
+
+        long bucket = OccupancyTimeline.bucketOf(START);
+        assertEquals(0.2f, timeline.getOccupancy(bucket), 1e-6f);
+        assertEquals(1f, timeline.getOccupancy(bucket + 1), 0f);
+        assertEquals(-1f, timeline.getOccupancy(bucket + 2), 0f);
+    }
+
+    @Test
+    public void wrapPastCapacityDropsOverwrittenBuckets() {
+        OccupancyTimeline timeline = new OccupancyTimeline();
+        long first = OccupancyTimeline.bucketOf(START);
+        timeline.record(START, 0.5f);
+        timeline.record(START + HOUR, 0.7f);
+
+        // Same slot as the first bucket, one ring later
+        long wrapped = START + OccupancyTimeline.CAPACITY * HOUR;
+        timeline.record(wrapped, 0.9f);
+        assertEquals(first + OccupancyTimeline.CAPACITY, timeline.getLatestBucket());
+        assertEquals(-1f, timeline.getOccupancy(first), 0f);
+        // Cleared before reuse, not added to the old sum
+        assertEquals(0.9f, timeline.getOccupancy(first + OccupancyTimeline.CAPACITY), 1e-6f);
+        // Still inside the ring
+        assertEquals(0.7f, timeline.getOccupancy(first + 1), 1e-6f);
+
+        // Samples older than the ring are dropped
+        timeline.record(START, 0.1f);
+        assertEquals(-1f, timeline.getOccupancy(first), 0f);
+        assertEquals(0.9f, timeline.getOccupancy(first + OccupancyTimeline.CAPACITY), 1e-6f);
+
+        // A jump of more than a ring clears every slot
+        timeline.record(wrapped + 3 * OccupancyTimeline.CAPACITY * HOUR, 0.4f);
+        for (long b = timeline.getLatestBucket() - OccupancyTimeline.CAPACITY + 1; b < timeline.getLatestBucket(); b++) {
+            assertEquals(-1f, timeline.getOccupancy(b), 0f);
+        }
+        assertEquals(0.4f, timeline.getOccupancy(timeline.getLatestBucket()), 1e-6f);
+    }
+
+    @Test
+    public void forecastAveragesSameHourOfEachWeek() {
+        OccupancyTimeline timeline = new OccupancyTimeline();
+        timeline.record(START, 0.2f);
+        timeline.record(START + WEEK, 0.4f);
+        timeline.record(START + WEEK + HOUR, 0.9f);
+        timeline.record(START + 3 * WEEK, 0.6f);
+        // Latest bucket some hours past the last sampled week, so the weeks
+        // have to be found from an offset rather than from the latest bucket
+        timeline.record(START + 3 * WEEK + 5 * HOUR, 0.3f);
+
+        // The week without a sample is skipped, not counted as empty
+        assertEquals(0.4f, timeline.forecastOccupancy(START + 4 * WEEK), 1e-6f);
+        assertEquals(3, timeline.countSampledWeeks(START + 4 * WEEK));
+        // Any time within the hour, in any week
+        assertEquals(0.4f, timeline.forecastOccupancy(START + 10 * WEEK + HOUR - 1), 1e-6f);
+        assertEquals(0.9f, timeline.forecastOccupancy(START + 2 * WEEK + HOUR), 1e-6f);
+        assertEquals(0.3f, timeline.forecastOccupancy(START + 5 * HOUR), 1e-6f);
+        assertEquals(-1f, timeline.forecastOccupancy(START + 2 * HOUR), 0f);
+        assertEquals(0, timeline.countSampledWeeks(START + 2 * HOUR));
+    }
+
+    @Test
+    public void forecastOnlyUsesWeeksInTheRing() {
+        OccupancyTimeline timeline = new OccupancyTimeline();
+        timeline.record(START, 1f);
+        timeline.record(START + 4 * WEEK, 0.2f);
+        assertEquals(0.2f, timeline.forecastOccupancy(START), 1e-6f);
+        assertEquals(1, timeline.countSampledWeeks(START));
+    }
+
+    @Test
+    public void emptyTimelineHasNoForecast() {
+        OccupancyTimeline timeline = new OccupancyTimeline();
+        assertEquals(-1L, timeline.getLatestBucket());
+        assertEquals(-1f, timeline.forecastOccupancy(START), 0f);
+        assertEquals(0, timeline.countSampledWeeks(START));
+    }
+
+    @Test
+    public void bytesRoundTrip() {
+        Random random = new Random(3);
+        OccupancyTimeline timeline = new OccupancyTimeline();
+        // Past the ring's capacity, so the stored slots have wrapped
+        for (int i = 0; i < 2000; i++) {
+            timeline.record(START + i * HOUR / 2 + random.nextInt(1000), random.nextFloat());
+        }
+
+        byte[] sums = timeline.sumsToBytes();
+        byte[] counts = timeline.countsToBytes();
+        assertEquals(OccupancyTimeline.CAPACITY * 4, sums.length);
+        assertEquals(OccupancyTimeline.CAPACITY * 2, counts.length);
+        OccupancyTimeline restored = OccupancyTimeline.fromBytes(sums, counts, timeline.getLatestBucket());
+
+        assertEquals(timeline.getLatestBucket(), restored.getLatestBucket());
+        for (long b = timeline.getLatestBucket() - OccupancyTimeline.CAPACITY - 1; b <= timeline.getLatestBucket() + 1; b++) {
+            assertEquals(timeline.getOccupancy(b), restored.getOccupancy(b), 0f);
+        }
+        for (int hour = 0; hour < OccupancyTimeline.WEEK_BUCKETS; hour++) {
+            long time = START + hour * HOUR;
+            assertEquals(timeline.forecastOccupancy(time), restored.forecastOccupancy(time), 0f);
+        }
+        assertArrayEquals(sums, restored.sumsToBytes());
+        assertArrayEquals(counts, restored.countsToBytes());
+
+        // Recording continues where the saved ring left off
+        long next = (timeline.getLatestBucket() + 1) * HOUR;
+        timeline.record(next, 0.5f);
+        restored.record(next, 0.5f);
+        assertArrayEquals(timeline.sumsToBytes(), restored.sumsToBytes());
+    }
+
+    @Test
+    public void bytesOfAnotherCapacityGiveEmptyTimeline() {
+        OccupancyTimeline timeline = new OccupancyTimeline();
+        timeline.record(START, 0.5f);
+        byte[] sums = timeline.sumsToBytes();
+        byte[] counts = timeline.countsToBytes();
+
+        OccupancyTimeline restored = OccupancyTimeline.fromBytes(
+                Arrays.copyOf(sums, sums.length - 4), counts, timeline.getLatestBucket());
+        assertEquals(-1L, restored.getLatestBucket());
+        assertEquals(-1L, OccupancyTimeline.fromBytes(null, counts, 5).getLatestBucket());
+    }
+}
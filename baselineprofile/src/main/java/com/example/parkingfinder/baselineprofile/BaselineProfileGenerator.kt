@@ -0,0 +1,88 @@
+package com.example.parkingfinder.baselineprofile
+
+import androidx.benchmark.macro.MacrobenchmarkScope
+import androidx.benchmark.macro.junit4.BaselineProfileRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.uiautomator.By
+import androidx.test.uiautomator.Direction
+import androidx.test.uiautomator.Until
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Records the baseline and startup profiles of the critical journeys:
+ * launch, map, list scroll and opening a parking area to book.
+ * Run with ./gradlew :app:generateReleaseBaselineProfile on a device or
+ * emulator, the profiles are written to app/src/release/generated.
+ */
+@RunWith(AndroidJUnit4::class)
+class BaselineProfileGenerator {
+
+    @get:Rule
+    val rule = BaselineProfileRule()
+
+    @Test
+    fun startup() = rule.collect(
+        packageName = PACKAGE_NAME,
+        includeInStartupProfile = true
+    ) {
+        pressHome()
+        startActivityAndWait()
+        device.wait(Until.hasObject(By.res(PACKAGE_NAME, "map")), TIMEOUT_MS)
+    }
+
+    @Test
+    fun criticalJourneys() = rule.collect(packageName = PACKAGE_NAME) {
+        pressHome()
+        startActivityAndWait()
+        panMap()
+        scrollParkingList()
+        openParkingAreaToBook()
+    }
+
+    private fun MacrobenchmarkScope.panMap() {
+        val map = device.wait(Until.findObject(By.res(PACKAGE_NAME, "map")), TIMEOUT_MS) ?: return
+        map.setGestureMargin(device.displayWidth / 5)
+        map.swipe(Direction.LEFT, 0.5f)
+        map.swipe(Direction.UP, 0.5f)
+        device.waitForIdle()
+    }
+
+    private fun MacrobenchmarkScope.scrollParkingList() {
+        device.findObject(By.res(PACKAGE_NAME, "navigation_list"))?.click() ?: return
+        val list = device.wait(Until.findObject(By.res(PACKAGE_NAME, "recycler_view")), TIMEOUT_MS) ?: return
+        device.wait(Until.hasObject(By.res(PACKAGE_NAME, "text_view_name")), TIMEOUT_MS)
+
+        // Flinging binds new rows and preloads their images
+        list.setGestureMargin(device.displayWidth / 5)
+        repeat(3) {
+            list.fling(Direction.DOWN)
+            device.waitForIdle()
+        }
+        list.fling(Direction.UP)
+        device.waitForIdle()
+    }
+
+    private fun MacrobenchmarkScope.openParkingAreaToBook() {
+        device.findObject(By.res(PACKAGE_NAME, "text_view_name"))?.click() ?: return
+        device.wait(Until.hasObject(By.res(PACKAGE_NAME, "recycler_view_spots")), TIMEOUT_MS)
+
+        // Booking needs a signed in user, the details screen and spot grid
+        // are what every booking goes through
+        device.findObject(By.res(PACKAGE_NAME, "button_book"))?.let {
+            if (it.isEnabled) {
+                it.click()
+                device.waitForIdle()
+                device.pressBack()
+            }
+        }
+        device.pressBack()
+        device.waitForIdle()
+    }
+
+    companion object {
+        private const val PACKAGE_NAME = "com.example.parkingfinder"
+        private const val TIMEOUT_MS = 5_000L
+    }
+}
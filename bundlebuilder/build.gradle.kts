@@ -0,0 +1,25 @@
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+application {
+    mainClass.set("com.example.parkingfinder.bundlebuilder.BundleBuilder")
+}
+
+dependencies {
+    implementation(libs.gson)
+
+    testImplementation(libs.junit)
+}
+
+// Paths on the command line are relative to the project root, e.g.
+// ./gradlew :bundlebuilder:run --args="build snapshot.json regions.json app/src/main/assets/bundles"
+// ./gradlew :bundlebuilder:run --args="verify app/src/main/assets/bundles/downtown.bundle"
+tasks.named<JavaExec>("run") {
+    workingDir = rootDir
+}
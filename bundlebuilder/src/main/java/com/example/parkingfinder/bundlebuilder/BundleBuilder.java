@@ -0,0 +1,182 @@
+package com.example.parkingfinder.bundlebuilder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds Firestore data bundles of the parking areas, one per region, from a
+ * dataset snapshot. The app loads them into its Firestore cache and answers
+ * cold-start nearby searches from them without reading documents.
+ *
+ * The snapshot is a JSON export of the parking_areas collection:
+ * {"projectId": "...", "exportedAt": millis, "parking_areas": {"id": {fields}}}
+ * The regions file lists the areas to bundle:
+ * {"regions": [{"id": "downtown", "minLatitude": .., "maxLatitude": ..,
+ * "minLongitude": .., "maxLongitude": ..}]}
+ *
+ * The output directory gets a .bundle file per region and manifest.json,
+ * which the app reads from assets/bundles. Bundles missing from the assets
+ * are downloaded from storage at bundles/FILE, so they can be uploaded there
+ * instead of shipped.
+ *
+ * Usage:
+ * build SNAPSHOT REGIONS OUTPUT_DIR
+ * verify BUNDLE...
+ */
+public final class BundleBuilder {
+
+    static final String COLLECTION_PARKING_AREAS = "parking_areas";
+    static final String MANIFEST_NAME = "manifest.json";
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private BundleBuilder() {
+        // No instances
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 4 && args[0].equals("build")) {
+            build(new File(args[1]), new File(args[2]), new File(args[3]));
+        } else if (args.length >= 2 && args[0].equals("verify")) {
+            boolean valid = true;
+            for (int i = 1; i < args.length; i++) {
+                valid &= verify(new File(args[i]));
+            }
+            if (!valid) {
+                System.exit(1);
+            }
+        } else {
+            System.err.println("Usage: build SNAPSHOT REGIONS OUTPUT_DIR | verify BUNDLE...");
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Region of the map covered by one bundle
+     */
+    static final class Region {
+        final String id;
+        final double minLatitude;
+        final double maxLatitude;
+        final double minLongitude;
+        final double maxLongitude;
+
+        Region(JsonObject json) {
+            id = json.get("id").getAsString();
+            minLatitude = json.get("minLatitude").getAsDouble();
+            maxLatitude = json.get("maxLatitude").getAsDouble();
+            minLongitude = json.get("minLongitude").getAsDouble();
+            maxLongitude = json.get("maxLongitude").getAsDouble();
+        }
+
+        boolean contains(double latitude, double longitude) {
+            return latitude >= minLatitude && latitude <= maxLatitude
+                    && longitude >= minLongitude && longitude <= maxLongitude;
+        }
+
+        String fileName() {
+            return id + ".bundle";
+        }
+
+        // Must match RegionBundleRepository in the app
+        String queryName() {
+            return "parking-areas-" + id;
+        }
+    }
+
+    private static void build(File snapshotFile, File regionsFile, File outputDir) throws IOException {
+        JsonObject snapshot = readJson(snapshotFile);
+        JsonObject areas = snapshot.getAsJsonObject(COLLECTION_PARKING_AREAS);
+        String projectId = snapshot.get("projectId").getAsString();
+        long readTime = snapshot.has("exportedAt")
+                ? snapshot.get("exportedAt").getAsLong()
+                : snapshotFile.lastModified();
+
+        List<Region> regions = new ArrayList<>();
+        for (JsonElement region : readJson(regionsFile).getAsJsonArray("regions")) {
+            regions.add(new Region(region.getAsJsonObject()));
+        }
+
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IOException("Could not create " + outputDir);
+        }
+
+        JsonArray manifestRegions = new JsonArray();
+        for (Region region : regions) {
+            BundleWriter writer = new BundleWriter(projectId, region.id, readTime);
+            writer.addRegionQuery(region.queryName(), COLLECTION_PARKING_AREAS,
+                    region.minLatitude, region.maxLatitude);
+
+            int documents = 0;
+            for (Map.Entry<String, JsonElement> area : areas.entrySet()) {
+                JsonObject fields = area.getValue().getAsJsonObject();
+                if (region.contains(fields.get("latitude").getAsDouble(),
+                        fields.get("longitude").getAsDouble())) {
+                    writer.addDocument(COLLECTION_PARKING_AREAS + "/" + area.getKey(), fields,
+                            region.queryName());
+                    documents++;
+                }
+            }
+
+            File bundleFile = new File(outputDir, region.fileName());
+            long bytes = writer.writeTo(bundleFile);
+
+            JsonObject entry = new JsonObject();
+            entry.addProperty("id", region.id);
+            entry.addProperty("minLatitude", region.minLatitude);
+            entry.addProperty("maxLatitude", region.maxLatitude);
+            entry.addProperty("minLongitude", region.minLongitude);
+            entry.addProperty("maxLongitude", region.maxLongitude);
+            entry.addProperty("file", region.fileName());
+            entry.addProperty("query", region.queryName());
+            entry.addProperty("documents", documents);
+            manifestRegions.add(entry);
+
+            System.out.printf("%-24s %6d documents %10d bytes%n", region.id, documents, bytes);
+        }
+
+        JsonObject manifest = new JsonObject();
+        manifest.addProperty("createdAt", readTime);
+        manifest.add("regions", manifestRegions);
+        try (Writer writer = Files.newBufferedWriter(new File(outputDir, MANIFEST_NAME).toPath(),
+                StandardCharsets.UTF_8)) {
+            GSON.toJson(manifest, writer);
+        }
+    }
+
+    /**
+     * Read a bundle back from disk and check it is one the SDK will load
+     */
+    private static boolean verify(File bundleFile) throws IOException {
+        try {
+            BundleReader.Summary summary = BundleReader.read(bundleFile);
+            System.out.printf("%s: %d documents, %d named queries %s%n",
+                    bundleFile.getName(), summary.documents, summary.namedQueries.size(),
+                    summary.namedQueries);
+            return true;
+        } catch (BundleReader.InvalidBundleException e) {
+            System.err.println(bundleFile.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static JsonObject readJson(File file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader).getAsJsonObject();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.parkingfinder.bundlebuilder;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a bundle from disk the way the SDK's loader does and checks what it
+ * would reject: the metadata first, matching document and byte counts, and a
+ * document after each metadata that says one exists.
+ */
+final class BundleReader {
+
+    /**
+     * What a valid bundle contains
+     */
+    static final class Summary {
+        int documents;
+        final List<String> namedQueries = new ArrayList<>();
+    }
+
+    static final class InvalidBundleException extends Exception {
+        InvalidBundleException(String message) {
+            super(message);
+        }
+    }
+
+    private BundleReader() {
+        // No instances
+    }
+
+    static Summary read(File file) throws IOException, InvalidBundleException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            JsonObject first = nextElement(in);
+            if (first == null || !first.has("metadata")) {
+                throw new InvalidBundleException("Bundle does not start with its metadata");
+            }
+            JsonObject metadata = first.getAsJsonObject("metadata");
+            long totalBytes = metadata.get("totalBytes").getAsLong();
+            int totalDocuments = metadata.get("totalDocuments").getAsInt();
+
+            Summary summary = new Summary();
+            long bytesRead = 0;
+            String expectedDocument = null;
+            JsonObject element;
+            long[] size = new long[1];
+            while ((element = nextElement(in, size)) != null) {
+                bytesRead += size[0];
+                if (element.has("namedQuery")) {
+                    summary.namedQueries.add(element.getAsJsonObject("namedQuery").get("name").getAsString());
+                } else if (element.has("documentMetadata")) {
+                    JsonObject documentMetadata = element.getAsJsonObject("documentMetadata");
+                    if (expectedDocument != null) {
+                        throw new InvalidBundleException("Missing document " + expectedDocument);
+                    }
+                    if (documentMetadata.get("exists").getAsBoolean()) {
+                        expectedDocument = documentMetadata.get("name").getAsString();
+                    }
+                } else if (element.has("document")) {
+                    String name = element.getAsJsonObject("document").get("name").getAsString();
+                    if (!name.equals(expectedDocument)) {
+                        throw new InvalidBundleException("Document " + name + " has no metadata before it");
+                    }
+                    expectedDocument = null;
+                    summary.documents++;
+                } else {
+                    throw new InvalidBundleException("Unknown element " + element.keySet());
+                }
+            }
+
+            if (expectedDocument != null) {
+                throw new InvalidBundleException("Missing document " + expectedDocument);
+            }
+            if (bytesRead != totalBytes) {
+                throw new InvalidBundleException("Read " + bytesRead + " bytes, metadata says " + totalBytes);
+            }
+            if (summary.documents != totalDocuments) {
+                throw new InvalidBundleException("Read " + summary.documents
+                        + " documents, metadata says " + totalDocuments);
+            }
+            return summary;
+        }
+    }
+
+    private static JsonObject nextElement(InputStream in) throws IOException, InvalidBundleException {
+        return nextElement(in, new long[1]);
+    }
+
+    /**
+     * Read one length-prefixed element, or null at the end of the bundle.
+     * size receives the bytes it took, prefix included.
+     */
+    private static JsonObject nextElement(InputStream in, long[] size) throws IOException, InvalidBundleException {
+        StringBuilder prefix = new StringBuilder();
+        int c;
+        in.mark(1);
+        while ((c = in.read()) != -1 && c != '{') {
+            if (c < '0' || c > '9') {
+                throw new InvalidBundleException("Bad length prefix");
+            }
+            prefix.append((char) c);
+            in.mark(1);
+        }
+        if (c == -1) {
+            if (prefix.length() > 0) {
+                throw new InvalidBundleException("Bundle ends after a length prefix");
+            }
+            return null;
+        }
+        // Put the opening brace back, it belongs to the element
+        in.reset();
+
+        int length = Integer.parseInt(prefix.toString());
+        byte[] json = in.readNBytes(length);
+        if (json.length != length) {
+            throw new InvalidBundleException("Bundle ends inside an element");
+        }
+        size[0] = prefix.length() + length;
+        return JsonParser.parseString(new String(json, StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+}
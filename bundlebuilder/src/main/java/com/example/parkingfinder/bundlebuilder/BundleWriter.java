@@ -0,0 +1,223 @@
+package com.example.parkingfinder.bundlebuilder;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a Firestore data bundle: length-prefixed JSON elements, the metadata
+ * first, then the named queries, then each document after its metadata.
+ * Elements use the proto3 JSON form of the bundle protos.
+ */
+final class BundleWriter {
+
+    private static final int BUNDLE_VERSION = 1;
+
+    // Stored as doubles by the app, also when the snapshot has whole numbers
+    private static final Set<String> DOUBLE_FIELDS = new HashSet<>(
+            Arrays.asList("latitude", "longitude", "hourlyRate", "rating"));
+
+    private final Gson gson = new Gson();
+    private final String projectId;
+    private final String bundleId;
+    private final JsonObject readTime;
+
+    private final ByteArrayOutputStream elements = new ByteArrayOutputStream();
+    private int documents;
+
+    BundleWriter(String projectId, String bundleId, long readTimeMillis) {
+        this.projectId = projectId;
+        this.bundleId = bundleId;
+        this.readTime = timestamp(readTimeMillis);
+    }
+
+    /**
+     * Named query for the documents of a collection in a latitude band.
+     * Longitude is left to the client, Firestore allows range filters on one
+     * field only and the app filters by distance anyway.
+     */
+    void addRegionQuery(String name, String collectionId, double minLatitude, double maxLatitude)
+            throws IOException {
+        JsonObject from = new JsonObject();
+        from.addProperty("collectionId", collectionId);
+        JsonArray fromList = new JsonArray();
+        fromList.add(from);
+
+        JsonArray filters = new JsonArray();
+        filters.add(fieldFilter("latitude", "GREATER_THAN_OR_EQUAL", minLatitude));
+        filters.add(fieldFilter("latitude", "LESS_THAN_OR_EQUAL", maxLatitude));
+        JsonObject compositeFilter = new JsonObject();
+        compositeFilter.addProperty("op", "AND");
+        compositeFilter.add("filters", filters);
+        JsonObject where = new JsonObject();
+        where.add("compositeFilter", compositeFilter);
+
+        JsonObject order = new JsonObject();
+        order.add("field", fieldReference("latitude"));
+        order.addProperty("direction", "ASCENDING");
+        JsonArray orderBy = new JsonArray();
+        orderBy.add(order);
+
+        JsonObject structuredQuery = new JsonObject();
+        structuredQuery.add("from", fromList);
+        structuredQuery.add("where", where);
+        structuredQuery.add("orderBy", orderBy);
+
+        JsonObject bundledQuery = new JsonObject();
+        bundledQuery.addProperty("parent", documentsPath());
+        bundledQuery.add("structuredQuery", structuredQuery);
+        bundledQuery.addProperty("limitType", "FIRST");
+
+        JsonObject namedQuery = new JsonObject();
+        namedQuery.addProperty("name", name);
+        namedQuery.add("bundledQuery", bundledQuery);
+        namedQuery.add("readTime", readTime);
+        writeElement(elements, "namedQuery", namedQuery);
+    }
+
+    /**
+     * Add a document and the named queries whose results include it
+     */
+    void addDocument(String path, JsonObject fields, String... queries) throws IOException {
+        String name = documentsPath() + "/" + path;
+
+        JsonArray queryNames = new JsonArray();
+        for (String query : queries) {
+            queryNames.add(query);
+        }
+        JsonObject metadata = new JsonObject();
+        metadata.addProperty("name", name);
+        metadata.add("readTime", readTime);
+        metadata.addProperty("exists", true);
+        metadata.add("queries", queryNames);
+        writeElement(elements, "documentMetadata", metadata);
+
+        JsonObject encodedFields = new JsonObject();
+        for (Map.Entry<String, JsonElement> field : fields.entrySet()) {
+            encodedFields.add(field.getKey(), encodeValue(field.getValue(),
+                    DOUBLE_FIELDS.contains(field.getKey())));
+        }
+        JsonObject document = new JsonObject();
+        document.addProperty("name", name);
+        document.add("fields", encodedFields);
+        document.add("createTime", readTime);
+        document.add("updateTime", readTime);
+        writeElement(elements, "document", document);
+        documents++;
+    }
+
+    /**
+     * Write the bundle, returning its size in bytes
+     */
+    long writeTo(File file) throws IOException {
+        byte[] body = elements.toByteArray();
+
+        JsonObject metadata = new JsonObject();
+        metadata.addProperty("id", bundleId);
+        metadata.add("createTime", readTime);
+        metadata.addProperty("version", BUNDLE_VERSION);
+        metadata.addProperty("totalDocuments", documents);
+        // Size of everything after the metadata element
+        metadata.addProperty("totalBytes", body.length);
+
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            writeElement(header, "metadata", metadata);
+            header.writeTo(out);
+            out.write(body);
+            return header.size() + body.length;
+        }
+    }
+
+    private void writeElement(ByteArrayOutputStream out, String type, JsonObject value) throws IOException {
+        JsonObject element = new JsonObject();
+        element.add(type, value);
+        byte[] json = gson.toJson(element).getBytes(StandardCharsets.UTF_8);
+        // The length prefix counts UTF-8 bytes, not characters
+        out.write(String.valueOf(json.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(json);
+    }
+
+    private String documentsPath() {
+        return "projects/" + projectId + "/databases/(default)/documents";
+    }
+
+    private static JsonObject fieldFilter(String field, String op, double value) {
+        JsonObject filter = new JsonObject();
+        filter.add("field", fieldReference(field));
+        filter.addProperty("op", op);
+        filter.add("value", encodeValue(new JsonPrimitive(value), true));
+        JsonObject wrapper = new JsonObject();
+        wrapper.add("fieldFilter", filter);
+        return wrapper;
+    }
+
+    private static JsonObject fieldReference(String field) {
+        JsonObject reference = new JsonObject();
+        reference.addProperty("fieldPath", field);
+        return reference;
+    }
+
+    /**
+     * Encode a snapshot value as a Firestore Value
+     */
+    private static JsonObject encodeValue(JsonElement value, boolean asDouble) {
+        JsonObject encoded = new JsonObject();
+        if (value == null || value.isJsonNull()) {
+            encoded.addProperty("nullValue", "NULL_VALUE");
+        } else if (value.isJsonArray()) {
+            JsonArray values = new JsonArray();
+            for (JsonElement item : value.getAsJsonArray()) {
+                values.add(encodeValue(item, false));
+            }
+            JsonObject array = new JsonObject();
+            array.add("values", values);
+            encoded.add("arrayValue", array);
+        } else if (value.isJsonObject()) {
+            JsonObject fields = new JsonObject();
+            for (Map.Entry<String, JsonElement> field : value.getAsJsonObject().entrySet()) {
+                fields.add(field.getKey(), encodeValue(field.getValue(), false));
+            }
+            JsonObject map = new JsonObject();
+            map.add("fields", fields);
+            encoded.add("mapValue", map);
+        } else {
+            JsonPrimitive primitive = value.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                encoded.addProperty("booleanValue", primitive.getAsBoolean());
+            } else if (primitive.isString()) {
+                encoded.addProperty("stringValue", primitive.getAsString());
+            } else if (asDouble || !isWholeNumber(primitive.getAsString())) {
+                encoded.addProperty("doubleValue", primitive.getAsDouble());
+            } else {
+                // int64 is a string in proto3 JSON
+                encoded.addProperty("integerValue", primitive.getAsString());
+            }
+        }
+        return encoded;
+    }
+
+    private static boolean isWholeNumber(String number) {
+        return number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0;
+    }
+
+    private static JsonObject timestamp(long millis) {
+        JsonObject timestamp = new JsonObject();
+        timestamp.addProperty("seconds", Math.floorDiv(millis, 1000L));
+        timestamp.addProperty("nanos", (int) Math.floorMod(millis, 1000L) * 1_000_000);
+        return timestamp;
+    }
+}
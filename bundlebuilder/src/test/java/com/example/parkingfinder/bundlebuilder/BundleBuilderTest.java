@@ -0,0 +1,88 @@
+package com.example.parkingfinder.bundlebuilder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Builds the bundles of the golden snapshot and checks them against the
+ * golden files, then loads them the way the SDK does. The golden files are
+ * in src/test/resources/golden, rebuild them after an intended format change
+ * with ./gradlew :bundlebuilder:run --args="build
+ * bundlebuilder/src/test/resources/golden/snapshot.json
+ * bundlebuilder/src/test/resources/golden/regions.json
+ * bundlebuilder/src/test/resources/golden"
+ */
+public class BundleBuilderTest {
+
+    private static final String[] OUTPUTS = {"downtown.bundle", "harbor.bundle", BundleBuilder.MANIFEST_NAME};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void buildMatchesGoldenFiles() throws Exception {
+        File output = temporaryFolder.newFolder("bundles");
+        BundleBuilder.main(new String[]{"build", golden("snapshot.json").getPath(),
+                golden("regions.json").getPath(), output.getPath()});
+
+        for (String name : OUTPUTS) {
+            assertArrayEquals(name, Files.readAllBytes(golden(name).toPath()),
+                    Files.readAllBytes(new File(output, name).toPath()));
+        }
+    }
+
+    @Test
+    public void goldenBundlesLoad() throws Exception {
+        BundleReader.Summary downtown = BundleReader.read(golden("downtown.bundle"));
+        assertEquals(2, downtown.documents);
+        assertEquals(Collections.singletonList("parking-areas-downtown"), downtown.namedQueries);
+
+        BundleReader.Summary harbor = BundleReader.read(golden("harbor.bundle"));
+        assertEquals(1, harbor.documents);
+        assertEquals(Collections.singletonList("parking-areas-harbor"), harbor.namedQueries);
+    }
+
+    @Test
+    public void lengthPrefixesCountUtf8Bytes() throws Exception {
+        // The downtown bundle has a non-ASCII name, a character count would be short
+        String bundle = new String(Files.readAllBytes(golden("downtown.bundle").toPath()), StandardCharsets.UTF_8);
+        assertTrue(bundle.contains("Caf\u00e9 Plaza Lot"));
+        BundleReader.read(golden("downtown.bundle"));
+    }
+
+    @Test(expected = BundleReader.InvalidBundleException.class)
+    public void truncatedBundleIsRejected() throws Exception {
+        byte[] bundle = Files.readAllBytes(golden("downtown.bundle").toPath());
+        BundleReader.read(write(Arrays.copyOf(bundle, bundle.length - 1)));
+    }
+
+    @Test(expected = BundleReader.InvalidBundleException.class)
+    public void wrongDocumentCountIsRejected() throws Exception {
+        String bundle = new String(Files.readAllBytes(golden("downtown.bundle").toPath()), StandardCharsets.UTF_8);
+        // Same length, so only the count is wrong
+        String tampered = bundle.replace("\"totalDocuments\":2", "\"totalDocuments\":3");
+        assertNotEquals(bundle, tampered);
+        BundleReader.read(write(tampered.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private File write(byte[] bytes) throws IOException {
+        File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    private static File golden(String name) throws URISyntaxException {
+        return new File(BundleBuilderTest.class.getResource("/golden/" + name).toURI());
+    }
+}
@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "parkingfinder"
 include(":app")
+include(":baselineprofile")
+include(":bundlebuilder")
  
\ No newline at end of file